@@ -0,0 +1,77 @@
+package com.example.server.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import com.example.server.Home;
+import com.example.server.PlayerHomes;
+
+/**
+ * Reproducible home data sets
+ */
+public final class BenchmarkData {
+
+    /**
+     * Worlds the generated homes are spread over
+     */
+    public static final List<String> WORLDS = List.of("world", "world_nether", "world_the_end");
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * The same homes for the same count and seed, in a stable order; one
+     * default home per player
+     */
+    public static Map<UUID, PlayerHomes> homes(int count, long seed) {
+        Random random = new Random(seed);
+        Map<UUID, PlayerHomes> homes = new LinkedHashMap<>(Math.max(16, (int) (count / 0.75f) + 1));
+        while (homes.size() < count) {
+            homes.put(new UUID(random.nextLong(), random.nextLong()), PlayerHomes.of(PlayerHomes.DEFAULT_NAME, new Home(
+                    WORLDS.get(random.nextInt(WORLDS.size())),
+                    random.nextInt(60000) - 30000 + 0.5,
+                    random.nextInt(320) - 64,
+                    random.nextInt(60000) - 30000 + 0.5,
+                    random.nextFloat() * 360f - 180f,
+                    random.nextFloat() * 180f - 90f
+            )));
+        }
+        return homes;
+    }
+
+    /**
+     * The player's default home
+     */
+    public static Home home(PlayerHomes homes) {
+        return homes.get(PlayerHomes.DEFAULT_NAME);
+    }
+
+    /**
+     * The default home shifted by one block, so every save is a real change
+     */
+    public static PlayerHomes moved(PlayerHomes homes) {
+        Home home = home(homes);
+        return homes.with(PlayerHomes.DEFAULT_NAME,
+                new Home(home.world(), home.x() + 1, home.y(), home.z(), home.yaw(), home.pitch()));
+    }
+
+    public static void deleteRecursively(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) {
+            return;
+        }
+
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
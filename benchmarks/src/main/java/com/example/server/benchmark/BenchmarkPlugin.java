@@ -0,0 +1,24 @@
+package com.example.server.benchmark;
+
+import java.io.File;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
+
+/**
+ * Plugin created outside a plugin class loader, only used to hand the
+ * repositories a data folder, a logger and config.yml. Requires
+ * {@link BukkitStubs#install()}.
+ */
+public class BenchmarkPlugin extends JavaPlugin {
+
+    @SuppressWarnings({"deprecation", "removal"})
+    public BenchmarkPlugin(File dataFolder) {
+        super(new JavaPluginLoader(Bukkit.getServer()),
+                new PluginDescriptionFile("HomeBenchmark", "1.0.0", BenchmarkPlugin.class.getName()),
+                dataFolder,
+                new File(dataFolder, "benchmark.jar"));
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.server.benchmark;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.logging.Logger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+/**
+ * Lightweight stand-ins for the server, worlds and players. They are dynamic
+ * proxies that answer the few methods the plugin calls; everything else
+ * returns null, false or zero.
+ */
+public final class BukkitStubs {
+
+    private static final Logger LOGGER = Logger.getLogger("HomeBenchmark");
+    private static final Map<String, World> WORLDS = new ConcurrentHashMap<>();
+    private static boolean installed;
+
+    private BukkitStubs() {
+    }
+
+    /**
+     * Register the stub server with {@link Bukkit}, once per JVM, with the
+     * worlds of {@link BenchmarkData} loaded
+     */
+    public static synchronized void install() {
+        if (installed) {
+            return;
+        }
+
+        Server server = proxy(Server.class, (method, args) -> switch (method.getName()) {
+            case "getLogger" -> LOGGER;
+            case "getName" -> "HomeBenchmark";
+            case "getVersion", "getBukkitVersion" -> "benchmark";
+            case "getWorld" -> args[0] instanceof String name ? world(name) : null;
+            case "getWorlds" -> List.copyOf(WORLDS.values());
+            case "getOnlinePlayers" -> List.of();
+            default -> null;
+        });
+
+        // Bukkit.setServer() logs build information only a real server has
+        try {
+            Field field = Bukkit.class.getDeclaredField("server");
+            field.setAccessible(true);
+            field.set(null, server);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot install stub server", e);
+        }
+        BenchmarkData.WORLDS.forEach(BukkitStubs::world);
+        installed = true;
+    }
+
+    public static World world(String name) {
+        return WORLDS.computeIfAbsent(name, n -> proxy(World.class, (method, args) -> switch (method.getName()) {
+            case "getName" -> n;
+            case "getUID" -> UUID.nameUUIDFromBytes(n.getBytes(StandardCharsets.UTF_8));
+            default -> null;
+        }));
+    }
+
+    public static Player player(UUID uuid, Location location) {
+        return proxy(Player.class, (method, args) -> switch (method.getName()) {
+            case "getUniqueId" -> uuid;
+            case "getName" -> uuid.toString().substring(0, 16);
+            case "getLocation" -> location.clone();
+            case "getWorld" -> location.getWorld();
+            case "isOnline" -> true;
+            default -> null;
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, BiFunction<Method, Object[], Object> answers) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> type.getSimpleName() + "Stub";
+                };
+            }
+
+            Object value = answers.apply(method, args);
+            Class<?> returnType = method.getReturnType();
+            if (value != null || !returnType.isPrimitive() || returnType == void.class) {
+                return value;
+            }
+            // Zero of the primitive type
+            return Array.get(Array.newInstance(returnType, 1), 0);
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+}
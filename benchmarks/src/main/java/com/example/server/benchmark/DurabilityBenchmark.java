@@ -0,0 +1,123 @@
+package com.example.server.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.server.Home;
+import com.example.server.HomeMetrics;
+import com.example.server.HomeRepository;
+import com.example.server.HomeService;
+import com.example.server.MappedHomeRepository;
+import com.example.server.PlayerHomes;
+import com.example.server.ShardedSqliteHomeRepository;
+import com.example.server.SqliteHomeRepository;
+import com.example.server.YamlHomeRepository;
+
+/**
+ * A burst of /sethome from {@link #burst} different players, issued from one
+ * thread like commands on the main thread, until every change is committed.
+ * The score is the time of the whole burst, so burst divided by the score is
+ * the throughput of the durability level.
+ * <p>
+ * Periodic durability is timed until its batches are written, not until the
+ * next checkpoint syncs them.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DurabilityBenchmark {
+
+    /**
+     * Database files of the sqlite-sharded backend
+     */
+    static final int SHARDS = 4;
+
+    @Param({"sqlite", "sqlite-sharded", "yaml", "binary"})
+    public String backend;
+
+    @Param({"immediate", "group", "periodic"})
+    public String durability;
+
+    @Param({"1000", "5000"})
+    public int burst;
+
+    private Path dataFolder;
+    private HomeService service;
+    private Map<UUID, PlayerHomes> data;
+    private Player[] players;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BukkitStubs.install();
+        dataFolder = Files.createTempDirectory("home-benchmark");
+        JavaPlugin plugin = new BenchmarkPlugin(dataFolder.toFile());
+        plugin.getConfig().set("durability.mode", durability);
+
+        HomeRepository repository = switch (backend) {
+            case "sqlite" -> new SqliteHomeRepository(plugin);
+            case "sqlite-sharded" -> new ShardedSqliteHomeRepository(plugin, SHARDS);
+            case "yaml" -> new YamlHomeRepository(plugin);
+            case "binary" -> new MappedHomeRepository(plugin);
+            default -> throw new IllegalArgumentException("Unknown backend: " + backend);
+        };
+
+        data = BenchmarkData.homes(burst, 42L);
+        repository.saveAll(data);
+        service = new HomeService(plugin, repository, new HomeMetrics());
+        players = new Player[burst];
+    }
+
+    /**
+     * Move every player one block, so each /sethome of the burst is a real
+     * change
+     */
+    @Setup(Level.Invocation)
+    public void movePlayers() {
+        int i = 0;
+        for (Map.Entry<UUID, PlayerHomes> entry : data.entrySet()) {
+            entry.setValue(BenchmarkData.moved(entry.getValue()));
+            Home home = BenchmarkData.home(entry.getValue());
+            Location location = new Location(BukkitStubs.world(home.world()),
+                    home.x(), home.y(), home.z(), home.yaw(), home.pitch());
+            players[i++] = BukkitStubs.player(entry.getKey(), location);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        service.shutdown();
+        BenchmarkData.deleteRecursively(dataFolder);
+    }
+
+    @Benchmark
+    public void setHomeBurst() {
+        for (Player player : players) {
+            service.setHome(player, PlayerHomes.DEFAULT_NAME);
+        }
+        service.flush().join();
+    }
+}
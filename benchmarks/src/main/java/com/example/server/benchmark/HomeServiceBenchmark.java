@@ -0,0 +1,144 @@
+package com.example.server.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.server.Home;
+import com.example.server.HomeRepository;
+import com.example.server.HomeMetrics;
+import com.example.server.HomeService;
+import com.example.server.MappedHomeRepository;
+import com.example.server.PlayerHomes;
+
+/**
+ * Cache lookup throughput of {@link HomeService} with several threads. Every
+ * player has a home; the "mixed" group adds a thread moving homes while the
+ * others look them up. Player stubs are proxies, which adds a small constant
+ * cost to every call.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HomeServiceBenchmark {
+
+    @Param({"map", "compact"})
+    public String storage;
+
+    @Param({"10000", "1000000"})
+    public int homes;
+
+    private Path dataFolder;
+    private HomeService service;
+    private Player[] players;
+
+    /**
+     * Per-thread walk over the players, starting at a random offset
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int index;
+
+        @Setup
+        public void setUp() {
+            index = ThreadLocalRandom.current().nextInt(1 << 20);
+        }
+
+        int next(int bound) {
+            index = (index + 7919) % bound;
+            return index;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        BukkitStubs.install();
+        dataFolder = Files.createTempDirectory("home-benchmark");
+        JavaPlugin plugin = new BenchmarkPlugin(dataFolder.toFile());
+        plugin.getConfig().set("cache.storage", storage);
+
+        // Binary storage only because it fills the cache quickly
+        Map<UUID, PlayerHomes> data = BenchmarkData.homes(homes, 42L);
+        HomeRepository repository = new MappedHomeRepository(plugin);
+        repository.saveAll(data);
+
+        service = new HomeService(plugin, repository, new HomeMetrics());
+        service.load();
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+        while (service.getCachedHomesCount() < homes) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Homes were not loaded in time");
+            }
+            Thread.sleep(10);
+        }
+
+        players = new Player[homes];
+        int i = 0;
+        for (Map.Entry<UUID, PlayerHomes> entry : data.entrySet()) {
+            Home home = BenchmarkData.home(entry.getValue());
+            Location location = new Location(BukkitStubs.world(home.world()),
+                    home.x(), home.y(), home.z(), home.yaw(), home.pitch());
+            players[i++] = BukkitStubs.player(entry.getKey(), location);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        service.shutdown();
+        BenchmarkData.deleteRecursively(dataFolder);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Location getHome(Cursor cursor) {
+        return service.getHome(players[cursor.next(players.length)], PlayerHomes.DEFAULT_NAME);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean hasHome(Cursor cursor) {
+        return service.hasHome(players[cursor.next(players.length)]);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public Location mixedGetHome(Cursor cursor) {
+        return service.getHome(players[cursor.next(players.length)], PlayerHomes.DEFAULT_NAME);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void mixedSetHome(Cursor cursor) {
+        service.setHome(players[cursor.next(players.length)], PlayerHomes.DEFAULT_NAME);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.server.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.server.CompactHomeTable;
+import com.example.server.Home;
+import com.example.server.HomeTable;
+import com.example.server.MapHomeTable;
+import com.example.server.PlayerHomes;
+import com.example.server.WorldNames;
+
+/**
+ * Heap retained per home by each {@link HomeTable}, reported as the
+ * bytesPerHome counter next to the fill time. Every home is built fresh
+ * while filling, so nothing is shared with a data set held elsewhere; world
+ * names are shared like a server's World names are.
+ * <p>
+ * The compact table grows by doubling, so its cost per home depends on how
+ * full it is: 1,000,000 homes sit in 2^21 slots (48% full), 1,300,000 in
+ * the same slots at 62%.
+ * <p>
+ * JMH sums event counters over all measured iterations and forks, so the
+ * counter is only the cost of one fill with the single iteration and fork
+ * set here; keep -i and -f at 1 when overriding options.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-XX:+UseParallelGC"})
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HomeTableFootprintBenchmark {
+
+    @Param({"map", "compact"})
+    public String storage;
+
+    @Param({"1000000", "1300000"})
+    public int homes;
+
+    private HomeTable table;
+
+    /**
+     * Retained heap of the last fill divided by its homes
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+
+        public double bytesPerHome;
+    }
+
+    @Setup(Level.Iteration)
+    public void release() {
+        table = null;
+    }
+
+    @Benchmark
+    public HomeTable fill(Footprint footprint) {
+        long before = usedHeap();
+        HomeTable filled = "compact".equals(storage) ? new CompactHomeTable(new WorldNames()) : new MapHomeTable();
+        Random random = new Random(42L);
+        for (int i = 0; i < homes; i++) {
+            filled.put(new UUID(random.nextLong(), random.nextLong()), PlayerHomes.of(PlayerHomes.DEFAULT_NAME,
+                    new Home(BenchmarkData.WORLDS.get(random.nextInt(BenchmarkData.WORLDS.size())),
+                            random.nextInt(60000) - 30000 + 0.5,
+                            random.nextInt(320) - 64,
+                            random.nextInt(60000) - 30000 + 0.5,
+                            random.nextFloat() * 360f - 180f,
+                            random.nextFloat() * 180f - 90f)));
+        }
+        table = filled;
+        footprint.bytesPerHome = (double) (usedHeap() - before) / homes;
+        return filled;
+    }
+
+    /**
+     * Heap in use after full collections, repeated until it settles
+     */
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long now = memory.getHeapMemoryUsage().getUsed();
+            if (Math.abs(used - now) < 64 * 1024) {
+                return now;
+            }
+            used = now;
+        }
+        return used;
+    }
+}
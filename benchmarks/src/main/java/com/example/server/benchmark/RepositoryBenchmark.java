@@ -0,0 +1,137 @@
+package com.example.server.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.plugin.java.JavaPlugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.server.HomeRepository;
+import com.example.server.MappedHomeRepository;
+import com.example.server.PlayerHomes;
+import com.example.server.ShardedSqliteHomeRepository;
+import com.example.server.SqliteHomeRepository;
+import com.example.server.YamlHomeRepository;
+
+/**
+ * Bulk and per-home operations of every storage backend. Each operation is
+ * timed once per iteration; per-home operations run {@link #OPS} times per
+ * iteration and wait for every write to complete, so their score is the time
+ * of {@value #OPS} operations.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RepositoryBenchmark {
+
+    static final int OPS = 1000;
+
+    /**
+     * Database files of the sqlite-sharded backend
+     */
+    static final int SHARDS = 4;
+
+    @Param({"sqlite", "sqlite-sharded", "yaml", "binary"})
+    public String backend;
+
+    @Param({"1000", "100000", "1000000"})
+    public int homes;
+
+    private Path dataFolder;
+    private HomeRepository repository;
+    private Map<UUID, PlayerHomes> data;
+    private UUID[] keys;
+    private int cursor;
+    private final Map<UUID, PlayerHomes> deleted = new HashMap<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BukkitStubs.install();
+        dataFolder = Files.createTempDirectory("home-benchmark");
+        JavaPlugin plugin = new BenchmarkPlugin(dataFolder.toFile());
+        repository = switch (backend) {
+            case "sqlite" -> new SqliteHomeRepository(plugin);
+            case "sqlite-sharded" -> new ShardedSqliteHomeRepository(plugin, SHARDS);
+            case "yaml" -> new YamlHomeRepository(plugin);
+            case "binary" -> new MappedHomeRepository(plugin);
+            default -> throw new IllegalArgumentException("Unknown backend: " + backend);
+        };
+
+        data = BenchmarkData.homes(homes, 42L);
+        repository.saveAll(data);
+        keys = data.keySet().toArray(new UUID[0]);
+    }
+
+    /**
+     * Put back what deleteHome removed, so every delete hits an existing home
+     */
+    @Setup(Level.Iteration)
+    public void restoreDeleted() {
+        if (!deleted.isEmpty()) {
+            repository.saveBatch(new HashMap<>(deleted), Set.of()).join();
+            deleted.clear();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        repository.close();
+        BenchmarkData.deleteRecursively(dataFolder);
+    }
+
+    private UUID nextKey() {
+        UUID key = keys[cursor];
+        cursor = (cursor + 1) % keys.length;
+        return key;
+    }
+
+    @Benchmark
+    public Map<UUID, PlayerHomes> loadAll() {
+        return repository.loadAll();
+    }
+
+    @Benchmark
+    public void saveAll() {
+        repository.saveAll(data);
+    }
+
+    @Benchmark
+    @Warmup(iterations = 2, batchSize = OPS)
+    @Measurement(iterations = 5, batchSize = OPS)
+    public void saveHome() {
+        UUID key = nextKey();
+        PlayerHomes moved = BenchmarkData.moved(data.get(key));
+        data.put(key, moved);
+        repository.save(key, moved).join();
+    }
+
+    @Benchmark
+    @Warmup(iterations = 2, batchSize = OPS)
+    @Measurement(iterations = 5, batchSize = OPS)
+    public void deleteHome() {
+        UUID key = nextKey();
+        deleted.put(key, data.get(key));
+        repository.delete(key).join();
+    }
+}
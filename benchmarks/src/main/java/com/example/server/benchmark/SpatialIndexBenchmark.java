@@ -0,0 +1,98 @@
+package com.example.server.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.server.Home;
+import com.example.server.HomeCache;
+import com.example.server.MapHomeTable;
+import com.example.server.PlayerHomes;
+
+/**
+ * Box queries on a fully cached world through the grid index of
+ * {@link HomeCache}, against a scan over every cached home. Homes are
+ * spread over three 60,000x60,000 worlds, and every query is a square at a
+ * random position in one of them.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SpatialIndexBenchmark {
+
+    @Param({"180000"})
+    public int homes;
+
+    @Param({"600"})
+    public int box;
+
+    private HomeCache cache;
+    private List<Map.Entry<UUID, PlayerHomes>> entries;
+
+    /**
+     * Per-thread random query positions
+     */
+    @State(Scope.Thread)
+    public static class Query {
+
+        private final Random random = new Random(42L);
+        String world;
+        double minX;
+        double minZ;
+
+        void next(int box) {
+            world = BenchmarkData.WORLDS.get(random.nextInt(BenchmarkData.WORLDS.size()));
+            minX = random.nextInt(60000 - box) - 30000;
+            minZ = random.nextInt(60000 - box) - 30000;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        Map<UUID, PlayerHomes> data = BenchmarkData.homes(homes, 42L);
+        cache = new HomeCache(new MapHomeTable(), false, 0, 0);
+        data.forEach(cache::put);
+        entries = new ArrayList<>(data.entrySet());
+    }
+
+    @Benchmark
+    public Map<UUID, PlayerHomes> index(Query query) {
+        query.next(box);
+        return cache.findInBox(query.world, query.minX, query.minZ, query.minX + box, query.minZ + box);
+    }
+
+    @Benchmark
+    public Map<UUID, PlayerHomes> scan(Query query) {
+        query.next(box);
+        Map<UUID, PlayerHomes> result = new HashMap<>();
+        double maxX = query.minX + box;
+        double maxZ = query.minZ + box;
+        for (Map.Entry<UUID, PlayerHomes> entry : entries) {
+            Home home = BenchmarkData.home(entry.getValue());
+            if (home.world().equals(query.world) && home.x() >= query.minX && home.x() <= maxX
+                    && home.z() >= query.minZ && home.z() <= maxZ) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.server.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.server.Home;
+import com.example.server.PlayerHomes;
+import com.example.server.SqliteHomeRepository;
+
+/**
+ * Size of a VACUUMed homes.db per home, reported as counters next to the
+ * time to write and vacuum it. "v1" is the text-keyed table of schema
+ * version 1 with its updated_at index, written directly; "current" is
+ * written through {@link SqliteHomeRepository}, so it also holds the worlds,
+ * home_ranges and bookkeeping tables. homesBytesPerHome counts only the
+ * pages of the homes table and its indexes.
+ * <p>
+ * JMH sums event counters over all measured iterations and forks, so keep
+ * -i and -f at 1 when overriding options.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SqliteFootprintBenchmark {
+
+    private static final String V1_TABLE = """
+            CREATE TABLE homes (
+                uuid TEXT PRIMARY KEY NOT NULL,
+                world TEXT NOT NULL,
+                x REAL NOT NULL,
+                y REAL NOT NULL,
+                z REAL NOT NULL,
+                yaw REAL NOT NULL,
+                pitch REAL NOT NULL,
+                updated_at INTEGER DEFAULT (strftime('%s', 'now'))
+            )
+            """;
+
+    @Param({"v1", "current"})
+    public String schema;
+
+    @Param({"200000"})
+    public int homes;
+
+    private Map<UUID, PlayerHomes> data;
+    private Path dataFolder;
+
+    /**
+     * Sizes of the last database divided by its homes
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+
+        public double bytesPerHome;
+        public double homesBytesPerHome;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws ClassNotFoundException {
+        BukkitStubs.install();
+        Class.forName("org.sqlite.JDBC");
+        data = BenchmarkData.homes(homes, 42L);
+    }
+
+    @Setup(Level.Iteration)
+    public void createFolder() throws IOException {
+        dataFolder = Files.createTempDirectory("home-footprint");
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteFolder() throws IOException {
+        BenchmarkData.deleteRecursively(dataFolder);
+    }
+
+    @Benchmark
+    public long writeAndVacuum(Footprint footprint) throws SQLException {
+        File file = new File(dataFolder.toFile(), "homes.db");
+        if ("v1".equals(schema)) {
+            writeV1(file);
+        } else {
+            SqliteHomeRepository repository = new SqliteHomeRepository(new BenchmarkPlugin(dataFolder.toFile()));
+            repository.saveAll(data);
+            repository.close();
+        }
+
+        long homesBytes;
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file); Statement stmt = conn.createStatement()) {
+            stmt.execute("VACUUM");
+            stmt.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+            try (ResultSet rs = stmt.executeQuery("SELECT sum(d.pgsize) FROM dbstat d JOIN sqlite_schema s"
+                    + " ON s.name = d.name WHERE s.tbl_name = 'homes'")) {
+                rs.next();
+                homesBytes = rs.getLong(1);
+            }
+        }
+
+        long size = file.length();
+        footprint.bytesPerHome = (double) size / homes;
+        footprint.homesBytesPerHome = (double) homesBytes / homes;
+        return size;
+    }
+
+    private void writeV1(File file) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file)) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(V1_TABLE);
+                stmt.execute("CREATE INDEX idx_homes_updated ON homes(updated_at)");
+            }
+
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO homes (uuid, world, x, y, z, yaw, pitch) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+                for (Map.Entry<UUID, PlayerHomes> entry : data.entrySet()) {
+                    Home home = BenchmarkData.home(entry.getValue());
+                    stmt.setString(1, entry.getKey().toString());
+                    stmt.setString(2, home.world());
+                    stmt.setDouble(3, home.x());
+                    stmt.setDouble(4, home.y());
+                    stmt.setDouble(5, home.z());
+                    stmt.setFloat(6, home.yaw());
+                    stmt.setFloat(7, home.pitch());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            conn.commit();
+        }
+    }
+}
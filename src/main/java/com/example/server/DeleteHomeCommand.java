@@ -1,20 +1,25 @@
 package com.example.server;
 
+import java.util.List;
+
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
 /**
- * Команда для удаления сохранённого дома
+ * Команда для удаления сохранённого дома: /delhome [имя]
  */
-public class DeleteHomeCommand implements CommandExecutor {
+public class DeleteHomeCommand implements CommandExecutor, TabCompleter {
 
     private final HomeService homeService;
+    private final Messages messages;
 
-    public DeleteHomeCommand(HomeService homeService) {
+    public DeleteHomeCommand(HomeService homeService, Messages messages) {
         this.homeService = homeService;
+        this.messages = messages;
     }
 
     @Override
@@ -26,19 +31,47 @@ public class DeleteHomeCommand implements CommandExecutor {
         }
 
         if (!(sender instanceof Player)) {
-            sender.sendMessage("Эту команду может использовать только игрок!");
+            messages.send(sender, Message.PLAYERS_ONLY);
             return false;
         }
 
         Player player = (Player) sender;
 
-        if (!homeService.hasHome(player)) {
-            player.sendMessage("§cУ вас нет сохранённого дома!");
+        PlayerHomes homes = homeService.getHomes(player);
+        if (homes == null) {
+            if (homeService.isLoading(player)) {
+                messages.send(player, Message.HOMES_LOADING);
+                return true;
+            }
+            messages.send(player, Message.NO_HOME);
+            return false;
+        }
+
+        // Без имени удаляется только однозначный дом, остальные надо назвать
+        String name = args.length > 0 ? HomeService.normalizeName(args[0]) : homeService.resolveDefaultName(homes);
+        if (args.length > 0 && name == null) {
+            messages.send(player, Message.INVALID_NAME, HomeService.MAX_NAME_LENGTH);
             return false;
         }
+        if (name == null) {
+            messages.send(player, Message.HOME_CHOOSE, String.join(", ", homes.names()));
+            return true;
+        }
 
-        homeService.deleteHome(player);
-        player.sendMessage("§aДом успешно удалён!");
+        if (!homeService.deleteHome(player, name)) {
+            messages.send(player, Message.NO_HOME_NAMED, name, String.join(", ", homes.names()));
+            return false;
+        }
+        messages.send(player, Message.HOME_DELETED, name);
         return true;
     }
+
+    @Override
+    public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command,
+            @NotNull String alias, @NotNull String[] args) {
+        if (args.length == 1 && sender instanceof Player player) {
+            return homeService.completeNames(player, args[0]);
+        }
+        return List.of();
+    }
 }
@@ -0,0 +1,75 @@
+package com.example.server;
+
+import java.util.Locale;
+
+import org.bukkit.configuration.file.FileConfiguration;
+
+/**
+ * How hard home changes are pushed to disk, set with durability.mode.
+ * <p>
+ * The loss windows below are worst cases for a power failure or an OS crash.
+ * If only the server process dies, every level loses at most the changes
+ * still waiting in the write-behind buffer, because written data is already
+ * in the OS page cache.
+ */
+public enum Durability {
+
+    /**
+     * Every change is written in its own transaction and fsynced before the
+     * next change of its I/O lane. Loses only the changes still queued on the
+     * lanes, normally none.
+     */
+    IMMEDIATE,
+
+    /**
+     * Changes are collected for durability.group-commit-ms, and batches that
+     * reach the storage writer together share one transaction and one fsync.
+     * Loses at most group-commit-ms of changes plus the commit in flight.
+     */
+    GROUP,
+
+    /**
+     * Changes are written in write-behind batches without fsync, and storage
+     * is synced every durability.checkpoint-interval-ms. Loses at most
+     * performance.write-behind.max-staleness-ms plus checkpoint-interval-ms
+     * of changes. On SQLite a reader holding the database for longer than
+     * performance.sqlite.busy-timeout postpones a sync to the next interval,
+     * widening the window by that interval.
+     */
+    PERIODIC;
+
+    /**
+     * Level for a config value, or null if the value is unknown
+     */
+    public static Durability parse(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        String name = value.trim().toUpperCase(Locale.ROOT).replace('-', '_');
+        if ("GROUP_COMMIT".equals(name)) {
+            return GROUP;
+        }
+        for (Durability level : values()) {
+            if (level.name().equals(name)) {
+                return level;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Configured level, group commit if unset or unknown
+     */
+    public static Durability fromConfig(FileConfiguration config) {
+        Durability level = parse(config.getString("durability.mode", "group"));
+        return level != null ? level : GROUP;
+    }
+
+    /**
+     * Whether every commit is fsynced before it is reported done
+     */
+    public boolean syncsEveryCommit() {
+        return this != PERIODIC;
+    }
+}
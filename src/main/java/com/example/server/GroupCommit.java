@@ -0,0 +1,110 @@
+package com.example.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Group commit in front of a repository's single writer thread. Batches that
+ * arrive while the writer is busy are merged and committed together, so a
+ * burst from several I/O lanes costs one transaction and one fsync instead
+ * of one per batch. Each caller's future completes with the shared commit.
+ * <p>
+ * Batches are merged in arrival order. Changes of one player come from one
+ * lane, which waits for its commit before sending more, so they never meet
+ * in the same group out of order.
+ */
+public class GroupCommit {
+
+    /**
+     * Writes and syncs one merged group on the writer thread
+     */
+    @FunctionalInterface
+    public interface Committer {
+
+        void commit(Map<UUID, PlayerHomes> upserts, Set<UUID> deletes) throws Exception;
+    }
+
+    private record Request(Map<UUID, PlayerHomes> upserts, Set<UUID> deletes, CompletableFuture<Void> done) {
+
+    }
+
+    private final Executor writer;
+    private final Committer committer;
+    private final Queue<Request> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    public GroupCommit(Executor writer, Committer committer) {
+        this.writer = writer;
+        this.committer = committer;
+    }
+
+    /**
+     * Queue a batch for the next group
+     *
+     * @return future completing once the group holding the batch is committed
+     */
+    public CompletableFuture<Void> submit(Map<UUID, PlayerHomes> upserts, Set<UUID> deletes) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        queue.add(new Request(upserts, deletes, done));
+
+        if (drainScheduled.compareAndSet(false, true)) {
+            try {
+                writer.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                drainScheduled.set(false);
+                Request request;
+                while ((request = queue.poll()) != null) {
+                    request.done().completeExceptionally(e);
+                }
+            }
+        }
+        return done;
+    }
+
+    /**
+     * Commit everything queued so far as one group. Runs on the writer.
+     */
+    private void drain() {
+        // Cleared first, a batch queued from here on schedules the next group
+        drainScheduled.set(false);
+
+        List<Request> group = new ArrayList<>();
+        Map<UUID, PlayerHomes> upserts = new HashMap<>();
+        Set<UUID> deletes = new HashSet<>();
+        Request request;
+        while ((request = queue.poll()) != null) {
+            group.add(request);
+            for (Map.Entry<UUID, PlayerHomes> entry : request.upserts().entrySet()) {
+                deletes.remove(entry.getKey());
+                upserts.put(entry.getKey(), entry.getValue());
+            }
+            for (UUID uuid : request.deletes()) {
+                upserts.remove(uuid);
+                deletes.add(uuid);
+            }
+        }
+
+        if (group.isEmpty()) {
+            return;
+        }
+
+        try {
+            committer.commit(upserts, deletes);
+        } catch (Exception e) {
+            group.forEach(r -> r.done().completeExceptionally(e));
+            return;
+        }
+        group.forEach(r -> r.done().complete(null));
+    }
+}
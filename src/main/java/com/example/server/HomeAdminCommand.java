@@ -0,0 +1,234 @@
+package com.example.server;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.World;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Команда администратора для поиска домов по области и очистки мира:
+ * /homeadmin near &lt;радиус&gt; [мир x z],
+ * /homeadmin box &lt;мир&gt; &lt;x1&gt; &lt;z1&gt; &lt;x2&gt; &lt;z2&gt;,
+ * /homeadmin purge &lt;мир&gt; [confirm]
+ */
+public class HomeAdminCommand implements CommandExecutor, TabCompleter {
+
+    private static final List<String> ACTIONS = List.of("near", "box", "purge");
+    // Сколько домов показывать в ответе
+    private static final int MAX_LISTED = 10;
+
+    private final JavaPlugin plugin;
+    private final HomeService homeService;
+
+    public HomeAdminCommand(JavaPlugin plugin, HomeService homeService) {
+        this.plugin = plugin;
+        this.homeService = homeService;
+    }
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command,
+            @NotNull String label, @NotNull String[] args) {
+        if (args.length == 0) {
+            return false;
+        }
+
+        try {
+            return switch (args[0].toLowerCase(Locale.ROOT)) {
+                case "near" -> near(sender, args);
+                case "box" -> box(sender, args);
+                case "purge" -> purge(sender, args);
+                default -> false;
+            };
+        } catch (NumberFormatException e) {
+            sender.sendMessage("§cНеверное число: " + e.getMessage());
+            return true;
+        }
+    }
+
+    private boolean near(CommandSender sender, String[] args) {
+        String world;
+        double x;
+        double z;
+        if (args.length == 2 && sender instanceof Player player) {
+            Location loc = player.getLocation();
+            world = loc.getWorld().getName();
+            x = loc.getX();
+            z = loc.getZ();
+        } else if (args.length == 5) {
+            world = args[2];
+            x = Double.parseDouble(args[3]);
+            z = Double.parseDouble(args[4]);
+        } else {
+            return false;
+        }
+
+        double radius = Double.parseDouble(args[1]);
+        if (radius <= 0) {
+            sender.sendMessage("§cРадиус должен быть больше нуля.");
+            return true;
+        }
+
+        long start = System.nanoTime();
+        report(sender, homeService.findHomesNear(world, x, z, radius), start,
+                "в радиусе " + format(radius) + " от " + format(x) + ", " + format(z) + " (" + world + ")", x, z);
+        return true;
+    }
+
+    private boolean box(CommandSender sender, String[] args) {
+        if (args.length != 6) {
+            return false;
+        }
+
+        String world = args[1];
+        double x1 = Double.parseDouble(args[2]);
+        double z1 = Double.parseDouble(args[3]);
+        double x2 = Double.parseDouble(args[4]);
+        double z2 = Double.parseDouble(args[5]);
+
+        long start = System.nanoTime();
+        report(sender, homeService.findHomes(world, Math.min(x1, x2), Math.min(z1, z2), Math.max(x1, x2), Math.max(z1, z2)),
+                start, "в области " + format(x1) + ", " + format(z1) + " - " + format(x2) + ", " + format(z2)
+                        + " (" + world + ")", (x1 + x2) / 2, (z1 + z2) / 2);
+        return true;
+    }
+
+    private boolean purge(CommandSender sender, String[] args) {
+        if (args.length < 2) {
+            return false;
+        }
+
+        String world = args[1];
+        long start = System.nanoTime();
+        if (args.length < 3 || !"confirm".equalsIgnoreCase(args[2])) {
+            homeService.findHomesInWorld(world).whenComplete((homes, error) -> reply(sender, error != null
+                    ? "§cНе удалось посчитать дома: " + error.getMessage()
+                    : "§eВ мире §f" + world + "§e домов: §f" + count(homes) + "§e. Удалить все: §f/homeadmin purge "
+                            + world + " confirm"));
+            return true;
+        }
+
+        homeService.purgeWorld(world).whenComplete((deleted, error) -> {
+            if (error != null) {
+                reply(sender, "§cНе удалось удалить дома мира " + world + ": " + error.getMessage());
+                return;
+            }
+
+            plugin.getLogger().info(sender.getName() + " purged " + deleted + " homes in world " + world);
+            reply(sender, "§aУдалено домов в мире §f" + world + "§a: §f" + deleted + " §7(" + millis(start) + " мс)");
+        });
+        return true;
+    }
+
+    /**
+     * Найденный дом вместе с владельцем
+     */
+    private record Found(UUID owner, String name, Home home) {
+    }
+
+    /**
+     * Вывести число найденных домов и ближайшие к центру запроса
+     */
+    private void report(CommandSender sender, CompletableFuture<Map<UUID, PlayerHomes>> result, long start,
+            String area, double cx, double cz) {
+        result.whenComplete((homes, error) -> {
+            if (error != null) {
+                reply(sender, "§cОшибка поиска: " + error.getMessage());
+                return;
+            }
+
+            List<Found> found = new ArrayList<>();
+            homes.forEach((uuid, playerHomes) -> playerHomes.forEach(
+                    (name, home) -> found.add(new Found(uuid, name, home))));
+
+            List<String> lines = new ArrayList<>();
+            lines.add("§6Домов " + area + ": §f" + found.size() + " §7(" + millis(start) + " мс)");
+            found.stream()
+                    .sorted(Comparator.comparingDouble(f -> distanceSquared(f.home(), cx, cz)))
+                    .limit(MAX_LISTED)
+                    .forEach(f -> lines.add("§7- §f" + name(f.owner()) + " §7(" + f.name() + "): "
+                            + format(f.home().x()) + ", " + format(f.home().y()) + ", " + format(f.home().z())));
+            if (found.size() > MAX_LISTED) {
+                lines.add("§7... и ещё " + (found.size() - MAX_LISTED));
+            }
+            reply(sender, lines.toArray(new String[0]));
+        });
+    }
+
+    private static int count(Map<UUID, PlayerHomes> homes) {
+        int count = 0;
+        for (PlayerHomes playerHomes : homes.values()) {
+            count += playerHomes.size();
+        }
+        return count;
+    }
+
+    private static double distanceSquared(Home home, double x, double z) {
+        double dx = home.x() - x;
+        double dz = home.z() - z;
+        return dx * dx + dz * dz;
+    }
+
+    private static String name(UUID uuid) {
+        OfflinePlayer player = Bukkit.getOfflinePlayer(uuid);
+        return player.getName() != null ? player.getName() : uuid.toString();
+    }
+
+    private static long millis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+
+    /**
+     * Ответ из потока хранилища отправляется в основном потоке
+     */
+    private void reply(CommandSender sender, String... lines) {
+        if (Bukkit.isPrimaryThread()) {
+            sender.sendMessage(lines);
+        } else if (plugin.isEnabled()) {
+            Bukkit.getScheduler().runTask(plugin, () -> sender.sendMessage(lines));
+        }
+    }
+
+    @Override
+    public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command,
+            @NotNull String alias, @NotNull String[] args) {
+        if (args.length == 1) {
+            String prefix = args[0].toLowerCase(Locale.ROOT);
+            return ACTIONS.stream()
+                    .filter(action -> action.startsWith(prefix))
+                    .collect(Collectors.toList());
+        }
+
+        String action = args[0].toLowerCase(Locale.ROOT);
+        boolean worldArg = (args.length == 2 && ("box".equals(action) || "purge".equals(action)))
+                || (args.length == 3 && "near".equals(action));
+        if (worldArg) {
+            String prefix = args[args.length - 1];
+            return Bukkit.getWorlds().stream()
+                    .map(World::getName)
+                    .filter(name -> name.startsWith(prefix))
+                    .collect(Collectors.toList());
+        }
+        return List.of();
+    }
+}
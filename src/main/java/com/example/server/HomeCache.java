@@ -0,0 +1,466 @@
+package com.example.server;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * In-memory home cache, one {@link PlayerHomes} per player. In eager mode it
+ * holds every home and a miss simply means "no home" once the startup load
+ * has finished; while it is still
+ * warming only players already loaded are known. In lazy mode only loaded
+ * players are known: online players are pinned, offline entries sit in a
+ * size- and time-bounded LRU, and "has no home" results are cached
+ * negatively so lookups never need disk.
+ * <p>
+ * Cached homes are also indexed by world and position in a
+ * {@link HomeSpatialIndex} for region queries, and summed per UUID range in
+ * {@link HomeRangeHashes} for consistency checks against storage.
+ */
+public class HomeCache {
+
+    private final boolean lazy;
+    private final int maxOfflineEntries;
+    private final long offlineTtlNanos;
+
+    private final HomeTable homes;
+    private final Set<UUID> absent = ConcurrentHashMap.newKeySet();
+    private final Set<UUID> pinned = ConcurrentHashMap.newKeySet();
+
+    // Eager startup load in progress, a miss does not mean "no home" yet
+    private volatile boolean warming;
+    // Changes of one player, local, loaded or remote, are ordered through
+    // these, so loaded rows never overwrite newer changes and the spatial
+    // index follows the table
+    private final Object[] stripes = new Object[64];
+    private final HomeSpatialIndex index = new HomeSpatialIndex();
+    private final HomeRangeHashes rangeHashes = new HomeRangeHashes();
+
+    // Offline players in access order, value is last access time; guarded by itself
+    private final LinkedHashMap<UUID, Long> offline = new LinkedHashMap<>(256, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private volatile Predicate<UUID> evictionGuard = uuid -> true;
+
+    public HomeCache(HomeTable homes, boolean lazy, int maxOfflineEntries, long offlineTtlSeconds) {
+        this.homes = homes;
+        this.lazy = lazy;
+        this.maxOfflineEntries = Math.max(0, maxOfflineEntries);
+        this.offlineTtlNanos = offlineTtlSeconds > 0 ? TimeUnit.SECONDS.toNanos(offlineTtlSeconds) : Long.MAX_VALUE;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    /**
+     * Whether homes are loaded per player on demand
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Only entries accepted by the guard may be evicted (e.g. no unsaved
+     * changes)
+     */
+    public void setEvictionGuard(Predicate<UUID> guard) {
+        this.evictionGuard = guard;
+    }
+
+    /**
+     * Cached homes, or null if the player has none or is not loaded
+     */
+    public PlayerHomes get(UUID uuid) {
+        PlayerHomes playerHomes = homes.get(uuid);
+        if (playerHomes != null || absent.contains(uuid)) {
+            hits.increment();
+            touch(uuid);
+        } else {
+            misses.increment();
+        }
+        return playerHomes;
+    }
+
+    /**
+     * Start of the eager startup load: until {@link #finishWarming()} only
+     * players already loaded are known
+     */
+    public void startWarming() {
+        warming = true;
+    }
+
+    /**
+     * Every home is loaded, a miss means "no home" again
+     */
+    public void finishWarming() {
+        warming = false;
+        if (!lazy) {
+            absent.clear();
+        }
+    }
+
+    /**
+     * Whether the eager startup load is still running
+     */
+    public boolean isWarming() {
+        return warming;
+    }
+
+    private Object stripe(UUID uuid) {
+        return stripes[(uuid.hashCode() ^ (uuid.hashCode() >>> 16)) & (stripes.length - 1)];
+    }
+
+    /**
+     * Whether the cache can answer for this player without going to storage
+     */
+    public boolean isLoaded(UUID uuid) {
+        return (!lazy && !warming) || homes.containsKey(uuid) || absent.contains(uuid);
+    }
+
+    /**
+     * Record the player's new set of homes; an empty set removes them
+     */
+    public void put(UUID uuid, PlayerHomes playerHomes) {
+        synchronized (stripe(uuid)) {
+            replace(uuid, playerHomes);
+        }
+        touch(uuid);
+    }
+
+    /**
+     * Record that the player no longer has any home
+     */
+    public void remove(UUID uuid) {
+        put(uuid, PlayerHomes.EMPTY);
+    }
+
+    /**
+     * Change the player's homes atomically with respect to other changes of
+     * the same player
+     *
+     * @param change gets the current homes, {@link PlayerHomes#EMPTY} if none
+     * @return the homes afterwards, empty if none are left
+     */
+    public PlayerHomes update(UUID uuid, UnaryOperator<PlayerHomes> change) {
+        return update(uuid, change, (u, homes) -> {
+        });
+    }
+
+    /**
+     * Like {@link #update(UUID, UnaryOperator)}, then hand the homes
+     * afterwards to {@code then} while the player's lock is still held. A
+     * write queued there is thereby visible to the guard of
+     * {@link #applyRemote} before another change of the player can land.
+     * {@code then} must not block on other threads, loads running on the
+     * I/O lanes take the same lock.
+     */
+    public PlayerHomes update(UUID uuid, UnaryOperator<PlayerHomes> change, BiConsumer<UUID, PlayerHomes> then) {
+        PlayerHomes updated;
+        synchronized (stripe(uuid)) {
+            PlayerHomes current = homes.get(uuid);
+            updated = change.apply(current != null ? current : PlayerHomes.EMPTY);
+            if (updated != current) {
+                replace(uuid, updated);
+            }
+            then.accept(uuid, updated);
+        }
+        touch(uuid);
+        return updated;
+    }
+
+    private void replace(UUID uuid, PlayerHomes playerHomes) {
+        if (!playerHomes.isEmpty()) {
+            putHomes(uuid, playerHomes);
+            absent.remove(uuid);
+            return;
+        }
+
+        removeHomes(uuid);
+        // While warming remembered so the startup load does not bring them back
+        if (lazy || warming) {
+            absent.add(uuid);
+        }
+    }
+
+    /**
+     * Store the result of a storage lookup or the startup load unless the
+     * player changed the home in the meantime. Safe to call from several
+     * threads.
+     */
+    public void putLoaded(UUID uuid, PlayerHomes playerHomes) {
+        synchronized (stripe(uuid)) {
+            if (!isLoadedExactly(uuid)) {
+                if (playerHomes != null) {
+                    putHomesIfAbsent(uuid, playerHomes);
+                } else {
+                    absent.add(uuid);
+                }
+            }
+        }
+        touch(uuid);
+    }
+
+    /**
+     * Store homes migrated from another storage unless the player has set
+     * some in the meantime. In lazy mode only players already loaded are
+     * updated, the rest is read from storage when needed.
+     */
+    public void putImported(UUID uuid, PlayerHomes playerHomes) {
+        synchronized (stripe(uuid)) {
+            if (lazy && !isLoadedExactly(uuid)) {
+                return;
+            }
+
+            if (putHomesIfAbsent(uuid, playerHomes)) {
+                absent.remove(uuid);
+            }
+        }
+    }
+
+    /**
+     * Apply a change another server made, null meaning the player has no
+     * homes left, unless the guard refuses the player (e.g. for unsaved
+     * changes). The guard runs under the player's lock, so a local change
+     * queued through {@link #update(UUID, UnaryOperator, BiConsumer)} is never
+     * overwritten by an older remote one. In lazy mode only players already
+     * loaded are updated.
+     *
+     * @return whether the change was applied
+     */
+    public boolean applyRemote(UUID uuid, PlayerHomes playerHomes, Predicate<UUID> guard) {
+        synchronized (stripe(uuid)) {
+            if ((lazy && !isLoadedExactly(uuid)) || !guard.test(uuid)) {
+                return false;
+            }
+
+            replace(uuid, playerHomes != null ? playerHomes : PlayerHomes.EMPTY);
+        }
+        touch(uuid);
+        return true;
+    }
+
+    private boolean isLoadedExactly(UUID uuid) {
+        return homes.containsKey(uuid) || absent.contains(uuid);
+    }
+
+    // Table, spatial index and range hashes change together; callers hold
+    // the stripe lock
+
+    private void putHomes(UUID uuid, PlayerHomes playerHomes) {
+        PlayerHomes old = homes.get(uuid);
+        homes.put(uuid, playerHomes);
+        index.move(uuid, old, playerHomes);
+        rangeHashes.move(uuid, old, playerHomes);
+    }
+
+    private boolean putHomesIfAbsent(UUID uuid, PlayerHomes playerHomes) {
+        if (!homes.putIfAbsent(uuid, playerHomes)) {
+            return false;
+        }
+        index.move(uuid, null, playerHomes);
+        rangeHashes.move(uuid, null, playerHomes);
+        return true;
+    }
+
+    private void removeHomes(UUID uuid) {
+        PlayerHomes old = homes.get(uuid);
+        if (old != null) {
+            homes.remove(uuid);
+            index.move(uuid, old, null);
+            rangeHashes.move(uuid, old, null);
+        }
+    }
+
+    /**
+     * Cached homes whose x/z lie inside the box, in one world, per player
+     */
+    public Map<UUID, PlayerHomes> findInBox(String world, double minX, double minZ, double maxX, double maxZ) {
+        return collect(index.candidates(world, minX, minZ, maxX, maxZ), home -> home.world().equals(world)
+                && home.x() >= minX && home.x() <= maxX && home.z() >= minZ && home.z() <= maxZ);
+    }
+
+    /**
+     * Cached homes in the world, per player
+     */
+    public Map<UUID, PlayerHomes> findInWorld(String world) {
+        return collect(index.all(world), home -> home.world().equals(world));
+    }
+
+    /**
+     * The homes of the candidates that pass the filter. A player with several
+     * homes in the area is a candidate more than once.
+     */
+    private Map<UUID, PlayerHomes> collect(List<UUID> candidates, Predicate<Home> filter) {
+        Map<UUID, PlayerHomes> result = new HashMap<>();
+        for (UUID uuid : candidates) {
+            PlayerHomes playerHomes = result.containsKey(uuid) ? null : homes.get(uuid);
+            if (playerHomes == null) {
+                continue;
+            }
+
+            PlayerHomes matching = PlayerHomes.EMPTY;
+            for (int i = 0; i < playerHomes.size(); i++) {
+                if (filter.test(playerHomes.home(i))) {
+                    matching = matching.with(playerHomes.name(i), playerHomes.home(i));
+                }
+            }
+            if (!matching.isEmpty()) {
+                result.put(uuid, matching);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Number of cached homes per world
+     */
+    public Map<String, Integer> countByWorld() {
+        return index.counts();
+    }
+
+    /**
+     * Row counts and hash sums of the cached homes per UUID range
+     */
+    public HomeRangeHashes getRangeHashes() {
+        return rangeHashes;
+    }
+
+    /**
+     * Snapshot of the cached homes
+     */
+    public Map<UUID, PlayerHomes> snapshot() {
+        return homes.snapshot();
+    }
+
+    /**
+     * Players the cache answers for: those with cached homes and, in lazy
+     * mode, those known to have none
+     */
+    public Set<UUID> loadedPlayers() {
+        Set<UUID> players = new HashSet<>(absent);
+        homes.forEach(msb -> true, (uuid, playerHomes) -> players.add(uuid));
+        return players;
+    }
+
+    /**
+     * Cached homes of the players in the given leaf ranges of
+     * {@link HomeRangeHashes}, by leaf. Only those players are decoded, the
+     * rest of the table is not copied.
+     */
+    public Map<Integer, Map<UUID, PlayerHomes>> findInLeaves(Set<Integer> leaves) {
+        boolean[] wanted = new boolean[HomeRangeHashes.LEAVES];
+        for (int leaf : leaves) {
+            wanted[leaf] = true;
+        }
+
+        Map<Integer, Map<UUID, PlayerHomes>> found = new HashMap<>();
+        homes.forEach(msb -> wanted[HomeRangeHashes.leaf(msb)], (uuid, playerHomes) ->
+                found.computeIfAbsent(HomeRangeHashes.leaf(uuid), leaf -> new HashMap<>()).put(uuid, playerHomes));
+        return found;
+    }
+
+    /**
+     * Number of players with cached homes
+     */
+    public int size() {
+        return homes.size();
+    }
+
+    /**
+     * Keep the player's entry resident while they are online
+     */
+    public void pin(UUID uuid) {
+        pinned.add(uuid);
+        synchronized (offline) {
+            offline.remove(uuid);
+        }
+    }
+
+    /**
+     * Player went offline, the entry becomes eligible for eviction
+     */
+    public void unpin(UUID uuid) {
+        if (!pinned.remove(uuid) || !lazy) {
+            return;
+        }
+
+        synchronized (offline) {
+            offline.put(uuid, System.nanoTime());
+            evict();
+        }
+    }
+
+    private void touch(UUID uuid) {
+        if (!lazy || pinned.contains(uuid)) {
+            return;
+        }
+
+        synchronized (offline) {
+            offline.put(uuid, System.nanoTime());
+            evict();
+        }
+    }
+
+    /**
+     * Drop offline entries over the size limit or past their TTL, oldest
+     * first. Caller must hold the offline lock.
+     */
+    private void evict() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<UUID, Long>> it = offline.entrySet().iterator();
+
+        while (it.hasNext()) {
+            Map.Entry<UUID, Long> eldest = it.next();
+            boolean overSize = offline.size() > maxOfflineEntries;
+            boolean expired = now - eldest.getValue() > offlineTtlNanos;
+            if (!overSize && !expired) {
+                break;
+            }
+
+            UUID uuid = eldest.getKey();
+            if (!evictionGuard.test(uuid)) {
+                // Unsaved changes, retry on a later pass
+                continue;
+            }
+
+            it.remove();
+            synchronized (stripe(uuid)) {
+                removeHomes(uuid);
+                absent.remove(uuid);
+            }
+            evictions.increment();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int getOfflineCount() {
+        synchronized (offline) {
+            return offline.size();
+        }
+    }
+}
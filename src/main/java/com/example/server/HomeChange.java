@@ -0,0 +1,20 @@
+package com.example.server;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One entry of the shared change log: the player's homes as they are now,
+ * or null if they no longer have any
+ */
+public record HomeChange(long seq, UUID uuid, PlayerHomes homes) {
+
+    /**
+     * Changes of other nodes in sequence order
+     *
+     * @param lastSeq   sequence number to continue after, own changes included
+     * @param truncated entries after the requested position were already pruned
+     */
+    public record Page(List<HomeChange> changes, long lastSeq, boolean truncated) {
+    }
+}
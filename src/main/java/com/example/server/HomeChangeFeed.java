@@ -0,0 +1,171 @@
+package com.example.server;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+/**
+ * Follows the change log of a storage shared by several servers and applies
+ * the other servers' changes to this server's cache, so a home set on one
+ * server shows up on the others within one poll interval. A poll that finds
+ * nothing new is a single indexed range query.
+ */
+public class HomeChangeFeed {
+
+    private static final int PAGE_SIZE = 1000;
+    private static final long PRUNE_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final JavaPlugin plugin;
+    private final HomeRepository repository;
+    private final HomeCache cache;
+    private final WriteBehindBuffer writeBehind;
+    private final HomeMetrics metrics;
+    private final long pollMillis;
+    private final long retentionSeconds;
+    private final ScheduledExecutorService poller;
+
+    // Only touched by the poller thread
+    private long lastSeq;
+    private long lastPrune = System.nanoTime();
+
+    public HomeChangeFeed(JavaPlugin plugin, HomeRepository repository, HomeCache cache,
+            WriteBehindBuffer writeBehind, HomeMetrics metrics, long pollMillis, long retentionSeconds) {
+        this.plugin = plugin;
+        this.repository = repository;
+        this.cache = cache;
+        this.writeBehind = writeBehind;
+        this.metrics = metrics;
+        this.pollMillis = Math.max(50L, pollMillis);
+        this.retentionSeconds = Math.max(60L, retentionSeconds);
+        this.poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "HomeService-Sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start applying changes made after the given change log position
+     */
+    public void start(long fromSeq) {
+        poller.execute(() -> lastSeq = fromSeq);
+        poller.scheduleWithFixedDelay(this::pollSafely, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+        plugin.getLogger().info("Following home changes of other servers every " + pollMillis + " ms");
+    }
+
+    public void stop() {
+        poller.shutdownNow();
+    }
+
+    private void pollSafely() {
+        try {
+            poll();
+        } catch (CompletionException e) {
+            // Already logged by the repository, the next poll retries from the same position
+        } catch (RuntimeException e) {
+            plugin.getLogger().severe("Failed to apply home changes of other servers: " + e.getMessage());
+        }
+    }
+
+    private void poll() {
+        long start = System.nanoTime();
+        int applied = 0;
+        while (true) {
+            long from = lastSeq;
+            HomeChange.Page page = repository.readChanges(from, PAGE_SIZE).join();
+            if (page.truncated()) {
+                applied += resync();
+                continue;
+            }
+
+            for (HomeChange change : page.changes()) {
+                if (cache.applyRemote(change.uuid(), change.homes(), this::hasNoLocalChange)) {
+                    applied++;
+                }
+            }
+            lastSeq = page.lastSeq();
+
+            if (page.lastSeq() - from < PAGE_SIZE) {
+                break;
+            }
+        }
+
+        if (applied > 0) {
+            metrics.recordRemoteChanges(applied);
+        }
+        metrics.getChangeFeedPoll().record(System.nanoTime() - start);
+
+        if (System.nanoTime() - lastPrune >= PRUNE_INTERVAL_NANOS) {
+            lastPrune = System.nanoTime();
+            repository.pruneChanges(retentionSeconds);
+        }
+    }
+
+    /**
+     * A local change not written yet is newer than anything in the log.
+     * Checked under the player's cache lock, which local changes are queued
+     * under as well.
+     */
+    private boolean hasNoLocalChange(UUID uuid) {
+        return !writeBehind.hasPending(uuid);
+    }
+
+    /**
+     * This server fell further behind than the change log reaches back, so
+     * the cache is compared against the table instead: all of it in eager
+     * mode, only the loaded players in lazy mode
+     *
+     * @return number of players applied
+     */
+    private int resync() {
+        plugin.getLogger().warning("Home change log was pruned past this server's position, reloading "
+                + (cache.isLazy() ? "loaded players' homes" : "all homes"));
+        long position = repository.getLastChange();
+        int applied = cache.isLazy() ? reloadLoaded() : reloadAll();
+        lastSeq = position;
+        return applied;
+    }
+
+    private int reloadAll() {
+        Map<UUID, PlayerHomes> homes = repository.loadAll();
+
+        int applied = 0;
+        for (UUID uuid : cache.snapshot().keySet()) {
+            if (!homes.containsKey(uuid) && cache.applyRemote(uuid, null, this::hasNoLocalChange)) {
+                applied++;
+            }
+        }
+        for (Map.Entry<UUID, PlayerHomes> entry : homes.entrySet()) {
+            if (cache.applyRemote(entry.getKey(), entry.getValue(), this::hasNoLocalChange)) {
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Point reads of the players the lazy cache holds, the others are read
+     * from storage when needed anyway
+     */
+    private int reloadLoaded() {
+        Map<UUID, CompletableFuture<PlayerHomes>> loads = new HashMap<>();
+        for (UUID uuid : cache.loadedPlayers()) {
+            loads.put(uuid, repository.load(uuid));
+        }
+
+        int applied = 0;
+        for (Map.Entry<UUID, CompletableFuture<PlayerHomes>> entry : loads.entrySet()) {
+            if (cache.applyRemote(entry.getKey(), entry.getValue().join(), this::hasNoLocalChange)) {
+                applied++;
+            }
+        }
+        return applied;
+    }
+}
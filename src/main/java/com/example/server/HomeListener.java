@@ -0,0 +1,45 @@
+package com.example.server;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * Keeps the home cache in step with player sessions: homes are prefetched
+ * on the async login thread, pinned while online and released on quit.
+ */
+public class HomeListener implements Listener {
+
+    private final HomeService homeService;
+    private final long preloadTimeoutMillis;
+
+    public HomeListener(HomeService homeService, long preloadTimeoutMillis) {
+        this.homeService = homeService;
+        this.preloadTimeoutMillis = preloadTimeoutMillis;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return;
+        }
+
+        // Off the main thread, so waiting for storage here costs no tick time
+        homeService.preload(event.getUniqueId(), preloadTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onJoin(PlayerJoinEvent event) {
+        homeService.onJoin(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        homeService.onQuit(event.getPlayer());
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and throughput counters of the home plugin: repository
+ * calls, time tasks spend queued on the I/O lanes, failed writes, cache
+ * lookups, main thread time of each command, changes spilled while the
+ * database was unavailable and the cache-versus-database scrubber.
+ */
+public class HomeMetrics {
+
+    private final LatencyHistogram repositoryLoad = new LatencyHistogram();
+    private final LatencyHistogram repositorySave = new LatencyHistogram();
+    private final LatencyHistogram repositoryDelete = new LatencyHistogram();
+    private final LatencyHistogram repositoryBatch = new LatencyHistogram();
+    private final LatencyHistogram ioQueueWait = new LatencyHistogram();
+    private final LatencyHistogram cacheLookup = new LatencyHistogram();
+    private final LatencyHistogram changeFeedPoll = new LatencyHistogram();
+    private final LatencyHistogram scrubPass = new LatencyHistogram();
+    private final Map<String, LatencyHistogram> commands = new ConcurrentHashMap<>();
+    private final LongAdder ioRejected = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    // Start of the current write outage, while writes keep failing
+    private volatile long writeOutageStart;
+    private volatile boolean writeOutage;
+    private final LongAdder homesWritten = new LongAdder();
+    private final LongAdder homesDeleted = new LongAdder();
+    private final LongAdder warmupsHidden = new LongAdder();
+    private final LongAdder warmupsMissed = new LongAdder();
+    private final LongAdder remoteChanges = new LongAdder();
+    private final LongAdder spilledChanges = new LongAdder();
+    private final LongAdder replayedChanges = new LongAdder();
+    private final LongAdder scrubbedRanges = new LongAdder();
+    private final LongAdder scrubRepairs = new LongAdder();
+    private volatile long resetAt = System.nanoTime();
+
+    public LatencyHistogram getRepositoryLoad() {
+        return repositoryLoad;
+    }
+
+    public LatencyHistogram getRepositorySave() {
+        return repositorySave;
+    }
+
+    public LatencyHistogram getRepositoryDelete() {
+        return repositoryDelete;
+    }
+
+    /**
+     * Batched writes, which is how the write-behind buffer persists changes
+     */
+    public LatencyHistogram getRepositoryBatch() {
+        return repositoryBatch;
+    }
+
+    /**
+     * Time from submitting a task to an I/O lane until it starts running
+     */
+    public LatencyHistogram getIoQueueWait() {
+        return ioQueueWait;
+    }
+
+    /**
+     * Count a task refused because its I/O lane was full
+     */
+    public void recordIoRejected() {
+        ioRejected.increment();
+    }
+
+    public long getIoRejected() {
+        return ioRejected.sum();
+    }
+
+    public LatencyHistogram getCacheLookup() {
+        return cacheLookup;
+    }
+
+    /**
+     * One poll of the shared change log, including applying it to the cache
+     */
+    public LatencyHistogram getChangeFeedPoll() {
+        return changeFeedPoll;
+    }
+
+    /**
+     * One pass of {@link HomeScrubber}, including re-reading the ranges that
+     * differ
+     */
+    public LatencyHistogram getScrubPass() {
+        return scrubPass;
+    }
+
+    /**
+     * Main thread time of a command
+     */
+    public LatencyHistogram getCommand(String name) {
+        return commands.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    /**
+     * Count homes handed to the repository
+     */
+    public void recordWrites(int written, int deleted) {
+        homesWritten.add(written);
+        homesDeleted.add(deleted);
+    }
+
+    /**
+     * Count a write-behind batch that failed and is retried
+     */
+    public void recordFailedBatch() {
+        failedBatches.increment();
+    }
+
+    public long getFailedBatches() {
+        return failedBatches.sum();
+    }
+
+    /**
+     * Writes started failing, or work again
+     */
+    public void recordWriteOutage(boolean failing) {
+        if (failing) {
+            writeOutageStart = System.nanoTime();
+        }
+        writeOutage = failing;
+    }
+
+    /**
+     * Seconds writes have been failing, 0 while they succeed. Not cleared by
+     * {@link #reset()}.
+     */
+    public double getWriteOutageSeconds() {
+        return writeOutage ? (System.nanoTime() - writeOutageStart) / 1e9 : 0.0;
+    }
+
+    public long getHomesWritten() {
+        return homesWritten.sum();
+    }
+
+    public long getHomesDeleted() {
+        return homesDeleted.sum();
+    }
+
+    /**
+     * Count a delayed teleport; hidden means the destination chunks finished
+     * loading before the delay ran out
+     */
+    public void recordWarmup(boolean hidden) {
+        (hidden ? warmupsHidden : warmupsMissed).increment();
+    }
+
+    public long getWarmupsHidden() {
+        return warmupsHidden.sum();
+    }
+
+    public long getWarmupsMissed() {
+        return warmupsMissed.sum();
+    }
+
+    /**
+     * Count changes of other servers applied to the cache
+     */
+    public void recordRemoteChanges(int count) {
+        remoteChanges.add(count);
+    }
+
+    public long getRemoteChanges() {
+        return remoteChanges.sum();
+    }
+
+    /**
+     * Count changes written to the spillover journal instead of the database
+     */
+    public void recordSpilled(int count) {
+        spilledChanges.add(count);
+    }
+
+    public long getSpilledChanges() {
+        return spilledChanges.sum();
+    }
+
+    /**
+     * Count spilled changes replayed into the database
+     */
+    public void recordReplayed(int count) {
+        replayedChanges.add(count);
+    }
+
+    public long getReplayedChanges() {
+        return replayedChanges.sum();
+    }
+
+    /**
+     * Count UUID ranges re-read because their sums differed
+     */
+    public void recordScrubbedRanges(int count) {
+        scrubbedRanges.add(count);
+    }
+
+    public long getScrubbedRanges() {
+        return scrubbedRanges.sum();
+    }
+
+    /**
+     * Count players repaired after their cached homes differed from the
+     * database
+     */
+    public void recordScrubRepairs(int count) {
+        scrubRepairs.add(count);
+    }
+
+    public long getScrubRepairs() {
+        return scrubRepairs.sum();
+    }
+
+    /**
+     * Seconds since start or the last reset, the window of all rates
+     */
+    public double getSecondsSinceReset() {
+        return (System.nanoTime() - resetAt) / 1e9;
+    }
+
+    /**
+     * Summaries of all histograms, repository first and commands last
+     */
+    public Map<String, LatencySnapshot> getLatencies() {
+        long elapsed = System.nanoTime() - resetAt;
+        Map<String, LatencySnapshot> result = new LinkedHashMap<>();
+        result.put("repository.load", repositoryLoad.snapshot(elapsed));
+        result.put("repository.save", repositorySave.snapshot(elapsed));
+        result.put("repository.delete", repositoryDelete.snapshot(elapsed));
+        result.put("repository.batch", repositoryBatch.snapshot(elapsed));
+        result.put("io.queue-wait", ioQueueWait.snapshot(elapsed));
+        result.put("cache.lookup", cacheLookup.snapshot(elapsed));
+        result.put("sync.poll", changeFeedPoll.snapshot(elapsed));
+        result.put("scrub.pass", scrubPass.snapshot(elapsed));
+        new TreeMap<>(commands).forEach((name, histogram) ->
+                result.put("command." + name, histogram.snapshot(elapsed)));
+        return result;
+    }
+
+    public void reset() {
+        repositoryLoad.reset();
+        repositorySave.reset();
+        repositoryDelete.reset();
+        repositoryBatch.reset();
+        ioQueueWait.reset();
+        cacheLookup.reset();
+        changeFeedPoll.reset();
+        scrubPass.reset();
+        commands.values().forEach(LatencyHistogram::reset);
+        ioRejected.reset();
+        failedBatches.reset();
+        homesWritten.reset();
+        homesDeleted.reset();
+        warmupsHidden.reset();
+        warmupsMissed.reset();
+        remoteChanges.reset();
+        spilledChanges.reset();
+        replayedChanges.reset();
+        scrubbedRanges.reset();
+        scrubRepairs.reset();
+        resetAt = System.nanoTime();
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.server;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Команда администратора для переноса домов из homes.yml в SQLite:
+ * /homemigrate [status|cancel|restart]
+ */
+public class HomeMigrateCommand implements CommandExecutor, TabCompleter {
+
+    private static final List<String> ACTIONS = List.of("status", "cancel", "restart");
+
+    private final JavaPlugin plugin;
+    private final HomeService homeService;
+
+    // Текущий перенос и его поток, изменяются только в основном потоке
+    private volatile YamlHomeMigrator migrator;
+    private volatile Thread worker;
+
+    public HomeMigrateCommand(JavaPlugin plugin, HomeService homeService) {
+        this.plugin = plugin;
+        this.homeService = homeService;
+    }
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command,
+            @NotNull String label, @NotNull String[] args) {
+        String action = args.length > 0 ? args[0].toLowerCase(Locale.ROOT) : "start";
+        switch (action) {
+            case "status" -> status(sender);
+            case "cancel" -> cancel(sender);
+            case "start", "restart" -> start(sender, "restart".equals(action));
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void start(CommandSender sender, boolean restart) {
+        if (isRunning()) {
+            sender.sendMessage("§eПеренос уже выполняется.");
+            status(sender);
+            return;
+        }
+
+        if (!"sqlite".equalsIgnoreCase(plugin.getConfig().getString("storage-type", "sqlite"))) {
+            sender.sendMessage("§cПеренос выполняется в SQLite: укажите storage-type: sqlite и перезапустите сервер.");
+            return;
+        }
+
+        if (homeService.isWarmingUp()) {
+            sender.sendMessage("§eДома ещё загружаются, попробуйте через пару секунд.");
+            return;
+        }
+
+        YamlHomeMigrator next = new YamlHomeMigrator(plugin, homeService,
+                plugin.getConfig().getInt("migration.batch-size", 10000),
+                plugin.getConfig().getInt("migration.resolve-threads", 8));
+        if (!next.hasSource()) {
+            sender.sendMessage("§cФайл homes.yml не найден или пуст, переносить нечего.");
+            return;
+        }
+
+        if (restart) {
+            try {
+                next.reset();
+            } catch (IOException e) {
+                sender.sendMessage("§cНе удалось сбросить прогресс переноса: " + e.getMessage());
+                return;
+            }
+        } else if (next.isDone()) {
+            sender.sendMessage("§eДома из homes.yml уже перенесены. Повторить: §f/homemigrate restart");
+            return;
+        }
+
+        Thread thread = new Thread(() -> run(sender, next), "HomeService-Migrate");
+        thread.setDaemon(true);
+        migrator = next;
+        worker = thread;
+        thread.start();
+        sender.sendMessage("§aПеренос домов из homes.yml начат. Прогресс: §f/homemigrate status");
+    }
+
+    private void run(CommandSender sender, YamlHomeMigrator job) {
+        String result;
+        try {
+            long imported = job.run();
+            result = job.isCancelled()
+                    ? "§eПеренос остановлен после " + imported + " домов. Продолжить: §f/homemigrate"
+                    : "§aПеренос завершён: §f" + imported + "§a домов, имён игроков определено §f" + job.getResolved()
+                            + "§a, пропущено записей §f" + job.getSkipped();
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().severe("homes.yml migration failed: " + e);
+            result = "§cПеренос прерван: " + e.getMessage() + ". Продолжить с места остановки: §f/homemigrate";
+        }
+
+        String message = result;
+        if (plugin.isEnabled()) {
+            Bukkit.getScheduler().runTask(plugin, () -> sender.sendMessage(message));
+        }
+    }
+
+    private void status(CommandSender sender) {
+        YamlHomeMigrator job = migrator;
+        if (job == null) {
+            sender.sendMessage("§7Перенос не запускался.");
+            return;
+        }
+
+        sender.sendMessage("§6Перенос homes.yml" + (isRunning() ? "" : " §7(не выполняется)") + "§6: §f" + job.getPercent()
+                + "%§6 прочитано, записей §f" + job.getEntriesRead() + "§6, перенесено §f" + job.getImported()
+                + "§6, имён определено §f" + job.getResolved() + "§6, пропущено §f" + job.getSkipped());
+    }
+
+    private void cancel(CommandSender sender) {
+        if (!isRunning()) {
+            sender.sendMessage("§7Перенос не выполняется.");
+            return;
+        }
+
+        migrator.cancel();
+        sender.sendMessage("§eПеренос будет остановлен после текущей порции.");
+    }
+
+    private boolean isRunning() {
+        Thread thread = worker;
+        return thread != null && thread.isAlive();
+    }
+
+    /**
+     * Остановить перенос при выключении плагина, прогресс сохраняется
+     */
+    public void shutdown() {
+        Thread thread = worker;
+        if (thread == null || !thread.isAlive()) {
+            return;
+        }
+
+        migrator.cancel();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command,
+            @NotNull String alias, @NotNull String[] args) {
+        if (args.length != 1) {
+            return List.of();
+        }
+
+        String prefix = args[0].toLowerCase(Locale.ROOT);
+        return ACTIONS.stream()
+                .filter(action -> action.startsWith(prefix))
+                .collect(Collectors.toList());
+    }
+}
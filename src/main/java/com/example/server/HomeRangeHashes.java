@@ -0,0 +1,138 @@
+package com.example.server;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Row counts and hash sums of the cached homes per UUID range, maintained by
+ * {@link HomeCache} next to the homes themselves. SQLite keeps the same sums
+ * in its home_ranges table, so {@link HomeScrubber} can compare the cache
+ * with the database a range at a time.
+ * <p>
+ * The ranges form a tree keyed by hex prefixes of the UUID: the root is the
+ * empty prefix, every node has 16 children one hex digit longer, and the
+ * 4096 leaves are the three-digit prefixes. A node's sums are the sums of
+ * its leaves. Every home contributes a 32-bit hash of the player, its name
+ * and all its fields, so sums of up to 2^31 homes fit a long and changes can
+ * be added and subtracted in any order.
+ */
+public class HomeRangeHashes {
+
+    /**
+     * Hex digits of a leaf prefix
+     */
+    public static final int LEAF_DIGITS = 3;
+
+    public static final int LEAVES = 1 << (4 * LEAF_DIGITS);
+
+    /**
+     * Sums of one range
+     */
+    public record Node(long rows, long hash) {
+
+        public static final Node EMPTY = new Node(0, 0);
+
+        public Node plus(Node other) {
+            return new Node(rows + other.rows, hash + other.hash);
+        }
+    }
+
+    private final AtomicLongArray rows = new AtomicLongArray(LEAVES);
+    private final AtomicLongArray hashes = new AtomicLongArray(LEAVES);
+
+    /**
+     * Replace a player's homes in the sums; either side may be null
+     */
+    public void move(UUID uuid, PlayerHomes from, PlayerHomes to) {
+        int leaf = leaf(uuid);
+        if (from != null) {
+            rows.addAndGet(leaf, -from.size());
+            hashes.addAndGet(leaf, -hash(uuid, from));
+        }
+        if (to != null) {
+            rows.addAndGet(leaf, to.size());
+            hashes.addAndGet(leaf, hash(uuid, to));
+        }
+    }
+
+    /**
+     * Sums of the range with the given hex prefix, up to {@link #LEAF_DIGITS}
+     * digits
+     */
+    public Node node(String prefix) {
+        int shift = 4 * (LEAF_DIGITS - prefix.length());
+        int first = prefix.isEmpty() ? 0 : Integer.parseInt(prefix, 16) << shift;
+        long rowSum = 0;
+        long hashSum = 0;
+        for (int leaf = first; leaf < first + (1 << shift); leaf++) {
+            rowSum += rows.get(leaf);
+            hashSum += hashes.get(leaf);
+        }
+        return new Node(rowSum, hashSum);
+    }
+
+    /**
+     * Leaf range of a player, the first 12 bits of the UUID
+     */
+    public static int leaf(UUID uuid) {
+        return leaf(uuid.getMostSignificantBits());
+    }
+
+    /**
+     * Leaf range of the most significant UUID bits
+     */
+    public static int leaf(long msb) {
+        return (int) (msb >>> (64 - 4 * LEAF_DIGITS));
+    }
+
+    /**
+     * Hex prefix of a leaf, upper case like SQLite's hex()
+     */
+    public static String prefix(int leaf) {
+        return String.format("%03X", leaf);
+    }
+
+    /**
+     * Whether the player's UUID starts with the hex prefix
+     */
+    public static boolean inRange(UUID uuid, String prefix) {
+        return prefix.isEmpty() || prefix(leaf(uuid)).startsWith(prefix);
+    }
+
+    /**
+     * Sum of the hashes of all the player's homes
+     */
+    public static long hash(UUID uuid, PlayerHomes homes) {
+        long sum = 0;
+        for (int i = 0; i < homes.size(); i++) {
+            sum += rowHash(uuid, homes.name(i), homes.home(i));
+        }
+        return sum;
+    }
+
+    /**
+     * Hash of one stored home, between 0 and 2^32 - 1. Zero is added to the
+     * coordinates since SQLite reads -0.0 back as 0.0.
+     */
+    public static long rowHash(UUID uuid, String name, Home home) {
+        long h = mix(uuid.getMostSignificantBits());
+        h = mix(h ^ uuid.getLeastSignificantBits());
+        h = mix(h ^ name.hashCode());
+        h = mix(h ^ home.world().hashCode());
+        h = mix(h ^ Double.doubleToLongBits(home.x() + 0.0));
+        h = mix(h ^ Double.doubleToLongBits(home.y() + 0.0));
+        h = mix(h ^ Double.doubleToLongBits(home.z() + 0.0));
+        h = mix(h ^ Float.floatToIntBits(home.yaw() + 0.0f));
+        h = mix(h ^ Float.floatToIntBits(home.pitch() + 0.0f));
+        return h >>> 32;
+    }
+
+    /**
+     * SplitMix64 finalizer
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.server;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Команда администратора для перезагрузки сообщений из config.yml без
+ * перезапуска сервера: /homereload
+ */
+public class HomeReloadCommand implements CommandExecutor {
+
+    private final JavaPlugin plugin;
+    private final Messages messages;
+
+    public HomeReloadCommand(JavaPlugin plugin, Messages messages) {
+        this.plugin = plugin;
+        this.messages = messages;
+    }
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command,
+            @NotNull String label, @NotNull String[] args) {
+        long start = System.nanoTime();
+        plugin.reloadConfig();
+        messages.load(plugin.getConfig());
+
+        plugin.getLogger().info(sender.getName() + " reloaded " + messages.size() + " message templates");
+        sender.sendMessage("§aСообщения перезагружены: §f" + messages.size() + "§a шаблонов §7("
+                + (System.nanoTime() - start) / 1000 + " мкс)");
+        sender.sendMessage("§7Лимит домов тоже применён, остальные настройки применяются после перезапуска сервера.");
+        return true;
+    }
+}
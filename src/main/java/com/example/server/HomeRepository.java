@@ -1,14 +1,205 @@
 package com.example.server;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 
 /**
- * Abstraction for home persistence.
+ * Abstraction for home persistence. Bulk operations are blocking and meant
+ * for startup, shutdown and tools; per-player operations are asynchronous and
+ * complete on the backend's own I/O threads. Writes issued by one thread
+ * complete in submission order.
+ * <p>
+ * Homes are stored per (player, name) but read and written per player: a
+ * save replaces all of the player's homes with the given set, a delete
+ * removes all of them. Empty sets are never passed in or handed out, a
+ * player without homes is absent.
  */
 public interface HomeRepository {
 
-    Map<UUID, Home> loadAll();
+    Map<UUID, PlayerHomes> loadAll();
 
-    void saveAll(Map<UUID, Home> homes);
+    void saveAll(Map<UUID, PlayerHomes> homes);
+
+    /**
+     * Load a single player's homes; completes with null if they have none
+     */
+    CompletableFuture<PlayerHomes> load(UUID uuid);
+
+    CompletableFuture<Void> save(UUID uuid, PlayerHomes homes);
+
+    CompletableFuture<Void> delete(UUID uuid);
+
+    /**
+     * Apply upserts and deletes as one unit
+     */
+    CompletableFuture<Void> saveBatch(Map<UUID, PlayerHomes> upserts, Set<UUID> deletes);
+
+    /**
+     * Insert homes migrated from another storage in one unit, keeping the
+     * homes of players that already have some since those were written in
+     * the meantime. Backends without conditional inserts overwrite them.
+     */
+    default CompletableFuture<Void> importBatch(Map<UUID, PlayerHomes> homes) {
+        return saveBatch(homes, Set.of());
+    }
+
+    /**
+     * Stream the homes of one of {@code shards} UUID ranges to the sink, for
+     * parallel startup loads. The sink is called from several threads when
+     * shards run in parallel. Backends that cannot split the key space load
+     * everything in shard 0.
+     *
+     * @return future completing with the number of homes delivered
+     */
+    default CompletableFuture<Long> loadShard(int shard, int shards, BiConsumer<UUID, PlayerHomes> sink) {
+        Map<UUID, PlayerHomes> homes = shard == 0 ? loadAll() : Map.of();
+        homes.forEach(sink);
+        return CompletableFuture.completedFuture((long) homes.size());
+    }
+
+    /**
+     * How many {@link #loadShard} calls can usefully run in parallel
+     */
+    default int getLoadParallelism() {
+        return 1;
+    }
+
+    /**
+     * Homes in one world whose x/z lie inside the box, per player. Backends
+     * without an index on the world scan every home.
+     */
+    default CompletableFuture<Map<UUID, PlayerHomes>> findInBox(String world, double minX, double minZ,
+            double maxX, double maxZ) {
+        return CompletableFuture.supplyAsync(() -> {
+            Map<UUID, PlayerHomes> result = new HashMap<>();
+            loadAll().forEach((uuid, homes) -> homes.forEach((name, home) -> {
+                if (home.world().equals(world)
+                        && home.x() >= minX && home.x() <= maxX && home.z() >= minZ && home.z() <= maxZ) {
+                    result.merge(uuid, PlayerHomes.of(name, home), (a, b) -> a.with(name, home));
+                }
+            }));
+            return result;
+        });
+    }
+
+    /**
+     * Delete every home in the world, keeping the players' homes elsewhere
+     *
+     * @return future completing with the number of homes deleted
+     */
+    default CompletableFuture<Integer> deleteWorld(String world) {
+        return CompletableFuture.supplyAsync(() -> {
+            Map<UUID, PlayerHomes> kept = new HashMap<>();
+            Set<UUID> doomed = new HashSet<>();
+            int[] deleted = new int[1];
+            loadAll().forEach((uuid, homes) -> {
+                PlayerHomes rest = homes;
+                for (int i = 0; i < homes.size(); i++) {
+                    if (homes.home(i).world().equals(world)) {
+                        rest = rest.without(homes.name(i));
+                        deleted[0]++;
+                    }
+                }
+                if (rest.isEmpty()) {
+                    doomed.add(uuid);
+                } else if (rest != homes) {
+                    kept.put(uuid, rest);
+                }
+            });
+            return saveBatch(kept, doomed).thenApply(v -> deleted[0]);
+        }).thenCompose(future -> future);
+    }
+
+    /**
+     * Whether writes are recorded in a change log other servers sharing the
+     * storage can follow
+     */
+    default boolean supportsChangeFeed() {
+        return false;
+    }
+
+    /**
+     * Sequence number of the newest change log entry, 0 if there is none
+     */
+    default long getLastChange() {
+        return 0L;
+    }
+
+    /**
+     * Up to {@code limit} change log entries after {@code afterSeq}, with the
+     * current homes of each player. Entries written by this server are
+     * skipped.
+     */
+    default CompletableFuture<HomeChange.Page> readChanges(long afterSeq, int limit) {
+        return CompletableFuture.completedFuture(new HomeChange.Page(List.of(), afterSeq, false));
+    }
+
+    /**
+     * Drop change log entries older than the given age
+     *
+     * @return future completing with the number of entries removed
+     */
+    default CompletableFuture<Integer> pruneChanges(long maxAgeSeconds) {
+        return CompletableFuture.completedFuture(0);
+    }
+
+    /**
+     * Whether the backend keeps {@link HomeRangeHashes} sums of its own, so
+     * {@link #rangeHashes} is cheap
+     */
+    default boolean supportsRangeHashes() {
+        return false;
+    }
+
+    /**
+     * Sums of the 16 child ranges of the range with the given hex prefix,
+     * indexed by their last hex digit; null while the sums are not current,
+     * e.g. during a conversion
+     */
+    default CompletableFuture<HomeRangeHashes.Node[]> rangeHashes(String prefix) {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Homes of the players whose UUIDs start with the hex prefix
+     */
+    default CompletableFuture<Map<UUID, PlayerHomes>> loadRange(String prefix) {
+        return CompletableFuture.supplyAsync(() -> {
+            Map<UUID, PlayerHomes> result = new HashMap<>();
+            loadAll().forEach((uuid, homes) -> {
+                if (HomeRangeHashes.inRange(uuid, prefix)) {
+                    result.put(uuid, homes);
+                }
+            });
+            return result;
+        });
+    }
+
+    /**
+     * Whether the backend can store a home in this world. Backends with a
+     * bounded world table refuse new worlds once it is full; homes they
+     * cannot store are dropped from a save rather than failing the batch.
+     */
+    default boolean canStore(Home home) {
+        return true;
+    }
+
+    /**
+     * Whether {@link #load(UUID)} is a cheap point read rather than a scan
+     */
+    default boolean supportsFastLoad() {
+        return true;
+    }
+
+    /**
+     * Release files, connections and background threads
+     */
+    default void close() {
+    }
 }
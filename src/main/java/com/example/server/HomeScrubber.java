@@ -0,0 +1,222 @@
+package com.example.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+/**
+ * Checks in the background that the cache and the database hold the same
+ * homes, and repairs players whose homes differ. A pass compares the
+ * {@link HomeRangeHashes} sums of both sides from the root down and only
+ * reads the leaf ranges whose sums differ, at most max-ranges-per-pass of
+ * them, so a pass over a consistent database reads just the 16 sums below
+ * the root.
+ * <p>
+ * A difference may just be a write still on its way, so a player is only
+ * repaired when a second pass finds the very same difference and nothing of
+ * theirs is waiting in the write-behind buffer. On a server of its own the
+ * cache is the newer side and its homes are written again; with several
+ * servers sharing the database, the database wins.
+ */
+public class HomeScrubber {
+
+    private final JavaPlugin plugin;
+    private final HomeRepository repository;
+    private final HomeCache cache;
+    private final WriteBehindBuffer writeBehind;
+    private final HomeMetrics metrics;
+    private final BiConsumer<UUID, PlayerHomes> writeBack;
+    private final boolean storeWins;
+    private final long intervalMillis;
+    private final int maxRanges;
+    private final ScheduledExecutorService scrubber;
+
+    // Only touched by the scrubber thread
+    private Map<UUID, Observation> suspects = new HashMap<>();
+    private Set<String> drifting = new HashSet<>();
+    private final Set<String> driftReported = new HashSet<>();
+
+    /**
+     * Homes of one player as both sides held them, null where absent
+     */
+    private record Observation(PlayerHomes cached, PlayerHomes stored) {
+    }
+
+    /**
+     * @param writeBack persists the cached homes of a player, empty meaning
+     *                  none; used unless {@code storeWins}
+     */
+    public HomeScrubber(JavaPlugin plugin, HomeRepository repository, HomeCache cache,
+            WriteBehindBuffer writeBehind, HomeMetrics metrics, BiConsumer<UUID, PlayerHomes> writeBack,
+            boolean storeWins, long intervalMillis, int maxRanges) {
+        this.plugin = plugin;
+        this.repository = repository;
+        this.cache = cache;
+        this.writeBehind = writeBehind;
+        this.metrics = metrics;
+        this.writeBack = writeBack;
+        this.storeWins = storeWins;
+        this.intervalMillis = Math.max(1000L, intervalMillis);
+        this.maxRanges = Math.max(1, maxRanges);
+        this.scrubber = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "HomeService-Scrub");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        scrubber.scheduleWithFixedDelay(this::scrubSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        plugin.getLogger().info("Checking cached homes against the database every "
+                + TimeUnit.MILLISECONDS.toSeconds(intervalMillis) + " s");
+    }
+
+    public void stop() {
+        scrubber.shutdownNow();
+    }
+
+    private void scrubSafely() {
+        try {
+            scrub();
+        } catch (CompletionException e) {
+            // Already logged by the repository, the next pass starts over
+        } catch (RuntimeException e) {
+            plugin.getLogger().severe("Failed to check cached homes against the database: " + e.getMessage());
+        }
+    }
+
+    private void scrub() {
+        if (cache.isWarming()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<String> leaves = new ArrayList<>();
+        if (!differingLeaves("", leaves)) {
+            // Sums not available, e.g. during a conversion or spillover
+            return;
+        }
+
+        Map<UUID, Observation> observed = new HashMap<>();
+        Set<String> drift = new HashSet<>();
+        if (!leaves.isEmpty()) {
+            Set<Integer> wanted = new HashSet<>();
+            for (String leaf : leaves) {
+                wanted.add(Integer.parseInt(leaf, 16));
+            }
+            Map<Integer, Map<UUID, PlayerHomes>> cached = cache.findInLeaves(wanted);
+
+            for (String leaf : leaves) {
+                Map<UUID, PlayerHomes> stored = repository.loadRange(leaf).join();
+                Map<UUID, PlayerHomes> mine = cached.getOrDefault(Integer.parseInt(leaf, 16), Map.of());
+                // Every player matches, yet the sums do not, twice in a row
+                if (compare(mine, stored, observed) == 0 && drift.add(leaf)
+                        && drifting.contains(leaf) && driftReported.add(leaf)) {
+                    plugin.getLogger().warning("Range hashes of UUID range " + leaf
+                            + " differ while its homes match the database");
+                }
+            }
+            metrics.recordScrubbedRanges(leaves.size());
+        }
+
+        int repaired = 0;
+        for (Map.Entry<UUID, Observation> entry : observed.entrySet()) {
+            if (entry.getValue().equals(suspects.get(entry.getKey())) && repair(entry.getKey(), entry.getValue())) {
+                repaired++;
+            }
+        }
+        suspects = observed;
+        drifting = drift;
+
+        if (repaired > 0) {
+            metrics.recordScrubRepairs(repaired);
+            plugin.getLogger().warning("Repaired " + repaired + " players whose cached homes differed from the database");
+        }
+        metrics.getScrubPass().record(System.nanoTime() - start);
+    }
+
+    /**
+     * Collect the leaves below the prefix whose sums differ, up to
+     * max-ranges-per-pass
+     *
+     * @return false if the database has no current sums
+     */
+    private boolean differingLeaves(String prefix, List<String> leaves) {
+        HomeRangeHashes.Node[] stored = repository.rangeHashes(prefix).join();
+        if (stored == null) {
+            return false;
+        }
+
+        HomeRangeHashes rangeHashes = cache.getRangeHashes();
+        for (int digit = 0; digit < stored.length && leaves.size() < maxRanges; digit++) {
+            String child = prefix + Character.toUpperCase(Character.forDigit(digit, 16));
+            if (stored[digit].equals(rangeHashes.node(child))) {
+                continue;
+            }
+            if (child.length() == HomeRangeHashes.LEAF_DIGITS) {
+                leaves.add(child);
+            } else if (!differingLeaves(child, leaves)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Record the players of one leaf whose homes differ. Homes count as
+     * equal when their hashes are, which is also what the sums compare.
+     *
+     * @return number of players whose homes differ, recorded or not
+     */
+    private int compare(Map<UUID, PlayerHomes> cached, Map<UUID, PlayerHomes> stored,
+            Map<UUID, Observation> observed) {
+        int differing = 0;
+        Set<UUID> players = new HashSet<>(cached.keySet());
+        players.addAll(stored.keySet());
+        for (UUID uuid : players) {
+            PlayerHomes mine = cached.get(uuid);
+            PlayerHomes theirs = stored.get(uuid);
+            if (mine != null && theirs != null && mine.size() == theirs.size()
+                    && HomeRangeHashes.hash(uuid, mine) == HomeRangeHashes.hash(uuid, theirs)) {
+                continue;
+            }
+            differing++;
+            // A change waiting to be written explains the difference
+            if (!writeBehind.hasPending(uuid)) {
+                observed.put(uuid, new Observation(mine, theirs));
+            }
+        }
+        return differing;
+    }
+
+    /**
+     * Bring one player in line, unless their cached homes changed since they
+     * were observed or a change of theirs is waiting to be written. Both are
+     * checked under the player's cache lock, like a remote change.
+     */
+    private boolean repair(UUID uuid, Observation observation) {
+        PlayerHomes expected = observation.cached() != null ? observation.cached() : PlayerHomes.EMPTY;
+        PlayerHomes stored = observation.stored() != null ? observation.stored() : PlayerHomes.EMPTY;
+        boolean[] unchanged = new boolean[1];
+        cache.update(uuid, current -> {
+            unchanged[0] = current.equals(expected) && !writeBehind.hasPending(uuid);
+            return unchanged[0] && storeWins ? stored : current;
+        }, (u, homes) -> {
+            if (unchanged[0] && !storeWins) {
+                writeBack.accept(u, homes);
+            }
+        });
+        return unchanged[0];
+    }
+}
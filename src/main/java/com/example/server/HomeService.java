@@ -1,12 +1,18 @@
 package com.example.server;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
@@ -16,53 +22,337 @@ import org.bukkit.plugin.java.JavaPlugin;
 
 /**
  * Optimized service layer for managing player homes with async persistence.
- * Uses dedicated thread pool for I/O operations and SQLite for performance.
+ * Uses key-striped I/O lanes so changes of one player are persisted in order.
+ * Players have named homes, up to homes.max-homes-per-player of them.
  */
 public class HomeService {
 
+    public static final int MAX_NAME_LENGTH = 16;
+    private static final Pattern NAME_PATTERN = Pattern.compile("[a-z0-9_-]{1," + MAX_NAME_LENGTH + "}");
+
+    /**
+     * Outcome of {@link #setHome}
+     */
+    public enum SetResult {
+        SET,
+        // The player already has as many homes as allowed
+        LIMIT_REACHED,
+        // The storage cannot hold homes in this world, e.g. homes.bin's world table is full
+        WORLD_NOT_STORABLE,
+        // The player's homes are still being loaded, a write now would drop them
+        NOT_LOADED
+    }
+
     private final JavaPlugin plugin;
     private final HomeRepository repository;
-    private final Map<UUID, Home> homeCache = new ConcurrentHashMap<>();
-    private final ExecutorService executorService;
+    private final HomeMetrics metrics;
+    private final HomeCache homeCache;
+    private final KeyedExecutor ioExecutor;
+    private final WorldRegistry worlds = new WorldRegistry();
+    private final WriteBehindBuffer writeBehind;
+    private final HomeChangeFeed changeFeed;
+    private final HomeScrubber scrubber;
 
     private volatile boolean isShuttingDown = false;
 
-    public HomeService(JavaPlugin plugin, HomeRepository repository) {
+    // Own homes of players who changed them while a migration imports homes
+    private final Map<UUID, PlayerHomes> changedDuringImport = new ConcurrentHashMap<>();
+    private volatile boolean importing;
+    private final String defaultName;
+
+    public HomeService(JavaPlugin plugin, HomeRepository repository, HomeMetrics metrics) {
         this.plugin = plugin;
         this.repository = repository;
-        // Dedicated thread pool for async I/O operations
-        this.executorService = Executors.newFixedThreadPool(2, r -> {
-            Thread thread = new Thread(r, "HomeService-IO");
-            thread.setDaemon(true);
-            return thread;
-        });
+        this.metrics = metrics;
+        String configuredName = normalizeName(
+                plugin.getConfig().getString("homes.default-name", PlayerHomes.DEFAULT_NAME));
+        if (configuredName == null) {
+            plugin.getLogger().warning("Invalid homes.default-name, falling back to '" + PlayerHomes.DEFAULT_NAME + "'");
+            configuredName = PlayerHomes.DEFAULT_NAME;
+        }
+        this.defaultName = configuredName;
+        // Per-player serial lanes for async I/O operations
+        this.ioExecutor = new KeyedExecutor(plugin.getLogger(), "HomeService-IO",
+                plugin.getConfig().getInt("performance.io-threads", 2),
+                plugin.getConfig().getInt("performance.io-queue-capacity", 1024),
+                metrics);
+
+        // Coalesce per-player writes into batches, as far as the durability level allows
+        String mode = plugin.getConfig().getString("durability.mode", "group");
+        if (Durability.parse(mode) == null) {
+            plugin.getLogger().warning("Unknown durability.mode '" + mode + "', falling back to 'group'");
+        }
+        Durability durability = Durability.fromConfig(plugin.getConfig());
+        int batchSize = plugin.getConfig().getInt("performance.write-behind.batch-size", 200);
+        long staleness = plugin.getConfig().getLong("performance.write-behind.max-staleness-ms", 1000L);
+        WriteBehindBuffer.BatchWriter writer = repository::saveBatch;
+        // Periodic keeps the configured write-behind limits
+        switch (durability) {
+            case IMMEDIATE -> {
+                batchSize = 1;
+                writer = this::writeEach;
+            }
+            case GROUP -> staleness = Math.min(staleness,
+                    plugin.getConfig().getLong("durability.group-commit-ms", 5L));
+            default -> {
+            }
+        }
+        this.writeBehind = new WriteBehindBuffer(plugin.getLogger(), ioExecutor, metrics, writer, batchSize, staleness);
+
+        // Lazy loading needs cheap per-player reads from the backend
+        boolean lazy = "lazy".equalsIgnoreCase(plugin.getConfig().getString("cache.mode", "eager"));
+        if (lazy && !repository.supportsFastLoad()) {
+            plugin.getLogger().warning("cache.mode 'lazy' is not supported by this storage-type, falling back to 'eager'");
+            lazy = false;
+        }
+        HomeTable table = "compact".equalsIgnoreCase(plugin.getConfig().getString("cache.storage", "map"))
+                ? new CompactHomeTable(new WorldNames())
+                : new MapHomeTable();
+        this.homeCache = new HomeCache(table, lazy,
+                plugin.getConfig().getInt("cache.max-offline-entries", 10000),
+                plugin.getConfig().getLong("cache.offline-ttl-seconds", 1800L));
+        homeCache.setEvictionGuard(uuid -> !writeBehind.hasPending(uuid));
+
+        // Several servers sharing one database pick up each other's changes
+        boolean sync = plugin.getConfig().getBoolean("sync.enabled", false);
+        if (sync && !repository.supportsChangeFeed()) {
+            plugin.getLogger().warning("sync.enabled is only supported with storage-type 'sqlite' on a single "
+                    + "database file (performance.sqlite.shards: 1), ignoring it");
+            sync = false;
+        }
+        this.changeFeed = sync
+                ? new HomeChangeFeed(plugin, repository, homeCache, writeBehind, metrics,
+                        plugin.getConfig().getLong("sync.poll-interval-ms", 1000L),
+                        TimeUnit.MINUTES.toSeconds(plugin.getConfig().getLong("sync.retention-minutes", 10L)))
+                : null;
+
+        // Only an eager cache holds every player the database has
+        boolean scrub = plugin.getConfig().getBoolean("scrub.enabled", true);
+        if (scrub && (lazy || !repository.supportsRangeHashes())) {
+            plugin.getLogger().info("Cache scrubbing needs cache.mode 'eager' and storage-type 'sqlite', disabled");
+            scrub = false;
+        }
+        this.scrubber = scrub
+                ? new HomeScrubber(plugin, repository, homeCache, writeBehind, metrics, this::persist, sync,
+                        TimeUnit.SECONDS.toMillis(plugin.getConfig().getLong("scrub.interval-seconds", 300L)),
+                        plugin.getConfig().getInt("scrub.max-ranges-per-pass", 16))
+                : null;
+    }
+
+    /**
+     * Immediate durability: one transaction and fsync per change, in the
+     * order the lane collected them
+     */
+    private CompletableFuture<Void> writeEach(Map<UUID, PlayerHomes> upserts, Set<UUID> deletes) {
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        for (Map.Entry<UUID, PlayerHomes> entry : upserts.entrySet()) {
+            Map<UUID, PlayerHomes> upsert = Map.of(entry.getKey(), entry.getValue());
+            chain = chain.thenCompose(v -> repository.saveBatch(upsert, Set.of()));
+        }
+        for (UUID uuid : deletes) {
+            chain = chain.thenCompose(v -> repository.saveBatch(Map.of(), Set.of(uuid)));
+        }
+        return chain;
     }
 
     /**
-     * Load all homes asynchronously on startup
+     * Load homes on startup: everything in eager mode, only online players
+     * in lazy mode
      */
     public void load() {
-        executorService.submit(() -> {
+        worlds.refresh();
+
+        // Position taken before loading, changes made meanwhile are applied on top
+        if (changeFeed != null) {
+            changeFeed.start(repository.getLastChange());
+        }
+
+        if (homeCache.isLazy()) {
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                homeCache.pin(player.getUniqueId());
+                loadAsync(player.getUniqueId());
+            }
+            plugin.getLogger().info("Lazy home loading enabled, homes are loaded on login");
+            return;
+        }
+
+        // Split the table into UUID ranges decoded in parallel; until all of
+        // them are in, unknown players are loaded on demand
+        int shards = Math.max(1, Math.min(plugin.getConfig().getInt("performance.load-threads", 4),
+                repository.getLoadParallelism()));
+        homeCache.startWarming();
+        if (scrubber != null) {
+            scrubber.start();
+        }
+        // Own thread, so the I/O lanes stay free for on-demand loads meanwhile
+        Thread loader = new Thread(() -> {
+            long start = System.nanoTime();
             try {
-                Map<UUID, Home> loaded = repository.loadAll();
-                homeCache.clear();
-                homeCache.putAll(loaded);
-                plugin.getLogger().info("Loaded " + loaded.size() + " homes");
-            } catch (Exception e) {
-                plugin.getLogger().severe("Failed to load homes: " + e.getMessage());
-                e.printStackTrace();
+                List<CompletableFuture<Long>> parts = new ArrayList<>();
+                for (int shard = 0; shard < shards; shard++) {
+                    parts.add(repository.loadShard(shard, shards, homeCache::putLoaded));
+                }
+
+                long rows = 0;
+                for (CompletableFuture<Long> part : parts) {
+                    rows += part.join();
+                }
+                homeCache.finishWarming();
+
+                long millis = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                plugin.getLogger().info("Loaded " + rows + " homes in " + millis + " ms ("
+                        + rows * 1000 / millis + " rows/s, " + shards + " shards)");
+            } catch (RuntimeException e) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                plugin.getLogger().severe("Failed to load homes, players will be loaded on demand: "
+                        + cause.getMessage());
             }
-        });
+        }, "HomeService-Load");
+        loader.setDaemon(true);
+        loader.start();
     }
 
     /**
-     * Set player's home location
+     * Load a player's homes ahead of login. Blocks the calling (async login)
+     * thread until the homes are cached or the timeout expires.
      */
-    public void setHome(Player player) {
-        if (player == null || player.getLocation() == null || player.getLocation().getWorld() == null) {
+    public void preload(UUID uuid, long timeout, TimeUnit unit) {
+        if (homeCache.isLoaded(uuid)) {
             return;
         }
 
+        try {
+            loadAsync(uuid).get(timeout, unit);
+        } catch (Exception e) {
+            plugin.getLogger().warning("Failed to preload homes for " + uuid + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Queue a per-player load on the player's I/O lane, behind any pending
+     * write of the same player. Fails right away if the lane is full; the
+     * player stays unloaded and the next {@link #isLoading} tries again.
+     */
+    private CompletableFuture<Void> loadAsync(UUID uuid) {
+        try {
+            return queueLoad(uuid);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private CompletableFuture<Void> queueLoad(UUID uuid) {
+        return CompletableFuture.runAsync(() -> {
+            if (homeCache.isLoaded(uuid)) {
+                return;
+            }
+
+            try {
+                homeCache.putLoaded(uuid, repository.load(uuid).join());
+            } catch (CompletionException e) {
+                // Not cached negatively, the next lookup retries
+                plugin.getLogger().warning("Failed to load homes for " + uuid + ": " + e.getCause().getMessage());
+            }
+        }, r -> ioExecutor.execute(uuid, r));
+    }
+
+    /**
+     * Whether the player's homes are not known yet because they are still
+     * being loaded. Queues a load of just this player if the backend has cheap
+     * point reads, so they do not have to wait for the whole startup load.
+     */
+    public boolean isLoading(Player player) {
+        UUID uuid = player.getUniqueId();
+        if (homeCache.isLoaded(uuid)) {
+            return false;
+        }
+
+        if (repository.supportsFastLoad()) {
+            loadAsync(uuid);
+        }
+        return true;
+    }
+
+    /**
+     * Player joined, keep their homes resident
+     */
+    public void onJoin(Player player) {
+        UUID uuid = player.getUniqueId();
+        homeCache.pin(uuid);
+        if (!homeCache.isLoaded(uuid)) {
+            // Login preload timed out or the plugin was reloaded
+            loadAsync(uuid);
+        }
+    }
+
+    /**
+     * Player left, their homes may be evicted
+     */
+    public void onQuit(Player player) {
+        homeCache.unpin(player.getUniqueId());
+    }
+
+    /**
+     * Lower-cased home name, or null if it is not 1-16 letters, digits, dashes
+     * or underscores
+     */
+    public static String normalizeName(String name) {
+        if (name == null) {
+            return null;
+        }
+
+        String normalized = name.toLowerCase(Locale.ROOT);
+        return NAME_PATTERN.matcher(normalized).matches() ? normalized : null;
+    }
+
+    /**
+     * Name used when a command is given none
+     */
+    public String getDefaultName() {
+        return defaultName;
+    }
+
+    /**
+     * How many homes a player may have, -1 for no limit. Read on every call,
+     * so /homereload applies a new limit.
+     */
+    public int getMaxHomes() {
+        int max = plugin.getConfig().getInt("homes.max-homes-per-player", 1);
+        return max < 0 ? -1 : max;
+    }
+
+    /**
+     * The home a command without a name refers to: the default one, or the
+     * only one the player has
+     *
+     * @return the name, or null if that is ambiguous or the player has none
+     */
+    public String resolveDefaultName(PlayerHomes homes) {
+        if (homes == null || homes.isEmpty()) {
+            return null;
+        }
+        if (homes.contains(defaultName)) {
+            return defaultName;
+        }
+        return homes.size() == 1 ? homes.name(0) : null;
+    }
+
+    /**
+     * Set or move the player's named home to where they stand. A new name
+     * is refused once the player has as many homes as allowed; moving an
+     * existing home always works.
+     *
+     * @param name a name accepted by {@link #normalizeName}
+     */
+    public SetResult setHome(Player player, String name) {
+        if (player == null || player.getLocation() == null || player.getLocation().getWorld() == null) {
+            return SetResult.NOT_LOADED;
+        }
+        // Storage replaces all of a player's homes, so the others must be known
+        if (isLoading(player)) {
+            return SetResult.NOT_LOADED;
+        }
+
         Location loc = player.getLocation();
         Home home = new Home(
                 loc.getWorld().getName(),
@@ -73,41 +363,86 @@ public class HomeService {
                 loc.getPitch()
         );
 
-        homeCache.put(player.getUniqueId(), home);
+        // Refused here, a batch with a home the storage cannot hold would only drop it
+        if (!repository.canStore(home)) {
+            return SetResult.WORLD_NOT_STORABLE;
+        }
 
-        // Save asynchronously if using SQLite repository
-        if (repository instanceof SqliteHomeRepository sqliteRepo) {
-            executorService.submit(() -> {
-                try {
-                    sqliteRepo.saveHome(player.getUniqueId(), home);
-                } catch (Exception e) {
-                    plugin.getLogger().warning("Failed to save home for " + player.getName() + ": " + e.getMessage());
-                }
-            });
+        int max = getMaxHomes();
+        boolean[] refused = new boolean[1];
+        UUID uuid = player.getUniqueId();
+        homeCache.update(uuid, homes -> {
+            if (max >= 0 && !homes.contains(name) && homes.size() >= max) {
+                refused[0] = true;
+                return homes;
+            }
+            return homes.with(name, home);
+        }, (u, updated) -> {
+            if (!refused[0]) {
+                persist(u, updated);
+            }
+        });
+        return refused[0] ? SetResult.LIMIT_REACHED : SetResult.SET;
+    }
+
+    /**
+     * Persisted by the write-behind buffer, latest state wins. Called under
+     * the player's cache lock, so the change feed sees the queued write
+     * before it could apply an older remote state. Queuing never waits for
+     * an I/O lane, whose tasks may need the same lock.
+     */
+    private void persist(UUID uuid, PlayerHomes homes) {
+        if (importing) {
+            changedDuringImport.put(uuid, homes);
+        }
+
+        if (homes.isEmpty()) {
+            writeBehind.delete(uuid);
+        } else {
+            writeBehind.put(uuid, homes);
         }
     }
 
     /**
-     * Check if player has a home
+     * Check if player has any home
      */
     public boolean hasHome(Player player) {
-        return player != null && homeCache.containsKey(player.getUniqueId());
+        return getHomes(player) != null;
+    }
+
+    private PlayerHomes lookup(UUID uuid) {
+        long start = System.nanoTime();
+        PlayerHomes homes = homeCache.get(uuid);
+        metrics.getCacheLookup().record(System.nanoTime() - start);
+        return homes;
     }
 
     /**
-     * Get player's home location
+     * All of the player's homes in a single cache lookup
+     *
+     * @return the homes, or null if the player has none
      */
-    public Location getHome(Player player) {
-        if (player == null) {
-            return null;
-        }
+    public PlayerHomes getHomes(Player player) {
+        return player != null ? lookup(player.getUniqueId()) : null;
+    }
 
-        Home home = homeCache.get(player.getUniqueId());
-        if (home == null) {
-            return null;
-        }
+    /**
+     * Player's named home
+     *
+     * @return the home, or null if the player has none by that name
+     */
+    public Home findHome(Player player, String name) {
+        PlayerHomes homes = getHomes(player);
+        return homes != null ? homes.get(name) : null;
+    }
 
-        World world = Bukkit.getWorld(home.world());
+    /**
+     * Bind a home to its loaded world
+     *
+     * @return the location, or null if the home's world is not loaded
+     */
+    public Location toLocation(Home home) {
+        World world = worlds.get(home.world());
         if (world == null) {
             return null;
         }
@@ -116,67 +451,265 @@ public class HomeService {
     }
 
     /**
-     * Delete player's home
+     * Get the location of player's named home
      */
-    public void deleteHome(Player player) {
+    public Location getHome(Player player, String name) {
+        Home home = findHome(player, name);
+        return home != null ? toLocation(home) : null;
+    }
+
+    /**
+     * Delete player's named home
+     *
+     * @return false if the player has no home by that name
+     */
+    public boolean deleteHome(Player player, String name) {
         if (player == null) {
-            return;
+            return false;
         }
 
-        homeCache.remove(player.getUniqueId());
+        UUID uuid = player.getUniqueId();
+        boolean[] found = new boolean[1];
+        homeCache.update(uuid, homes -> {
+            found[0] = homes.contains(name);
+            return homes.without(name);
+        }, (u, updated) -> {
+            if (found[0]) {
+                persist(u, updated);
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * Name completions for a command argument, from the player's cached
+     * homes
+     */
+    public List<String> completeNames(Player player, String prefix) {
+        PlayerHomes homes = getHomes(player);
+        return homes != null ? homes.namesStartingWith(prefix.toLowerCase(Locale.ROOT)) : List.of();
+    }
 
-        // Delete asynchronously if using SQLite repository
-        if (repository instanceof SqliteHomeRepository sqliteRepo) {
-            executorService.submit(() -> {
-                try {
-                    sqliteRepo.deleteHome(player.getUniqueId());
-                } catch (Exception e) {
-                    plugin.getLogger().warning("Failed to delete home for " + player.getName() + ": " + e.getMessage());
+    /**
+     * Homes in one world whose x/z lie inside the box, per player. Answered
+     * from the cache's spatial index when it holds every home, otherwise
+     * storage is queried and players known to the cache are taken from it.
+     */
+    public CompletableFuture<Map<UUID, PlayerHomes>> findHomes(String world, double minX, double minZ,
+            double maxX, double maxZ) {
+        Map<UUID, PlayerHomes> cached = homeCache.findInBox(world, minX, minZ, maxX, maxZ);
+        if (!homeCache.isLazy() && !homeCache.isWarming()) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        return repository.findInBox(world, minX, minZ, maxX, maxZ).thenApply(stored -> {
+            Map<UUID, PlayerHomes> result = new HashMap<>(cached);
+            stored.forEach((uuid, homes) -> {
+                if (!homeCache.isLoaded(uuid)) {
+                    result.putIfAbsent(uuid, homes);
+                }
+            });
+            return result;
+        });
+    }
+
+    /**
+     * Homes whose x/z lie within the radius of a point
+     */
+    public CompletableFuture<Map<UUID, PlayerHomes>> findHomesNear(String world, double x, double z, double radius) {
+        return findHomes(world, x - radius, z - radius, x + radius, z + radius).thenApply(found -> {
+            found.replaceAll((uuid, homes) -> {
+                PlayerHomes near = homes;
+                for (int i = 0; i < homes.size(); i++) {
+                    double dx = homes.home(i).x() - x;
+                    double dz = homes.home(i).z() - z;
+                    if (dx * dx + dz * dz > radius * radius) {
+                        near = near.without(homes.name(i));
+                    }
+                }
+                return near;
+            });
+            found.values().removeIf(PlayerHomes::isEmpty);
+            return found;
+        });
+    }
+
+    /**
+     * Every home in the world
+     */
+    public CompletableFuture<Map<UUID, PlayerHomes>> findHomesInWorld(String world) {
+        return findHomes(world, -Double.MAX_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
+    }
+
+    /**
+     * Delete every home in the world, e.g. after the world itself was
+     * deleted; the players' homes in other worlds stay. Unsaved changes are
+     * replaced by the remaining homes so the write-behind buffer does not
+     * bring the purged ones back.
+     *
+     * @return future completing with the number of homes deleted in storage
+     */
+    public CompletableFuture<Integer> purgeWorld(String world) {
+        for (Map.Entry<UUID, PlayerHomes> entry : homeCache.findInWorld(world).entrySet()) {
+            UUID uuid = entry.getKey();
+            PlayerHomes purged = entry.getValue();
+            homeCache.update(uuid, homes -> {
+                PlayerHomes kept = homes;
+                for (int i = 0; i < purged.size(); i++) {
+                    kept = kept.without(purged.name(i));
+                }
+                return kept;
+            }, (u, rest) -> {
+                if (writeBehind.hasPending(u)) {
+                    persist(u, rest);
                 }
             });
         }
+        return repository.deleteWorld(world);
+    }
+
+    /**
+     * Whether the eager startup load is still running
+     */
+    public boolean isWarmingUp() {
+        return homeCache.isWarming();
+    }
+
+    /**
+     * Start importing homes from another storage with {@link #importHomes}
+     */
+    public void beginImport() {
+        changedDuringImport.clear();
+        importing = true;
+    }
+
+    /**
+     * Import finished or was aborted
+     */
+    public void endImport() {
+        importing = false;
+        changedDuringImport.clear();
+    }
+
+    /**
+     * Write a batch of migrated homes and make them visible in the cache.
+     * Homes of players who already have some are kept; players who changed
+     * their homes during the import get their own state written again, since
+     * the import may have overwritten or brought back homes.
+     */
+    public CompletableFuture<Void> importHomes(Map<UUID, PlayerHomes> homes) {
+        // Off the writer thread, a full I/O lane must never block it
+        return repository.importBatch(homes).thenRunAsync(() -> {
+            for (Map.Entry<UUID, PlayerHomes> entry : homes.entrySet()) {
+                UUID uuid = entry.getKey();
+                homeCache.putImported(uuid, entry.getValue());
+                // Checked after the put, so a concurrent change is never lost
+                PlayerHomes own = changedDuringImport.get(uuid);
+                if (own != null) {
+                    homeCache.update(uuid, current -> own, this::persist);
+                }
+            }
+        });
     }
 
     /**
-     * Flush and shutdown service gracefully
+     * Write all pending changes now instead of waiting for the write-behind
+     * limits
+     *
+     * @return future completing once the changes are committed
+     */
+    public CompletableFuture<Void> flush() {
+        return writeBehind.flushAll();
+    }
+
+    /**
+     * Flush and shutdown service gracefully. Only changes made since the last
+     * successful flush are written, within performance.shutdown-budget-ms.
      */
     public void shutdown() {
         isShuttingDown = true;
 
+        if (changeFeed != null) {
+            changeFeed.stop();
+        }
+        if (scrubber != null) {
+            scrubber.stop();
+        }
+
         plugin.getLogger().info("Shutting down HomeService...");
+        long budget = Math.max(100L, plugin.getConfig().getLong("performance.shutdown-budget-ms", 5000L));
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget);
 
-        // Save all homes synchronously on shutdown
-        try {
-            Map<UUID, Home> snapshot = new HashMap<>(homeCache);
-            repository.saveAll(snapshot);
-            plugin.getLogger().info("Saved " + snapshot.size() + " homes");
-        } catch (Exception e) {
-            plugin.getLogger().severe("Failed to save homes on shutdown: " + e.getMessage());
-        }
+        // The pending buffer is exactly the delta since the last flush
+        int pending = writeBehind.getPendingCount();
+        writeBehind.close(budget, TimeUnit.MILLISECONDS);
+        plugin.getLogger().info("Flushed " + (pending - writeBehind.getPendingCount()) + " pending home changes");
 
-        // Shutdown executor service
-        executorService.shutdown();
-        try {
-            if (!executorService.awaitTermination(5, TimeUnit.SECONDS)) {
-                executorService.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            executorService.shutdownNow();
-            Thread.currentThread().interrupt();
+        // Let the I/O lanes drain within what is left of the budget
+        long remaining = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+        if (!ioExecutor.shutdown(remaining, TimeUnit.MILLISECONDS)) {
+            plugin.getLogger().warning("I/O lanes did not drain in time, " + ioExecutor.getQueueDepth() + " tasks dropped");
         }
 
-        // Close database connection if using SQLite
-        if (repository instanceof SqliteHomeRepository sqliteRepo) {
-            sqliteRepo.close();
-        }
+        // Close database connections and files
+        repository.close();
 
         plugin.getLogger().info("HomeService shutdown complete");
     }
 
     /**
-     * Get cache statistics
+     * Loaded worlds homes are resolved against, to be registered as a listener
+     */
+    public WorldRegistry getWorldRegistry() {
+        return worlds;
+    }
+
+    /**
+     * Number of players whose homes are cached
      */
     public int getCachedHomesCount() {
         return homeCache.size();
     }
+
+    /**
+     * Cache lookups answered from memory
+     */
+    public long getCacheHits() {
+        return homeCache.getHits();
+    }
+
+    /**
+     * Cache lookups for players that were not loaded
+     */
+    public long getCacheMisses() {
+        return homeCache.getMisses();
+    }
+
+    /**
+     * Offline entries dropped from the lazy cache
+     */
+    public long getCacheEvictions() {
+        return homeCache.getEvictions();
+    }
+
+    /**
+     * Number of players with changes not yet written to storage
+     */
+    public int getPendingWritesCount() {
+        return writeBehind.getPendingCount();
+    }
+
+    /**
+     * Number of I/O tasks waiting in the lanes
+     */
+    public int getIoQueueDepth() {
+        return ioExecutor.getQueueDepth();
+    }
+
+    /**
+     * Highest I/O queue depth seen on a single lane
+     */
+    public int getIoMaxQueueDepth() {
+        return ioExecutor.getMaxQueueDepth();
+    }
 }
@@ -0,0 +1,225 @@
+package com.example.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-world grid of home owners, maintained by {@link HomeCache} next to the
+ * homes themselves. A player is listed once per home. The grid is keyed by
+ * 64x64 block columns, so a radius or box query only looks at the cells it
+ * overlaps and purging a world does not scan other worlds. Cells hold bare
+ * UUID bits, about 16 bytes per home.
+ * <p>
+ * Positions are not stored, callers check the candidates against the cache.
+ * Callers order changes of one player, the index itself is thread-safe.
+ */
+public class HomeSpatialIndex {
+
+    private static final int CELL_SHIFT = 6;
+
+    /**
+     * Owners of the homes in one cell
+     */
+    private static final class Cell {
+
+        final int cx;
+        final int cz;
+        long[] uuids = new long[4];
+        int size;
+
+        Cell(int cx, int cz) {
+            this.cx = cx;
+            this.cz = cz;
+        }
+
+        void add(long msb, long lsb) {
+            if (size * 2 + 2 > uuids.length) {
+                uuids = Arrays.copyOf(uuids, uuids.length * 2);
+            }
+            uuids[size * 2] = msb;
+            uuids[size * 2 + 1] = lsb;
+            size++;
+        }
+
+        boolean remove(long msb, long lsb) {
+            for (int i = 0; i < size; i++) {
+                if (uuids[i * 2] == msb && uuids[i * 2 + 1] == lsb) {
+                    // Order does not matter, the last entry fills the hole
+                    size--;
+                    uuids[i * 2] = uuids[size * 2];
+                    uuids[i * 2 + 1] = uuids[size * 2 + 1];
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void collect(List<UUID> out) {
+            for (int i = 0; i < size; i++) {
+                out.add(new UUID(uuids[i * 2], uuids[i * 2 + 1]));
+            }
+        }
+    }
+
+    /**
+     * Cells of one world; guarded by itself
+     */
+    private static final class Grid {
+
+        final LongMap<Cell> cells = new LongMap<>();
+        int size;
+    }
+
+    private final Map<String, Grid> worlds = new ConcurrentHashMap<>();
+
+    private static int cell(double coordinate) {
+        return (int) Math.floor(coordinate) >> CELL_SHIFT;
+    }
+
+    private static long key(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xffffffffL);
+    }
+
+    public void add(UUID uuid, Home home) {
+        Grid grid = worlds.computeIfAbsent(home.world(), w -> new Grid());
+        int cx = cell(home.x());
+        int cz = cell(home.z());
+        synchronized (grid) {
+            Cell cell = grid.cells.get(key(cx, cz));
+            if (cell == null) {
+                cell = new Cell(cx, cz);
+                grid.cells.put(key(cx, cz), cell);
+            }
+            cell.add(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            grid.size++;
+        }
+    }
+
+    public void remove(UUID uuid, Home home) {
+        Grid grid = worlds.get(home.world());
+        if (grid == null) {
+            return;
+        }
+
+        long key = key(cell(home.x()), cell(home.z()));
+        synchronized (grid) {
+            Cell cell = grid.cells.get(key);
+            if (cell != null && cell.remove(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits())) {
+                grid.size--;
+                if (cell.size == 0) {
+                    grid.cells.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Follow a changed home; either side may be null
+     */
+    public void move(UUID uuid, Home from, Home to) {
+        if (from != null && to != null && from.world().equals(to.world())
+                && cell(from.x()) == cell(to.x()) && cell(from.z()) == cell(to.z())) {
+            return;
+        }
+
+        if (from != null) {
+            remove(uuid, from);
+        }
+        if (to != null) {
+            add(uuid, to);
+        }
+    }
+
+    /**
+     * Follow a player's changed set of homes; either side may be null. Homes
+     * are matched by name, unchanged ones are not touched.
+     */
+    public void move(UUID uuid, PlayerHomes from, PlayerHomes to) {
+        if (from != null) {
+            for (int i = 0; i < from.size(); i++) {
+                move(uuid, from.home(i), to != null ? to.get(from.name(i)) : null);
+            }
+        }
+        if (to != null) {
+            for (int i = 0; i < to.size(); i++) {
+                if (from == null || !from.contains(to.name(i))) {
+                    add(uuid, to.home(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Owners of homes in the cells overlapping the box, a superset of the
+     * homes inside it. Players with several homes there appear repeatedly.
+     */
+    public List<UUID> candidates(String world, double minX, double minZ, double maxX, double maxZ) {
+        List<UUID> out = new ArrayList<>();
+        Grid grid = worlds.get(world);
+        if (grid == null) {
+            return out;
+        }
+
+        int minCx = cell(minX);
+        int minCz = cell(minZ);
+        int maxCx = cell(maxX);
+        int maxCz = cell(maxZ);
+        long area = ((long) maxCx - minCx + 1) * ((long) maxCz - minCz + 1);
+
+        synchronized (grid) {
+            if (area > grid.cells.size()) {
+                // Box larger than the occupied part of the world, walk the cells instead
+                grid.cells.forEachValue(cell -> {
+                    if (cell.cx >= minCx && cell.cx <= maxCx && cell.cz >= minCz && cell.cz <= maxCz) {
+                        cell.collect(out);
+                    }
+                });
+                return out;
+            }
+
+            for (int cx = minCx; cx <= maxCx; cx++) {
+                for (int cz = minCz; cz <= maxCz; cz++) {
+                    Cell cell = grid.cells.get(key(cx, cz));
+                    if (cell != null) {
+                        cell.collect(out);
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Owners of every home in the world
+     */
+    public List<UUID> all(String world) {
+        List<UUID> out = new ArrayList<>();
+        Grid grid = worlds.get(world);
+        if (grid != null) {
+            synchronized (grid) {
+                grid.cells.forEachValue(cell -> cell.collect(out));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Number of indexed homes per world, sorted by world name
+     */
+    public Map<String, Integer> counts() {
+        Map<String, Integer> counts = new TreeMap<>();
+        worlds.forEach((world, grid) -> {
+            synchronized (grid) {
+                if (grid.size > 0) {
+                    counts.put(world, grid.size);
+                }
+            }
+        });
+        return counts;
+    }
+}
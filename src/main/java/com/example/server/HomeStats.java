@@ -0,0 +1,181 @@
+package com.example.server;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics of {@link HomeMetrics} and {@link HomeService} in one place, for
+ * /homestats and JMX
+ */
+public class HomeStats implements HomeStatsMXBean {
+
+    private static final String OBJECT_NAME = "com.example.server:type=HomeStats";
+
+    private final HomeMetrics metrics;
+    private final HomeService homeService;
+    // Null when spillover is off
+    private final SpilloverHomeRepository spillover;
+
+    public HomeStats(HomeMetrics metrics, HomeService homeService, SpilloverHomeRepository spillover) {
+        this.metrics = metrics;
+        this.homeService = homeService;
+        this.spillover = spillover;
+    }
+
+    /**
+     * Register with the platform MBean server, replacing an instance left
+     * over from a previous plugin load
+     */
+    public void register(Logger logger) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            logger.warning("Failed to register " + OBJECT_NAME + ": " + e.getMessage());
+        }
+    }
+
+    public void unregister(Logger logger) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+        } catch (InstanceNotFoundException ignored) {
+            // Registration failed earlier
+        } catch (JMException e) {
+            logger.warning("Failed to unregister " + OBJECT_NAME + ": " + e.getMessage());
+        }
+    }
+
+    public double getSecondsSinceReset() {
+        return metrics.getSecondsSinceReset();
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getLatencies() {
+        return metrics.getLatencies();
+    }
+
+    @Override
+    public int getCachedHomes() {
+        return homeService.getCachedHomesCount();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return homeService.getCacheHits();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return homeService.getCacheMisses();
+    }
+
+    @Override
+    public long getCacheEvictions() {
+        return homeService.getCacheEvictions();
+    }
+
+    @Override
+    public int getPendingWrites() {
+        return homeService.getPendingWritesCount();
+    }
+
+    @Override
+    public int getIoQueueDepth() {
+        return homeService.getIoQueueDepth();
+    }
+
+    @Override
+    public int getIoMaxQueueDepth() {
+        return homeService.getIoMaxQueueDepth();
+    }
+
+    @Override
+    public long getIoRejected() {
+        return metrics.getIoRejected();
+    }
+
+    @Override
+    public long getFailedBatches() {
+        return metrics.getFailedBatches();
+    }
+
+    @Override
+    public double getWriteOutageSeconds() {
+        return metrics.getWriteOutageSeconds();
+    }
+
+    @Override
+    public double getHomesWrittenPerSecond() {
+        return metrics.getHomesWritten() / Math.max(1e-3, metrics.getSecondsSinceReset());
+    }
+
+    @Override
+    public double getHomesDeletedPerSecond() {
+        return metrics.getHomesDeleted() / Math.max(1e-3, metrics.getSecondsSinceReset());
+    }
+
+    @Override
+    public long getTeleportWarmupsHidden() {
+        return metrics.getWarmupsHidden();
+    }
+
+    @Override
+    public long getTeleportWarmupsMissed() {
+        return metrics.getWarmupsMissed();
+    }
+
+    @Override
+    public long getRemoteChangesApplied() {
+        return metrics.getRemoteChanges();
+    }
+
+    @Override
+    public long getSpilledChanges() {
+        return metrics.getSpilledChanges();
+    }
+
+    @Override
+    public long getReplayedChanges() {
+        return metrics.getReplayedChanges();
+    }
+
+    @Override
+    public int getSpillPending() {
+        return spillover != null ? spillover.getPendingCount() : 0;
+    }
+
+    @Override
+    public long getSpillBytes() {
+        return spillover != null ? spillover.getSpillBytes() : 0L;
+    }
+
+    @Override
+    public double getReplayLagSeconds() {
+        return spillover != null ? spillover.getReplayLagSeconds() : 0.0;
+    }
+
+    @Override
+    public long getScrubRangesReread() {
+        return metrics.getScrubbedRanges();
+    }
+
+    @Override
+    public long getScrubRepairs() {
+        return metrics.getScrubRepairs();
+    }
+
+    @Override
+    public void reset() {
+        metrics.reset();
+    }
+}
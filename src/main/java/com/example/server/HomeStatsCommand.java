@@ -0,0 +1,98 @@
+package com.example.server;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Команда администратора для просмотра метрик домов: /homestats [reset]
+ */
+public class HomeStatsCommand implements CommandExecutor, TabCompleter {
+
+    private final HomeStats stats;
+
+    public HomeStatsCommand(HomeStats stats) {
+        this.stats = stats;
+    }
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command,
+            @NotNull String label, @NotNull String[] args) {
+        if (args.length > 0 && "reset".equalsIgnoreCase(args[0])) {
+            stats.reset();
+            sender.sendMessage("§aСтатистика сброшена.");
+            return true;
+        }
+
+        sender.sendMessage("§6=== Статистика домов §7(за " + Math.round(stats.getSecondsSinceReset()) + " с)§6 ===");
+        sender.sendMessage("§7Кэш: §f" + stats.getCachedHomes() + " §7домов, попаданий §f" + stats.getCacheHits()
+                + "§7, промахов §f" + stats.getCacheMisses() + "§7, вытеснено §f" + stats.getCacheEvictions());
+        sender.sendMessage("§7Очередь I/O: §f" + stats.getIoQueueDepth() + " §7(макс. §f" + stats.getIoMaxQueueDepth()
+                + "§7), отклонено §f" + stats.getIoRejected() + "§7, не сохранено §f" + stats.getPendingWrites());
+        sender.sendMessage("§7Запись: §f" + format("%.1f", stats.getHomesWrittenPerSecond()) + "/с§7, удаление §f"
+                + format("%.1f", stats.getHomesDeletedPerSecond()) + "/с");
+        if (stats.getWriteOutageSeconds() > 0) {
+            sender.sendMessage("§cЗапись в хранилище не проходит уже " + Math.round(stats.getWriteOutageSeconds())
+                    + " с§7, неудачных пакетов §f" + stats.getFailedBatches());
+        } else if (stats.getFailedBatches() > 0) {
+            sender.sendMessage("§7Неудачных пакетов записи: §f" + stats.getFailedBatches());
+        }
+        long warmups = stats.getTeleportWarmupsHidden() + stats.getTeleportWarmupsMissed();
+        if (warmups > 0) {
+            sender.sendMessage("§7Телепорт: чанки загружены до конца задержки в §f"
+                    + stats.getTeleportWarmupsHidden() + "§7 из §f" + warmups);
+        }
+
+        if (stats.getRemoteChangesApplied() > 0) {
+            sender.sendMessage("§7Синхронизация: применено §f" + stats.getRemoteChangesApplied()
+                    + "§7 изменений с других серверов");
+        }
+
+        if (stats.getSpilledChanges() > 0 || stats.getSpillPending() > 0) {
+            sender.sendMessage("§7Буфер сбоев: записано §f" + stats.getSpilledChanges() + "§7, перенесено в БД §f"
+                    + stats.getReplayedChanges() + "§7, ждут §f" + stats.getSpillPending() + " §7игроков ("
+                    + stats.getSpillBytes() / 1024 + " КБ), отставание §f"
+                    + format("%.1f", stats.getReplayLagSeconds()) + " с");
+        }
+
+        if (stats.getScrubRangesReread() > 0) {
+            sender.sendMessage("§7Сверка с БД: перечитано §f" + stats.getScrubRangesReread()
+                    + "§7 диапазонов, исправлено §f" + stats.getScrubRepairs() + "§7 игроков");
+        }
+
+        for (Map.Entry<String, LatencySnapshot> entry : stats.getLatencies().entrySet()) {
+            LatencySnapshot s = entry.getValue();
+            if (s.getCount() == 0) {
+                continue;
+            }
+
+            sender.sendMessage("§e" + entry.getKey() + "§7: n=§f" + s.getCount()
+                    + " §7(" + format("%.1f", s.getRatePerSecond()) + "/с) ср §f" + duration(s.getMeanMicros())
+                    + " §7p50 §f" + duration(s.getP50Micros())
+                    + " §7p99 §f" + duration(s.getP99Micros())
+                    + " §7p99.9 §f" + duration(s.getP999Micros())
+                    + " §7макс §f" + duration(s.getMaxMicros()));
+        }
+        return true;
+    }
+
+    private static String duration(double micros) {
+        return micros >= 1000 ? format("%.2f мс", micros / 1000) : format("%.0f мкс", micros);
+    }
+
+    private static String format(String pattern, double value) {
+        return String.format(Locale.ROOT, pattern, value);
+    }
+
+    @Override
+    public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command,
+            @NotNull String alias, @NotNull String[] args) {
+        return args.length == 1 && "reset".startsWith(args[0].toLowerCase(Locale.ROOT)) ? List.of("reset") : List.of();
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.server;
+
+import java.util.Map;
+
+/**
+ * JMX view of the home plugin metrics, registered as
+ * com.example.server:type=HomeStats
+ */
+public interface HomeStatsMXBean {
+
+    /**
+     * Latency summaries by operation, in microseconds
+     */
+    Map<String, LatencySnapshot> getLatencies();
+
+    int getCachedHomes();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    long getCacheEvictions();
+
+    int getPendingWrites();
+
+    int getIoQueueDepth();
+
+    int getIoMaxQueueDepth();
+
+    /**
+     * I/O tasks refused because their lane was full
+     */
+    long getIoRejected();
+
+    /**
+     * Write-behind batches that failed and were retried
+     */
+    long getFailedBatches();
+
+    /**
+     * Seconds writes have been failing, 0 while they succeed
+     */
+    double getWriteOutageSeconds();
+
+    double getHomesWrittenPerSecond();
+
+    double getHomesDeletedPerSecond();
+
+    /**
+     * Delayed teleports whose destination was loaded before the delay ended
+     */
+    long getTeleportWarmupsHidden();
+
+    /**
+     * Delayed teleports that still had to wait for chunks
+     */
+    long getTeleportWarmupsMissed();
+
+    /**
+     * Home changes of other servers sharing the storage applied to the cache
+     */
+    long getRemoteChangesApplied();
+
+    /**
+     * Changes written to the spillover journal while the database was slow
+     * or unavailable
+     */
+    long getSpilledChanges();
+
+    /**
+     * Spilled changes that have since been written to the database
+     */
+    long getReplayedChanges();
+
+    /**
+     * Players whose spilled changes the database does not have yet
+     */
+    int getSpillPending();
+
+    long getSpillBytes();
+
+    /**
+     * Seconds the database has been behind the spillover journal
+     */
+    double getReplayLagSeconds();
+
+    /**
+     * UUID ranges the scrubber re-read because cache and database differed
+     */
+    long getScrubRangesReread();
+
+    /**
+     * Players the scrubber brought back in line with the database
+     */
+    long getScrubRepairs();
+
+    /**
+     * Clear the histograms and restart the rate window
+     */
+    void reset();
+}
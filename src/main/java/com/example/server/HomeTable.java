@@ -0,0 +1,41 @@
+package com.example.server;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Thread-safe UUID to player homes storage used by {@link HomeCache}.
+ */
+public interface HomeTable {
+
+    PlayerHomes get(UUID uuid);
+
+    boolean containsKey(UUID uuid);
+
+    void put(UUID uuid, PlayerHomes homes);
+
+    /**
+     * @return true if the homes were stored, false if the key already existed
+     */
+    boolean putIfAbsent(UUID uuid, PlayerHomes homes);
+
+    void remove(UUID uuid);
+
+    void clear();
+
+    int size();
+
+    /**
+     * Copy of all entries
+     */
+    Map<UUID, PlayerHomes> snapshot();
+
+    /**
+     * Hand the entries whose most significant UUID bits pass the filter to
+     * the action, without copying the table. Only matching entries are
+     * decoded. The action must not modify the table.
+     */
+    void forEach(LongPredicate msbFilter, BiConsumer<UUID, PlayerHomes> action);
+}
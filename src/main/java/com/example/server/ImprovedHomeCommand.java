@@ -1,98 +1,152 @@
 package com.example.server;
 
-import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * Improved Home command with teleport delay and cooldown
+ * Improved Home command with teleport delay and cooldown: /home [name]. The
+ * destination chunks are loaded asynchronously during the delay and the
+ * teleport itself is asynchronous, so /home never loads chunks on the main
+ * thread. Delays and cooldowns are tracked by the shared
+ * {@link TeleportScheduler}.
  */
-public class ImprovedHomeCommand implements CommandExecutor {
+public class ImprovedHomeCommand implements CommandExecutor, TabCompleter {
 
     private final HomeService homeService;
-    private final JavaPlugin plugin;
-    private final Map<UUID, Long> cooldowns = new HashMap<>();
-    private final Map<UUID, Location> teleportQueue = new HashMap<>();
-
-    public ImprovedHomeCommand(HomeService homeService, JavaPlugin plugin) {
+    private final Messages messages;
+    private final HomeMetrics metrics;
+    private final TeleportScheduler scheduler;
+    private final long cooldownTicks;
+    private final long delayTicks;
+    private final int prefetchRadius;
+
+    public ImprovedHomeCommand(HomeService homeService, JavaPlugin plugin, Messages messages, HomeMetrics metrics,
+            TeleportScheduler scheduler) {
         this.homeService = homeService;
-        this.plugin = plugin;
+        this.messages = messages;
+        this.metrics = metrics;
+        this.scheduler = scheduler;
+        this.cooldownTicks = Math.max(0, plugin.getConfig().getInt("homes.teleport-cooldown", 3)) * 20L;
+        this.delayTicks = Math.max(0, plugin.getConfig().getInt("homes.teleport-delay", 3)) * 20L;
+        this.prefetchRadius = Math.max(0, plugin.getConfig().getInt("homes.prefetch-radius", 1));
     }
 
     @Override
     public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command,
             @NotNull String label, @NotNull String[] args) {
         if (!(sender instanceof Player player)) {
-            sender.sendMessage("Эту команду может использовать только игрок!");
+            messages.send(sender, Message.PLAYERS_ONLY);
+            return false;
+        }
+
+        PlayerHomes homes = homeService.getHomes(player);
+        if (homes == null) {
+            if (homeService.isLoading(player)) {
+                messages.send(player, Message.HOMES_LOADING);
+                return true;
+            }
+            messages.send(player, Message.NO_HOME);
             return false;
         }
 
-        if (!homeService.hasHome(player)) {
-            player.sendMessage("§cУ вас нет сохранённого дома! Используйте /sethome");
+        String name = args.length > 0 ? HomeService.normalizeName(args[0]) : homeService.resolveDefaultName(homes);
+        if (args.length > 0 && name == null) {
+            messages.send(player, Message.INVALID_NAME, HomeService.MAX_NAME_LENGTH);
+            return false;
+        }
+        if (name == null) {
+            messages.send(player, Message.HOME_CHOOSE, String.join(", ", homes.names()));
+            return true;
+        }
+
+        Home stored = homes.get(name);
+        if (stored == null) {
+            messages.send(player, Message.NO_HOME_NAMED, name, String.join(", ", homes.names()));
             return false;
         }
 
         // Check cooldown
-        int cooldownSeconds = plugin.getConfig().getInt("homes.teleport-cooldown", 3);
-        if (cooldownSeconds > 0) {
-            long lastTeleport = cooldowns.getOrDefault(player.getUniqueId(), 0L);
-            long timeSince = (System.currentTimeMillis() - lastTeleport) / 1000;
-
-            if (timeSince < cooldownSeconds) {
-                long remaining = cooldownSeconds - timeSince;
-                player.sendMessage("§cПодождите " + remaining + " сек. перед следующей телепортацией");
-                return true;
-            }
+        long cooldownLeft = scheduler.getCooldownTicks(player);
+        if (cooldownLeft > 0) {
+            messages.send(player, Message.COOLDOWN, (cooldownLeft + 19) / 20);
+            return true;
         }
 
-        Location home = homeService.getHome(player);
+        if (scheduler.isWarmingUp(player)) {
+            messages.send(player, Message.TELEPORT_PENDING);
+            return true;
+        }
+
+        Location home = homeService.toLocation(stored);
         if (home == null) {
-            player.sendMessage("§cОшибка при загрузке дома! Мир может быть удалён.");
+            messages.send(player, Message.WORLD_NOT_FOUND, stored.world());
             return false;
         }
 
         // Teleport delay
-        int delaySeconds = plugin.getConfig().getInt("homes.teleport-delay", 3);
-        if (delaySeconds > 0) {
-            Location startLocation = player.getLocation().clone();
-            teleportQueue.put(player.getUniqueId(), startLocation);
-
-            player.sendMessage("§aТелепортация через " + delaySeconds + " сек. Не двигайтесь!");
-
-            Bukkit.getScheduler().runTaskLater(plugin, () -> {
-                if (!teleportQueue.containsKey(player.getUniqueId())) {
-                    return; // Already cancelled
-                }
-
-                Location currentLocation = player.getLocation();
-                if (currentLocation.distanceSquared(startLocation) > 0.1) {
-                    player.sendMessage("§cТелепортация отменена! Вы сдвинулись с места.");
-                    teleportQueue.remove(player.getUniqueId());
-                    return;
-                }
-
-                executeTeleport(player, home);
-                teleportQueue.remove(player.getUniqueId());
-            }, delaySeconds * 20L);
+        if (delayTicks > 0) {
+            // Загружаем чанки назначения асинхронно, пока игрок ждёт
+            CompletableFuture<Void> prefetch = prefetch(home);
+
+            messages.send(player, Message.DELAY, delayTicks / 20);
+            scheduler.startWarmup(player, delayTicks, () -> {
+                metrics.recordWarmup(prefetch.isDone());
+                executeTeleport(player, home, name);
+            }, () -> messages.send(player, Message.DELAY_CANCELLED));
         } else {
-            executeTeleport(player, home);
+            executeTeleport(player, home, name);
         }
 
         return true;
     }
 
-    private void executeTeleport(Player player, Location home) {
-        player.teleport(home);
-        player.sendMessage("§aВы телепортировались домой!");
-        cooldowns.put(player.getUniqueId(), System.currentTimeMillis());
+    /**
+     * Асинхронная загрузка (или генерация) чанков вокруг точки назначения
+     */
+    private CompletableFuture<Void> prefetch(Location home) {
+        World world = home.getWorld();
+        int chunkX = home.getBlockX() >> 4;
+        int chunkZ = home.getBlockZ() >> 4;
+
+        List<CompletableFuture<Chunk>> loads = new ArrayList<>();
+        for (int dx = -prefetchRadius; dx <= prefetchRadius; dx++) {
+            for (int dz = -prefetchRadius; dz <= prefetchRadius; dz++) {
+                loads.add(world.getChunkAtAsync(chunkX + dx, chunkZ + dz));
+            }
+        }
+        return CompletableFuture.allOf(loads.toArray(CompletableFuture<?>[]::new));
+    }
+
+    private void executeTeleport(Player player, Location home, String name) {
+        scheduler.startCooldown(player, cooldownTicks);
+        // Недостающие чанки догружаются вне главного потока
+        player.teleportAsync(home).thenAccept(success -> {
+            if (success) {
+                messages.send(player, Message.HOME_TELEPORT, name);
+            } else {
+                messages.send(player, Message.TELEPORT_FAILED);
+            }
+        });
+    }
+
+    @Override
+    public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command,
+            @NotNull String alias, @NotNull String[] args) {
+        if (args.length == 1 && sender instanceof Player player) {
+            return homeService.completeNames(player, args[0]);
+        }
+        return List.of();
     }
 }
@@ -0,0 +1,141 @@
+package com.example.server;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * Repository decorator that records how long each per-player operation takes
+ * until its future completes, including time queued in the backend
+ */
+public class InstrumentedHomeRepository implements HomeRepository {
+
+    private final HomeRepository delegate;
+    private final HomeMetrics metrics;
+
+    public InstrumentedHomeRepository(HomeRepository delegate, HomeMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Map<UUID, PlayerHomes> loadAll() {
+        return delegate.loadAll();
+    }
+
+    @Override
+    public void saveAll(Map<UUID, PlayerHomes> homes) {
+        delegate.saveAll(homes);
+    }
+
+    @Override
+    public CompletableFuture<Long> loadShard(int shard, int shards, BiConsumer<UUID, PlayerHomes> sink) {
+        return delegate.loadShard(shard, shards, sink);
+    }
+
+    @Override
+    public int getLoadParallelism() {
+        return delegate.getLoadParallelism();
+    }
+
+    @Override
+    public CompletableFuture<PlayerHomes> load(UUID uuid) {
+        long start = System.nanoTime();
+        return timed(delegate.load(uuid), metrics.getRepositoryLoad(), start);
+    }
+
+    @Override
+    public CompletableFuture<Void> save(UUID uuid, PlayerHomes homes) {
+        metrics.recordWrites(1, 0);
+        long start = System.nanoTime();
+        return timed(delegate.save(uuid, homes), metrics.getRepositorySave(), start);
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(UUID uuid) {
+        metrics.recordWrites(0, 1);
+        long start = System.nanoTime();
+        return timed(delegate.delete(uuid), metrics.getRepositoryDelete(), start);
+    }
+
+    @Override
+    public CompletableFuture<Void> saveBatch(Map<UUID, PlayerHomes> upserts, Set<UUID> deletes) {
+        metrics.recordWrites(upserts.size(), deletes.size());
+        long start = System.nanoTime();
+        return timed(delegate.saveBatch(upserts, deletes), metrics.getRepositoryBatch(), start);
+    }
+
+    @Override
+    public CompletableFuture<Void> importBatch(Map<UUID, PlayerHomes> homes) {
+        metrics.recordWrites(homes.size(), 0);
+        long start = System.nanoTime();
+        return timed(delegate.importBatch(homes), metrics.getRepositoryBatch(), start);
+    }
+
+    private static <T> CompletableFuture<T> timed(CompletableFuture<T> future, LatencyHistogram histogram, long start) {
+        return future.whenComplete((result, error) -> histogram.record(System.nanoTime() - start));
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, PlayerHomes>> findInBox(String world, double minX, double minZ,
+            double maxX, double maxZ) {
+        return delegate.findInBox(world, minX, minZ, maxX, maxZ);
+    }
+
+    @Override
+    public CompletableFuture<Integer> deleteWorld(String world) {
+        return delegate.deleteWorld(world);
+    }
+
+    @Override
+    public boolean supportsChangeFeed() {
+        return delegate.supportsChangeFeed();
+    }
+
+    @Override
+    public long getLastChange() {
+        return delegate.getLastChange();
+    }
+
+    @Override
+    public CompletableFuture<HomeChange.Page> readChanges(long afterSeq, int limit) {
+        return delegate.readChanges(afterSeq, limit);
+    }
+
+    @Override
+    public CompletableFuture<Integer> pruneChanges(long maxAgeSeconds) {
+        return delegate.pruneChanges(maxAgeSeconds);
+    }
+
+    @Override
+    public boolean supportsRangeHashes() {
+        return delegate.supportsRangeHashes();
+    }
+
+    @Override
+    public CompletableFuture<HomeRangeHashes.Node[]> rangeHashes(String prefix) {
+        return delegate.rangeHashes(prefix);
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, PlayerHomes>> loadRange(String prefix) {
+        return delegate.loadRange(prefix);
+    }
+
+    @Override
+    public boolean canStore(Home home) {
+        return delegate.canStore(home);
+    }
+
+    @Override
+    public boolean supportsFastLoad() {
+        return delegate.supportsFastLoad();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.server;
+
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Key-striped executor: every key is hashed to one serial lane, so tasks for
+ * the same player always run in submission order while different players are
+ * processed in parallel. Lanes have bounded queues; a submission to a full
+ * lane is rejected rather than waited for, since the submitter may be the main
+ * thread or hold a lock a lane task needs.
+ */
+public class KeyedExecutor {
+
+    private final Logger logger;
+    private final HomeMetrics metrics;
+    private final Lane[] lanes;
+    private volatile boolean running = true;
+
+    /**
+     * @param metrics receives the queue wait of every task and counts
+     *                rejected submissions
+     */
+    public KeyedExecutor(Logger logger, String name, int parallelism, int queueCapacity, HomeMetrics metrics) {
+        this.logger = logger;
+        this.metrics = metrics;
+        this.lanes = new Lane[Math.max(1, parallelism)];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(name + "-" + i, Math.max(1, queueCapacity));
+            lanes[i].thread.start();
+        }
+    }
+
+    /**
+     * Number of serial lanes
+     */
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * Lane that serves the given key
+     */
+    public int laneFor(UUID key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return Math.floorMod(h, lanes.length);
+    }
+
+    /**
+     * Run a task after all previously submitted tasks for the same key
+     *
+     * @throws RejectedExecutionException if the key's lane is full or the
+     *                                    executor is shut down
+     */
+    public void execute(UUID key, Runnable task) {
+        execute(laneFor(key), task);
+    }
+
+    /**
+     * Run a task on a specific lane. Never blocks: a full lane rejects the
+     * task, and the caller retries later or gives up.
+     *
+     * @throws RejectedExecutionException if the lane is full or the executor
+     *                                    is shut down
+     */
+    public void execute(int lane, Runnable task) {
+        submit(lane, task, 0L);
+    }
+
+    /**
+     * Run a task on a specific lane, waiting up to the timeout for space. Only
+     * for shutdown, where the caller has nothing else to do.
+     *
+     * @throws RejectedExecutionException if the lane is still full after the
+     *                                    timeout or the executor is shut down
+     */
+    public void execute(int lane, Runnable task, long timeout, TimeUnit unit) {
+        submit(lane, task, unit.toNanos(timeout));
+    }
+
+    private void submit(int lane, Runnable task, long timeoutNanos) {
+        if (!running) {
+            throw new RejectedExecutionException("Executor is shut down");
+        }
+
+        long enqueuedAt = System.nanoTime();
+        Runnable timed = () -> {
+            metrics.getIoQueueWait().record(System.nanoTime() - enqueuedAt);
+            task.run();
+        };
+
+        Lane target = lanes[lane];
+        boolean queued;
+        try {
+            queued = timeoutNanos > 0
+                    ? target.queue.offer(timed, timeoutNanos, TimeUnit.NANOSECONDS)
+                    : target.queue.offer(timed);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            // Lane fell behind; waiting here could stall the server
+            metrics.recordIoRejected();
+            throw new RejectedExecutionException("I/O lane " + lane + " is full");
+        }
+        target.recordDepth();
+    }
+
+    /**
+     * Total number of queued tasks across all lanes
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Lane lane : lanes) {
+            depth += lane.queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * Highest queue depth observed on any single lane
+     */
+    public int getMaxQueueDepth() {
+        int max = 0;
+        for (Lane lane : lanes) {
+            max = Math.max(max, lane.maxDepth);
+        }
+        return max;
+    }
+
+    /**
+     * Stop accepting tasks and let the lanes drain their queues
+     *
+     * @return true if all lanes finished within the timeout
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) {
+        running = false;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean drained = true;
+
+        for (Lane lane : lanes) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            try {
+                lane.thread.join(Math.max(1L, remaining));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (lane.thread.isAlive()) {
+                lane.thread.interrupt();
+                drained = false;
+            }
+        }
+
+        return drained;
+    }
+
+    private final class Lane implements Runnable {
+
+        private final BlockingQueue<Runnable> queue;
+        private final Thread thread;
+        private volatile int maxDepth;
+
+        private Lane(String name, int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        private void recordDepth() {
+            int depth = queue.size();
+            if (depth > maxDepth) {
+                maxDepth = depth;
+            }
+        }
+
+        @Override
+        public void run() {
+            while (running || !queue.isEmpty()) {
+                Runnable task;
+                try {
+                    task = queue.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                if (task == null) {
+                    continue;
+                }
+
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    logger.log(Level.SEVERE, "Task failed on " + thread.getName(), t);
+                }
+            }
+        }
+    }
+}
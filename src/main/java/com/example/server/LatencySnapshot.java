@@ -0,0 +1,61 @@
+package com.example.server;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Point-in-time summary of a {@link LatencyHistogram}. Durations are in
+ * microseconds. A JavaBean so it can be exposed over JMX.
+ */
+public class LatencySnapshot {
+
+    private final long count;
+    private final double ratePerSecond;
+    private final double meanMicros;
+    private final double p50Micros;
+    private final double p99Micros;
+    private final double p999Micros;
+    private final double maxMicros;
+
+    @ConstructorProperties({"count", "ratePerSecond", "meanMicros", "p50Micros", "p99Micros", "p999Micros", "maxMicros"})
+    public LatencySnapshot(long count, double ratePerSecond, double meanMicros,
+            double p50Micros, double p99Micros, double p999Micros, double maxMicros) {
+        this.count = count;
+        this.ratePerSecond = ratePerSecond;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.p999Micros = p999Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Operations per second since the metrics were last reset
+     */
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    public double getMeanMicros() {
+        return meanMicros;
+    }
+
+    public double getP50Micros() {
+        return p50Micros;
+    }
+
+    public double getP99Micros() {
+        return p99Micros;
+    }
+
+    public double getP999Micros() {
+        return p999Micros;
+    }
+
+    public double getMaxMicros() {
+        return maxMicros;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.server;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Default home table backed by a {@link ConcurrentHashMap}.
+ */
+public class MapHomeTable implements HomeTable {
+
+    private final Map<UUID, PlayerHomes> homes = new ConcurrentHashMap<>();
+
+    @Override
+    public PlayerHomes get(UUID uuid) {
+        return homes.get(uuid);
+    }
+
+    @Override
+    public boolean containsKey(UUID uuid) {
+        return homes.containsKey(uuid);
+    }
+
+    @Override
+    public void put(UUID uuid, PlayerHomes homes) {
+        this.homes.put(uuid, homes);
+    }
+
+    @Override
+    public boolean putIfAbsent(UUID uuid, PlayerHomes homes) {
+        return this.homes.putIfAbsent(uuid, homes) == null;
+    }
+
+    @Override
+    public void remove(UUID uuid) {
+        homes.remove(uuid);
+    }
+
+    @Override
+    public void clear() {
+        homes.clear();
+    }
+
+    @Override
+    public int size() {
+        return homes.size();
+    }
+
+    @Override
+    public Map<UUID, PlayerHomes> snapshot() {
+        return Map.copyOf(homes);
+    }
+
+    @Override
+    public void forEach(LongPredicate msbFilter, BiConsumer<UUID, PlayerHomes> action) {
+        homes.forEach((uuid, playerHomes) -> {
+            if (msbFilter.test(uuid.getMostSignificantBits())) {
+                action.accept(uuid, playerHomes);
+            }
+        });
+    }
+}
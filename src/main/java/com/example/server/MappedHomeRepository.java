@@ -0,0 +1,745 @@
+package com.example.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+/**
+ * Binary repository that keeps every home as a fixed-size record in a
+ * memory-mapped file. The record area is an open-addressing hash table keyed
+ * by UUID and home name, so an update touches the player's records in place
+ * without any parsing, and loading is a linear scan of the mapped file.
+ * Records are hashed by UUID alone, so all homes of a player sit on one probe
+ * path and loading a player reads one run of adjacent records.
+ * <p>
+ * Layout of homes.bin: a 4 KiB header (magic, version, capacity, counts and
+ * the interned world name table) followed by {@code capacity} 72-byte
+ * records: UUID (2 longs), state, name length, world id, x/y/z doubles,
+ * yaw/pitch floats, name (up to 16 bytes). Version 1 files, with 64-byte
+ * records of one unnamed home per player, are converted on open.
+ * <p>
+ * With durability immediate or group every batch forces the touched pages
+ * to disk, group commit merges the batches queued on the writer first. With
+ * periodic, batches only update the mapping and the file is forced every
+ * durability.checkpoint-interval-ms.
+ */
+public class MappedHomeRepository implements HomeRepository {
+
+    private static final int MAGIC = 0x484F4D45; // "HOME"
+    private static final int VERSION = 2;
+    // One home per player, no names
+    private static final int VERSION_SINGLE_HOME = 1;
+    private static final int SINGLE_HOME_RECORD_SIZE = 64;
+
+    private static final int HEADER_SIZE = 4096;
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_CAPACITY = 8;
+    private static final int H_COUNT = 12;
+    private static final int H_TOMBSTONES = 16;
+    private static final int H_WORLD_COUNT = 20;
+    private static final int WORLD_TABLE_OFFSET = 64;
+    private static final int WORLD_SLOT_SIZE = 64;
+    private static final int MAX_WORLDS = (HEADER_SIZE - WORLD_TABLE_OFFSET) / WORLD_SLOT_SIZE;
+
+    private static final int RECORD_SIZE = 72;
+    private static final int R_MSB = 0;
+    private static final int R_LSB = 8;
+    private static final int R_STATE = 16;
+    private static final int R_NAME_LENGTH = 17;
+    private static final int R_WORLD = 20;
+    private static final int R_X = 24;
+    private static final int R_Y = 32;
+    private static final int R_Z = 40;
+    private static final int R_YAW = 48;
+    private static final int R_PITCH = 52;
+    private static final int R_NAME = 56;
+    private static final int MAX_NAME_BYTES = RECORD_SIZE - R_NAME;
+
+    private static final byte EMPTY = 0;
+    private static final byte USED = 1;
+    private static final byte DELETED = 2;
+
+    private static final int MIN_CAPACITY = 1024;
+    private static final double MAX_LOAD = 0.7;
+    // Load factor a table is sized for when it is rebuilt
+    private static final double REBUILD_LOAD = 0.5;
+
+    private final JavaPlugin plugin;
+    private final File file;
+    private final Durability durability;
+    private final ScheduledExecutorService writeExecutor;
+    // Merges batches waiting for the writer, only with durability group
+    private final GroupCommit groupCommit;
+
+    // All state below is guarded by this
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int count;
+    private int tombstones;
+    // Changed since the last force, periodic durability only
+    private boolean dirty;
+    private final List<String> worlds = new ArrayList<>();
+    // Also read without the lock by canStore
+    private final Map<String, Integer> worldIds = new ConcurrentHashMap<>();
+
+    public MappedHomeRepository(JavaPlugin plugin) {
+        this.plugin = plugin;
+
+        if (!plugin.getDataFolder().exists()) {
+            plugin.getDataFolder().mkdirs();
+        }
+
+        this.file = new File(plugin.getDataFolder(), "homes.bin");
+        this.durability = Durability.fromConfig(plugin.getConfig());
+        this.writeExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "HomeRepository-Binary-Write");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.groupCommit = durability == Durability.GROUP
+                ? new GroupCommit(writeExecutor, this::commitGroup)
+                : null;
+
+        if (durability == Durability.PERIODIC) {
+            long interval = Math.max(10L, plugin.getConfig().getLong("durability.checkpoint-interval-ms", 1000L));
+            writeExecutor.scheduleWithFixedDelay(this::sync, interval, interval, TimeUnit.MILLISECONDS);
+        }
+
+        try {
+            synchronized (this) {
+                open();
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to open homes.bin: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Map the file, creating an empty table if it does not exist yet
+     */
+    private void open() throws IOException {
+        if (!file.exists() || file.length() < HEADER_SIZE) {
+            create(file, MIN_CAPACITY, List.of()).close();
+        }
+
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        int version = header.getInt(H_VERSION);
+        if (header.getInt(H_MAGIC) != MAGIC || (version != VERSION && version != VERSION_SINGLE_HOME)) {
+            channel.close();
+            throw new IOException("homes.bin has an unknown format");
+        }
+
+        capacity = header.getInt(H_CAPACITY);
+        if (capacity < MIN_CAPACITY || Integer.bitCount(capacity) != 1) {
+            channel.close();
+            throw new IOException("homes.bin has an invalid capacity " + capacity);
+        }
+        readWorldTable(header);
+        if (version == VERSION_SINGLE_HOME) {
+            convertSingleHomes();
+            open();
+            return;
+        }
+
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        recount();
+    }
+
+    /**
+     * Count used and deleted records from their state bytes. The header
+     * counts are only written at the end of a batch, so after a crash they
+     * may not match the records; a table that believes it has free slots
+     * it does not have would fill up completely.
+     */
+    private void recount() {
+        count = 0;
+        tombstones = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            byte state = buffer.get(offset(slot) + R_STATE);
+            if (state == USED) {
+                count++;
+            } else if (state == DELETED) {
+                tombstones++;
+            }
+        }
+
+        if (count != buffer.getInt(H_COUNT) || tombstones != buffer.getInt(H_TOMBSTONES)) {
+            plugin.getLogger().warning("homes.bin header counts did not match its records, the last write was "
+                    + "probably interrupted; using " + count + " homes and " + tombstones + " deleted records");
+            writeCounts();
+        }
+    }
+
+    private void readWorldTable(MappedByteBuffer header) {
+        worlds.clear();
+        worldIds.clear();
+        int worldCount = header.getInt(H_WORLD_COUNT);
+        for (int i = 0; i < worldCount; i++) {
+            int pos = WORLD_TABLE_OFFSET + i * WORLD_SLOT_SIZE;
+            byte[] name = new byte[header.get(pos) & 0xFF];
+            header.get(pos + 1, name);
+            String world = new String(name, StandardCharsets.UTF_8);
+            worlds.add(world);
+            worldIds.put(world, i);
+        }
+    }
+
+    /**
+     * Rewrite a version 1 file, whose records have no name, with every home
+     * named {@value PlayerHomes#DEFAULT_NAME}. The old file is only replaced
+     * once the new one is complete.
+     */
+    private void convertSingleHomes() throws IOException {
+        Map<UUID, PlayerHomes> homes = new HashMap<>();
+        MappedByteBuffer old = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                HEADER_SIZE + (long) capacity * SINGLE_HOME_RECORD_SIZE);
+        for (int slot = 0; slot < capacity; slot++) {
+            int off = HEADER_SIZE + slot * SINGLE_HOME_RECORD_SIZE;
+            if (old.get(off + R_STATE) == USED) {
+                homes.put(new UUID(old.getLong(off + R_MSB), old.getLong(off + R_LSB)),
+                        PlayerHomes.of(PlayerHomes.DEFAULT_NAME, readHome(old, off)));
+            }
+        }
+        channel.close();
+        channel = null;
+
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        fill(tmp, homes, capacityFor(homes.size()));
+        replaceFile(tmp);
+        plugin.getLogger().info("Converted homes.bin to named homes (" + homes.size() + " players)");
+    }
+
+    /**
+     * Create an empty table file with the given capacity and world table
+     */
+    private static FileChannel create(File target, int capacity, List<String> worldTable) throws IOException {
+        FileChannel ch = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        buf.putInt(H_MAGIC, MAGIC);
+        buf.putInt(H_VERSION, VERSION);
+        buf.putInt(H_CAPACITY, capacity);
+        buf.putInt(H_COUNT, 0);
+        buf.putInt(H_TOMBSTONES, 0);
+        buf.putInt(H_WORLD_COUNT, worldTable.size());
+        for (int i = 0; i < worldTable.size(); i++) {
+            writeWorldName(buf, i, worldTable.get(i));
+        }
+        buf.force();
+        return ch;
+    }
+
+    private static void writeWorldName(MappedByteBuffer buf, int id, String world) {
+        byte[] name = world.getBytes(StandardCharsets.UTF_8);
+        int pos = WORLD_TABLE_OFFSET + id * WORLD_SLOT_SIZE;
+        buf.put(pos, (byte) name.length);
+        buf.put(pos + 1, name);
+    }
+
+    private static int hash(long msb, long lsb) {
+        long h = msb ^ lsb;
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        return (int) h;
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    private boolean isOwner(int off, long msb, long lsb) {
+        return buffer.getLong(off + R_MSB) == msb && buffer.getLong(off + R_LSB) == lsb;
+    }
+
+    private boolean hasName(int off, byte[] name) {
+        if ((buffer.get(off + R_NAME_LENGTH) & 0xFF) != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (buffer.get(off + R_NAME + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String readName(int off) {
+        byte[] name = new byte[buffer.get(off + R_NAME_LENGTH) & 0xFF];
+        buffer.get(off + R_NAME, name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Slot that already holds the player's named home, or the first free one
+     * on the player's probe path
+     */
+    private int slotForInsert(long msb, long lsb, byte[] name) {
+        int mask = capacity - 1;
+        int firstFree = -1;
+        for (int i = hash(msb, lsb) & mask, probes = 0; probes < capacity; i = (i + 1) & mask, probes++) {
+            int off = offset(i);
+            byte state = buffer.get(off + R_STATE);
+            if (state == EMPTY) {
+                return firstFree >= 0 ? firstFree : i;
+            }
+            if (state == DELETED) {
+                if (firstFree < 0) {
+                    firstFree = i;
+                }
+            } else if (isOwner(off, msb, lsb) && hasName(off, name)) {
+                return i;
+            }
+        }
+        return firstFree;
+    }
+
+    /**
+     * The world table has room for {@value #MAX_WORLDS} names of up to 63
+     * bytes. Answers without the lock, so the main thread never waits for a
+     * sync; a world added concurrently may still be refused on write.
+     */
+    @Override
+    public boolean canStore(Home home) {
+        return worldIds.containsKey(home.world())
+                || (worldIds.size() < MAX_WORLDS
+                        && home.world().getBytes(StandardCharsets.UTF_8).length < WORLD_SLOT_SIZE);
+    }
+
+    /**
+     * The player's homes without those the file cannot hold; a world that
+     * does not fit is a permanent error, so retrying the batch cannot help
+     */
+    private PlayerHomes storable(UUID uuid, PlayerHomes homes) {
+        PlayerHomes kept = homes;
+        // Worlds the player's earlier homes take, they are only added by put
+        Set<String> added = new HashSet<>();
+        for (int i = 0; i < homes.size(); i++) {
+            Home home = homes.home(i);
+            String world = home.world();
+            boolean fits = worldIds.containsKey(world) || added.contains(world)
+                    || (worldIds.size() + added.size() < MAX_WORLDS
+                            && world.getBytes(StandardCharsets.UTF_8).length < WORLD_SLOT_SIZE);
+            if (fits && homes.name(i).getBytes(StandardCharsets.UTF_8).length <= MAX_NAME_BYTES) {
+                if (!worldIds.containsKey(world)) {
+                    added.add(world);
+                }
+            } else {
+                plugin.getLogger().severe("Dropping home '" + homes.name(i) + "' of " + uuid + " in world "
+                        + home.world() + ", homes.bin holds at most " + MAX_WORLDS
+                        + " worlds with names shorter than " + WORLD_SLOT_SIZE + " bytes");
+                kept = kept.without(homes.name(i));
+            }
+        }
+        return kept;
+    }
+
+    private int worldId(String world) {
+        Integer id = worldIds.get(world);
+        if (id != null) {
+            return id;
+        }
+
+        if (worlds.size() >= MAX_WORLDS) {
+            throw new IllegalStateException("homes.bin supports at most " + MAX_WORLDS + " worlds");
+        }
+        if (world.getBytes(StandardCharsets.UTF_8).length >= WORLD_SLOT_SIZE) {
+            throw new IllegalStateException("World name too long for homes.bin: " + world);
+        }
+
+        int newId = worlds.size();
+        writeWorldName(buffer, newId, world);
+        worlds.add(world);
+        worldIds.put(world, newId);
+        buffer.putInt(H_WORLD_COUNT, worlds.size());
+        return newId;
+    }
+
+    /**
+     * Make the player's records match the given homes: records of kept names
+     * are updated in place, the others deleted, new names inserted
+     */
+    private void put(UUID uuid, PlayerHomes homes) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+
+        // Resolve everything that can fail before the first record changes
+        int[] worldIdsOfHomes = new int[homes.size()];
+        byte[][] names = new byte[homes.size()][];
+        for (int i = 0; i < homes.size(); i++) {
+            worldIdsOfHomes[i] = worldId(homes.home(i).world());
+            names[i] = homes.name(i).getBytes(StandardCharsets.UTF_8);
+            if (names[i].length > MAX_NAME_BYTES) {
+                throw new IllegalStateException("Home name too long for homes.bin: " + homes.name(i));
+            }
+        }
+
+        boolean[] stored = new boolean[homes.size()];
+        int mask = capacity - 1;
+        for (int i = hash(msb, lsb) & mask, probes = 0; probes < capacity; i = (i + 1) & mask, probes++) {
+            int off = offset(i);
+            byte state = buffer.get(off + R_STATE);
+            if (state == EMPTY) {
+                break;
+            }
+            if (state != USED || !isOwner(off, msb, lsb)) {
+                continue;
+            }
+
+            int at = homes.indexOf(readName(off));
+            if (at < 0) {
+                delete(off);
+            } else {
+                writeHome(off, worldIdsOfHomes[at], homes.home(at));
+                stored[at] = true;
+            }
+        }
+
+        for (int i = 0; i < homes.size(); i++) {
+            if (stored[i]) {
+                continue;
+            }
+
+            int slot = slotForInsert(msb, lsb, names[i]);
+            if (slot < 0) {
+                // ensureCapacity keeps free slots, so the counts are off
+                throw new IllegalStateException("homes.bin has no free record for " + uuid);
+            }
+            int off = offset(slot);
+            byte state = buffer.get(off + R_STATE);
+            if (state == DELETED) {
+                tombstones--;
+            }
+            count++;
+            buffer.putLong(off + R_MSB, msb);
+            buffer.putLong(off + R_LSB, lsb);
+            buffer.put(off + R_NAME_LENGTH, (byte) names[i].length);
+            buffer.put(off + R_NAME, names[i]);
+            writeHome(off, worldIdsOfHomes[i], homes.home(i));
+            // State last, a record only becomes visible once it is complete
+            buffer.put(off + R_STATE, USED);
+        }
+    }
+
+    private void writeHome(int off, int world, Home home) {
+        buffer.putInt(off + R_WORLD, world);
+        buffer.putDouble(off + R_X, home.x());
+        buffer.putDouble(off + R_Y, home.y());
+        buffer.putDouble(off + R_Z, home.z());
+        buffer.putFloat(off + R_YAW, home.yaw());
+        buffer.putFloat(off + R_PITCH, home.pitch());
+    }
+
+    private void delete(int off) {
+        buffer.put(off + R_STATE, DELETED);
+        count--;
+        tombstones++;
+    }
+
+    /**
+     * Visit the player's records on their probe path
+     */
+    private void forEachRecord(UUID uuid, IntConsumer action) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        int mask = capacity - 1;
+        for (int i = hash(msb, lsb) & mask, probes = 0; probes < capacity; i = (i + 1) & mask, probes++) {
+            int off = offset(i);
+            byte state = buffer.get(off + R_STATE);
+            if (state == EMPTY) {
+                return;
+            }
+            if (state == USED && isOwner(off, msb, lsb)) {
+                action.accept(off);
+            }
+        }
+    }
+
+    private void remove(UUID uuid) {
+        forEachRecord(uuid, this::delete);
+    }
+
+    private Home readHome(MappedByteBuffer source, int off) {
+        return new Home(
+                worlds.get(source.getInt(off + R_WORLD)),
+                source.getDouble(off + R_X),
+                source.getDouble(off + R_Y),
+                source.getDouble(off + R_Z),
+                source.getFloat(off + R_YAW),
+                source.getFloat(off + R_PITCH)
+        );
+    }
+
+    private void writeCounts() {
+        buffer.putInt(H_COUNT, count);
+        buffer.putInt(H_TOMBSTONES, tombstones);
+    }
+
+    private static int capacityFor(int homes) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * REBUILD_LOAD < homes) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Make room for {@code extra} inserts, rebuilding the table if the load
+     * factor (tombstones included) would exceed the limit
+     */
+    private void ensureCapacity(int extra) throws IOException {
+        if (count + tombstones + extra <= capacity * MAX_LOAD) {
+            return;
+        }
+
+        rebuild(scan(), capacityFor(count + extra));
+    }
+
+    /**
+     * Write the given homes into a fresh table of the given capacity and swap
+     * it in atomically
+     */
+    private void rebuild(Map<UUID, PlayerHomes> homes, int newCapacity) throws IOException {
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            fill(tmp, homes, newCapacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            open();
+            throw e;
+        }
+
+        channel.close();
+        try {
+            replaceFile(tmp);
+        } finally {
+            // The old file if the new one could not be moved in
+            open();
+        }
+    }
+
+    /**
+     * Create a table file holding the given homes, through the same record
+     * code as updates. Leaves the fields pointing at the new mapping.
+     */
+    private void fill(File target, Map<UUID, PlayerHomes> homes, int newCapacity) throws IOException {
+        try (FileChannel ch = create(target, newCapacity, List.copyOf(worlds))) {
+            buffer = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) newCapacity * RECORD_SIZE);
+            capacity = newCapacity;
+            count = 0;
+            tombstones = 0;
+            for (Map.Entry<UUID, PlayerHomes> entry : homes.entrySet()) {
+                put(entry.getKey(), entry.getValue());
+            }
+            writeCounts();
+            buffer.force();
+        }
+    }
+
+    private void replaceFile(File tmp) throws IOException {
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private Map<UUID, PlayerHomes> scan() {
+        Map<UUID, PlayerHomes> homes = new HashMap<>(Math.max(16, (int) (count / 0.75f) + 1));
+        for (int slot = 0; slot < capacity; slot++) {
+            int off = offset(slot);
+            if (buffer.get(off + R_STATE) == USED) {
+                String name = readName(off);
+                Home home = readHome(buffer, off);
+                homes.merge(new UUID(buffer.getLong(off + R_MSB), buffer.getLong(off + R_LSB)),
+                        PlayerHomes.of(name, home), (existing, added) -> existing.with(name, home));
+            }
+        }
+        return homes;
+    }
+
+    @Override
+    public synchronized Map<UUID, PlayerHomes> loadAll() {
+        if (buffer == null) {
+            return new HashMap<>();
+        }
+
+        Map<UUID, PlayerHomes> homes = scan();
+        plugin.getLogger().info("Loaded " + count + " homes of " + homes.size() + " players from homes.bin");
+        return homes;
+    }
+
+    /**
+     * Look up a player's homes in place. Completes immediately, a lookup is
+     * a few reads of the mapped file.
+     */
+    @Override
+    public CompletableFuture<PlayerHomes> load(UUID uuid) {
+        return CompletableFuture.completedFuture(loadHomes(uuid));
+    }
+
+    private synchronized PlayerHomes loadHomes(UUID uuid) {
+        if (buffer == null) {
+            return null;
+        }
+
+        PlayerHomes[] homes = {PlayerHomes.EMPTY};
+        forEachRecord(uuid, off -> homes[0] = homes[0].with(readName(off), readHome(buffer, off)));
+        return homes[0].isEmpty() ? null : homes[0];
+    }
+
+    @Override
+    public CompletableFuture<Void> save(UUID uuid, PlayerHomes homes) {
+        return saveBatch(Map.of(uuid, homes), Set.of());
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(UUID uuid) {
+        return saveBatch(Map.of(), Set.of(uuid));
+    }
+
+    /**
+     * Apply upserts and deletes in place and force the touched pages to disk.
+     * Runs on the writer thread because msync can take a while.
+     */
+    @Override
+    public CompletableFuture<Void> saveBatch(Map<UUID, PlayerHomes> upserts, Set<UUID> deletes) {
+        if (groupCommit != null) {
+            return groupCommit.submit(upserts, deletes);
+        }
+
+        return CompletableFuture.runAsync(() -> {
+            try {
+                writeBatch(upserts, deletes);
+            } catch (IOException | RuntimeException e) {
+                plugin.getLogger().severe("Failed to write homes.bin: " + e.getMessage());
+                throw new CompletionException(e);
+            }
+        }, writeExecutor);
+    }
+
+    private void commitGroup(Map<UUID, PlayerHomes> upserts, Set<UUID> deletes) throws IOException {
+        try {
+            writeBatch(upserts, deletes);
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().severe("Failed to write homes.bin: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    private synchronized void writeBatch(Map<UUID, PlayerHomes> upserts, Set<UUID> deletes) throws IOException {
+        if (buffer == null) {
+            throw new IOException("homes.bin is not open");
+        }
+
+        int homes = 0;
+        for (PlayerHomes playerHomes : upserts.values()) {
+            homes += playerHomes.size();
+        }
+        ensureCapacity(homes);
+        for (Map.Entry<UUID, PlayerHomes> entry : upserts.entrySet()) {
+            PlayerHomes kept = storable(entry.getKey(), entry.getValue());
+            if (kept.isEmpty()) {
+                remove(entry.getKey());
+            } else {
+                put(entry.getKey(), kept);
+            }
+        }
+        for (UUID uuid : deletes) {
+            remove(uuid);
+        }
+        writeCounts();
+        if (durability.syncsEveryCommit()) {
+            buffer.force();
+        } else {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Force what periodic durability changed since the last sync
+     */
+    private synchronized void sync() {
+        if (!dirty || buffer == null) {
+            return;
+        }
+
+        try {
+            buffer.force();
+            dirty = false;
+        } catch (RuntimeException e) {
+            plugin.getLogger().warning("Failed to sync homes.bin: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void saveAll(Map<UUID, PlayerHomes> homes) {
+        if (buffer == null) {
+            return;
+        }
+
+        int total = 0;
+        for (PlayerHomes playerHomes : homes.values()) {
+            total += playerHomes.size();
+        }
+
+        try {
+            rebuild(homes, capacityFor(total));
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().severe("Failed to save homes.bin: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        writeExecutor.shutdown();
+        try {
+            if (!writeExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("homes.bin writer did not finish in time");
+                writeExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+            if (channel == null) {
+                return;
+            }
+
+            try {
+                buffer.force();
+                channel.close();
+            } catch (IOException e) {
+                plugin.getLogger().warning("Failed to close homes.bin: " + e.getMessage());
+            }
+            channel = null;
+            buffer = null;
+        }
+    }
+}
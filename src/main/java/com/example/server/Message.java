@@ -0,0 +1,61 @@
+package com.example.server;
+
+import java.util.List;
+
+/**
+ * Player-facing messages, configured under messages: in config.yml. Each
+ * message lists the placeholders its template may use; the arguments passed
+ * to {@link Messages#send} follow the same order.
+ */
+public enum Message {
+
+    HOME_SET("home-set", "&aДом &f{name}&a успешно установлен!", "name"),
+    HOME_LOCATION("home-location", "&7Локация: &f{x}, {y}, {z}", "x", "y", "z"),
+    HOME_TELEPORT("home-teleport", "&aВы телепортировались в дом &f{name}&a!", "name"),
+    HOME_DELETED("home-deleted", "&aДом &f{name}&a успешно удалён!", "name"),
+    NO_HOME("no-home", "&cУ вас нет сохранённого дома! Используйте /sethome"),
+    NO_HOME_NAMED("no-home-named", "&cУ вас нет дома &f{name}&c! Ваши дома: &f{homes}", "name", "homes"),
+    HOME_CHOOSE("home-choose", "&eУ вас несколько домов, укажите один: &f{homes}", "homes"),
+    INVALID_NAME("invalid-name", "&cИмя дома: до {length} латинских букв, цифр, _ или -", "length"),
+    HOMES_LOADING("homes-loading", "&eДома ещё загружаются, попробуйте через пару секунд."),
+    COOLDOWN("cooldown", "&cПодождите {time} секунд перед следующей телепортацией", "time"),
+    DELAY("delay", "&aТелепортация через {time} секунд. Не двигайтесь!", "time"),
+    DELAY_CANCELLED("delay-cancelled", "&cТелепортация отменена! Вы сдвинулись с места."),
+    TELEPORT_PENDING("teleport-pending", "&cТелепортация уже ожидается!"),
+    TELEPORT_FAILED("teleport-failed", "&cТелепортация не удалась!"),
+    MAX_HOMES("max-homes", "&cВы достигли максимального количества домов ({max})!", "max"),
+    WORLD_NOT_STORABLE("world-not-storable", "&cВ мире &f{world}&c нельзя установить дом!", "world"),
+    WORLD_NOT_FOUND("world-not-found", "&cМир вашего дома больше не существует!", "world"),
+    PLAYERS_ONLY("players-only", "&cЭту команду может использовать только игрок!");
+
+    private final String key;
+    private final String defaultTemplate;
+    private final List<String> placeholders;
+
+    Message(String key, String defaultTemplate, String... placeholders) {
+        this.key = key;
+        this.defaultTemplate = defaultTemplate;
+        this.placeholders = List.of(placeholders);
+    }
+
+    /**
+     * Key below messages: in config.yml
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Template used when config.yml has none for this message
+     */
+    public String getDefaultTemplate() {
+        return defaultTemplate;
+    }
+
+    /**
+     * Placeholder names in argument order
+     */
+    public List<String> getPlaceholders() {
+        return placeholders;
+    }
+}
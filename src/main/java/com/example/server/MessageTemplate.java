@@ -0,0 +1,97 @@
+package com.example.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.bukkit.ChatColor;
+
+/**
+ * A message compiled once from its config text: colour codes are translated
+ * up front and the text is split into literal fragments around placeholder
+ * slots, so rendering is a single pass of appends. Arguments are inserted
+ * as they are, colour codes in them are not translated.
+ */
+public final class MessageTemplate {
+
+    private final String[] literals;
+    // Argument index of each slot; slot i sits between literals i and i + 1
+    private final int[] slots;
+    private final int literalLength;
+    // The whole message when it has no slots
+    private final String constant;
+
+    private MessageTemplate(String[] literals, int[] slots) {
+        this.literals = literals;
+        this.slots = slots;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+        this.constant = slots.length == 0 ? literals[0] : null;
+    }
+
+    /**
+     * Compile a template. {name} is a slot if name is one of the placeholders,
+     * anything else in braces stays text and is reported to the callback.
+     *
+     * @param prefix translated text put in front of the message
+     * @param raw template with &amp; colour codes
+     * @param placeholders placeholder names in argument order
+     * @param unknown receives names in braces that are not placeholders
+     */
+    public static MessageTemplate compile(String prefix, String raw, List<String> placeholders,
+            Consumer<String> unknown) {
+        String text = ChatColor.translateAlternateColorCodes('&', raw);
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+
+        StringBuilder literal = new StringBuilder(prefix);
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            int close = c == '{' ? text.indexOf('}', i + 1) : -1;
+            if (close < 0) {
+                literal.append(c);
+                i++;
+                continue;
+            }
+
+            String name = text.substring(i + 1, close);
+            int slot = placeholders.indexOf(name);
+            if (slot < 0) {
+                unknown.accept(name);
+                literal.append(text, i, close + 1);
+            } else {
+                literals.add(literal.toString());
+                literal.setLength(0);
+                slots.add(slot);
+            }
+            i = close + 1;
+        }
+        literals.add(literal.toString());
+
+        return new MessageTemplate(literals.toArray(new String[0]),
+                slots.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Fill the slots with the arguments, in the order of the placeholders
+     * the template was compiled with
+     */
+    public String render(Object... args) {
+        if (constant != null) {
+            return constant;
+        }
+
+        StringBuilder sb = new StringBuilder(literalLength + slots.length * 8);
+        sb.append(literals[0]);
+        for (int i = 0; i < slots.length; i++) {
+            int arg = slots[i];
+            sb.append(arg < args.length ? args[arg] : "");
+            sb.append(literals[i + 1]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.server;
+
+import java.util.logging.Logger;
+
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.file.FileConfiguration;
+
+/**
+ * Compiled templates of every {@link Message}. {@link #load} compiles the
+ * messages: section once and swaps the whole set in, so a reload never
+ * shows a half-updated set and sending a message never parses anything.
+ */
+public class Messages {
+
+    private final Logger logger;
+    private volatile MessageTemplate[] templates;
+
+    public Messages(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Compile all templates from the config, falling back to the defaults for
+     * missing keys
+     */
+    public void load(FileConfiguration config) {
+        String prefix = config.getString("messages.prefix", "");
+        String translatedPrefix = prefix == null || prefix.isEmpty()
+                ? ""
+                : ChatColor.translateAlternateColorCodes('&', prefix) + " ";
+
+        Message[] messages = Message.values();
+        MessageTemplate[] compiled = new MessageTemplate[messages.length];
+        for (Message message : messages) {
+            String raw = config.getString("messages." + message.getKey(), message.getDefaultTemplate());
+            compiled[message.ordinal()] = MessageTemplate.compile(translatedPrefix, raw, message.getPlaceholders(),
+                    name -> logger.warning("Unknown placeholder {" + name + "} in messages." + message.getKey()
+                            + ", allowed: " + message.getPlaceholders()));
+        }
+        this.templates = compiled;
+    }
+
+    /**
+     * Render a message with its placeholder arguments
+     */
+    public String get(Message message, Object... args) {
+        return templates[message.ordinal()].render(args);
+    }
+
+    /**
+     * Render a message and send it
+     */
+    public void send(CommandSender sender, Message message, Object... args) {
+        sender.sendMessage(get(message, args));
+    }
+
+    /**
+     * Number of compiled templates
+     */
+    public int size() {
+        return templates.length;
+    }
+}
@@ -1,6 +1,11 @@
 package com.example.server;
 
+import java.io.IOException;
+import java.sql.SQLException;
+
+import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.PluginCommand;
+import org.bukkit.command.TabCompleter;
 import org.bukkit.plugin.java.JavaPlugin;
 
 /**
@@ -10,6 +15,9 @@ public class MinecraftPlugin extends JavaPlugin {
 
     private HomeService homeService;
     private HomeRepository repository;
+    private HomeStats homeStats;
+    private TeleportScheduler teleportScheduler;
+    private HomeMigrateCommand migrateCommand;
 
     @Override
     public void onEnable() {
@@ -20,26 +28,65 @@ public class MinecraftPlugin extends JavaPlugin {
         // Save default config
         saveDefaultConfig();
 
-        // Initialize repository (SQLite by default, YAML as fallback)
+        // Shared by the repository decorators, the service and /homestats
+        HomeMetrics metrics = new HomeMetrics();
+        SpilloverHomeRepository spillover = null;
+
+        // Initialize repository (SQLite by default, binary or YAML on request)
         String storageType = getConfig().getString("storage-type", "sqlite");
 
         if ("sqlite".equalsIgnoreCase(storageType)) {
             getLogger().info("Using SQLite storage for optimal performance");
-            repository = new SqliteHomeRepository(this);
+            int shards = sqliteShards();
+            repository = shards > 1 ? new ShardedSqliteHomeRepository(this, shards) : new SqliteHomeRepository(this);
+
+            // Servers sharing the data folder would share one spill journal too
+            if (getConfig().getBoolean("spillover.enabled", true) && !getConfig().getBoolean("sync.enabled", false)) {
+                spillover = new SpilloverHomeRepository(this, repository, metrics);
+                repository = spillover;
+            }
+        } else if ("binary".equalsIgnoreCase(storageType)) {
+            getLogger().info("Using memory-mapped binary storage");
+            repository = new MappedHomeRepository(this);
         } else {
             getLogger().info("Using YAML storage (consider switching to SQLite for better performance)");
             repository = new YamlHomeRepository(this);
         }
 
+        // Message templates are compiled once here and on /homereload
+        Messages messages = new Messages(getLogger());
+        messages.load(getConfig());
+
+        // Time every repository call for /homestats and JMX
+        repository = new InstrumentedHomeRepository(repository, metrics);
+
         // Initialize home service with async loading
-        homeService = new HomeService(this, repository);
+        homeService = new HomeService(this, repository, metrics);
         homeService.load();
 
-        // Register commands efficiently
-        registerCommand("hello", new HelloCommand());
-        registerCommand("sethome", new SetHomeCommand(homeService));
-        registerCommand("home", new HomeCommand(homeService));
-        registerCommand("delhome", new DeleteHomeCommand(homeService));
+        homeStats = new HomeStats(metrics, homeService, spillover);
+        homeStats.register(getLogger());
+
+        // Track player sessions for the home cache
+        getServer().getPluginManager().registerEvents(
+                new HomeListener(homeService, getConfig().getLong("cache.preload-timeout-ms", 2000L)), this);
+        getServer().getPluginManager().registerEvents(homeService.getWorldRegistry(), this);
+
+        // One tick task for all teleport delays and cooldowns
+        teleportScheduler = new TeleportScheduler(this);
+        teleportScheduler.start();
+        getServer().getPluginManager().registerEvents(teleportScheduler, this);
+
+        // Register commands efficiently, timing their main thread cost
+        registerCommand("hello", new HelloCommand(), metrics);
+        registerCommand("sethome", new SetHomeCommand(homeService, messages), metrics);
+        registerCommand("home", new ImprovedHomeCommand(homeService, this, messages, metrics, teleportScheduler), metrics);
+        registerCommand("delhome", new DeleteHomeCommand(homeService, messages), metrics);
+        registerCommand("homestats", new HomeStatsCommand(homeStats), metrics);
+        migrateCommand = new HomeMigrateCommand(this, homeService);
+        registerCommand("homemigrate", migrateCommand, metrics);
+        registerCommand("homeadmin", new HomeAdminCommand(this, homeService), metrics);
+        registerCommand("homereload", new HomeReloadCommand(this, messages), metrics);
 
         long loadTime = System.currentTimeMillis() - startTime;
         getLogger().info("MyServer plugin enabled in " + loadTime + "ms");
@@ -49,6 +96,19 @@ public class MinecraftPlugin extends JavaPlugin {
     public void onDisable() {
         getLogger().info("Disabling MyServer plugin...");
 
+        if (teleportScheduler != null) {
+            teleportScheduler.stop();
+        }
+
+        if (homeStats != null) {
+            homeStats.unregister(getLogger());
+        }
+
+        // Stops after the current batch, the next run resumes from there
+        if (migrateCommand != null) {
+            migrateCommand.shutdown();
+        }
+
         if (homeService != null) {
             homeService.shutdown();
         }
@@ -57,12 +117,48 @@ public class MinecraftPlugin extends JavaPlugin {
     }
 
     /**
-     * Register command with null check
+     * Number of SQLite database files, resharding the existing files first if
+     * performance.sqlite.shards changed. If that fails the files stay as they
+     * are and are used as they are.
+     */
+    private int sqliteShards() {
+        int shards = getConfig().getInt("performance.sqlite.shards", 1);
+        if (shards < 1 || shards > SqliteResharder.MAX_SHARDS) {
+            getLogger().warning("performance.sqlite.shards must be between 1 and " + SqliteResharder.MAX_SHARDS
+                    + ", using 1");
+            shards = 1;
+        }
+
+        SqliteResharder resharder = new SqliteResharder(getDataFolder(), getLogger());
+        try {
+            resharder.reshard(shards);
+            return shards;
+        } catch (IOException | SQLException e) {
+            int current = resharder.currentShards();
+            getLogger().severe("Failed to reshard homes into " + shards + " files, staying at " + current + ": "
+                    + e.getMessage());
+            return current;
+        }
+    }
+
+    /**
+     * Register command with null check, recording how long it runs
      */
-    private void registerCommand(String name, org.bukkit.command.CommandExecutor executor) {
+    private void registerCommand(String name, CommandExecutor executor, HomeMetrics metrics) {
         PluginCommand command = getCommand(name);
         if (command != null) {
-            command.setExecutor(executor);
+            LatencyHistogram timer = metrics.getCommand(name);
+            command.setExecutor((sender, cmd, label, args) -> {
+                long start = System.nanoTime();
+                try {
+                    return executor.onCommand(sender, cmd, label, args);
+                } finally {
+                    timer.record(System.nanoTime() - start);
+                }
+            });
+            if (executor instanceof TabCompleter completer) {
+                command.setTabCompleter(completer);
+            }
         } else {
             getLogger().warning("Command '" + name + "' is not defined in plugin.yml");
         }
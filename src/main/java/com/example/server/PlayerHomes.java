@@ -0,0 +1,193 @@
+package com.example.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable set of one player's named homes, kept as one array of name and
+ * home pairs sorted by name. A player has a handful of homes, so a binary
+ * search over a small array beats a map per player: lookups stay O(log n)
+ * and each home costs two array slots instead of a map node. Changes copy
+ * the array.
+ * <p>
+ * Names are compared as they are; {@link HomeService} lower-cases them before
+ * they get here. They are interned, since most players reuse the same few
+ * names.
+ */
+public final class PlayerHomes {
+
+    public static final PlayerHomes EMPTY = new PlayerHomes(new Object[0]);
+
+    /**
+     * Name of homes stored before players could have several, and the
+     * default of homes.default-name
+     */
+    public static final String DEFAULT_NAME = "home";
+
+    // Name at 2i, home at 2i + 1
+    private final Object[] entries;
+
+    private PlayerHomes(Object[] entries) {
+        this.entries = entries;
+    }
+
+    public static PlayerHomes of(String name, Home home) {
+        return new PlayerHomes(new Object[] {name.intern(), home});
+    }
+
+    public int size() {
+        return entries.length >> 1;
+    }
+
+    public boolean isEmpty() {
+        return entries.length == 0;
+    }
+
+    /**
+     * Name of the i-th home in name order
+     */
+    public String name(int i) {
+        return (String) entries[i << 1];
+    }
+
+    /**
+     * The i-th home in name order
+     */
+    public Home home(int i) {
+        return (Home) entries[(i << 1) + 1];
+    }
+
+    /**
+     * Position of the name in name order, or -(insertion point) - 1 like
+     * {@link java.util.Arrays#binarySearch}
+     */
+    public int indexOf(String name) {
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = name(mid).compareTo(name);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * The named home, or null if there is none
+     */
+    public Home get(String name) {
+        int i = indexOf(name);
+        return i >= 0 ? home(i) : null;
+    }
+
+    public boolean contains(String name) {
+        return indexOf(name) >= 0;
+    }
+
+    /**
+     * Copy with the named home added or replaced
+     */
+    public PlayerHomes with(String name, Home home) {
+        int i = indexOf(name);
+        if (i >= 0) {
+            if (home(i).equals(home)) {
+                return this;
+            }
+            Object[] replaced = entries.clone();
+            replaced[(i << 1) + 1] = home;
+            return new PlayerHomes(replaced);
+        }
+
+        int at = (-i - 1) << 1;
+        Object[] grown = new Object[entries.length + 2];
+        System.arraycopy(entries, 0, grown, 0, at);
+        grown[at] = name.intern();
+        grown[at + 1] = home;
+        System.arraycopy(entries, at, grown, at + 2, entries.length - at);
+        return new PlayerHomes(grown);
+    }
+
+    /**
+     * Copy without the named home; {@link #EMPTY} once the last one is gone
+     */
+    public PlayerHomes without(String name) {
+        int i = indexOf(name);
+        if (i < 0) {
+            return this;
+        }
+        if (entries.length == 2) {
+            return EMPTY;
+        }
+
+        int at = i << 1;
+        Object[] shrunk = new Object[entries.length - 2];
+        System.arraycopy(entries, 0, shrunk, 0, at);
+        System.arraycopy(entries, at + 2, shrunk, at, entries.length - at - 2);
+        return new PlayerHomes(shrunk);
+    }
+
+    /**
+     * Names in sorted order
+     */
+    public List<String> names() {
+        List<String> out = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            out.add(name(i));
+        }
+        return out;
+    }
+
+    /**
+     * Names starting with the prefix, in sorted order. Matching names are
+     * adjacent in the sorted array, so this is one binary search and a scan
+     * of the matches.
+     */
+    public List<String> namesStartingWith(String prefix) {
+        int i = indexOf(prefix);
+        if (i < 0) {
+            i = -i - 1;
+        }
+
+        List<String> out = new ArrayList<>();
+        while (i < size() && name(i).startsWith(prefix)) {
+            out.add(name(i++));
+        }
+        return out;
+    }
+
+    public void forEach(BiConsumer<String, Home> action) {
+        for (int i = 0; i < size(); i++) {
+            action.accept(name(i), home(i));
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PlayerHomes other && Arrays.equals(entries, other.entries);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(entries);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("PlayerHomes{");
+        for (int i = 0; i < size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(name(i)).append('=').append(home(i));
+        }
+        return sb.append('}').toString();
+    }
+}
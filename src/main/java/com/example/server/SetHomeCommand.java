@@ -1,20 +1,26 @@
 package com.example.server;
 
+import java.util.List;
+
+import org.bukkit.Location;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
 /**
- * Команда для сохранения текущей локации как дома
+ * Команда для сохранения текущей локации как дома: /sethome [имя]
  */
-public class SetHomeCommand implements CommandExecutor {
+public class SetHomeCommand implements CommandExecutor, TabCompleter {
 
     private final HomeService homeService;
+    private final Messages messages;
 
-    public SetHomeCommand(HomeService homeService) {
+    public SetHomeCommand(HomeService homeService, Messages messages) {
         this.homeService = homeService;
+        this.messages = messages;
     }
 
     @Override
@@ -26,16 +32,51 @@ public class SetHomeCommand implements CommandExecutor {
         }
 
         if (!(sender instanceof Player)) {
-            sender.sendMessage("Эту команду может использовать только игрок!");
+            messages.send(sender, Message.PLAYERS_ONLY);
             return false;
         }
 
         Player player = (Player) sender;
-        homeService.setHome(player);
-        player.sendMessage("§aДом успешно сохранён!");
-        player.sendMessage("§7Локация: §f" + player.getLocation().getBlockX() + ", "
-                + player.getLocation().getBlockY() + ", "
-                + player.getLocation().getBlockZ());
+        String name = args.length > 0 ? HomeService.normalizeName(args[0]) : homeService.getDefaultName();
+        if (name == null) {
+            messages.send(player, Message.INVALID_NAME, HomeService.MAX_NAME_LENGTH);
+            return false;
+        }
+
+        switch (homeService.setHome(player, name)) {
+            case NOT_LOADED -> {
+                // Без загруженных домов запись затёрла бы остальные
+                messages.send(player, Message.HOMES_LOADING);
+                return true;
+            }
+            case LIMIT_REACHED -> {
+                messages.send(player, Message.MAX_HOMES, homeService.getMaxHomes());
+                return true;
+            }
+            case WORLD_NOT_STORABLE -> {
+                messages.send(player, Message.WORLD_NOT_STORABLE, player.getWorld().getName());
+                return true;
+            }
+            default -> {
+            }
+        }
+
+        // getLocation() создаёт новый объект, берём его один раз
+        Location location = player.getLocation();
+        messages.send(player, Message.HOME_SET, name);
+        messages.send(player, Message.HOME_LOCATION, location.getBlockX(), location.getBlockY(), location.getBlockZ());
         return true;
     }
+
+    /**
+     * Подсказывает существующие дома, чтобы их было удобно перенести
+     */
+    @Override
+    public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command,
+            @NotNull String alias, @NotNull String[] args) {
+        if (args.length == 1 && sender instanceof Player player) {
+            return homeService.completeNames(player, args[0]);
+        }
+        return List.of();
+    }
 }
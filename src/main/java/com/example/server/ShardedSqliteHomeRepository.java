@@ -0,0 +1,282 @@
+package com.example.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+/**
+ * SQLite storage split across several database files by UUID hash, see
+ * {@link SqliteResharder}. SQLite admits one writer per file, so one file
+ * caps writes at one core; here every shard is a {@link SqliteHomeRepository}
+ * with its own writer thread and read pool, and batches are split so the
+ * shards commit their parts in parallel.
+ * <p>
+ * A batch is atomic per shard only: after a crash some shards may have its
+ * part and others not. Every player lives in one shard, so a player's homes
+ * are always written as one unit. There is no change log, servers cannot
+ * share sharded files.
+ */
+public class ShardedSqliteHomeRepository implements HomeRepository {
+
+    private final JavaPlugin plugin;
+    private final SqliteHomeRepository[] shards;
+    // Runs the blocking bulk calls of all shards at once
+    private final ExecutorService bulkExecutor;
+
+    public ShardedSqliteHomeRepository(JavaPlugin plugin, int shardCount) {
+        this.plugin = plugin;
+
+        // The configured pool is shared out, but each shard keeps a reader
+        // free for point reads while it loads
+        int poolSize = plugin.getConfig().getInt("performance.connection-pool-size", 5);
+        int perShard = Math.max(2, (poolSize + shardCount - 1) / shardCount);
+
+        this.shards = new SqliteHomeRepository[shardCount];
+        for (int shard = 0; shard < shardCount; shard++) {
+            shards[shard] = new SqliteHomeRepository(plugin,
+                    SqliteResharder.shardFile(plugin.getDataFolder(), shard, shardCount), perShard, false);
+        }
+
+        this.bulkExecutor = Executors.newFixedThreadPool(shardCount, r -> {
+            Thread thread = new Thread(r, "HomeRepository-SQLite-Shards");
+            thread.setDaemon(true);
+            return thread;
+        });
+        plugin.getLogger().info("SQLite storage split across " + shardCount + " database files");
+    }
+
+    private SqliteHomeRepository shard(UUID uuid) {
+        return shards[SqliteResharder.shardOf(uuid, shards.length)];
+    }
+
+    /**
+     * Split per-player entries by shard
+     */
+    private <V> List<Map<UUID, V>> split(Map<UUID, V> entries) {
+        List<Map<UUID, V>> parts = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            parts.add(new HashMap<>());
+        }
+        entries.forEach((uuid, value) -> parts.get(SqliteResharder.shardOf(uuid, shards.length)).put(uuid, value));
+        return parts;
+    }
+
+    private List<Set<UUID>> split(Set<UUID> uuids) {
+        List<Set<UUID>> parts = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            parts.add(new HashSet<>());
+        }
+        for (UUID uuid : uuids) {
+            parts.get(SqliteResharder.shardOf(uuid, shards.length)).add(uuid);
+        }
+        return parts;
+    }
+
+    private static CompletableFuture<Void> all(List<CompletableFuture<Void>> futures) {
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture<?>[]::new));
+    }
+
+    @Override
+    public Map<UUID, PlayerHomes> loadAll() {
+        Map<UUID, PlayerHomes> homes = new ConcurrentHashMap<>();
+        List<CompletableFuture<Long>> parts = new ArrayList<>(shards.length);
+        for (SqliteHomeRepository shard : shards) {
+            parts.add(shard.loadShard(0, 1, homes::put));
+        }
+
+        try {
+            CompletableFuture.allOf(parts.toArray(CompletableFuture<?>[]::new)).join();
+            plugin.getLogger().info("Loaded homes of " + homes.size() + " players from " + shards.length + " shards");
+        } catch (CompletionException e) {
+            plugin.getLogger().severe("Failed to load homes: " + e.getCause().getMessage());
+        }
+        return homes;
+    }
+
+    @Override
+    public void saveAll(Map<UUID, PlayerHomes> homes) {
+        List<Map<UUID, PlayerHomes>> parts = split(homes);
+        List<CompletableFuture<Void>> futures = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            SqliteHomeRepository shard = shards[i];
+            Map<UUID, PlayerHomes> part = parts.get(i);
+            futures.add(CompletableFuture.runAsync(() -> shard.saveAll(part), bulkExecutor));
+        }
+        all(futures).join();
+    }
+
+    /**
+     * Database shards are handed out round-robin, a load shard of the service
+     * streams whole database shards
+     */
+    @Override
+    public CompletableFuture<Long> loadShard(int shard, int shards, BiConsumer<UUID, PlayerHomes> sink) {
+        CompletableFuture<Long> total = CompletableFuture.completedFuture(0L);
+        for (int i = shard; i < this.shards.length; i += shards) {
+            total = total.thenCombine(this.shards[i].loadShard(0, 1, sink), Long::sum);
+        }
+        return total;
+    }
+
+    @Override
+    public int getLoadParallelism() {
+        return shards.length;
+    }
+
+    @Override
+    public CompletableFuture<PlayerHomes> load(UUID uuid) {
+        return shard(uuid).load(uuid);
+    }
+
+    @Override
+    public CompletableFuture<Void> save(UUID uuid, PlayerHomes homes) {
+        return shard(uuid).save(uuid, homes);
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(UUID uuid) {
+        return shard(uuid).delete(uuid);
+    }
+
+    /**
+     * Each shard commits its part of the batch in its own transaction, all
+     * shards at the same time
+     */
+    @Override
+    public CompletableFuture<Void> saveBatch(Map<UUID, PlayerHomes> upserts, Set<UUID> deletes) {
+        List<Map<UUID, PlayerHomes>> upsertParts = split(upserts);
+        List<Set<UUID>> deleteParts = split(deletes);
+        List<CompletableFuture<Void>> futures = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            if (!upsertParts.get(i).isEmpty() || !deleteParts.get(i).isEmpty()) {
+                futures.add(shards[i].saveBatch(upsertParts.get(i), deleteParts.get(i)));
+            }
+        }
+        return all(futures);
+    }
+
+    @Override
+    public CompletableFuture<Void> importBatch(Map<UUID, PlayerHomes> homes) {
+        List<Map<UUID, PlayerHomes>> parts = split(homes);
+        List<CompletableFuture<Void>> futures = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            if (!parts.get(i).isEmpty()) {
+                futures.add(shards[i].importBatch(parts.get(i)));
+            }
+        }
+        return all(futures);
+    }
+
+    /**
+     * Every shard searches its own index; a player is in one shard only, so
+     * the results never overlap
+     */
+    @Override
+    public CompletableFuture<Map<UUID, PlayerHomes>> findInBox(String world, double minX, double minZ,
+            double maxX, double maxZ) {
+        List<CompletableFuture<Map<UUID, PlayerHomes>>> parts = new ArrayList<>(shards.length);
+        for (SqliteHomeRepository shard : shards) {
+            parts.add(shard.findInBox(world, minX, minZ, maxX, maxZ));
+        }
+
+        return CompletableFuture.allOf(parts.toArray(CompletableFuture<?>[]::new)).thenApply(v -> {
+            Map<UUID, PlayerHomes> result = new HashMap<>();
+            for (CompletableFuture<Map<UUID, PlayerHomes>> part : parts) {
+                result.putAll(part.join());
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Integer> deleteWorld(String world) {
+        CompletableFuture<Integer> total = CompletableFuture.completedFuture(0);
+        for (SqliteHomeRepository shard : shards) {
+            total = total.thenCombine(shard.deleteWorld(world), Integer::sum);
+        }
+        return total;
+    }
+
+    @Override
+    public boolean supportsRangeHashes() {
+        return true;
+    }
+
+    /**
+     * Every file covers the whole UUID range, so their sums are added up
+     */
+    @Override
+    public CompletableFuture<HomeRangeHashes.Node[]> rangeHashes(String prefix) {
+        List<CompletableFuture<HomeRangeHashes.Node[]>> parts = new ArrayList<>(shards.length);
+        for (SqliteHomeRepository shard : shards) {
+            parts.add(shard.rangeHashes(prefix));
+        }
+
+        return CompletableFuture.allOf(parts.toArray(CompletableFuture<?>[]::new)).thenApply(v -> {
+            HomeRangeHashes.Node[] result = null;
+            for (CompletableFuture<HomeRangeHashes.Node[]> part : parts) {
+                HomeRangeHashes.Node[] children = part.join();
+                if (children == null) {
+                    return null;
+                }
+                if (result == null) {
+                    result = children;
+                } else {
+                    for (int i = 0; i < result.length; i++) {
+                        result[i] = result[i].plus(children[i]);
+                    }
+                }
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, PlayerHomes>> loadRange(String prefix) {
+        List<CompletableFuture<Map<UUID, PlayerHomes>>> parts = new ArrayList<>(shards.length);
+        for (SqliteHomeRepository shard : shards) {
+            parts.add(shard.loadRange(prefix));
+        }
+
+        return CompletableFuture.allOf(parts.toArray(CompletableFuture<?>[]::new)).thenApply(v -> {
+            Map<UUID, PlayerHomes> result = new HashMap<>();
+            for (CompletableFuture<Map<UUID, PlayerHomes>> part : parts) {
+                result.putAll(part.join());
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Close every shard, letting their queued writes finish
+     */
+    @Override
+    public void close() {
+        bulkExecutor.shutdown();
+        try {
+            bulkExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // In parallel, each shard may wait for its writer
+        List<CompletableFuture<Void>> closing = new ArrayList<>(shards.length);
+        for (SqliteHomeRepository shard : shards) {
+            closing.add(CompletableFuture.runAsync(shard::close));
+        }
+        all(closing).join();
+    }
+}
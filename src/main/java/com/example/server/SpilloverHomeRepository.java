@@ -0,0 +1,526 @@
+package com.example.server;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+/**
+ * Repository decorator that keeps the I/O lanes moving while the database is
+ * locked or failing. A batch that fails or is not committed within
+ * spillover.write-timeout-ms is appended to homes.spill, a local journal in
+ * the format of homes.journal, and reported done. From then on every write
+ * is spilled, so a player's changes reach the database in order, until a
+ * background thread has replayed the spilled changes in batches; then the
+ * journal is truncated and writes go straight to the database again.
+ * <p>
+ * Spilled changes are kept in memory per player as well and laid over every
+ * read, so evicted players and the startup load see them before the
+ * database does. A journal left by a crash or a shutdown during an outage is
+ * replayed on the next start.
+ */
+public class SpilloverHomeRepository implements HomeRepository {
+
+    private static final String SPILL_FILE = "homes.spill";
+
+    private final JavaPlugin plugin;
+    private final HomeRepository delegate;
+    private final HomeMetrics metrics;
+    private final File spillFile;
+    private final boolean fsync;
+    private final long writeTimeoutMs;
+    private final int replayBatchSize;
+    private final long retryIntervalMs;
+
+    // Newest spilled homes of each player not yet replayed, EMPTY for a delete
+    private final Map<UUID, PlayerHomes> pending = new ConcurrentHashMap<>();
+    // Guards the journal file and switching between spilling and direct writes
+    private final Object lock = new Object();
+    private final ExecutorService spillExecutor;
+    private final ScheduledExecutorService replayExecutor;
+
+    private FileOutputStream spillOut;
+    private volatile boolean spilling;
+    private volatile long spillingSince;
+    private boolean replayScheduled;
+    // Only touched by the replay thread
+    private boolean replayFailing;
+    private volatile boolean closed;
+
+    public SpilloverHomeRepository(JavaPlugin plugin, HomeRepository delegate, HomeMetrics metrics) {
+        this.plugin = plugin;
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.spillFile = new File(plugin.getDataFolder(), SPILL_FILE);
+        this.fsync = Durability.fromConfig(plugin.getConfig()).syncsEveryCommit();
+        this.writeTimeoutMs = Math.max(1L, plugin.getConfig().getLong("spillover.write-timeout-ms", 1000L));
+        this.replayBatchSize = Math.max(1, plugin.getConfig().getInt("spillover.replay-batch-size", 500));
+        this.retryIntervalMs = Math.max(10L, plugin.getConfig().getLong("spillover.retry-interval-ms", 1000L));
+
+        this.spillExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "HomeRepository-Spillover");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.replayExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "HomeRepository-Spillover-Replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Changes spilled before a crash or shutdown are still owed to the database
+        int entries = YamlHomeRepository.replay(spillFile,
+                (uuid, homes) -> pending.put(uuid, homes != null ? homes : PlayerHomes.EMPTY), plugin.getLogger());
+        if (!pending.isEmpty()) {
+            plugin.getLogger().warning(entries + " changes of " + pending.size() + " players left in " + SPILL_FILE
+                    + ", replaying them into the database");
+            synchronized (lock) {
+                spilling = true;
+                spillingSince = spillFile.lastModified();
+                scheduleReplay(0L);
+            }
+        } else if (spillFile.exists() && !spillFile.delete()) {
+            plugin.getLogger().warning("Failed to delete empty " + SPILL_FILE);
+        }
+    }
+
+    /**
+     * Players with spilled changes the database does not have yet
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Size of the spill journal in bytes, replayed entries included until
+     * it is truncated
+     */
+    public long getSpillBytes() {
+        return spillFile.length();
+    }
+
+    /**
+     * Seconds the database has been behind, 0 while writes go straight to
+     * it. For a journal left by an earlier run this counts from its last
+     * append.
+     */
+    public double getReplayLagSeconds() {
+        return spilling ? Math.max(0L, System.currentTimeMillis() - spillingSince) / 1000.0 : 0.0;
+    }
+
+    @Override
+    public CompletableFuture<Void> saveBatch(Map<UUID, PlayerHomes> upserts, Set<UUID> deletes) {
+        if (upserts.isEmpty() && deletes.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (spilling) {
+            return CompletableFuture.runAsync(() -> spill(upserts, deletes, null), spillExecutor);
+        }
+
+        // The write may still commit after the timeout; replaying it again
+        // later is harmless, since it sets the same homes
+        return delegate.saveBatch(upserts, deletes).copy()
+                .orTimeout(writeTimeoutMs, TimeUnit.MILLISECONDS)
+                .exceptionallyAsync(error -> {
+                    spill(upserts, deletes, error);
+                    return null;
+                }, spillExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Void> save(UUID uuid, PlayerHomes homes) {
+        return saveBatch(Map.of(uuid, homes), Set.of());
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(UUID uuid) {
+        return saveBatch(Map.of(), Set.of(uuid));
+    }
+
+    /**
+     * Append a batch to the journal and switch to spilling; fails only if
+     * the journal cannot be written either, leaving the retry to the caller
+     */
+    private void spill(Map<UUID, PlayerHomes> upserts, Set<UUID> deletes, Throwable cause) {
+        synchronized (lock) {
+            try {
+                appendLocked(upserts, deletes);
+            } catch (IOException e) {
+                plugin.getLogger().severe("Failed to write " + SPILL_FILE + ": " + e.getMessage());
+                throw new CompletionException(e);
+            }
+
+            upserts.forEach(pending::put);
+            for (UUID uuid : deletes) {
+                pending.put(uuid, PlayerHomes.EMPTY);
+            }
+            metrics.recordSpilled(upserts.size() + deletes.size());
+
+            if (!spilling) {
+                Throwable reason = cause instanceof CompletionException && cause.getCause() != null
+                        ? cause.getCause() : cause;
+                plugin.getLogger().warning("Database write failed (" + reason
+                        + "), spilling changes to " + SPILL_FILE + " until it recovers");
+                spilling = true;
+                spillingSince = System.currentTimeMillis();
+            }
+            scheduleReplay(retryIntervalMs);
+        }
+    }
+
+    private void appendLocked(Map<UUID, PlayerHomes> upserts, Set<UUID> deletes) throws IOException {
+        if (spillOut == null) {
+            spillOut = new FileOutputStream(spillFile, true);
+        }
+
+        try {
+            spillOut.write(YamlHomeRepository.format(upserts, deletes).getBytes(StandardCharsets.UTF_8));
+            if (fsync) {
+                spillOut.getChannel().force(false);
+            }
+        } catch (IOException e) {
+            closeSpillLocked();
+            throw e;
+        }
+    }
+
+    private void closeSpillLocked() {
+        if (spillOut == null) {
+            return;
+        }
+
+        try {
+            spillOut.getChannel().force(false);
+            spillOut.close();
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to close " + SPILL_FILE + ": " + e.getMessage());
+        }
+        spillOut = null;
+    }
+
+    private void scheduleReplay(long delayMs) {
+        if (replayScheduled || closed) {
+            return;
+        }
+
+        replayScheduled = true;
+        replayExecutor.schedule(this::replay, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Write the spilled homes to the database in batches, only the newest
+     * of each player. Once nothing is left, truncate the journal and stop
+     * spilling.
+     */
+    private void replay() {
+        synchronized (lock) {
+            replayScheduled = false;
+        }
+
+        long replayed = 0;
+        while (!pending.isEmpty() && !closed) {
+            Map<UUID, PlayerHomes> taken = new HashMap<>();
+            Map<UUID, PlayerHomes> upserts = new HashMap<>();
+            Set<UUID> deletes = new HashSet<>();
+            Iterator<Map.Entry<UUID, PlayerHomes>> it = pending.entrySet().iterator();
+            while (it.hasNext() && taken.size() < replayBatchSize) {
+                Map.Entry<UUID, PlayerHomes> entry = it.next();
+                taken.put(entry.getKey(), entry.getValue());
+                if (entry.getValue().isEmpty()) {
+                    deletes.add(entry.getKey());
+                } else {
+                    upserts.put(entry.getKey(), entry.getValue());
+                }
+            }
+
+            try {
+                delegate.saveBatch(upserts, deletes).join();
+            } catch (CompletionException e) {
+                // One warning per outage, the retries would flood the log
+                if (!replayFailing) {
+                    plugin.getLogger().warning("Replaying " + SPILL_FILE + " failed (" + e.getCause()
+                            + "), retrying every " + retryIntervalMs + " ms");
+                    replayFailing = true;
+                }
+                synchronized (lock) {
+                    scheduleReplay(retryIntervalMs);
+                }
+                return;
+            }
+
+            replayFailing = false;
+            // Players spilled again meanwhile keep their newer homes
+            taken.forEach(pending::remove);
+            metrics.recordReplayed(taken.size());
+            replayed += taken.size();
+        }
+
+        synchronized (lock) {
+            if (closed || !pending.isEmpty()) {
+                scheduleReplay(0L);
+                return;
+            }
+
+            closeSpillLocked();
+            if (spillFile.exists() && !spillFile.delete()) {
+                plugin.getLogger().warning("Failed to truncate " + SPILL_FILE + ", retrying");
+                scheduleReplay(retryIntervalMs);
+                return;
+            }
+            if (spilling) {
+                plugin.getLogger().info("Replayed " + replayed + " spilled changes after "
+                        + Math.round(getReplayLagSeconds()) + " s, writing to the database again");
+            }
+            spilling = false;
+        }
+    }
+
+    @Override
+    public CompletableFuture<PlayerHomes> load(UUID uuid) {
+        PlayerHomes spilled = pending.get(uuid);
+        if (spilled != null) {
+            return CompletableFuture.completedFuture(spilled.isEmpty() ? null : spilled);
+        }
+        return delegate.load(uuid);
+    }
+
+    @Override
+    public Map<UUID, PlayerHomes> loadAll() {
+        Map<UUID, PlayerHomes> homes = delegate.loadAll();
+        Map.copyOf(pending).forEach((uuid, spilled) -> {
+            if (spilled.isEmpty()) {
+                homes.remove(uuid);
+            } else {
+                homes.put(uuid, spilled);
+            }
+        });
+        return homes;
+    }
+
+    /**
+     * Database rows of players with spilled changes are skipped, shard 0
+     * hands out the spilled homes instead
+     */
+    @Override
+    public CompletableFuture<Long> loadShard(int shard, int shards, BiConsumer<UUID, PlayerHomes> sink) {
+        Map<UUID, PlayerHomes> spilled = Map.copyOf(pending);
+        if (spilled.isEmpty()) {
+            return delegate.loadShard(shard, shards, sink);
+        }
+
+        CompletableFuture<Long> loaded = delegate.loadShard(shard, shards, (uuid, homes) -> {
+            if (!spilled.containsKey(uuid)) {
+                sink.accept(uuid, homes);
+            }
+        });
+        if (shard != 0) {
+            return loaded;
+        }
+
+        return loaded.thenApply(count -> {
+            long delivered = count;
+            for (Map.Entry<UUID, PlayerHomes> entry : spilled.entrySet()) {
+                if (!entry.getValue().isEmpty()) {
+                    sink.accept(entry.getKey(), entry.getValue());
+                    delivered += entry.getValue().size();
+                }
+            }
+            return delivered;
+        });
+    }
+
+    @Override
+    public int getLoadParallelism() {
+        return delegate.getLoadParallelism();
+    }
+
+    /**
+     * Replace all homes, which makes the spilled changes obsolete
+     */
+    @Override
+    public void saveAll(Map<UUID, PlayerHomes> homes) {
+        delegate.saveAll(homes);
+        synchronized (lock) {
+            pending.clear();
+            // Truncates the journal and ends spilling
+            scheduleReplay(0L);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> importBatch(Map<UUID, PlayerHomes> homes) {
+        return delegate.importBatch(homes);
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, PlayerHomes>> findInBox(String world, double minX, double minZ,
+            double maxX, double maxZ) {
+        return delegate.findInBox(world, minX, minZ, maxX, maxZ).thenApply(found -> {
+            Map<UUID, PlayerHomes> spilled = Map.copyOf(pending);
+            if (spilled.isEmpty()) {
+                return found;
+            }
+
+            Map<UUID, PlayerHomes> result = new HashMap<>(found);
+            spilled.forEach((uuid, homes) -> {
+                result.remove(uuid);
+                homes.forEach((name, home) -> {
+                    if (home.world().equals(world)
+                            && home.x() >= minX && home.x() <= maxX && home.z() >= minZ && home.z() <= maxZ) {
+                        result.merge(uuid, PlayerHomes.of(name, home), (a, b) -> a.with(name, home));
+                    }
+                });
+            });
+            return result;
+        });
+    }
+
+    /**
+     * Also drop the world from spilled changes, so their replay does not
+     * bring its homes back
+     */
+    @Override
+    public CompletableFuture<Integer> deleteWorld(String world) {
+        synchronized (lock) {
+            Map<UUID, PlayerHomes> kept = new HashMap<>();
+            Set<UUID> doomed = new HashSet<>();
+            pending.forEach((uuid, homes) -> {
+                PlayerHomes rest = homes;
+                for (int i = 0; i < homes.size(); i++) {
+                    if (homes.home(i).world().equals(world)) {
+                        rest = rest.without(homes.name(i));
+                    }
+                }
+                if (rest.isEmpty() && !homes.isEmpty()) {
+                    doomed.add(uuid);
+                } else if (rest != homes) {
+                    kept.put(uuid, rest);
+                }
+            });
+
+            if (!kept.isEmpty() || !doomed.isEmpty()) {
+                try {
+                    appendLocked(kept, doomed);
+                    pending.putAll(kept);
+                    doomed.forEach(uuid -> pending.put(uuid, PlayerHomes.EMPTY));
+                } catch (IOException e) {
+                    plugin.getLogger().severe("Failed to write " + SPILL_FILE + ": " + e.getMessage());
+                    return CompletableFuture.failedFuture(e);
+                }
+            }
+        }
+        return delegate.deleteWorld(world);
+    }
+
+    @Override
+    public boolean supportsChangeFeed() {
+        return delegate.supportsChangeFeed();
+    }
+
+    @Override
+    public long getLastChange() {
+        return delegate.getLastChange();
+    }
+
+    @Override
+    public CompletableFuture<HomeChange.Page> readChanges(long afterSeq, int limit) {
+        return delegate.readChanges(afterSeq, limit);
+    }
+
+    @Override
+    public CompletableFuture<Integer> pruneChanges(long maxAgeSeconds) {
+        return delegate.pruneChanges(maxAgeSeconds);
+    }
+
+    @Override
+    public boolean supportsRangeHashes() {
+        return delegate.supportsRangeHashes();
+    }
+
+    /**
+     * The database's sums miss spilled changes, so there are none until the
+     * journal is replayed
+     */
+    @Override
+    public CompletableFuture<HomeRangeHashes.Node[]> rangeHashes(String prefix) {
+        if (!pending.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return delegate.rangeHashes(prefix);
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, PlayerHomes>> loadRange(String prefix) {
+        return delegate.loadRange(prefix).thenApply(found -> {
+            Map<UUID, PlayerHomes> spilled = Map.copyOf(pending);
+            if (spilled.isEmpty()) {
+                return found;
+            }
+
+            Map<UUID, PlayerHomes> result = new HashMap<>(found);
+            spilled.forEach((uuid, homes) -> {
+                if (HomeRangeHashes.inRange(uuid, prefix)) {
+                    result.remove(uuid);
+                    if (!homes.isEmpty()) {
+                        result.put(uuid, homes);
+                    }
+                }
+            });
+            return result;
+        });
+    }
+
+    @Override
+    public boolean canStore(Home home) {
+        return delegate.canStore(home);
+    }
+
+    @Override
+    public boolean supportsFastLoad() {
+        return delegate.supportsFastLoad();
+    }
+
+    /**
+     * Stop replaying and close the journal; what is left in it is replayed
+     * on the next start
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+        }
+        spillExecutor.shutdown();
+        replayExecutor.shutdown();
+        try {
+            spillExecutor.awaitTermination(5, TimeUnit.SECONDS);
+            replayExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (lock) {
+            closeSpillLocked();
+        }
+        if (!pending.isEmpty()) {
+            plugin.getLogger().warning(pending.size() + " players' changes stay in " + SPILL_FILE
+                    + " and are replayed on the next start");
+        }
+        delegate.close();
+    }
+}
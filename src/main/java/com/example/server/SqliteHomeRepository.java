@@ -2,220 +2,1807 @@ package com.example.server;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 /**
- * High-performance SQLite-backed repository with connection pooling. Uses
- * HikariCP for optimal database performance.
+ * High-performance SQLite-backed repository. The database runs in WAL mode
+ * with a single long-lived writer connection that keeps its statements
+ * prepared, while reads go through a separate read-only HikariCP pool, so
+ * readers never block the writer and writers never fight over the lock.
+ * <p>
+ * Homes are keyed by 16-byte UUID and name and refer to worlds by id, see
+ * {@link SqliteSchema}; a player's homes are one key range, read and written
+ * together. Rows of a database from before the binary keys stay in
+ * homes_legacy, and rows from before home names in homes_unnamed, until the
+ * writer has moved them over in small chunks; meanwhile every read covers
+ * all tables in one snapshot and every write removes the player's old row.
+ * <p>
+ * With sync.enabled several servers may share the database file; every
+ * write is then also recorded in the home_changes log, which the servers
+ * poll to keep their caches current.
+ * <p>
+ * With durability immediate or group every commit is fsynced
+ * (synchronous=FULL), group commit merges the batches queued on the writer
+ * into one transaction. With periodic, commits use the configured
+ * synchronous level and every durability.checkpoint-interval-ms a FULL
+ * checkpoint copies the whole WAL into the database and syncs both. A reader
+ * holding an old snapshot for longer than busy-timeout delays the sync to
+ * the next interval, which is logged.
  */
 public class SqliteHomeRepository implements HomeRepository {
 
+    // Saving a player rewrites all their homes; unchanged rows are left
+    // alone, so they keep updated_at and stay out of the change log. A row
+    // whose hash is missing or stale is rewritten with the same values.
+    // Package-private for the trigger test
+    static final String UPSERT_SQL = """
+        INSERT INTO homes (uuid, name, world_id, x, y, z, yaw, pitch, hash, updated_at)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, strftime('%s', 'now'))
+        ON CONFLICT(uuid, name) DO UPDATE SET
+            world_id = excluded.world_id,
+            x = excluded.x,
+            y = excluded.y,
+            z = excluded.z,
+            yaw = excluded.yaw,
+            pitch = excluded.pitch,
+            hash = excluded.hash,
+            updated_at = excluded.updated_at
+        WHERE world_id <> excluded.world_id OR x <> excluded.x OR y <> excluded.y OR z <> excluded.z
+            OR yaw <> excluded.yaw OR pitch <> excluded.pitch OR hash IS NOT excluded.hash
+        """;
+
+    private static final String IMPORT_SQL = """
+        INSERT INTO homes (uuid, name, world_id, x, y, z, yaw, pitch, hash, updated_at)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, strftime('%s', 'now'))
+        ON CONFLICT(uuid, name) DO NOTHING
+        """;
+
+    private static final String HAS_HOMES_SQL = "SELECT EXISTS (SELECT 1 FROM homes WHERE uuid = ?)";
+
+    // While legacy rows remain, they count as written by players as well
+    private static final String HAS_LEGACY_HOME_SQL = "SELECT EXISTS (SELECT 1 FROM homes_legacy WHERE uuid = ?)";
+
+    private static final String HAS_UNNAMED_HOME_SQL = "SELECT EXISTS (SELECT 1 FROM homes_unnamed WHERE uuid = ?)";
+
+    private static final String NAMES_SQL = "SELECT name FROM homes WHERE uuid = ?";
+
+    static final String DELETE_SQL = "DELETE FROM homes WHERE uuid = ?";
+
+    static final String DELETE_NAME_SQL = "DELETE FROM homes WHERE uuid = ? AND name = ?";
+
+    private static final String LEGACY_DELETE_SQL = "DELETE FROM homes_legacy WHERE uuid = ?";
+
+    private static final String UNNAMED_DELETE_SQL = "DELETE FROM homes_unnamed WHERE uuid = ?";
+
+    // Legacy and unnamed rows predate names, they become the player's default home
+    private static final String MOVE_SQL = """
+        INSERT INTO homes (uuid, name, world_id, x, y, z, yaw, pitch, hash, updated_at)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+        ON CONFLICT(uuid, name) DO NOTHING
+        """;
+
+    // Sums of the 16 children of a range; every child of prefix p sorts
+    // between p and p || 'G', since 'G' follows all hex digits
+    private static final String RANGE_HASHES_SQL = """
+        SELECT substr(prefix, ?, 1), sum(row_count), sum(hash_sum) FROM home_ranges
+        WHERE prefix >= ? AND prefix < ?
+        GROUP BY 1
+        """;
+
+    // The limit applies to changes, each of which joins all homes of its player
+    private static final String CHANGES_SQL = """
+        SELECT c.seq, c.uuid, c.node, h.name, w.name, h.x, h.y, h.z, h.yaw, h.pitch
+        FROM (SELECT seq, uuid, node FROM home_changes WHERE seq > ? ORDER BY seq LIMIT ?) c
+        LEFT JOIN homes h ON h.uuid = c.uuid
+        LEFT JOIN worlds w ON w.id = h.world_id
+        ORDER BY c.seq, h.name
+        """;
+
+    /**
+     * Legacy or unnamed rows moved, or rows hashed, per writer transaction
+     */
+    private static final int LEGACY_CHUNK = 2000;
+
+    /**
+     * SQLite open flag SQLITE_OPEN_READONLY
+     */
+    private static final int OPEN_READONLY = 0x00000001;
+
     private final JavaPlugin plugin;
-    private final HikariDataSource dataSource;
+    private final String jdbcUrl;
+    private final String journalMode;
+    private final String synchronous;
+    private final int cacheSize;
+    private final long mmapSize;
+    private final int busyTimeout;
+    private final Durability durability;
+    // Shared-store mode: every write is also recorded in home_changes
+    private final boolean changeLog;
+    private final String nodeId;
+    private final HikariDataSource readPool;
+    private final int loadParallelism;
+    // Point reads run on the pool, all writes on one thread in submission order
+    private final ExecutorService readExecutor;
+    private final ScheduledExecutorService writeExecutor;
+    // Merges batches waiting for the writer, only with durability group
+    private final GroupCommit groupCommit;
+
+    // Single writer, guarded by writeLock
+    private final Object writeLock = new Object();
+    private Connection writer;
+    private PreparedStatement upsertStmt;
+    private PreparedStatement deleteStmt;
+    private boolean schemaReady;
+    // World ids by name, only filled outside transactions
+    private final Map<String, Integer> worldIds = new HashMap<>();
+    private boolean legacyTable;
+
+    // homes_legacy still holds rows; only the writer clears it
+    private volatile boolean legacyRows;
+    private long legacyMoved;
+    private boolean unnamedTable;
+    // homes_unnamed still holds rows; only the writer clears it
+    private volatile boolean unnamedRows;
+    private long unnamedMoved;
+    // Rows from before schema version 4 still lack their hash
+    private volatile boolean unhashedRows;
+    private long rowsHashed;
 
     public SqliteHomeRepository(JavaPlugin plugin) {
+        this(plugin, new File(plugin.getDataFolder(), SqliteResharder.SINGLE_FILE),
+                plugin.getConfig().getInt("performance.connection-pool-size", 5),
+                plugin.getConfig().getBoolean("sync.enabled", false));
+    }
+
+    /**
+     * Repository on one database file, for a single homes.db or one shard of
+     * {@link ShardedSqliteHomeRepository}
+     *
+     * @param poolSize read connections and read threads
+     * @param changeLog record writes in home_changes for servers sharing the file
+     */
+    SqliteHomeRepository(JavaPlugin plugin, File dbFile, int poolSize, boolean changeLog) {
         this.plugin = plugin;
 
-        if (!plugin.getDataFolder().exists()) {
-            plugin.getDataFolder().mkdirs();
+        if (!dbFile.getParentFile().exists()) {
+            dbFile.getParentFile().mkdirs();
         }
 
-        File dbFile = new File(plugin.getDataFolder(), "homes.db");
+        this.jdbcUrl = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+
+        FileConfiguration cfg = plugin.getConfig();
+        this.journalMode = cfg.getString("performance.sqlite.journal-mode", "WAL");
+        this.durability = Durability.fromConfig(cfg);
+        // The configured level only applies to periodic, the others sync every commit
+        this.synchronous = durability.syncsEveryCommit()
+                ? "FULL"
+                : cfg.getString("performance.sqlite.synchronous", "NORMAL");
+        this.cacheSize = cfg.getInt("performance.sqlite.cache-size", -16000);
+        this.mmapSize = cfg.getLong("performance.sqlite.mmap-size", 268435456L);
+        this.busyTimeout = cfg.getInt("performance.sqlite.busy-timeout", 5000);
+        this.changeLog = changeLog;
+        String node = cfg.getString("sync.node-id", "");
+        this.nodeId = node == null || node.isEmpty() ? UUID.randomUUID().toString() : node;
+
+        // Writer first: it creates the file and switches it to WAL before readers attach
+        synchronized (writeLock) {
+            try {
+                openWriter();
+            } catch (SQLException e) {
+                plugin.getLogger().severe("Failed to open SQLite writer connection: " + e.getMessage());
+            }
+        }
+        initializeDatabase();
 
+        poolSize = Math.max(1, poolSize);
         HikariConfig config = new HikariConfig();
-        config.setJdbcUrl("jdbc:sqlite:" + dbFile.getAbsolutePath());
-        config.setMaximumPoolSize(10);
-        config.setMinimumIdle(2);
+        config.setPoolName("HomeService-SQLite-Read-" + dbFile.getName());
+        config.setJdbcUrl(jdbcUrl);
+        config.setMaximumPoolSize(poolSize);
+        config.setMinimumIdle(1);
         config.setConnectionTimeout(5000);
         config.setIdleTimeout(300000);
         config.setMaxLifetime(600000);
         config.setConnectionTestQuery("SELECT 1");
-        config.addDataSourceProperty("cachePrepStmts", "true");
-        config.addDataSourceProperty("prepStmtCacheSize", "250");
-        config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        // Must match open_mode, sqlite-jdbc refuses to flip it on an open connection
+        config.setReadOnly(true);
+        // sqlite-jdbc reads these as connection pragmas
+        config.addDataSourceProperty("open_mode", String.valueOf(OPEN_READONLY));
+        config.addDataSourceProperty("busy_timeout", String.valueOf(busyTimeout));
+        config.addDataSourceProperty("cache_size", String.valueOf(cacheSize));
+        config.setConnectionInitSql("PRAGMA mmap_size = " + mmapSize);
 
-        this.dataSource = new HikariDataSource(config);
+        this.readPool = new HikariDataSource(config);
+        // Keep one reader free for point reads during the startup load
+        this.loadParallelism = Math.max(1, poolSize - 1);
 
-        initializeDatabase();
+        this.readExecutor = Executors.newFixedThreadPool(poolSize, r -> {
+            Thread thread = new Thread(r, "HomeRepository-SQLite-Read");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ScheduledThreadPoolExecutor write = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "HomeRepository-SQLite-Write");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Delayed work (conversion retries) must not hold up close()
+        write.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.writeExecutor = write;
+        this.groupCommit = durability == Durability.GROUP
+                ? new GroupCommit(writeExecutor, this::commitGroup)
+                : null;
+
+        if (durability == Durability.PERIODIC) {
+            long interval = Math.max(10L, cfg.getLong("durability.checkpoint-interval-ms", 1000L));
+            writeExecutor.scheduleWithFixedDelay(this::checkpoint, interval, interval, TimeUnit.MILLISECONDS);
+        }
+
+        if (legacyRows) {
+            plugin.getLogger().info("Converting homes to binary keys in the background");
+            scheduleLegacyChunk(0L);
+        }
+        if (unnamedRows) {
+            plugin.getLogger().info("Moving homes to the named homes table in the background");
+            scheduleUnnamedChunk(0L);
+        }
+        if (unhashedRows) {
+            plugin.getLogger().info("Hashing homes for consistency checks in the background");
+            scheduleHashChunk(0L);
+        }
+    }
+
+    /**
+     * Copy every committed WAL frame into the database. SQLite syncs the WAL
+     * before and the database after a complete checkpoint, which is what
+     * bounds the loss window of periodic durability. FULL waits up to the
+     * busy timeout for readers, a PASSIVE checkpoint would skip frames they
+     * still see without syncing anything. Runs on the writer thread.
+     */
+    private void checkpoint() {
+        synchronized (writeLock) {
+            if (writer == null) {
+                return;
+            }
+
+            try (Statement stmt = writer().createStatement();
+                    ResultSet rs = stmt.executeQuery("PRAGMA wal_checkpoint(FULL)")) {
+                if (rs.next() && rs.getInt(1) != 0) {
+                    plugin.getLogger().warning("Checkpoint of homes.db blocked by readers for "
+                            + busyTimeout + " ms, unsynced changes wait for the next one");
+                }
+            } catch (SQLException e) {
+                plugin.getLogger().warning("Failed to checkpoint homes.db: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Open the writer connection and prepare its statements. Caller must hold
+     * writeLock.
+     */
+    private void openWriter() throws SQLException {
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("SQLite JDBC driver not found", e);
+        }
+
+        Connection conn = DriverManager.getConnection(jdbcUrl);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = " + busyTimeout);
+            try (ResultSet rs = stmt.executeQuery("PRAGMA journal_mode = " + journalMode)) {
+                if (rs.next() && !journalMode.equalsIgnoreCase(rs.getString(1))) {
+                    plugin.getLogger().warning("SQLite refused journal_mode " + journalMode + ", using " + rs.getString(1));
+                }
+            }
+            stmt.execute("PRAGMA synchronous = " + synchronous);
+            stmt.execute("PRAGMA cache_size = " + cacheSize);
+            stmt.execute("PRAGMA mmap_size = " + mmapSize);
+            if (changeLog && schemaReady) {
+                installChangeTriggers(stmt);
+            }
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+
+        this.writer = conn;
+        this.upsertStmt = null;
+        this.deleteStmt = null;
+    }
+
+    /**
+     * Writer connection, reopened if it was lost. Caller must hold writeLock.
+     */
+    private Connection writer() throws SQLException {
+        if (writer == null || writer.isClosed()) {
+            openWriter();
+        }
+        return writer;
+    }
+
+    private PreparedStatement upsertStatement() throws SQLException {
+        if (upsertStmt == null || upsertStmt.isClosed()) {
+            upsertStmt = writer().prepareStatement(UPSERT_SQL);
+        }
+        return upsertStmt;
+    }
+
+    private PreparedStatement deleteStatement() throws SQLException {
+        if (deleteStmt == null || deleteStmt.isClosed()) {
+            deleteStmt = writer().prepareStatement(DELETE_SQL);
+        }
+        return deleteStmt;
     }
 
     private void initializeDatabase() {
-        String createTable = """
-            CREATE TABLE IF NOT EXISTS homes (
-                uuid TEXT PRIMARY KEY NOT NULL,
-                world TEXT NOT NULL,
-                x REAL NOT NULL,
-                y REAL NOT NULL,
-                z REAL NOT NULL,
-                yaw REAL NOT NULL,
-                pitch REAL NOT NULL,
-                updated_at INTEGER DEFAULT (strftime('%s', 'now'))
+        // AUTOINCREMENT, so sequence numbers are never reused after pruning
+        String createChanges = """
+            CREATE TABLE IF NOT EXISTS home_changes (
+                seq INTEGER PRIMARY KEY AUTOINCREMENT,
+                uuid TEXT NOT NULL,
+                node TEXT NOT NULL,
+                changed_at INTEGER NOT NULL
             )
             """;
 
-        String createIndex = "CREATE INDEX IF NOT EXISTS idx_homes_updated ON homes(updated_at)";
+        synchronized (writeLock) {
+            try {
+                Connection conn = writer();
+                int version = SqliteSchema.migrate(conn, plugin.getLogger());
+
+                legacyTable = SqliteSchema.hasTable(conn, SqliteSchema.LEGACY_TABLE);
+                // Answered by the partial index idx_homes_unhashed
+                try (Statement stmt = conn.createStatement();
+                        ResultSet rs = stmt.executeQuery("SELECT EXISTS (SELECT 1 FROM homes WHERE hash IS NULL)")) {
+                    unhashedRows = rs.next() && rs.getBoolean(1);
+                }
+                if (legacyTable) {
+                    try (Statement stmt = conn.createStatement();
+                            ResultSet rs = stmt.executeQuery("SELECT EXISTS (SELECT 1 FROM homes_legacy)")) {
+                        legacyRows = rs.next() && rs.getBoolean(1);
+                    }
+                }
+                unnamedTable = SqliteSchema.hasTable(conn, SqliteSchema.UNNAMED_TABLE);
+                if (unnamedTable) {
+                    try (Statement stmt = conn.createStatement();
+                            ResultSet rs = stmt.executeQuery("SELECT EXISTS (SELECT 1 FROM homes_unnamed)")) {
+                        unnamedRows = rs.next() && rs.getBoolean(1);
+                    }
+                }
+
+                try (Statement stmt = conn.createStatement()) {
+                    // Other servers sharing the file may still read the emptied table
+                    if (legacyTable && !legacyRows && !changeLog) {
+                        stmt.execute("DROP TABLE " + SqliteSchema.LEGACY_TABLE);
+                        legacyTable = false;
+                    }
+                    if (unnamedTable && !unnamedRows && !changeLog) {
+                        stmt.execute("DROP TABLE " + SqliteSchema.UNNAMED_TABLE);
+                        unnamedTable = false;
+                    }
+                    if (changeLog) {
+                        // Keys are stored as they come: text for legacy rows, blobs otherwise
+                        stmt.execute(createChanges);
+                        stmt.execute("CREATE INDEX IF NOT EXISTS idx_home_changes_time ON home_changes(changed_at)");
+                        // Renaming a table takes its triggers along, start from scratch
+                        dropChangeTriggers(stmt);
+                        installChangeTriggers(stmt);
+                    }
+                }
+                schemaReady = true;
+                plugin.getLogger().info("SQLite database initialized successfully (journal_mode=" + journalMode
+                        + ", schema version " + version + ")");
+            } catch (SQLException e) {
+                plugin.getLogger().severe("Failed to initialize database: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Record every change of this connection in home_changes. The triggers
+     * are TEMP, so they belong to this writer only and carry its node id;
+     * they fire inside the writing transaction and cover every write path.
+     */
+    private void installChangeTriggers(Statement stmt) throws SQLException {
+        String node = "'" + nodeId.replace("'", "''") + "'";
+        stmt.execute("CREATE TEMP TRIGGER IF NOT EXISTS home_changes_insert AFTER INSERT ON main.homes BEGIN "
+                + "INSERT INTO home_changes (uuid, node, changed_at) VALUES (NEW.uuid, " + node + ", NEW.updated_at); END");
+        stmt.execute("CREATE TEMP TRIGGER IF NOT EXISTS home_changes_update AFTER UPDATE ON main.homes BEGIN "
+                + "INSERT INTO home_changes (uuid, node, changed_at) VALUES (NEW.uuid, " + node + ", NEW.updated_at); END");
+        stmt.execute("CREATE TEMP TRIGGER IF NOT EXISTS home_changes_delete AFTER DELETE ON main.homes BEGIN "
+                + "INSERT INTO home_changes (uuid, node, changed_at) VALUES (OLD.uuid, " + node + ", strftime('%s', 'now')); END");
+        // Legacy rows are only ever deleted, by players or by the conversion
+        if (legacyTable) {
+            stmt.execute("CREATE TEMP TRIGGER IF NOT EXISTS home_changes_legacy_delete AFTER DELETE ON main."
+                    + SqliteSchema.LEGACY_TABLE + " BEGIN "
+                    + "INSERT INTO home_changes (uuid, node, changed_at) VALUES (OLD.uuid, " + node + ", strftime('%s', 'now')); END");
+        }
+        if (unnamedTable) {
+            stmt.execute("CREATE TEMP TRIGGER IF NOT EXISTS home_changes_unnamed_delete AFTER DELETE ON main."
+                    + SqliteSchema.UNNAMED_TABLE + " BEGIN "
+                    + "INSERT INTO home_changes (uuid, node, changed_at) VALUES (OLD.uuid, " + node + ", strftime('%s', 'now')); END");
+        }
+    }
 
-        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
-            stmt.execute(createTable);
-            stmt.execute(createIndex);
-            plugin.getLogger().info("SQLite database initialized successfully");
+    private static void dropChangeTriggers(Statement stmt) throws SQLException {
+        stmt.execute("DROP TRIGGER IF EXISTS temp.home_changes_insert");
+        stmt.execute("DROP TRIGGER IF EXISTS temp.home_changes_update");
+        stmt.execute("DROP TRIGGER IF EXISTS temp.home_changes_delete");
+        stmt.execute("DROP TRIGGER IF EXISTS temp.home_changes_legacy_delete");
+        stmt.execute("DROP TRIGGER IF EXISTS temp.home_changes_unnamed_delete");
+    }
+
+    @Override
+    public boolean supportsChangeFeed() {
+        return changeLog;
+    }
+
+    @Override
+    public long getLastChange() {
+        if (!changeLog) {
+            return 0L;
+        }
+
+        try (Connection conn = readPool.getConnection()) {
+            return lastChange(conn);
         } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to initialize database: " + e.getMessage());
+            plugin.getLogger().severe("Failed to read the change log position: " + e.getMessage());
+            return 0L;
+        }
+    }
+
+    /**
+     * Highest sequence number ever handed out, pruned entries included
+     */
+    private static long lastChange(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT seq FROM sqlite_sequence WHERE name = 'home_changes'")) {
+            return rs.next() ? rs.getLong(1) : 0L;
         }
     }
 
     @Override
-    public Map<UUID, Home> loadAll() {
-        Map<UUID, Home> homes = new HashMap<>();
-        String query = "SELECT uuid, world, x, y, z, yaw, pitch FROM homes";
+    public CompletableFuture<HomeChange.Page> readChanges(long afterSeq, int limit) {
+        if (!changeLog) {
+            return HomeRepository.super.readChanges(afterSeq, limit);
+        }
+        return async(readExecutor, "read home changes", () -> readChangePage(afterSeq, limit));
+    }
 
-        try (Connection conn = dataSource.getConnection(); PreparedStatement stmt = conn.prepareStatement(query); ResultSet rs = stmt.executeQuery()) {
+    private HomeChange.Page readChangePage(long afterSeq, int limit) throws SQLException {
+        try (Connection conn = readPool.getConnection()) {
+            boolean truncated = false;
+            if (afterSeq > 0) {
+                try (Statement stmt = conn.createStatement();
+                        ResultSet rs = stmt.executeQuery("SELECT MIN(seq) FROM home_changes")) {
+                    // Sequence numbers have no gaps, except where entries were pruned
+                    long oldest = rs.next() ? rs.getLong(1) : 0L;
+                    truncated = oldest > 0 ? oldest > afterSeq + 1 : lastChange(conn) > afterSeq;
+                }
+            }
 
-            while (rs.next()) {
-                try {
-                    UUID uuid = UUID.fromString(rs.getString("uuid"));
-                    Home home = new Home(
-                            rs.getString("world"),
-                            rs.getDouble("x"),
-                            rs.getDouble("y"),
-                            rs.getDouble("z"),
-                            rs.getFloat("yaw"),
-                            rs.getFloat("pitch")
-                    );
-                    homes.put(uuid, home);
-                } catch (IllegalArgumentException e) {
-                    plugin.getLogger().warning("Invalid UUID in database: " + rs.getString("uuid"));
-                }
-            }
-
-            plugin.getLogger().info("Loaded " + homes.size() + " homes from database");
+            // Every row a write touches is logged, but each change carries the
+            // player's current homes, so only the last change per player is kept
+            Map<UUID, HomeChange> changes = new LinkedHashMap<>();
+            long lastSeq = afterSeq;
+            try (PreparedStatement stmt = conn.prepareStatement(CHANGES_SQL)) {
+                stmt.setLong(1, afterSeq);
+                stmt.setInt(2, limit);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    boolean more = rs.next();
+                    while (more) {
+                        long seq = rs.getLong(1);
+                        lastSeq = seq;
+                        boolean own = nodeId.equals(rs.getString(3));
+                        UUID uuid = own ? null : keyOf(rs.getObject(2));
+
+                        // One row per home of the player, or one without a home
+                        PlayerHomes homes = PlayerHomes.EMPTY;
+                        do {
+                            String world = rs.getString(5);
+                            if (uuid != null && world != null) {
+                                homes = homes.with(rs.getString(4), readHome(rs, world, 6));
+                            }
+                            more = rs.next();
+                        } while (more && rs.getLong(1) == seq);
+
+                        if (uuid != null) {
+                            changes.remove(uuid);
+                            changes.put(uuid, new HomeChange(seq, uuid, homes));
+                        }
+                    }
+                }
+            }
+            return new HomeChange.Page(new ArrayList<>(changes.values()), lastSeq, truncated);
+        }
+    }
+
+    /**
+     * UUID from a key column: a blob, or the text of a legacy row
+     */
+    private static UUID keyOf(Object raw) {
+        if (raw instanceof byte[] bytes) {
+            return fromBytes(bytes);
+        }
+
+        try {
+            return raw != null ? UUID.fromString(raw.toString()) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Integer> pruneChanges(long maxAgeSeconds) {
+        if (!changeLog) {
+            return HomeRepository.super.pruneChanges(maxAgeSeconds);
+        }
+
+        return async(writeExecutor, "prune home changes", () -> {
+            synchronized (writeLock) {
+                try (PreparedStatement stmt = writer().prepareStatement(
+                        "DELETE FROM home_changes WHERE changed_at < strftime('%s', 'now') - ?")) {
+                    stmt.setLong(1, maxAgeSeconds);
+                    return stmt.executeUpdate();
+                }
+            }
+        });
+    }
+
+    @Override
+    public Map<UUID, PlayerHomes> loadAll() {
+        Map<UUID, PlayerHomes> homes = new HashMap<>();
+        try {
+            streamShard(0, 1, homes::put);
+            plugin.getLogger().info("Loaded homes of " + homes.size() + " players from database");
         } catch (SQLException e) {
             plugin.getLogger().severe("Failed to load homes: " + e.getMessage());
         }
-
         return homes;
     }
 
     @Override
-    public void saveAll(Map<UUID, Home> homes) {
-        String upsert = """
-            INSERT INTO homes (uuid, world, x, y, z, yaw, pitch, updated_at)
-            VALUES (?, ?, ?, ?, ?, ?, ?, strftime('%s', 'now'))
-            ON CONFLICT(uuid) DO UPDATE SET
-                world = excluded.world,
-                x = excluded.x,
-                y = excluded.y,
-                z = excluded.z,
-                yaw = excluded.yaw,
-                pitch = excluded.pitch,
-                updated_at = excluded.updated_at
+    public CompletableFuture<Long> loadShard(int shard, int shards, BiConsumer<UUID, PlayerHomes> sink) {
+        return async(readExecutor, "load homes of shard " + shard + "/" + shards,
+                () -> streamShard(shard, shards, sink));
+    }
+
+    @Override
+    public int getLoadParallelism() {
+        return loadParallelism;
+    }
+
+    /**
+     * Decode one UUID range straight into the sink, without building a map.
+     * The range is a primary key range, so shards never scan each other's rows,
+     * and a player's homes arrive as adjacent rows.
+     *
+     * @return number of players
+     */
+    private long streamShard(int shard, int shards, BiConsumer<UUID, PlayerHomes> sink) throws SQLException {
+        byte[] lower = shard > 0 ? boundary(shard, shards) : null;
+        byte[] upper = shard < shards - 1 ? boundary(shard + 1, shards) : null;
+
+        try (Connection conn = readPool.getConnection()) {
+            return inSnapshot(conn, () -> {
+                String[] worlds = worldNames(conn);
+                long count = 0;
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "SELECT uuid, name, world_id, x, y, z, yaw, pitch FROM homes" + range(lower, upper)
+                                + " ORDER BY uuid, name")) {
+                    bindRange(stmt, lower, upper);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        UUID player = null;
+                        PlayerHomes homes = PlayerHomes.EMPTY;
+                        while (rs.next()) {
+                            UUID uuid = fromBytes(rs.getBytes(1));
+                            String world = worldName(worlds, rs.getInt(3));
+                            if (uuid == null || world == null) {
+                                plugin.getLogger().warning("Invalid home row in database, skipped");
+                                continue;
+                            }
+
+                            if (!uuid.equals(player)) {
+                                if (!homes.isEmpty()) {
+                                    sink.accept(player, homes);
+                                    count++;
+                                }
+                                player = uuid;
+                                homes = PlayerHomes.EMPTY;
+                            }
+                            homes = homes.with(rs.getString(2), readHome(rs, world, 4));
+                        }
+                        if (!homes.isEmpty()) {
+                            sink.accept(player, homes);
+                            count++;
+                        }
+                    }
+                }
+
+                if (unnamedRows) {
+                    count += streamUnnamed(conn, worlds, lower, upper, sink);
+                }
+                if (legacyRows) {
+                    count += streamLegacy(conn, lower, upper, sink);
+                }
+                return count;
+            });
+        }
+    }
+
+    /**
+     * Rows of the same range not yet moved to the named table, one home per
+     * player
+     */
+    private long streamUnnamed(Connection conn, String[] worlds, byte[] lower, byte[] upper,
+            BiConsumer<UUID, PlayerHomes> sink) throws SQLException {
+        long count = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT uuid, world_id, x, y, z, yaw, pitch FROM homes_unnamed" + range(lower, upper))) {
+            bindRange(stmt, lower, upper);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    UUID uuid = fromBytes(rs.getBytes(1));
+                    String world = worldName(worlds, rs.getInt(2));
+                    if (uuid == null || world == null) {
+                        plugin.getLogger().warning("Invalid home row in database, skipped");
+                        continue;
+                    }
+
+                    sink.accept(uuid, PlayerHomes.of(PlayerHomes.DEFAULT_NAME, readHome(rs, world, 3)));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Rows of the same range not yet converted. Hex text sorts like the
+     * bytes, so the bounds carry over as hex prefixes.
+     */
+    private long streamLegacy(Connection conn, byte[] lower, byte[] upper, BiConsumer<UUID, PlayerHomes> sink)
+            throws SQLException {
+        // One String per world instead of one per row
+        Map<String, String> worlds = new HashMap<>();
+        long count = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT uuid, world, x, y, z, yaw, pitch FROM homes_legacy" + range(lower, upper))) {
+            int index = 1;
+            if (lower != null) {
+                stmt.setString(index++, hex(lower));
+            }
+            if (upper != null) {
+                stmt.setString(index, hex(upper));
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String raw = rs.getString(1);
+                    UUID uuid;
+                    try {
+                        uuid = UUID.fromString(raw);
+                    } catch (IllegalArgumentException e) {
+                        plugin.getLogger().warning("Invalid UUID in database: " + raw);
+                        continue;
+                    }
+
+                    String world = worlds.computeIfAbsent(rs.getString(2), w -> w);
+                    sink.accept(uuid, PlayerHomes.of(PlayerHomes.DEFAULT_NAME, readHome(rs, world, 3)));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static String range(byte[] lower, byte[] upper) {
+        StringBuilder where = new StringBuilder();
+        if (lower != null) {
+            where.append(" WHERE uuid >= ?");
+        }
+        if (upper != null) {
+            where.append(lower != null ? " AND" : " WHERE").append(" uuid < ?");
+        }
+        return where.toString();
+    }
+
+    private static void bindRange(PreparedStatement stmt, byte[] lower, byte[] upper) throws SQLException {
+        int index = 1;
+        if (lower != null) {
+            stmt.setBytes(index++, lower);
+        }
+        if (upper != null) {
+            stmt.setBytes(index, upper);
+        }
+    }
+
+    /**
+     * Lower bound of a shard as a key prefix, splitting the first 16 bits of
+     * the UUID evenly. A shorter blob sorts before every key it prefixes.
+     */
+    private static byte[] boundary(int shard, int shards) {
+        int prefix = (int) ((long) shard * 0x10000 / shards);
+        return new byte[] {(byte) (prefix >>> 8), (byte) prefix};
+    }
+
+    private static String hex(byte[] prefix) {
+        return String.format("%02x%02x", prefix[0] & 0xff, prefix[1] & 0xff);
+    }
+
+    private PlayerHomes loadHomes(UUID uuid) throws SQLException {
+        String query = """
+            SELECT h.name, w.name, h.x, h.y, h.z, h.yaw, h.pitch
+            FROM homes h JOIN worlds w ON w.id = h.world_id
+            WHERE h.uuid = ?
             """;
 
-        String delete = "DELETE FROM homes WHERE uuid NOT IN (SELECT uuid FROM (SELECT ? AS uuid))";
+        try (Connection conn = readPool.getConnection()) {
+            return inSnapshot(conn, () -> {
+                PlayerHomes homes = PlayerHomes.EMPTY;
+                try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                    stmt.setBytes(1, toBytes(uuid));
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            homes = homes.with(rs.getString(1), readHome(rs, rs.getString(2), 3));
+                        }
+                    }
+                }
+                if (!homes.isEmpty()) {
+                    return homes;
+                }
+
+                if (unnamedRows) {
+                    try (PreparedStatement stmt = conn.prepareStatement("""
+                            SELECT w.name, h.x, h.y, h.z, h.yaw, h.pitch
+                            FROM homes_unnamed h JOIN worlds w ON w.id = h.world_id
+                            WHERE h.uuid = ?
+                            """)) {
+                        stmt.setBytes(1, toBytes(uuid));
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            if (rs.next()) {
+                                return PlayerHomes.of(PlayerHomes.DEFAULT_NAME, readHome(rs, rs.getString(1), 2));
+                            }
+                        }
+                    }
+                }
+                if (!legacyRows) {
+                    return null;
+                }
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "SELECT world, x, y, z, yaw, pitch FROM homes_legacy WHERE uuid = ?")) {
+                    stmt.setString(1, uuid.toString());
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        return rs.next()
+                                ? PlayerHomes.of(PlayerHomes.DEFAULT_NAME, readHome(rs, rs.getString(1), 2))
+                                : null;
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Home from x, y, z, yaw, pitch columns starting at the given index
+     */
+    private static Home readHome(ResultSet rs, String world, int column) throws SQLException {
+        return new Home(world, rs.getDouble(column), rs.getDouble(column + 1), rs.getDouble(column + 2),
+                rs.getFloat(column + 3), rs.getFloat(column + 4));
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, PlayerHomes>> findInBox(String world, double minX, double minZ,
+            double maxX, double maxZ) {
+        String query = """
+            SELECT uuid, name, x, y, z, yaw, pitch FROM homes
+            WHERE world_id = (SELECT id FROM worlds WHERE name = ?)
+            AND x BETWEEN ? AND ? AND z BETWEEN ? AND ?
+            """;
+        // Not indexed, only scanned until the background move is done
+        String unnamedQuery = """
+            SELECT uuid, NULL, x, y, z, yaw, pitch FROM homes_unnamed
+            WHERE world_id = (SELECT id FROM worlds WHERE name = ?)
+            AND x BETWEEN ? AND ? AND z BETWEEN ? AND ?
+            """;
+        String legacyQuery = """
+            SELECT uuid, NULL, x, y, z, yaw, pitch FROM homes_legacy
+            WHERE world = ? AND x BETWEEN ? AND ? AND z BETWEEN ? AND ?
+            """;
 
-        try (Connection conn = dataSource.getConnection()) {
+        return async(readExecutor, "find homes in " + world, () -> {
+            Map<UUID, PlayerHomes> result = new HashMap<>();
+            try (Connection conn = readPool.getConnection()) {
+                inSnapshot(conn, () -> {
+                    findInBox(conn, query, world, minX, minZ, maxX, maxZ, result);
+                    if (unnamedRows) {
+                        findInBox(conn, unnamedQuery, world, minX, minZ, maxX, maxZ, result);
+                    }
+                    if (legacyRows) {
+                        findInBox(conn, legacyQuery, world, minX, minZ, maxX, maxZ, result);
+                    }
+                    return null;
+                });
+            }
+            return result;
+        });
+    }
+
+    private void findInBox(Connection conn, String query, String world, double minX, double minZ,
+            double maxX, double maxZ, Map<UUID, PlayerHomes> result) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setString(1, world);
+            stmt.setDouble(2, minX);
+            stmt.setDouble(3, maxX);
+            stmt.setDouble(4, minZ);
+            stmt.setDouble(5, maxZ);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    UUID uuid = keyOf(rs.getObject(1));
+                    if (uuid == null) {
+                        plugin.getLogger().warning("Invalid UUID in database: " + rs.getString(1));
+                        continue;
+                    }
+                    // Legacy and unnamed rows have no name column
+                    String name = rs.getString(2);
+                    Home home = readHome(rs, world, 3);
+                    result.merge(uuid, PlayerHomes.of(name != null ? name : PlayerHomes.DEFAULT_NAME, home),
+                            (found, added) -> found.with(added.name(0), added.home(0)));
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean supportsRangeHashes() {
+        return true;
+    }
+
+    /**
+     * One read of at most 4096 small rows of home_ranges, which the triggers
+     * keep current. Legacy, unnamed and unhashed rows are missing from the
+     * sums, so there are none until all conversions are done.
+     */
+    @Override
+    public CompletableFuture<HomeRangeHashes.Node[]> rangeHashes(String prefix) {
+        if (legacyRows || unnamedRows || unhashedRows) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return async(readExecutor, "read range hashes of '" + prefix + "'", () -> {
+            HomeRangeHashes.Node[] children = new HomeRangeHashes.Node[16];
+            Arrays.fill(children, HomeRangeHashes.Node.EMPTY);
+            try (Connection conn = readPool.getConnection();
+                    PreparedStatement stmt = conn.prepareStatement(RANGE_HASHES_SQL)) {
+                stmt.setInt(1, prefix.length() + 1);
+                stmt.setString(2, prefix);
+                stmt.setString(3, prefix + "G");
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        int digit = Character.digit(rs.getString(1).charAt(0), 16);
+                        children[digit] = new HomeRangeHashes.Node(rs.getLong(2), rs.getLong(3));
+                    }
+                }
+            }
+            return children;
+        });
+    }
+
+    /**
+     * A hex prefix of up to four digits is a primary key range like a load
+     * shard
+     */
+    @Override
+    public CompletableFuture<Map<UUID, PlayerHomes>> loadRange(String prefix) {
+        int shards = 1 << (4 * prefix.length());
+        int shard = prefix.isEmpty() ? 0 : Integer.parseInt(prefix, 16);
+        return async(readExecutor, "load homes of range '" + prefix + "'", () -> {
+            Map<UUID, PlayerHomes> homes = new HashMap<>();
+            streamShard(shard, shards, homes::put);
+            return homes;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Integer> deleteWorld(String world) {
+        return async(writeExecutor, "delete homes in " + world, () -> {
+            synchronized (writeLock) {
+                Connection conn = writer();
+                conn.setAutoCommit(false);
+                try {
+                    int deleted;
+                    try (PreparedStatement stmt = conn.prepareStatement(
+                            "DELETE FROM homes WHERE world_id = (SELECT id FROM worlds WHERE name = ?)")) {
+                        stmt.setString(1, world);
+                        deleted = stmt.executeUpdate();
+                    }
+                    if (unnamedRows) {
+                        try (PreparedStatement stmt = conn.prepareStatement(
+                                "DELETE FROM homes_unnamed WHERE world_id = (SELECT id FROM worlds WHERE name = ?)")) {
+                            stmt.setString(1, world);
+                            deleted += stmt.executeUpdate();
+                        }
+                    }
+                    if (legacyRows) {
+                        try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM homes_legacy WHERE world = ?")) {
+                            stmt.setString(1, world);
+                            deleted += stmt.executeUpdate();
+                        }
+                    }
+                    conn.commit();
+                    return deleted;
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void saveAll(Map<UUID, PlayerHomes> homes) {
+        synchronized (writeLock) {
+            try {
+                Map<String, Integer> ids = worldIds(homes.values());
+                Connection conn = writer();
+                conn.setAutoCommit(false);
+                try {
+                    // Batch insert/update
+                    PreparedStatement upsert = upsertStatement();
+                    for (Map.Entry<UUID, PlayerHomes> entry : homes.entrySet()) {
+                        addHomes(upsert, entry.getKey(), ids, entry.getValue());
+                    }
+                    upsert.executeBatch();
+
+                    // Remove homes that no longer exist in cache. The keys go through
+                    // a temp table, one bind variable per home would overflow
+                    // SQLite's parameter limit on large servers
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.execute("CREATE TEMP TABLE IF NOT EXISTS keep_homes "
+                                + "(uuid BLOB NOT NULL, name TEXT NOT NULL, PRIMARY KEY (uuid, name)) WITHOUT ROWID");
+                        stmt.execute("DELETE FROM keep_homes");
+                    }
+                    try (PreparedStatement stmt = conn.prepareStatement(
+                            "INSERT INTO keep_homes (uuid, name) VALUES (?, ?)")) {
+                        for (Map.Entry<UUID, PlayerHomes> entry : homes.entrySet()) {
+                            byte[] key = toBytes(entry.getKey());
+                            PlayerHomes playerHomes = entry.getValue();
+                            for (int i = 0; i < playerHomes.size(); i++) {
+                                stmt.setBytes(1, key);
+                                stmt.setString(2, playerHomes.name(i));
+                                stmt.addBatch();
+                            }
+                        }
+                        stmt.executeBatch();
+                    }
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.executeUpdate("DELETE FROM homes WHERE (uuid, name) NOT IN (SELECT uuid, name FROM keep_homes)");
+                        stmt.execute("DELETE FROM keep_homes");
+                        // Everything is in the new table now
+                        if (unnamedRows) {
+                            stmt.executeUpdate("DELETE FROM homes_unnamed");
+                        }
+                        if (legacyRows) {
+                            stmt.executeUpdate("DELETE FROM homes_legacy");
+                        }
+                    }
+
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                plugin.getLogger().severe("Failed to save homes: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public CompletableFuture<PlayerHomes> load(UUID uuid) {
+        return async(readExecutor, "load homes for " + uuid, () -> loadHomes(uuid));
+    }
+
+    @Override
+    public CompletableFuture<Void> save(UUID uuid, PlayerHomes homes) {
+        return async(writeExecutor, "save homes for " + uuid, () -> {
+            writeBatch(Map.of(uuid, homes), Set.of());
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(UUID uuid) {
+        return async(writeExecutor, "delete homes for " + uuid, () -> {
+            writeBatch(Map.of(), Set.of(uuid));
+            return null;
+        });
+    }
+
+    /**
+     * Apply a batch of upserts and deletes in a single transaction, so a burst
+     * of changes costs one commit instead of one per player. With group commit
+     * the transaction also carries the batches queued behind it.
+     */
+    @Override
+    public CompletableFuture<Void> saveBatch(Map<UUID, PlayerHomes> upserts, Set<UUID> deletes) {
+        if (upserts.isEmpty() && deletes.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (groupCommit != null) {
+            return groupCommit.submit(upserts, deletes);
+        }
+
+        return async(writeExecutor, "save batch of " + (upserts.size() + deletes.size()) + " home changes", () -> {
+            writeBatch(upserts, deletes);
+            return null;
+        });
+    }
+
+    private void commitGroup(Map<UUID, PlayerHomes> upserts, Set<UUID> deletes) throws SQLException {
+        try {
+            writeBatch(upserts, deletes);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Failed to commit group of " + (upserts.size() + deletes.size())
+                    + " home changes: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    private void writeBatch(Map<UUID, PlayerHomes> upserts, Set<UUID> deletes) throws SQLException {
+        synchronized (writeLock) {
+            Map<String, Integer> ids = worldIds(upserts.values());
+            Connection conn = writer();
             conn.setAutoCommit(false);
+            try {
+                // Old rows go first, so the change log lists their removal
+                // before the new row
+                if (legacyRows) {
+                    try (PreparedStatement stmt = conn.prepareStatement(LEGACY_DELETE_SQL)) {
+                        for (UUID uuid : upserts.keySet()) {
+                            stmt.setString(1, uuid.toString());
+                            stmt.addBatch();
+                        }
+                        for (UUID uuid : deletes) {
+                            stmt.setString(1, uuid.toString());
+                            stmt.addBatch();
+                        }
+                        stmt.executeBatch();
+                    }
+                }
+                if (unnamedRows) {
+                    try (PreparedStatement stmt = conn.prepareStatement(UNNAMED_DELETE_SQL)) {
+                        for (UUID uuid : upserts.keySet()) {
+                            stmt.setBytes(1, toBytes(uuid));
+                            stmt.addBatch();
+                        }
+                        for (UUID uuid : deletes) {
+                            stmt.setBytes(1, toBytes(uuid));
+                            stmt.addBatch();
+                        }
+                        stmt.executeBatch();
+                    }
+                }
 
-            // Batch insert/update
-            try (PreparedStatement stmt = conn.prepareStatement(upsert)) {
-                for (Map.Entry<UUID, Home> entry : homes.entrySet()) {
-                    UUID uuid = entry.getKey();
-                    Home home = entry.getValue();
+                if (!upserts.isEmpty()) {
+                    PreparedStatement stmt = upsertStatement();
+                    for (Map.Entry<UUID, PlayerHomes> entry : upserts.entrySet()) {
+                        addHomes(stmt, entry.getKey(), ids, entry.getValue());
+                    }
+                    stmt.executeBatch();
+                    deleteOtherHomes(conn, upserts);
+                }
 
-                    stmt.setString(1, uuid.toString());
-                    stmt.setString(2, home.world());
-                    stmt.setDouble(3, home.x());
-                    stmt.setDouble(4, home.y());
-                    stmt.setDouble(5, home.z());
-                    stmt.setFloat(6, home.yaw());
-                    stmt.setFloat(7, home.pitch());
-                    stmt.addBatch();
+                if (!deletes.isEmpty()) {
+                    PreparedStatement stmt = deleteStatement();
+                    for (UUID uuid : deletes) {
+                        stmt.setBytes(1, toBytes(uuid));
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
                 }
-                stmt.executeBatch();
+
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
+        }
+    }
 
-            // Remove homes that no longer exist in cache
-            try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM homes WHERE uuid NOT IN ("
-                    + String.join(",", homes.keySet().stream().map(uuid -> "?").toList()) + ")")) {
-                int idx = 1;
-                for (UUID uuid : homes.keySet()) {
-                    stmt.setString(idx++, uuid.toString());
+    /**
+     * Remove the homes a saved player no longer has. Their names are one
+     * primary key range, so this is a short range read per player. Runs in
+     * the caller's transaction.
+     */
+    private void deleteOtherHomes(Connection conn, Map<UUID, PlayerHomes> saved) throws SQLException {
+        try (PreparedStatement names = conn.prepareStatement(NAMES_SQL);
+                PreparedStatement delete = conn.prepareStatement(DELETE_NAME_SQL)) {
+            boolean any = false;
+            for (Map.Entry<UUID, PlayerHomes> entry : saved.entrySet()) {
+                byte[] key = toBytes(entry.getKey());
+                names.setBytes(1, key);
+                try (ResultSet rs = names.executeQuery()) {
+                    while (rs.next()) {
+                        String name = rs.getString(1);
+                        if (!entry.getValue().contains(name)) {
+                            delete.setBytes(1, key);
+                            delete.setString(2, name);
+                            delete.addBatch();
+                            any = true;
+                        }
+                    }
                 }
-                if (!homes.isEmpty()) {
-                    stmt.executeUpdate();
+            }
+            if (any) {
+                delete.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Insert migrated homes in a single transaction. Players who already have
+     * homes wrote them themselves and keep them, whole.
+     */
+    @Override
+    public CompletableFuture<Void> importBatch(Map<UUID, PlayerHomes> homes) {
+        if (homes.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return async(writeExecutor, "import homes of " + homes.size() + " players", () -> {
+            synchronized (writeLock) {
+                Map<String, Integer> ids = worldIds(homes.values());
+                Connection conn = writer();
+                boolean legacy = legacyRows;
+                boolean unnamed = unnamedRows;
+                conn.setAutoCommit(false);
+                try (PreparedStatement exists = conn.prepareStatement(HAS_HOMES_SQL);
+                        PreparedStatement legacyExists = legacy ? conn.prepareStatement(HAS_LEGACY_HOME_SQL) : null;
+                        PreparedStatement unnamedExists = unnamed ? conn.prepareStatement(HAS_UNNAMED_HOME_SQL) : null;
+                        PreparedStatement stmt = conn.prepareStatement(IMPORT_SQL)) {
+                    for (Map.Entry<UUID, PlayerHomes> entry : homes.entrySet()) {
+                        UUID uuid = entry.getKey();
+                        exists.setBytes(1, toBytes(uuid));
+                        if (isTrue(exists)) {
+                            continue;
+                        }
+                        if (unnamedExists != null) {
+                            unnamedExists.setBytes(1, toBytes(uuid));
+                            if (isTrue(unnamedExists)) {
+                                continue;
+                            }
+                        }
+                        if (legacyExists != null) {
+                            legacyExists.setString(1, uuid.toString());
+                            if (isTrue(legacyExists)) {
+                                continue;
+                            }
+                        }
+                        addHomes(stmt, uuid, ids, entry.getValue());
+                    }
+                    stmt.executeBatch();
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
                 }
             }
+            return null;
+        });
+    }
 
+    private static boolean isTrue(PreparedStatement query) throws SQLException {
+        try (ResultSet rs = query.executeQuery()) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    /**
+     * Queue the next legacy chunk on the writer, behind the writes already
+     * waiting there
+     */
+    private void scheduleLegacyChunk(long delayMillis) {
+        try {
+            writeExecutor.schedule(this::moveLegacyChunk, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down, the next start continues the conversion
+        }
+    }
+
+    /**
+     * Convert one chunk of legacy rows. Each chunk is a short transaction of
+     * its own, so player writes wait for at most one chunk, and an interrupted
+     * conversion simply continues on the next start.
+     */
+    private void moveLegacyChunk() {
+        if (!legacyRows) {
+            return;
+        }
+
+        int moved;
+        try {
+            synchronized (writeLock) {
+                moved = moveLegacyRows(LEGACY_CHUNK);
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Failed to convert homes to binary keys, retrying in 5 seconds: " + e.getMessage());
+            scheduleLegacyChunk(5000L);
+            return;
+        }
+
+        if (moved > 0) {
+            legacyMoved += moved;
+            if (legacyMoved / 100000 != (legacyMoved - moved) / 100000) {
+                plugin.getLogger().info("Converted " + legacyMoved + " homes to binary keys");
+            }
+            scheduleLegacyChunk(0L);
+            return;
+        }
+
+        legacyRows = false;
+        plugin.getLogger().info("All homes converted to binary keys (" + legacyMoved + " this run)");
+        if (!changeLog) {
+            // Readers that saw the old flag may still be querying the table
+            try {
+                writeExecutor.schedule(this::dropLegacyTable, 10, TimeUnit.SECONDS);
+            } catch (RejectedExecutionException e) {
+                // Dropped on the next start
+            }
+        }
+    }
+
+    /**
+     * Move the oldest legacy rows to the new table. Caller must hold
+     * writeLock.
+     *
+     * @return number of legacy rows removed, 0 once the table is empty
+     */
+    private int moveLegacyRows(int limit) throws SQLException {
+        Connection conn = writer();
+
+        // World ids before the transaction, they are cached
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT DISTINCT world FROM (SELECT world FROM homes_legacy ORDER BY rowid LIMIT ?)")) {
+            stmt.setInt(1, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    worldId(rs.getString(1));
+                }
+            }
+        }
+
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement();
+                PreparedStatement select = conn.prepareStatement("SELECT rowid, uuid, world, x, y, z, yaw, pitch, "
+                        + "COALESCE(updated_at, strftime('%s', 'now')) FROM homes_legacy ORDER BY rowid LIMIT ?");
+                PreparedStatement insert = conn.prepareStatement(MOVE_SQL)) {
+            // Moving a row does not change the home, other servers need not hear of it
+            if (changeLog) {
+                dropChangeTriggers(stmt);
+            }
+
+            int rows = 0;
+            long last = 0L;
+            select.setInt(1, limit);
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    rows++;
+                    last = rs.getLong(1);
+                    UUID uuid;
+                    try {
+                        uuid = UUID.fromString(rs.getString(2));
+                    } catch (IllegalArgumentException e) {
+                        plugin.getLogger().warning("Dropping home with invalid UUID: " + rs.getString(2));
+                        continue;
+                    }
+
+                    insert.setBytes(1, toBytes(uuid));
+                    insert.setString(2, PlayerHomes.DEFAULT_NAME);
+                    insert.setInt(3, worldId(rs.getString(3)));
+                    insert.setDouble(4, rs.getDouble(4));
+                    insert.setDouble(5, rs.getDouble(5));
+                    insert.setDouble(6, rs.getDouble(6));
+                    insert.setFloat(7, rs.getFloat(7));
+                    insert.setFloat(8, rs.getFloat(8));
+                    insert.setLong(9, HomeRangeHashes.rowHash(uuid, PlayerHomes.DEFAULT_NAME,
+                            readHome(rs, rs.getString(3), 4)));
+                    insert.setLong(10, rs.getLong(9));
+                    insert.addBatch();
+                }
+            }
+
+            if (rows > 0) {
+                insert.executeBatch();
+                try (PreparedStatement delete = conn.prepareStatement("DELETE FROM homes_legacy WHERE rowid <= ?")) {
+                    delete.setLong(1, last);
+                    delete.executeUpdate();
+                }
+            }
+
+            if (changeLog) {
+                installChangeTriggers(stmt);
+            }
             conn.commit();
+            return rows;
         } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to save homes: " + e.getMessage());
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private void dropLegacyTable() {
+        synchronized (writeLock) {
+            try (Statement stmt = writer().createStatement()) {
+                stmt.execute("DROP TABLE IF EXISTS " + SqliteSchema.LEGACY_TABLE);
+                legacyTable = false;
+            } catch (SQLException e) {
+                plugin.getLogger().warning("Failed to drop homes_legacy: " + e.getMessage());
+            }
         }
     }
 
     /**
-     * Single home save operation for individual updates (more efficient than
-     * saveAll)
+     * Queue the next chunk of unnamed rows on the writer
      */
-    public void saveHome(UUID uuid, Home home) {
-        String upsert = """
-            INSERT INTO homes (uuid, world, x, y, z, yaw, pitch, updated_at)
-            VALUES (?, ?, ?, ?, ?, ?, ?, strftime('%s', 'now'))
-            ON CONFLICT(uuid) DO UPDATE SET
-                world = excluded.world,
-                x = excluded.x,
-                y = excluded.y,
-                z = excluded.z,
-                yaw = excluded.yaw,
-                pitch = excluded.pitch,
-                updated_at = excluded.updated_at
-            """;
+    private void scheduleUnnamedChunk(long delayMillis) {
+        try {
+            writeExecutor.schedule(this::moveUnnamedChunk, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down, the next start continues the move
+        }
+    }
 
-        try (Connection conn = dataSource.getConnection(); PreparedStatement stmt = conn.prepareStatement(upsert)) {
+    /**
+     * Move one chunk of rows from before home names, in a short transaction
+     * of its own like the legacy conversion
+     */
+    private void moveUnnamedChunk() {
+        if (!unnamedRows) {
+            return;
+        }
 
-            stmt.setString(1, uuid.toString());
-            stmt.setString(2, home.world());
-            stmt.setDouble(3, home.x());
-            stmt.setDouble(4, home.y());
-            stmt.setDouble(5, home.z());
-            stmt.setFloat(6, home.yaw());
-            stmt.setFloat(7, home.pitch());
-            stmt.executeUpdate();
+        int moved;
+        try {
+            synchronized (writeLock) {
+                moved = moveUnnamedRows(LEGACY_CHUNK);
+            }
         } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to save home for " + uuid + ": " + e.getMessage());
+            plugin.getLogger().warning("Failed to move homes to the named homes table, retrying in 5 seconds: "
+                    + e.getMessage());
+            scheduleUnnamedChunk(5000L);
+            return;
+        }
+
+        if (moved > 0) {
+            unnamedMoved += moved;
+            if (unnamedMoved / 100000 != (unnamedMoved - moved) / 100000) {
+                plugin.getLogger().info("Moved " + unnamedMoved + " homes to the named homes table");
+            }
+            scheduleUnnamedChunk(0L);
+            return;
+        }
+
+        unnamedRows = false;
+        plugin.getLogger().info("All homes moved to the named homes table (" + unnamedMoved + " this run)");
+        if (!changeLog) {
+            // Readers that saw the old flag may still be querying the table
+            try {
+                writeExecutor.schedule(this::dropUnnamedTable, 10, TimeUnit.SECONDS);
+            } catch (RejectedExecutionException e) {
+                // Dropped on the next start
+            }
         }
     }
 
     /**
-     * Single home delete operation
+     * Move the unnamed rows with the lowest keys to the named table as the
+     * players' default homes. Caller must hold writeLock.
+     *
+     * @return number of unnamed rows removed, 0 once the table is empty
      */
-    public void deleteHome(UUID uuid) {
-        String delete = "DELETE FROM homes WHERE uuid = ?";
+    private int moveUnnamedRows(int limit) throws SQLException {
+        Connection conn = writer();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement();
+                PreparedStatement select = conn.prepareStatement("SELECT h.uuid, w.name, h.world_id, h.x, h.y, h.z, "
+                        + "h.yaw, h.pitch, h.updated_at FROM homes_unnamed h LEFT JOIN worlds w ON w.id = h.world_id "
+                        + "ORDER BY h.uuid LIMIT ?");
+                PreparedStatement insert = conn.prepareStatement(MOVE_SQL)) {
+            // Moving a row does not change the home, other servers need not hear of it
+            if (changeLog) {
+                dropChangeTriggers(stmt);
+            }
 
-        try (Connection conn = dataSource.getConnection(); PreparedStatement stmt = conn.prepareStatement(delete)) {
+            int rows = 0;
+            byte[] last = null;
+            select.setInt(1, limit);
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    rows++;
+                    byte[] key = rs.getBytes(1);
+                    last = key;
+                    UUID uuid = fromBytes(key);
+                    String world = rs.getString(2);
+                    if (uuid == null) {
+                        plugin.getLogger().warning("Dropping home with invalid key");
+                        continue;
+                    }
 
-            stmt.setString(1, uuid.toString());
-            stmt.executeUpdate();
+                    insert.setBytes(1, key);
+                    insert.setString(2, PlayerHomes.DEFAULT_NAME);
+                    insert.setInt(3, rs.getInt(3));
+                    insert.setDouble(4, rs.getDouble(4));
+                    insert.setDouble(5, rs.getDouble(5));
+                    insert.setDouble(6, rs.getDouble(6));
+                    insert.setFloat(7, rs.getFloat(7));
+                    insert.setFloat(8, rs.getFloat(8));
+                    // Rows the load skips get a hash nothing matches, like hashRows
+                    insert.setLong(9, world != null
+                            ? HomeRangeHashes.rowHash(uuid, PlayerHomes.DEFAULT_NAME, readHome(rs, world, 4))
+                            : 0L);
+                    insert.setLong(10, rs.getLong(9));
+                    insert.addBatch();
+                }
+            }
+
+            if (rows > 0) {
+                insert.executeBatch();
+                // The chunk is the lowest keys, so it is everything up to the last one
+                try (PreparedStatement delete = conn.prepareStatement("DELETE FROM homes_unnamed WHERE uuid <= ?")) {
+                    delete.setBytes(1, last);
+                    delete.executeUpdate();
+                }
+            }
+
+            if (changeLog) {
+                installChangeTriggers(stmt);
+            }
+            conn.commit();
+            return rows;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private void dropUnnamedTable() {
+        synchronized (writeLock) {
+            try (Statement stmt = writer().createStatement()) {
+                stmt.execute("DROP TABLE IF EXISTS " + SqliteSchema.UNNAMED_TABLE);
+                unnamedTable = false;
+            } catch (SQLException e) {
+                plugin.getLogger().warning("Failed to drop homes_unnamed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Queue the next chunk of rows to hash on the writer
+     */
+    private void scheduleHashChunk(long delayMillis) {
+        try {
+            writeExecutor.schedule(this::hashChunk, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down, the next start continues
+        }
+    }
+
+    /**
+     * Hash one chunk of rows written before schema version 4, in a short
+     * transaction of its own like the legacy conversion
+     */
+    private void hashChunk() {
+        int hashed;
+        try {
+            synchronized (writeLock) {
+                hashed = hashRows(LEGACY_CHUNK);
+            }
         } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to delete home for " + uuid + ": " + e.getMessage());
+            plugin.getLogger().warning("Failed to hash homes, retrying in 5 seconds: " + e.getMessage());
+            scheduleHashChunk(5000L);
+            return;
+        }
+
+        if (hashed > 0) {
+            rowsHashed += hashed;
+            scheduleHashChunk(0L);
+            return;
+        }
+
+        // idx_homes_unhashed stays, empty it costs nothing and keeps the
+        // check on the next start an index lookup instead of a table scan
+        unhashedRows = false;
+        plugin.getLogger().info("All homes hashed (" + rowsHashed + " this run)");
+    }
+
+    /**
+     * Set the hash of rows that have none. Caller must hold writeLock.
+     *
+     * @return number of rows hashed, 0 once every row has a hash
+     */
+    private int hashRows(int limit) throws SQLException {
+        Connection conn = writer();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement();
+                PreparedStatement select = conn.prepareStatement("SELECT h.uuid, h.name, w.name, h.x, h.y, h.z, "
+                        + "h.yaw, h.pitch FROM homes h LEFT JOIN worlds w ON w.id = h.world_id "
+                        + "WHERE h.hash IS NULL LIMIT ?");
+                PreparedStatement update = conn.prepareStatement(
+                        "UPDATE homes SET hash = ? WHERE uuid = ? AND name = ?")) {
+            // Hashing a row does not change the home, other servers need not hear of it
+            if (changeLog) {
+                dropChangeTriggers(stmt);
+            }
+
+            int rows = 0;
+            select.setInt(1, limit);
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    byte[] key = rs.getBytes(1);
+                    UUID uuid = fromBytes(key);
+                    String world = rs.getString(3);
+                    // Rows the load skips get a hash nothing matches, they are reported as drift
+                    long hash = uuid != null && world != null
+                            ? HomeRangeHashes.rowHash(uuid, rs.getString(2), readHome(rs, world, 4))
+                            : 0L;
+                    update.setLong(1, hash);
+                    update.setBytes(2, key);
+                    update.setString(3, rs.getString(2));
+                    update.addBatch();
+                    rows++;
+                }
+            }
+            if (rows > 0) {
+                update.executeBatch();
+            }
+
+            if (changeLog) {
+                installChangeTriggers(stmt);
+            }
+            conn.commit();
+            return rows;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Ids of the worlds of the given homes, adding unknown worlds. Must run
+     * outside a transaction with writeLock held, an unused world row is
+     * harmless but a cached id of a rolled back row is not.
+     */
+    private Map<String, Integer> worldIds(Collection<PlayerHomes> homes) throws SQLException {
+        Set<String> names = new HashSet<>();
+        for (PlayerHomes playerHomes : homes) {
+            for (int i = 0; i < playerHomes.size(); i++) {
+                names.add(playerHomes.home(i).world());
+            }
+        }
+
+        Map<String, Integer> ids = new HashMap<>();
+        for (String name : names) {
+            ids.put(name, worldId(name));
+        }
+        return ids;
+    }
+
+    private int worldId(String name) throws SQLException {
+        Integer cached = worldIds.get(name);
+        if (cached != null) {
+            return cached;
+        }
+
+        Connection conn = writer();
+        // Another server may add the same world at the same time
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO worlds (name) VALUES (?) ON CONFLICT(name) DO NOTHING")) {
+            stmt.setString(1, name);
+            stmt.executeUpdate();
+        }
+
+        int id;
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT id FROM worlds WHERE name = ?")) {
+            stmt.setString(1, name);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("World " + name + " missing from the worlds table");
+                }
+                id = rs.getInt(1);
+            }
+        }
+
+        if (conn.getAutoCommit()) {
+            worldIds.put(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * World names indexed by id. Ids are small and dense, they are handed
+     * out in order.
+     */
+    private static String[] worldNames(Connection conn) throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT id, name FROM worlds ORDER BY id")) {
+            while (rs.next()) {
+                int id = rs.getInt(1);
+                while (names.size() <= id) {
+                    names.add(null);
+                }
+                names.set(id, rs.getString(2));
+            }
+        }
+        return names.toArray(new String[0]);
+    }
+
+    private static String worldName(String[] names, int id) {
+        return id >= 0 && id < names.length ? names[id] : null;
+    }
+
+    /**
+     * Run reads in one read transaction, so the new and the old tables are
+     * seen at the same point while the writer moves rows between them
+     */
+    private static <T> T inSnapshot(Connection conn, SqlTask<T> reads) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            return reads.run();
+        } finally {
+            conn.rollback();
+            conn.setAutoCommit(true);
         }
     }
 
+    @FunctionalInterface
+    private interface SqlTask<T> {
+
+        T run() throws SQLException;
+    }
+
     /**
-     * Close the connection pool
+     * Run a blocking JDBC task on the given executor, logging failures and
+     * completing the future exceptionally
      */
+    private <T> CompletableFuture<T> async(ExecutorService executor, String action, SqlTask<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return task.run();
+            } catch (SQLException e) {
+                plugin.getLogger().severe("Failed to " + action + ": " + e.getMessage());
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Add one row per home of the player, with its hash, to the statement's
+     * batch
+     */
+    private static void addHomes(PreparedStatement stmt, UUID uuid, Map<String, Integer> worldIds,
+            PlayerHomes homes) throws SQLException {
+        byte[] key = toBytes(uuid);
+        for (int i = 0; i < homes.size(); i++) {
+            Home home = homes.home(i);
+            stmt.setBytes(1, key);
+            stmt.setString(2, homes.name(i));
+            stmt.setInt(3, worldIds.get(home.world()));
+            stmt.setDouble(4, home.x());
+            stmt.setDouble(5, home.y());
+            stmt.setDouble(6, home.z());
+            stmt.setFloat(7, home.yaw());
+            stmt.setFloat(8, home.pitch());
+            stmt.setLong(9, HomeRangeHashes.rowHash(uuid, homes.name(i), home));
+            stmt.addBatch();
+        }
+    }
+
+    /**
+     * Key of a player's rows: the two longs of the UUID as 16 big-endian
+     * bytes. Also used by {@link SqliteResharder}.
+     */
+    static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    /**
+     * UUID of a row key, null if it is not 16 bytes
+     */
+    static UUID fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length != 16) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    /**
+     * Close the writer connection and the read pool
+     */
+    @Override
     public void close() {
-        if (dataSource != null && !dataSource.isClosed()) {
-            dataSource.close();
+        // Let queued writes finish before the writer goes away
+        readExecutor.shutdown();
+        writeExecutor.shutdown();
+        try {
+            if (!writeExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("SQLite writer did not finish in time");
+                writeExecutor.shutdownNow();
+            }
+            readExecutor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (writeLock) {
+            try {
+                if (writer != null && !writer.isClosed()) {
+                    // Fold the WAL back into the main file so the next start is clean
+                    try (Statement stmt = writer.createStatement()) {
+                        stmt.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+                    }
+                    writer.close();
+                }
+            } catch (SQLException e) {
+                plugin.getLogger().warning("Failed to close SQLite writer: " + e.getMessage());
+            }
+            writer = null;
+            upsertStmt = null;
+            deleteStmt = null;
+        }
+
+        if (readPool != null && !readPool.isClosed()) {
+            readPool.close();
             plugin.getLogger().info("Database connection pool closed");
         }
     }
@@ -0,0 +1,431 @@
+package com.example.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Offline tool that changes how many database files the SQLite homes are
+ * split across. One shard is the plain homes.db, more are homes-00.db,
+ * homes-01.db and so on, each player in the file {@link #shardOf} picks.
+ * <p>
+ * Resharding copies every row of the current files into new files next to
+ * them, then moves the old files into a reshard-backup directory. The new
+ * files only replace the old ones once they are complete, and a marker file
+ * records that point, so a run interrupted at any step is finished or
+ * started over on the next run. Runs before the repository opens the files:
+ * on plugin start, or by hand with the server stopped:
+ * <pre>
+ * java -cp MyServer.jar com.example.server.SqliteResharder plugins/MyServer 8
+ * </pre>
+ * The change log is not copied, so every server sharing the files must be
+ * stopped while they are resharded.
+ */
+public final class SqliteResharder {
+
+    /**
+     * The database of a single shard
+     */
+    public static final String SINGLE_FILE = "homes.db";
+
+    /**
+     * Highest shard count; file names carry two digits
+     */
+    public static final int MAX_SHARDS = 64;
+
+    private static final Pattern SHARD_FILE = Pattern.compile("homes-(\\d{2})\\.db");
+    private static final String TEMP_SUFFIX = ".reshard";
+    // Written once every new file is complete
+    private static final String MARKER = "homes.reshard";
+
+    /**
+     * Rows copied per transaction of each new file
+     */
+    private static final int BATCH_ROWS = 10000;
+
+    private final File dataFolder;
+    private final Logger logger;
+
+    public SqliteResharder(File dataFolder, Logger logger) {
+        this.dataFolder = dataFolder;
+        this.logger = logger;
+    }
+
+    public static void main(String[] args) throws IOException, SQLException {
+        if (args.length != 2) {
+            System.err.println("Usage: java -cp <plugin jar> " + SqliteResharder.class.getName()
+                    + " <plugin data folder> <shards>");
+            System.exit(2);
+        }
+
+        int shards = Integer.parseInt(args[1]);
+        if (shards < 1 || shards > MAX_SHARDS) {
+            System.err.println("Shards must be between 1 and " + MAX_SHARDS);
+            System.exit(2);
+        }
+        new SqliteResharder(new File(args[0]), Logger.getLogger("SqliteResharder")).reshard(shards);
+    }
+
+    /**
+     * Shard of a player's homes. Uses the hash code {@link UUID} specifies,
+     * so the layout does not depend on the JVM.
+     */
+    public static int shardOf(UUID uuid, int shards) {
+        return Math.floorMod(uuid.hashCode(), shards);
+    }
+
+    /**
+     * File of one shard of a layout with the given number of shards
+     */
+    public static File shardFile(File dataFolder, int shard, int shards) {
+        return new File(dataFolder, shards == 1 ? SINGLE_FILE : String.format("homes-%02d.db", shard));
+    }
+
+    /**
+     * Bring the files in the data folder to the given number of shards,
+     * finishing or discarding an interrupted run first. Does nothing if they
+     * already have that layout, or if there are no files yet.
+     */
+    public void reshard(int shards) throws IOException, SQLException {
+        recover();
+
+        List<File> current = existingFiles();
+        List<File> target = layout(shards);
+        if (current.isEmpty() || current.equals(target)) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        logger.info("Resharding " + current.size() + " SQLite file(s) into " + shards + ", homes are not served meanwhile");
+
+        // A player is only in several files if old files were left behind;
+        // the most recently written file wins
+        current.sort((a, b) -> Long.compare(lastWrite(b), lastWrite(a)));
+        long rows = copy(current, target);
+
+        Files.writeString(new File(dataFolder, MARKER).toPath(), Integer.toString(shards));
+        swap(current, target);
+
+        long millis = Math.max(1L, (System.nanoTime() - start) / 1_000_000L);
+        logger.info("Resharded " + rows + " homes into " + shards + " file(s) in " + millis + " ms");
+    }
+
+    /**
+     * Number of shards of the files in the data folder; 1 if there are none
+     * or they are not a complete layout
+     */
+    public int currentShards() {
+        List<File> files = existingFiles();
+        return files.size() > 1 && files.equals(layout(files.size())) ? files.size() : 1;
+    }
+
+    private List<File> layout(int shards) {
+        List<File> files = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            files.add(shardFile(dataFolder, shard, shards));
+        }
+        return files;
+    }
+
+    private static long lastWrite(File file) {
+        return Math.max(file.lastModified(), new File(file.getPath() + "-wal").lastModified());
+    }
+
+    /**
+     * Finish a run that completed its copy, or throw away the partial copy of
+     * one that did not
+     */
+    private void recover() throws IOException {
+        File marker = new File(dataFolder, MARKER);
+        if (marker.exists()) {
+            logger.info("Finishing an interrupted resharding");
+            List<File> target = layout(Integer.parseInt(Files.readString(marker.toPath()).trim()));
+            boolean renaming = false;
+            for (File file : target) {
+                renaming |= !new File(file.getPath() + TEMP_SUFFIX).exists();
+            }
+            // Old files are all moved away before the first new one is renamed
+            swap(renaming ? List.of() : existingFiles(), target);
+            return;
+        }
+
+        File[] temps = dataFolder.listFiles((dir, name) -> name.endsWith(TEMP_SUFFIX));
+        for (File temp : temps != null ? temps : new File[0]) {
+            logger.info("Discarding partial resharding output " + temp.getName());
+            deleteDatabase(temp);
+        }
+    }
+
+    /**
+     * Database files of the current layout, a single homes.db and shard files
+     */
+    private List<File> existingFiles() {
+        List<File> files = new ArrayList<>();
+        File single = new File(dataFolder, SINGLE_FILE);
+        if (single.isFile()) {
+            files.add(single);
+        }
+
+        File[] shardFiles = dataFolder.listFiles((dir, name) -> SHARD_FILE.matcher(name).matches());
+        if (shardFiles != null) {
+            List<File> sorted = new ArrayList<>(List.of(shardFiles));
+            sorted.sort((a, b) -> a.getName().compareTo(b.getName()));
+            files.addAll(sorted);
+        }
+        return files;
+    }
+
+    /**
+     * Copy the homes of every source into temp files of the target layout
+     *
+     * @return number of rows copied
+     */
+    private long copy(List<File> sources, List<File> target) throws IOException, SQLException {
+        List<Target> targets = new ArrayList<>(target.size());
+        try {
+            for (File file : target) {
+                File temp = new File(file.getPath() + TEMP_SUFFIX);
+                deleteDatabase(temp);
+                targets.add(new Target(open(temp)));
+            }
+
+            long rows = 0;
+            for (File source : sources) {
+                try (Connection conn = open(source)) {
+                    // Old files are brought to the current schema like on any start
+                    SqliteSchema.migrate(conn, logger);
+                    rows += copyRows(conn, targets);
+                }
+                logger.info("Resharded " + source.getName() + ", " + rows + " homes so far");
+            }
+
+            for (Target t : targets) {
+                t.finish();
+            }
+            return rows;
+        } finally {
+            for (Target t : targets) {
+                t.close();
+            }
+        }
+    }
+
+    private long copyRows(Connection source, List<Target> targets) throws SQLException {
+        long rows = 0;
+        try (Statement stmt = source.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT h.uuid, h.name, w.name, h.x, h.y, h.z, h.yaw, h.pitch, "
+                        + "h.updated_at FROM homes h JOIN worlds w ON w.id = h.world_id")) {
+            while (rs.next()) {
+                UUID uuid = SqliteHomeRepository.fromBytes(rs.getBytes(1));
+                if (uuid == null) {
+                    logger.warning("Dropping home with invalid key");
+                    continue;
+                }
+                targets.get(shardOf(uuid, targets.size())).add(uuid, rs.getString(2), rs, 3);
+                rows++;
+            }
+        }
+
+        // Rows the background moves had not reached yet
+        if (SqliteSchema.hasTable(source, SqliteSchema.UNNAMED_TABLE)) {
+            try (Statement stmt = source.createStatement();
+                    ResultSet rs = stmt.executeQuery("SELECT h.uuid, w.name, h.x, h.y, h.z, h.yaw, h.pitch, "
+                            + "h.updated_at FROM " + SqliteSchema.UNNAMED_TABLE + " h JOIN worlds w ON w.id = h.world_id")) {
+                while (rs.next()) {
+                    UUID uuid = SqliteHomeRepository.fromBytes(rs.getBytes(1));
+                    if (uuid == null) {
+                        logger.warning("Dropping home with invalid key");
+                        continue;
+                    }
+                    targets.get(shardOf(uuid, targets.size())).add(uuid, PlayerHomes.DEFAULT_NAME, rs, 2);
+                    rows++;
+                }
+            }
+        }
+        if (SqliteSchema.hasTable(source, SqliteSchema.LEGACY_TABLE)) {
+            try (Statement stmt = source.createStatement();
+                    ResultSet rs = stmt.executeQuery("SELECT uuid, world, x, y, z, yaw, pitch, "
+                            + "COALESCE(updated_at, strftime('%s', 'now')) FROM " + SqliteSchema.LEGACY_TABLE)) {
+                while (rs.next()) {
+                    UUID uuid;
+                    try {
+                        uuid = UUID.fromString(rs.getString(1));
+                    } catch (IllegalArgumentException e) {
+                        logger.warning("Dropping home with invalid UUID: " + rs.getString(1));
+                        continue;
+                    }
+                    targets.get(shardOf(uuid, targets.size())).add(uuid, PlayerHomes.DEFAULT_NAME, rs, 2);
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Move the old files into a backup directory, then the new ones into
+     * place. Every step can be repeated, see {@link #recover}.
+     */
+    private void swap(List<File> old, List<File> target) throws IOException {
+        File backup = new File(dataFolder, "reshard-backup-" + System.currentTimeMillis());
+        for (File file : old) {
+            if (!backup.exists() && !backup.mkdirs()) {
+                throw new IOException("Cannot create " + backup);
+            }
+            for (File part : databaseFiles(file)) {
+                if (part.exists()) {
+                    Files.move(part.toPath(), new File(backup, part.getName()).toPath(),
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+
+        for (File file : target) {
+            File temp = new File(file.getPath() + TEMP_SUFFIX);
+            if (temp.exists()) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.deleteIfExists(new File(dataFolder, MARKER).toPath());
+        if (backup.exists()) {
+            logger.info("Previous SQLite files kept in " + backup.getName() + ", delete it once the homes look right");
+        }
+    }
+
+    private static Connection open(File file) throws SQLException {
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("SQLite JDBC driver not found", e);
+        }
+        return DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+    }
+
+    /**
+     * The database file with its WAL and shared-memory files
+     */
+    private static File[] databaseFiles(File file) {
+        return new File[] {file, new File(file.getPath() + "-wal"), new File(file.getPath() + "-shm")};
+    }
+
+    private static void deleteDatabase(File file) throws IOException {
+        for (File part : databaseFiles(file)) {
+            Files.deleteIfExists(part.toPath());
+        }
+        Files.deleteIfExists(new File(file.getPath() + "-journal").toPath());
+    }
+
+    /**
+     * One new shard file being filled, in transactions of {@link #BATCH_ROWS}
+     */
+    private final class Target {
+
+        final Connection conn;
+        final PreparedStatement insert;
+        final Map<String, Integer> worldIds = new HashMap<>();
+        int pending;
+
+        Target(Connection conn) throws SQLException {
+            this.conn = conn;
+            try {
+                SqliteSchema.migrate(conn, logger);
+                // Written once and synced on commit, a rollback journal is enough
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("PRAGMA journal_mode = DELETE");
+                    stmt.execute("PRAGMA synchronous = FULL");
+                }
+                conn.setAutoCommit(false);
+                this.insert = conn.prepareStatement("""
+                    INSERT INTO homes (uuid, name, world_id, x, y, z, yaw, pitch, hash, updated_at)
+                    VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                    ON CONFLICT(uuid, name) DO NOTHING
+                    """);
+            } catch (SQLException e) {
+                conn.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Add a row whose world, x, y, z, yaw, pitch and updated_at columns
+         * start at the given index
+         */
+        void add(UUID uuid, String name, ResultSet rs, int column) throws SQLException {
+            Home home = new Home(rs.getString(column), rs.getDouble(column + 1), rs.getDouble(column + 2),
+                    rs.getDouble(column + 3), rs.getFloat(column + 4), rs.getFloat(column + 5));
+            insert.setBytes(1, SqliteHomeRepository.toBytes(uuid));
+            insert.setString(2, name);
+            insert.setInt(3, worldId(home.world()));
+            insert.setDouble(4, home.x());
+            insert.setDouble(5, home.y());
+            insert.setDouble(6, home.z());
+            insert.setFloat(7, home.yaw());
+            insert.setFloat(8, home.pitch());
+            insert.setLong(9, HomeRangeHashes.rowHash(uuid, name, home));
+            insert.setLong(10, rs.getLong(column + 6));
+            insert.addBatch();
+            if (++pending >= BATCH_ROWS) {
+                flush();
+            }
+        }
+
+        private int worldId(String world) throws SQLException {
+            Integer id = worldIds.get(world);
+            if (id != null) {
+                return id;
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO worlds (name) VALUES (?) ON CONFLICT(name) DO NOTHING")) {
+                stmt.setString(1, world);
+                stmt.executeUpdate();
+            }
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT id FROM worlds WHERE name = ?")) {
+                stmt.setString(1, world);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new SQLException("World " + world + " missing from the worlds table");
+                    }
+                    id = rs.getInt(1);
+                }
+            }
+            // Only committed with the rows that use it, a rollback drops the whole file
+            worldIds.put(world, id);
+            return id;
+        }
+
+        private void flush() throws SQLException {
+            insert.executeBatch();
+            conn.commit();
+            pending = 0;
+        }
+
+        void finish() throws SQLException {
+            flush();
+            // Start the new file in the mode the repository uses
+            conn.setAutoCommit(true);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA journal_mode = WAL");
+            }
+        }
+
+        void close() throws SQLException {
+            insert.close();
+            conn.close();
+        }
+    }
+}
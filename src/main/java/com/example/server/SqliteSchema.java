@@ -0,0 +1,263 @@
+package com.example.server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Versioned schema of homes.db. Applied migrations are recorded in
+ * schema_version; on open every newer migration runs in its own
+ * transaction, in order.
+ * <p>
+ * Migrations only change the schema and must be quick. Version 2 moves the
+ * homes to binary UUID keys by renaming the old table to homes_legacy; the
+ * rows are converted in the background by {@link SqliteHomeRepository} while
+ * both tables are served. Version 3 keys homes by player and name the same
+ * way, the old table becomes homes_unnamed until its rows are moved. Version
+ * 4 adds a hash per row that is likewise computed in the background.
+ */
+public final class SqliteSchema {
+
+    /**
+     * Old text-keyed table while its rows are being converted
+     */
+    public static final String LEGACY_TABLE = "homes_legacy";
+
+    /**
+     * Binary-keyed table from before home names while its rows are being moved
+     */
+    public static final String UNNAMED_TABLE = "homes_unnamed";
+
+    @FunctionalInterface
+    private interface Step {
+
+        void apply(Statement stmt) throws SQLException;
+    }
+
+    private record Migration(int version, String description, Step step) {
+
+    }
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "text UUID keys", SqliteSchema::createTextKeys),
+            new Migration(2, "binary UUID keys and world table", SqliteSchema::moveToBinaryKeys),
+            new Migration(3, "named homes", SqliteSchema::addHomeNames),
+            new Migration(4, "range hashes", SqliteSchema::addRangeHashes));
+
+    private SqliteSchema() {
+    }
+
+    /**
+     * Bring the database up to the latest version
+     *
+     * @return the version the database is at afterwards
+     */
+    public static int migrate(Connection conn, Logger logger) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS schema_version (
+                    version INTEGER PRIMARY KEY,
+                    description TEXT NOT NULL,
+                    applied_at INTEGER NOT NULL
+                )
+                """);
+        }
+
+        int current = currentVersion(conn);
+        // Databases from before versioning already have the version 1 table
+        if (current == 0 && hasTable(conn, "homes")) {
+            record(conn, MIGRATIONS.get(0));
+            current = 1;
+        }
+
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version() <= current) {
+                continue;
+            }
+
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                migration.step().apply(stmt);
+                record(conn, migration);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw new SQLException("Schema migration " + migration.version() + " ("
+                        + migration.description() + ") failed: " + e.getMessage(), e);
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+            logger.info("Migrated homes.db to schema version " + migration.version() + ": " + migration.description());
+            current = migration.version();
+        }
+        return current;
+    }
+
+    private static int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static void record(Connection conn, Migration migration) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO schema_version (version, description, applied_at) VALUES (?, ?, strftime('%s', 'now'))")) {
+            stmt.setInt(1, migration.version());
+            stmt.setString(2, migration.description());
+            stmt.executeUpdate();
+        }
+    }
+
+    public static boolean hasTable(Connection conn, String table) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?")) {
+            stmt.setString(1, table);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * The original schema: 36-character text keys and world names per row
+     */
+    private static void createTextKeys(Statement stmt) throws SQLException {
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS homes (
+                uuid TEXT PRIMARY KEY NOT NULL,
+                world TEXT NOT NULL,
+                x REAL NOT NULL,
+                y REAL NOT NULL,
+                z REAL NOT NULL,
+                yaw REAL NOT NULL,
+                pitch REAL NOT NULL,
+                updated_at INTEGER DEFAULT (strftime('%s', 'now'))
+            )
+            """);
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_homes_updated ON homes(updated_at)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_homes_world ON homes(world, x, z)");
+    }
+
+    /**
+     * 16-byte keys in a WITHOUT ROWID table, so the rows live in the primary
+     * key b-tree and there is no separate key index, and worlds as ids into
+     * the worlds table. Only renames the old table, the rows are converted
+     * in the background.
+     */
+    private static void moveToBinaryKeys(Statement stmt) throws SQLException {
+        stmt.execute("CREATE TABLE worlds (id INTEGER PRIMARY KEY, name TEXT NOT NULL UNIQUE)");
+
+        stmt.execute("ALTER TABLE homes RENAME TO " + LEGACY_TABLE);
+        // Index names are global, the old ones go with the renamed table
+        stmt.execute("DROP INDEX IF EXISTS idx_homes_updated");
+        stmt.execute("DROP INDEX IF EXISTS idx_homes_world");
+
+        stmt.execute("""
+            CREATE TABLE homes (
+                uuid BLOB PRIMARY KEY NOT NULL,
+                world_id INTEGER NOT NULL REFERENCES worlds(id),
+                x REAL NOT NULL,
+                y REAL NOT NULL,
+                z REAL NOT NULL,
+                yaw REAL NOT NULL,
+                pitch REAL NOT NULL,
+                updated_at INTEGER NOT NULL DEFAULT (strftime('%s', 'now'))
+            ) WITHOUT ROWID
+            """);
+        stmt.execute("CREATE INDEX idx_homes_world ON homes(world_id, x, z)");
+
+        // Logged changes name text keys that the new table cannot join;
+        // dropping them makes the other servers reload everything once
+        if (hasTable(stmt.getConnection(), "home_changes")) {
+            stmt.execute("DELETE FROM home_changes");
+        }
+
+        try (ResultSet rs = stmt.executeQuery("SELECT EXISTS (SELECT 1 FROM " + LEGACY_TABLE + ")")) {
+            if (rs.next() && !rs.getBoolean(1)) {
+                stmt.execute("DROP TABLE " + LEGACY_TABLE);
+            }
+        }
+    }
+
+    /**
+     * Several named homes per player, keyed by (uuid, name). A player's homes
+     * are adjacent in the primary key b-tree, so loading them is one range
+     * read. Only renames the old table, its rows become the players' default
+     * homes in the background.
+     */
+    private static void addHomeNames(Statement stmt) throws SQLException {
+        stmt.execute("ALTER TABLE homes RENAME TO " + UNNAMED_TABLE);
+        stmt.execute("DROP INDEX IF EXISTS idx_homes_world");
+
+        stmt.execute("""
+            CREATE TABLE homes (
+                uuid BLOB NOT NULL,
+                name TEXT NOT NULL,
+                world_id INTEGER NOT NULL REFERENCES worlds(id),
+                x REAL NOT NULL,
+                y REAL NOT NULL,
+                z REAL NOT NULL,
+                yaw REAL NOT NULL,
+                pitch REAL NOT NULL,
+                updated_at INTEGER NOT NULL DEFAULT (strftime('%s', 'now')),
+                PRIMARY KEY (uuid, name)
+            ) WITHOUT ROWID
+            """);
+        stmt.execute("CREATE INDEX idx_homes_world ON homes(world_id, x, z)");
+
+        try (ResultSet rs = stmt.executeQuery("SELECT EXISTS (SELECT 1 FROM " + UNNAMED_TABLE + ")")) {
+            if (rs.next() && !rs.getBoolean(1)) {
+                stmt.execute("DROP TABLE " + UNNAMED_TABLE);
+            }
+        }
+    }
+
+    /**
+     * A {@link HomeRangeHashes} hash per row and their sums per leaf range in
+     * home_ranges, kept current by triggers inside every writing
+     * transaction, whichever server or tool writes. Existing rows are hashed
+     * in the background; until then their hash is NULL and counts as 0, and
+     * the partial index finds them. The index is kept once it is empty, so
+     * checking for such rows stays a lookup.
+     */
+    private static void addRangeHashes(Statement stmt) throws SQLException {
+        int digits = HomeRangeHashes.LEAF_DIGITS;
+        String leaf = "substr(hex(%s.uuid), 1, " + digits + ")";
+
+        stmt.execute("ALTER TABLE homes ADD COLUMN hash INTEGER");
+        stmt.execute("CREATE INDEX idx_homes_unhashed ON homes(uuid) WHERE hash IS NULL");
+        stmt.execute("""
+            CREATE TABLE home_ranges (
+                prefix TEXT PRIMARY KEY NOT NULL,
+                row_count INTEGER NOT NULL,
+                hash_sum INTEGER NOT NULL
+            ) WITHOUT ROWID
+            """);
+
+        // Every leaf has a row, so the triggers only ever update
+        stmt.execute("INSERT INTO home_ranges (prefix, row_count, hash_sum) "
+                + "WITH RECURSIVE leaf(i) AS (SELECT 0 UNION ALL SELECT i + 1 FROM leaf WHERE i < "
+                + (HomeRangeHashes.LEAVES - 1) + ") "
+                + "SELECT printf('%0" + digits + "X', i), 0, 0 FROM leaf");
+        stmt.execute("UPDATE home_ranges SET row_count = counted.n FROM (SELECT " + leaf.formatted("homes")
+                + " AS prefix, count(*) AS n FROM homes GROUP BY 1) AS counted "
+                + "WHERE home_ranges.prefix = counted.prefix");
+
+        // A saved home keeps its key, an update only changes the hash
+        stmt.execute("CREATE TRIGGER home_ranges_insert AFTER INSERT ON homes BEGIN "
+                + "UPDATE home_ranges SET row_count = row_count + 1, hash_sum = hash_sum + coalesce(NEW.hash, 0) "
+                + "WHERE prefix = " + leaf.formatted("NEW") + "; END");
+        stmt.execute("CREATE TRIGGER home_ranges_update AFTER UPDATE ON homes BEGIN "
+                + "UPDATE home_ranges SET hash_sum = hash_sum - coalesce(OLD.hash, 0) + coalesce(NEW.hash, 0) "
+                + "WHERE prefix = " + leaf.formatted("NEW") + "; END");
+        stmt.execute("CREATE TRIGGER home_ranges_delete AFTER DELETE ON homes BEGIN "
+                + "UPDATE home_ranges SET row_count = row_count - 1, hash_sum = hash_sum - coalesce(OLD.hash, 0) "
+                + "WHERE prefix = " + leaf.formatted("OLD") + "; END");
+    }
+}
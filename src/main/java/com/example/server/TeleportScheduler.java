@@ -0,0 +1,264 @@
+package com.example.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Teleport warmups and cooldowns driven by a single task per tick. Deadlines
+ * sit in a hashed timing wheel, so a tick only looks at the timers due in
+ * its slot; players with a pending warmup are checked for movement once per
+ * tick. State is kept per online player, keyed by entity id, and dropped on
+ * quit. Main thread only.
+ */
+public class TeleportScheduler implements Listener {
+
+    // Ticks per revolution; longer timers stay in their slot for more rounds
+    private static final int WHEEL_SIZE = 256;
+    private static final double MAX_MOVE_SQUARED = 0.1;
+
+    /**
+     * Timers of one player, reused across requests
+     */
+    private static final class Timers {
+
+        final Player player;
+        long cooldownUntil;
+        long warmupUntil;
+        World startWorld;
+        double startX;
+        double startY;
+        double startZ;
+        Runnable onComplete;
+        Runnable onCancel;
+
+        Timers(Player player) {
+            this.player = player;
+        }
+
+        boolean isIdle() {
+            return cooldownUntil == 0 && warmupUntil == 0;
+        }
+
+        void clearWarmup() {
+            warmupUntil = 0;
+            startWorld = null;
+            onComplete = null;
+            onCancel = null;
+        }
+    }
+
+    /**
+     * Deadlines hashed to one slot: pairs of (entity id, tick)
+     */
+    private static final class Slot {
+
+        long[] entries = new long[8];
+        int size;
+
+        void add(long key, long deadline) {
+            if (size + 2 > entries.length) {
+                entries = Arrays.copyOf(entries, entries.length * 2);
+            }
+            entries[size++] = key;
+            entries[size++] = deadline;
+        }
+    }
+
+    private final JavaPlugin plugin;
+    private final LongMap<Timers> timers = new LongMap<>();
+    private final Slot[] wheel = new Slot[WHEEL_SIZE];
+    private final Location scratch = new Location(null, 0, 0, 0);
+    private final List<Timers> due = new ArrayList<>();
+    private int warmups;
+    private long tick = 1;
+    private BukkitTask task;
+
+    public TeleportScheduler(JavaPlugin plugin) {
+        this.plugin = plugin;
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new Slot();
+        }
+    }
+
+    public void start() {
+        task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        timers.clear();
+        warmups = 0;
+    }
+
+    private Timers timersFor(Player player) {
+        Timers t = timers.get(player.getEntityId());
+        if (t == null) {
+            t = new Timers(player);
+            timers.put(player.getEntityId(), t);
+        }
+        return t;
+    }
+
+    private void schedule(long key, long deadline) {
+        wheel[(int) (deadline & (WHEEL_SIZE - 1))].add(key, deadline);
+    }
+
+    /**
+     * Ticks left on the player's cooldown, 0 if none
+     */
+    public long getCooldownTicks(Player player) {
+        Timers t = timers.get(player.getEntityId());
+        return t != null && t.cooldownUntil > tick ? t.cooldownUntil - tick : 0;
+    }
+
+    public void startCooldown(Player player, long ticks) {
+        if (ticks <= 0) {
+            return;
+        }
+
+        Timers t = timersFor(player);
+        t.cooldownUntil = tick + ticks;
+        schedule(player.getEntityId(), t.cooldownUntil);
+    }
+
+    public boolean isWarmingUp(Player player) {
+        Timers t = timers.get(player.getEntityId());
+        return t != null && t.warmupUntil != 0;
+    }
+
+    /**
+     * Run onComplete after the given number of ticks unless the player moves
+     * or leaves first; onCancel runs if they move
+     */
+    public void startWarmup(Player player, long ticks, Runnable onComplete, Runnable onCancel) {
+        Timers t = timersFor(player);
+        if (t.warmupUntil == 0) {
+            warmups++;
+        }
+
+        player.getLocation(scratch);
+        t.startWorld = scratch.getWorld();
+        t.startX = scratch.getX();
+        t.startY = scratch.getY();
+        t.startZ = scratch.getZ();
+        t.onComplete = onComplete;
+        t.onCancel = onCancel;
+        t.warmupUntil = tick + Math.max(1L, ticks);
+        schedule(player.getEntityId(), t.warmupUntil);
+        scratch.setWorld(null);
+    }
+
+    private void tick() {
+        tick++;
+        if (warmups > 0) {
+            checkMovement();
+        }
+        advance();
+    }
+
+    private void checkMovement() {
+        timers.forEachValue(t -> {
+            if (t.warmupUntil == 0) {
+                return;
+            }
+
+            t.player.getLocation(scratch);
+            if (scratch.getWorld() != t.startWorld
+                    || square(scratch.getX() - t.startX) + square(scratch.getY() - t.startY)
+                    + square(scratch.getZ() - t.startZ) > MAX_MOVE_SQUARED) {
+                due.add(t);
+            }
+        });
+        scratch.setWorld(null);
+
+        // Callbacks run after the walk, they may start new timers
+        for (Timers t : due) {
+            Runnable onCancel = t.onCancel;
+            t.clearWarmup();
+            warmups--;
+            release(t);
+            onCancel.run();
+        }
+        due.clear();
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+
+    /**
+     * Fire everything due in the current slot; later rounds stay in place
+     */
+    private void advance() {
+        Slot slot = wheel[(int) (tick & (WHEEL_SIZE - 1))];
+        int kept = 0;
+        for (int i = 0; i < slot.size; i += 2) {
+            long key = slot.entries[i];
+            long deadline = slot.entries[i + 1];
+            if (deadline > tick) {
+                slot.entries[kept++] = key;
+                slot.entries[kept++] = deadline;
+                continue;
+            }
+
+            // Stale entries of replaced, cancelled or purged timers are skipped
+            Timers t = timers.get(key);
+            if (t == null) {
+                continue;
+            }
+            if (t.cooldownUntil == deadline) {
+                t.cooldownUntil = 0;
+            }
+            if (t.warmupUntil == deadline) {
+                due.add(t);
+            }
+            release(t);
+        }
+        slot.size = kept;
+
+        for (Timers t : due) {
+            if (t.warmupUntil == 0) {
+                // Listed twice when a cooldown ends on the same tick
+                continue;
+            }
+
+            Runnable onComplete = t.onComplete;
+            t.clearWarmup();
+            warmups--;
+            release(t);
+            onComplete.run();
+        }
+        due.clear();
+    }
+
+    /**
+     * Forget a player with no running timers
+     */
+    private void release(Timers t) {
+        if (t.isIdle() && timers.get(t.player.getEntityId()) == t) {
+            timers.remove(t.player.getEntityId());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        Timers t = timers.remove(event.getPlayer().getEntityId());
+        if (t != null && t.warmupUntil != 0) {
+            warmups--;
+        }
+    }
+}
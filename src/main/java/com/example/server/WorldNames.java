@@ -0,0 +1,52 @@
+package com.example.server;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns world names to small int ids. There are only a handful of worlds,
+ * so homes can store an int instead of a String per entry. Ids are never
+ * reused.
+ */
+public class WorldNames {
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[0];
+
+    /**
+     * Id of the world, assigning a new one on first use
+     */
+    public int id(String world) {
+        Integer id = ids.get(world);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (this) {
+            id = ids.get(world);
+            if (id != null) {
+                return id;
+            }
+
+            String[] grown = Arrays.copyOf(names, names.length + 1);
+            int newId = names.length;
+            grown[newId] = world;
+            // Publish the name before the id so readers never see an unknown id
+            names = grown;
+            ids.put(world, newId);
+            return newId;
+        }
+    }
+
+    /**
+     * World name for an id handed out by {@link #id(String)}
+     */
+    public String name(int id) {
+        return names[id];
+    }
+
+    public int size() {
+        return names.length;
+    }
+}
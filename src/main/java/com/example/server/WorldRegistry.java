@@ -0,0 +1,50 @@
+package com.example.server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * Loaded worlds by exact name, kept current through world load and unload
+ * events. Resolving a home's world is one lookup on a name whose hash is
+ * already cached, instead of the lower-cased copy Bukkit.getWorld(String)
+ * makes on every call.
+ */
+public class WorldRegistry implements Listener {
+
+    private final Map<String, World> worlds = new ConcurrentHashMap<>();
+
+    /**
+     * Rebuild from the server's world list, for startup and plugin reloads
+     */
+    public void refresh() {
+        worlds.clear();
+        for (World world : Bukkit.getWorlds()) {
+            worlds.put(world.getName(), world);
+        }
+    }
+
+    /**
+     * @return the loaded world, or null if it is not loaded
+     */
+    public World get(String name) {
+        return worlds.get(name);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(WorldLoadEvent event) {
+        worlds.put(event.getWorld().getName(), event.getWorld());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        worlds.remove(event.getWorld().getName(), event.getWorld());
+    }
+}
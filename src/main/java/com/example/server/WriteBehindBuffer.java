@@ -0,0 +1,326 @@
+package com.example.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind buffer for home changes. Repeated updates of the same player
+ * are collapsed to the latest state and flushed in one batched transaction
+ * when either the batch size or the staleness limit is reached.
+ * <p>
+ * The buffer is striped like the {@link KeyedExecutor} it flushes on: each
+ * lane only ever writes its own players, so changes of one player can never
+ * be committed out of order.
+ * <p>
+ * The staleness timer is only armed while a lane has something pending, so
+ * an idle server does not wake up every few milliseconds in group mode.
+ * Nothing here waits for a lane: a flush that finds its lane full is left to
+ * the timer. After a failed batch the lane retries with exponential backoff,
+ * up to {@link #MAX_RETRY_MILLIS}.
+ */
+public class WriteBehindBuffer {
+
+    /**
+     * Persists one collapsed batch. The returned future completes
+     * exceptionally if the batch was not committed and has to be retried.
+     */
+    @FunctionalInterface
+    public interface BatchWriter {
+
+        CompletableFuture<Void> write(Map<UUID, PlayerHomes> upserts, Set<UUID> deletes);
+    }
+
+    /**
+     * Latest pending state for a player; null homes mean "delete".
+     */
+    private record Pending(PlayerHomes homes) {
+
+    }
+
+    static final long MAX_RETRY_MILLIS = 30_000L;
+
+    private final Logger logger;
+    private final KeyedExecutor executor;
+    private final HomeMetrics metrics;
+    private final BatchWriter writer;
+    private final int batchSize;
+    private final Map<UUID, Pending>[] stripes;
+    private final AtomicBoolean[] flushRequested;
+    private final AtomicBoolean[] timerArmed;
+    // Consecutive failed batches per lane, zero while writes succeed
+    private final AtomicIntegerArray failures;
+    private final AtomicInteger failingLanes = new AtomicInteger();
+    private final ScheduledExecutorService timer;
+    private final long interval;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public WriteBehindBuffer(Logger logger, KeyedExecutor executor, HomeMetrics metrics, BatchWriter writer,
+            int batchSize, long maxStalenessMillis) {
+        this.logger = logger;
+        this.executor = executor;
+        this.metrics = metrics;
+        this.writer = writer;
+        this.batchSize = Math.max(1, batchSize);
+
+        int lanes = executor.getLaneCount();
+        this.stripes = new Map[lanes];
+        this.flushRequested = new AtomicBoolean[lanes];
+        this.timerArmed = new AtomicBoolean[lanes];
+        for (int i = 0; i < lanes; i++) {
+            stripes[i] = new ConcurrentHashMap<>();
+            flushRequested[i] = new AtomicBoolean();
+            timerArmed[i] = new AtomicBoolean();
+        }
+        this.failures = new AtomicIntegerArray(lanes);
+
+        // The timer only dispatches, the actual writes run on the lanes
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "HomeService-Flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Group commit windows are a few milliseconds
+        this.interval = Math.max(1L, maxStalenessMillis);
+    }
+
+    /**
+     * Queue the player's new set of homes
+     */
+    public void put(UUID uuid, PlayerHomes homes) {
+        enqueue(uuid, new Pending(homes));
+    }
+
+    /**
+     * Queue removal of all of the player's homes
+     */
+    public void delete(UUID uuid) {
+        enqueue(uuid, new Pending(null));
+    }
+
+    private void enqueue(UUID uuid, Pending change) {
+        int lane = executor.laneFor(uuid);
+        stripes[lane].put(uuid, change);
+
+        // A failing lane waits for its backoff instead
+        if (stripes[lane].size() >= batchSize && failures.get(lane) == 0) {
+            requestFlush(lane);
+        }
+        armTimer(lane);
+    }
+
+    /**
+     * Flush the lane once the staleness limit, or the backoff of a failing
+     * lane, has passed, unless a timer is already running for it. The flag is
+     * cleared before the flush is requested, so a change queued after that
+     * arms the next timer.
+     */
+    private void armTimer(int lane) {
+        if (!timerArmed[lane].compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            timer.schedule(() -> {
+                timerArmed[lane].set(false);
+                requestFlush(lane);
+            }, delay(lane), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Closed, close() flushes the remaining changes
+            timerArmed[lane].set(false);
+        }
+    }
+
+    private void requestFlush(int lane) {
+        if (!flushRequested[lane].compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            executor.execute(lane, () -> flushSafely(lane));
+        } catch (RejectedExecutionException e) {
+            // Lane full, the timer tries again; once closed, close() flushes
+            flushRequested[lane].set(false);
+            armTimer(lane);
+        }
+    }
+
+    /**
+     * Staleness limit, doubled for every consecutive failed batch of the lane
+     */
+    private long delay(int lane) {
+        int failed = failures.get(lane);
+        if (failed == 0) {
+            return interval;
+        }
+        long backoff = interval << Math.min(failed, 20);
+        return Math.max(interval, Math.min(backoff, MAX_RETRY_MILLIS));
+    }
+
+    private void flushSafely(int lane) {
+        try {
+            flush(lane);
+        } catch (Exception e) {
+            logger.severe("Write-behind flush failed: " + e.getMessage());
+        }
+        // Left over from a failed batch
+        if (!stripes[lane].isEmpty()) {
+            armTimer(lane);
+        }
+    }
+
+    /**
+     * Write all pending changes of one stripe in one batch. Must only run on
+     * the stripe's lane.
+     */
+    private void flush(int lane) {
+        flushRequested[lane].set(false);
+        Map<UUID, Pending> pending = stripes[lane];
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Map<UUID, Pending> claimed = new HashMap<>();
+        Map<UUID, PlayerHomes> upserts = new HashMap<>();
+        Set<UUID> deletes = new HashSet<>();
+
+        // Claimed changes stay pending until committed, so hasPending also
+        // covers a batch still being written
+        for (Map.Entry<UUID, Pending> entry : pending.entrySet()) {
+            UUID uuid = entry.getKey();
+            Pending change = entry.getValue();
+            claimed.put(uuid, change);
+            if (change.homes() == null) {
+                deletes.add(uuid);
+            } else {
+                upserts.put(uuid, change.homes());
+            }
+        }
+
+        if (claimed.isEmpty()) {
+            return;
+        }
+
+        try {
+            // Wait on the lane, a newer batch must not overtake a failed one
+            writer.write(upserts, deletes).join();
+        } catch (CompletionException | CancellationException e) {
+            // Still pending, retried once the backoff has passed
+            failed(lane, e);
+            return;
+        }
+        // Only the exact values written, newer changes stay queued
+        claimed.forEach(pending::remove);
+        succeeded(lane);
+    }
+
+    /**
+     * Count a failed batch. Only the first failure of an outage is logged,
+     * the retries are in the metrics.
+     */
+    private void failed(int lane, RuntimeException e) {
+        metrics.recordFailedBatch();
+        if (failures.getAndIncrement(lane) == 0 && failingLanes.getAndIncrement() == 0) {
+            metrics.recordWriteOutage(true);
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            logger.warning("Writing home changes failed, retrying with backoff up to "
+                    + TimeUnit.MILLISECONDS.toSeconds(MAX_RETRY_MILLIS) + " s: " + cause.getMessage());
+        }
+    }
+
+    private void succeeded(int lane) {
+        if (failures.getAndSet(lane, 0) > 0 && failingLanes.decrementAndGet() == 0) {
+            logger.info("Writing home changes works again after "
+                    + Math.round(metrics.getWriteOutageSeconds()) + " s");
+            metrics.recordWriteOutage(false);
+        }
+    }
+
+    /**
+     * Whether the player has a change that is not yet committed
+     */
+    public boolean hasPending(UUID uuid) {
+        return stripes[executor.laneFor(uuid)].containsKey(uuid);
+    }
+
+    /**
+     * Number of players with unsaved changes
+     */
+    public int getPendingCount() {
+        int count = 0;
+        for (Map<UUID, Pending> stripe : stripes) {
+            count += stripe.size();
+        }
+        return count;
+    }
+
+    /**
+     * Write everything pending now instead of waiting for the batch size or
+     * the staleness limit
+     *
+     * @return future completing once every lane has written its changes
+     */
+    public CompletableFuture<Void> flushAll() {
+        return flushAll(0L);
+    }
+
+    /**
+     * @param waitNanos how long to wait for space on full lanes in total, 0
+     *                  to fail a full lane's flush right away
+     */
+    private CompletableFuture<Void> flushAll(long waitNanos) {
+        long deadline = System.nanoTime() + waitNanos;
+        List<CompletableFuture<Void>> flushes = new ArrayList<>();
+        for (int i = 0; i < stripes.length; i++) {
+            int lane = i;
+            long wait = waitNanos > 0 ? Math.max(1L, deadline - System.nanoTime()) : 0L;
+            try {
+                flushes.add(CompletableFuture.runAsync(() -> flushSafely(lane),
+                        r -> executor.execute(lane, r, wait, TimeUnit.NANOSECONDS)));
+            } catch (RejectedExecutionException e) {
+                logger.warning("Cannot flush I/O lane " + lane + ": " + e.getMessage());
+                flushes.add(CompletableFuture.failedFuture(e));
+            }
+        }
+        return CompletableFuture.allOf(flushes.toArray(CompletableFuture<?>[]::new));
+    }
+
+    /**
+     * Stop the background timer and write everything that is still pending,
+     * giving up after the timeout. Must be called before the executor is shut
+     * down.
+     */
+    public void close(long timeout, TimeUnit unit) {
+        timer.shutdownNow();
+
+        // Shutting down, waiting for a full lane is fine here
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            flushAll(unit.toNanos(timeout)).get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            logger.severe("Timed out flushing pending home changes: " + e.getMessage());
+        }
+
+        int remaining = getPendingCount();
+        if (remaining > 0) {
+            logger.severe("Failed to flush " + remaining + " pending home changes on shutdown");
+        }
+    }
+}
@@ -0,0 +1,611 @@
+package com.example.server;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.events.CollectionEndEvent;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.MappingEndEvent;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+
+/**
+ * Imports homes.yml and its journals into the active storage. The snapshot
+ * is read as a stream of YAML events, so memory use does not grow with the
+ * file, and written in large batched transactions. Legacy player names are
+ * resolved on a thread pool while the previous batch is being written.
+ * <p>
+ * Progress is checkpointed to homes.migration after every batch; a run that
+ * was interrupted skips the entries already imported, as long as homes.yml
+ * and its journals have not changed. Existing rows are never overwritten, so
+ * repeating a batch is harmless.
+ */
+public class YamlHomeMigrator {
+
+    private static final String CHECKPOINT_ENTRIES = "entries";
+    private static final String CHECKPOINT_SOURCE = "source";
+    private static final String CHECKPOINT_DONE = "done";
+
+    private final JavaPlugin plugin;
+    private final HomeService homes;
+    private final int batchSize;
+    private final int resolveThreads;
+
+    private final File homesFile;
+    private final File journalFile;
+    private final File rotatedJournalFile;
+    private final File checkpointFile;
+
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong entriesRead = new AtomicLong();
+    private final AtomicLong imported = new AtomicLong();
+    private final AtomicLong resolved = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private volatile long totalBytes;
+    private volatile long startNanos;
+    private volatile boolean cancelled;
+
+    public YamlHomeMigrator(JavaPlugin plugin, HomeService homes, int batchSize, int resolveThreads) {
+        this.plugin = plugin;
+        this.homes = homes;
+        this.batchSize = Math.max(1, batchSize);
+        this.resolveThreads = Math.max(1, resolveThreads);
+        this.homesFile = new File(plugin.getDataFolder(), "homes.yml");
+        this.journalFile = new File(plugin.getDataFolder(), "homes.journal");
+        this.rotatedJournalFile = new File(plugin.getDataFolder(), "homes.journal.1");
+        this.checkpointFile = new File(plugin.getDataFolder(), "homes.migration");
+    }
+
+    /**
+     * Whether there is anything to migrate
+     */
+    public boolean hasSource() {
+        return homesFile.length() > 0 || journalFile.exists() || rotatedJournalFile.exists();
+    }
+
+    /**
+     * Whether an earlier run over the same files already finished
+     */
+    public boolean isDone() {
+        Properties checkpoint = readCheckpoint();
+        return checkpoint != null && fingerprint().equals(checkpoint.getProperty(CHECKPOINT_SOURCE))
+                && Boolean.parseBoolean(checkpoint.getProperty(CHECKPOINT_DONE));
+    }
+
+    /**
+     * Forget an earlier run, the next one starts from the first entry
+     */
+    public void reset() throws IOException {
+        Files.deleteIfExists(checkpointFile.toPath());
+    }
+
+    /**
+     * Stop after the batch in progress; the checkpoint allows resuming later
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Run the migration on the calling thread
+     *
+     * @return number of homes written to storage by this run
+     */
+    public long run() throws IOException {
+        startNanos = System.nanoTime();
+        totalBytes = homesFile.length();
+
+        // Journals hold changes newer than the snapshot and are small, since
+        // they are compacted regularly; a delete is kept as null
+        Map<UUID, PlayerHomes> overrides = new HashMap<>();
+        YamlHomeRepository.replay(rotatedJournalFile, overrides::put, plugin.getLogger());
+        YamlHomeRepository.replay(journalFile, overrides::put, plugin.getLogger());
+
+        String source = fingerprint();
+        Properties checkpoint = readCheckpoint();
+        long resumeAt = 0;
+        if (checkpoint != null && source.equals(checkpoint.getProperty(CHECKPOINT_SOURCE))) {
+            resumeAt = Long.parseLong(checkpoint.getProperty(CHECKPOINT_ENTRIES, "0"));
+            if (resumeAt > 0) {
+                plugin.getLogger().info("Resuming homes.yml migration after entry " + resumeAt);
+            }
+        } else if (checkpoint != null) {
+            plugin.getLogger().info("homes.yml changed since the last migration run, starting over");
+        }
+
+        ExecutorService resolver = Executors.newFixedThreadPool(resolveThreads, r -> {
+            Thread thread = new Thread(r, "HomeService-Migrate-Resolve");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Batches batches = new Batches(resolver, overrides, source);
+        homes.beginImport();
+        try {
+            if (totalBytes > 0) {
+                stream(resumeAt, batches);
+            }
+            if (cancelled) {
+                batches.finish(false);
+                return imported.get();
+            }
+
+            // Journal entries for players that are not in the snapshot at all
+            Map<UUID, PlayerHomes> remaining = new LinkedHashMap<>();
+            overrides.forEach((uuid, playerHomes) -> {
+                if (playerHomes != null) {
+                    remaining.put(uuid, playerHomes);
+                }
+            });
+            batches.submit(remaining, entriesRead.get());
+            batches.finish(true);
+        } finally {
+            homes.endImport();
+            resolver.shutdownNow();
+        }
+
+        long millis = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        plugin.getLogger().info("Migrated " + imported.get() + " homes from homes.yml in " + millis + " ms ("
+                + imported.get() * 1000 / millis + " homes/s, " + resolved.get() + " legacy names resolved, "
+                + skipped.get() + " entries skipped)");
+        return imported.get();
+    }
+
+    /**
+     * Walk the homes section of the snapshot, one entry at a time
+     */
+    private void stream(long resumeAt, Batches batches) throws IOException {
+        LoaderOptions options = new LoaderOptions();
+        // The default limit of a few MB is meant for config files
+        options.setCodePointLimit(Integer.MAX_VALUE);
+
+        try (Reader reader = new InputStreamReader(new CountingInputStream(
+                new BufferedInputStream(new FileInputStream(homesFile), 1 << 16), bytesRead), StandardCharsets.UTF_8)) {
+            Iterator<Event> events = new Yaml(options).parse(reader).iterator();
+            if (!seekHomes(events)) {
+                return;
+            }
+
+            List<RawHomes> pending = new ArrayList<>(batchSize);
+            Map<String, String> fields = new HashMap<>();
+            Map<String, Map<String, String>> named = new HashMap<>();
+            while (!cancelled) {
+                Event key = events.next();
+                if (key instanceof MappingEndEvent) {
+                    break;
+                }
+
+                Event value = events.next();
+                if (!(key instanceof ScalarEvent name) || !(value instanceof MappingStartEvent)) {
+                    skip(events, value);
+                    skipped.incrementAndGet();
+                    continue;
+                }
+
+                fields.clear();
+                named.clear();
+                readEntry(events, fields, named);
+                long index = entriesRead.incrementAndGet();
+                if (index <= resumeAt) {
+                    // Imported by an earlier run, only drop its journal override
+                    forgetOverride(batches.overrides, name.getValue());
+                    continue;
+                }
+
+                RawHomes raw = RawHomes.parse(name.getValue(), fields, named);
+                if (raw == null) {
+                    plugin.getLogger().warning("Skipping invalid home entry '" + name.getValue() + "' in homes.yml");
+                    skipped.incrementAndGet();
+                    continue;
+                }
+
+                pending.add(raw);
+                if (pending.size() >= batchSize) {
+                    batches.resolve(pending, index);
+                    pending = new ArrayList<>(batchSize);
+                }
+            }
+
+            if (!pending.isEmpty()) {
+                batches.resolve(pending, entriesRead.get());
+            }
+        }
+    }
+
+    /**
+     * Position the events right after the start of the top-level homes
+     * mapping
+     *
+     * @return false if the file has no homes section
+     */
+    private static boolean seekHomes(Iterator<Event> events) {
+        while (events.hasNext()) {
+            if (events.next() instanceof MappingStartEvent) {
+                break;
+            }
+        }
+
+        while (events.hasNext()) {
+            Event key = events.next();
+            if (key instanceof MappingEndEvent) {
+                return false;
+            }
+
+            Event value = events.next();
+            if (key instanceof ScalarEvent scalar && "homes".equals(scalar.getValue())
+                    && value instanceof MappingStartEvent) {
+                return true;
+            }
+            skip(events, value);
+        }
+        return false;
+    }
+
+    /**
+     * Read one player's mapping: the fields of a single home from before named
+     * homes, or the fields of each named home
+     */
+    private static void readEntry(Iterator<Event> events, Map<String, String> fields,
+            Map<String, Map<String, String>> named) {
+        while (true) {
+            Event key = events.next();
+            if (key instanceof MappingEndEvent) {
+                return;
+            }
+
+            Event value = events.next();
+            if (key instanceof ScalarEvent k && value instanceof ScalarEvent v) {
+                fields.put(k.getValue(), v.getValue());
+            } else if (key instanceof ScalarEvent k && value instanceof MappingStartEvent) {
+                Map<String, String> home = new HashMap<>();
+                readFields(events, home);
+                named.put(k.getValue(), home);
+            } else {
+                skip(events, value);
+            }
+        }
+    }
+
+    /**
+     * Read the scalar fields of one home mapping, ignoring nested values
+     */
+    private static void readFields(Iterator<Event> events, Map<String, String> fields) {
+        while (true) {
+            Event key = events.next();
+            if (key instanceof MappingEndEvent) {
+                return;
+            }
+
+            Event value = events.next();
+            if (key instanceof ScalarEvent k && value instanceof ScalarEvent v) {
+                fields.put(k.getValue(), v.getValue());
+            } else {
+                skip(events, value);
+            }
+        }
+    }
+
+    /**
+     * Consume a value whose first event was already read
+     */
+    private static void skip(Iterator<Event> events, Event first) {
+        if (!(first instanceof CollectionStartEvent)) {
+            return;
+        }
+
+        int depth = 1;
+        while (depth > 0) {
+            Event event = events.next();
+            if (event instanceof CollectionStartEvent) {
+                depth++;
+            } else if (event instanceof CollectionEndEvent) {
+                depth--;
+            }
+        }
+    }
+
+    private static void forgetOverride(Map<UUID, PlayerHomes> overrides, String key) {
+        try {
+            overrides.remove(UUID.fromString(key));
+        } catch (IllegalArgumentException e) {
+            // Legacy name, journals only ever hold UUIDs
+        }
+    }
+
+    /**
+     * One snapshot entry before its key is resolved to a UUID
+     */
+    private record RawHomes(String key, UUID uuid, PlayerHomes homes) {
+
+        /**
+         * @return null if the entry holds no valid home
+         */
+        static RawHomes parse(String key, Map<String, String> fields, Map<String, Map<String, String>> named) {
+            PlayerHomes homes = PlayerHomes.EMPTY;
+            // Like YamlHomeRepository: a world field means the entry is a single home
+            if (fields.containsKey("world")) {
+                Home home = home(fields);
+                if (home != null) {
+                    homes = PlayerHomes.of(PlayerHomes.DEFAULT_NAME, home);
+                }
+            } else {
+                for (Map.Entry<String, Map<String, String>> entry : named.entrySet()) {
+                    Home home = home(entry.getValue());
+                    if (home != null) {
+                        homes = homes.with(entry.getKey(), home);
+                    }
+                }
+            }
+            if (homes.isEmpty()) {
+                return null;
+            }
+
+            UUID uuid;
+            try {
+                uuid = UUID.fromString(key);
+            } catch (IllegalArgumentException e) {
+                uuid = null;
+            }
+            return new RawHomes(key, uuid, homes);
+        }
+
+        private static Home home(Map<String, String> fields) {
+            String world = fields.get("world");
+            if (world == null) {
+                return null;
+            }
+
+            try {
+                return new Home(world,
+                        number(fields, "x"), number(fields, "y"), number(fields, "z"),
+                        (float) number(fields, "yaw"), (float) number(fields, "pitch"));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        // Missing coordinates read as 0, like ConfigurationSection.getDouble
+        private static double number(Map<String, String> fields, String name) {
+            String value = fields.get(name);
+            return value != null ? Double.parseDouble(value) : 0.0;
+        }
+    }
+
+    /**
+     * Resolves and writes batches: while one batch is being written, the
+     * next one is parsed and its names resolved
+     */
+    private final class Batches {
+
+        final ExecutorService resolver;
+        final Map<UUID, PlayerHomes> overrides;
+        final String source;
+
+        CompletableFuture<Void> inFlight;
+        long inFlightEntries;
+        int inFlightSize;
+        long lastLog = System.nanoTime();
+
+        Batches(ExecutorService resolver, Map<UUID, PlayerHomes> overrides, String source) {
+            this.resolver = resolver;
+            this.overrides = overrides;
+            this.source = source;
+        }
+
+        /**
+         * Resolve legacy names in parallel, apply journal overrides and submit
+         * the batch
+         *
+         * @param entries snapshot entries read once this batch is written
+         */
+        void resolve(List<RawHomes> raw, long entries) throws IOException {
+            List<CompletableFuture<UUID>> lookups = new ArrayList<>(raw.size());
+            for (RawHomes home : raw) {
+                lookups.add(home.uuid() != null
+                        ? CompletableFuture.completedFuture(home.uuid())
+                        : CompletableFuture.supplyAsync(() -> Bukkit.getOfflinePlayer(home.key()).getUniqueId(), resolver));
+            }
+
+            Map<UUID, PlayerHomes> batch = new LinkedHashMap<>((int) (raw.size() / 0.75f) + 1);
+            for (int i = 0; i < raw.size(); i++) {
+                RawHomes home = raw.get(i);
+                UUID uuid = lookups.get(i).join();
+                if (home.uuid() == null) {
+                    resolved.incrementAndGet();
+                }
+
+                if (overrides.containsKey(uuid)) {
+                    PlayerHomes newer = overrides.remove(uuid);
+                    if (newer == null) {
+                        // Deleted after the snapshot was written
+                        continue;
+                    }
+                    batch.put(uuid, newer);
+                } else {
+                    batch.put(uuid, home.homes());
+                }
+            }
+            submit(batch, entries);
+        }
+
+        /**
+         * Wait for the previous batch, checkpoint it and start writing this one
+         */
+        void submit(Map<UUID, PlayerHomes> batch, long entries) throws IOException {
+            awaitInFlight();
+            inFlight = homes.importHomes(batch);
+            inFlightEntries = entries;
+            int size = 0;
+            for (PlayerHomes playerHomes : batch.values()) {
+                size += playerHomes.size();
+            }
+            inFlightSize = size;
+        }
+
+        void finish(boolean done) throws IOException {
+            awaitInFlight();
+            if (done) {
+                writeCheckpoint(source, inFlightEntries, true);
+            }
+        }
+
+        private void awaitInFlight() throws IOException {
+            if (inFlight == null) {
+                return;
+            }
+
+            inFlight.join();
+            inFlight = null;
+            imported.addAndGet(inFlightSize);
+            writeCheckpoint(source, inFlightEntries, false);
+
+            if (System.nanoTime() - lastLog >= TimeUnit.SECONDS.toNanos(5)) {
+                lastLog = System.nanoTime();
+                logProgress();
+            }
+        }
+    }
+
+    private void logProgress() {
+        long millis = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        plugin.getLogger().info("Migrating homes.yml: " + imported.get() + " homes imported, "
+                + getPercent() + "% read (" + imported.get() * 1000 / millis + " homes/s)");
+    }
+
+    /**
+     * Identifies the source files, a checkpoint only applies to the files it
+     * was written for
+     */
+    private String fingerprint() {
+        StringBuilder sb = new StringBuilder();
+        for (File file : new File[] {homesFile, rotatedJournalFile, journalFile}) {
+            sb.append(file.getName()).append(':').append(file.length()).append(':').append(file.lastModified()).append(';');
+        }
+        return sb.toString();
+    }
+
+    private Properties readCheckpoint() {
+        if (!checkpointFile.exists()) {
+            return null;
+        }
+
+        Properties checkpoint = new Properties();
+        try (InputStream in = new FileInputStream(checkpointFile)) {
+            checkpoint.load(in);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to read homes.migration, starting over: " + e.getMessage());
+            return null;
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Written via temp file and rename, a crash leaves the previous
+     * checkpoint intact
+     */
+    private void writeCheckpoint(String source, long entries, boolean done) throws IOException {
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty(CHECKPOINT_SOURCE, source);
+        checkpoint.setProperty(CHECKPOINT_ENTRIES, Long.toString(entries));
+        checkpoint.setProperty(CHECKPOINT_DONE, Boolean.toString(done));
+
+        File tmp = new File(checkpointFile.getParentFile(), checkpointFile.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            checkpoint.store(out, "homes.yml migration progress");
+            out.getChannel().force(true);
+        }
+
+        try {
+            Files.move(tmp.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Share of homes.yml read so far
+     */
+    public int getPercent() {
+        long total = totalBytes;
+        return total > 0 ? (int) Math.min(100, bytesRead.get() * 100 / total) : 100;
+    }
+
+    public long getEntriesRead() {
+        return entriesRead.get();
+    }
+
+    public long getImported() {
+        return imported.get();
+    }
+
+    public long getResolved() {
+        return resolved.get();
+    }
+
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * Counts the bytes the YAML parser has pulled from the file
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private final AtomicLong count;
+
+        CountingInputStream(InputStream in, AtomicLong count) {
+            super(in);
+            this.count = count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count.addAndGet(n);
+            }
+            return n;
+        }
+    }
+}
@@ -1,10 +1,28 @@
 package com.example.server;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
 
 import org.bukkit.Bukkit;
 import org.bukkit.configuration.ConfigurationSection;
@@ -13,16 +31,59 @@ import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 
 /**
- * YAML-backed repository for player homes.
+ * YAML-backed repository for player homes. homes.yml is a snapshot with one
+ * section per player and one subsection per named home; every change is
+ * appended to homes.journal and folded into a new snapshot in the
+ * background every performance.auto-save-interval minutes, so a save costs
+ * one appended line per player instead of a rewrite of the whole file.
+ * <p>
+ * A journal line holds all of a player's homes, so a torn line after a crash
+ * loses that player's last change, never part of their homes. Snapshots and
+ * journals from before named homes are read with their single home named
+ * {@value PlayerHomes#DEFAULT_NAME}.
+ * <p>
+ * With durability immediate or group every append is fsynced, group commit
+ * merges the batches queued on the journal thread into one append. With
+ * periodic, appends only reach the OS and the journal is fsynced every
+ * durability.checkpoint-interval-ms.
  */
 public class YamlHomeRepository implements HomeRepository {
 
+    // Single home of a player, written before players had named homes
+    private static final char OP_SET = '+';
+    // All of a player's homes: uuid, count, then name, world, x, y, z, yaw, pitch per home
+    private static final char OP_REPLACE = '=';
+    private static final char OP_DELETE = '-';
+    private static final int FIELDS_PER_HOME = 7;
+
     private final JavaPlugin plugin;
     private final File homesFile;
+    private final File journalFile;
+    private final File rotatedJournalFile;
+    private final Durability durability;
+
+    // Serialises compaction, full saves and loads
+    private final Object compactLock = new Object();
+    // Guards the journal writer
+    private final Object journalLock = new Object();
+    private FileOutputStream journalOut;
+    private Writer journalWriter;
+    private int journalEntries;
+    // Appended but not yet fsynced, periodic durability only
+    private boolean journalDirty;
+
+    private final ScheduledExecutorService compactor;
+    // Journal appends and point reads, one thread so appends keep their order
+    private final ScheduledExecutorService journalExecutor;
+    // Merges batches waiting for the journal thread, only with durability group
+    private final GroupCommit groupCommit;
 
     public YamlHomeRepository(JavaPlugin plugin) {
         this.plugin = plugin;
         this.homesFile = new File(plugin.getDataFolder(), "homes.yml");
+        this.journalFile = new File(plugin.getDataFolder(), "homes.journal");
+        this.rotatedJournalFile = new File(plugin.getDataFolder(), "homes.journal.1");
+        this.durability = Durability.fromConfig(plugin.getConfig());
 
         if (!plugin.getDataFolder().exists()) {
             plugin.getDataFolder().mkdirs();
@@ -35,11 +96,80 @@ public class YamlHomeRepository implements HomeRepository {
                 plugin.getLogger().severe("Не удалось создать файл homes.yml!");
             }
         }
+
+        this.compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "HomeService-Compact");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.journalExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "HomeRepository-YAML");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.groupCommit = durability == Durability.GROUP
+                ? new GroupCommit(journalExecutor, this::commitGroup)
+                : null;
+
+        long interval = Math.max(1L, plugin.getConfig().getLong("performance.auto-save-interval", 5L));
+        compactor.scheduleWithFixedDelay(this::compactSafely, interval, interval, TimeUnit.MINUTES);
+
+        if (durability == Durability.PERIODIC) {
+            long sync = Math.max(10L, plugin.getConfig().getLong("durability.checkpoint-interval-ms", 1000L));
+            // On the journal thread, a long compaction must not delay the sync
+            journalExecutor.scheduleWithFixedDelay(this::syncJournal, sync, sync, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public Map<UUID, PlayerHomes> loadAll() {
+        synchronized (compactLock) {
+            Map<UUID, PlayerHomes> result = readSnapshot();
+            int replayed = replay(rotatedJournalFile, result) + replay(journalFile, result);
+            if (replayed > 0) {
+                plugin.getLogger().info("Replayed " + replayed + " journal entries");
+            }
+            synchronized (journalLock) {
+                journalEntries = replayed;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * YAML has no index, a single lookup parses the snapshot and replays the
+     * journals
+     */
+    @Override
+    public CompletableFuture<PlayerHomes> load(UUID uuid) {
+        return CompletableFuture.supplyAsync(() -> {
+            synchronized (compactLock) {
+                Map<UUID, PlayerHomes> state = readSnapshot();
+                replay(rotatedJournalFile, state);
+                replay(journalFile, state);
+                return state.get(uuid);
+            }
+        }, journalExecutor);
     }
 
     @Override
-    public Map<UUID, Home> loadAll() {
-        Map<UUID, Home> result = new HashMap<>();
+    public boolean supportsFastLoad() {
+        return false;
+    }
+
+    @Override
+    public CompletableFuture<Void> save(UUID uuid, PlayerHomes homes) {
+        return saveBatch(Map.of(uuid, homes), Set.of());
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(UUID uuid) {
+        return saveBatch(Map.of(), Set.of(uuid));
+    }
+
+    private Map<UUID, PlayerHomes> readSnapshot() {
+        Map<UUID, PlayerHomes> result = new HashMap<>();
         FileConfiguration config = YamlConfiguration.loadConfiguration(homesFile);
         if (!config.contains("homes")) {
             return result;
@@ -51,61 +181,390 @@ public class YamlHomeRepository implements HomeRepository {
         }
 
         for (String uuidString : homesSection.getKeys(false)) {
-            try {
-                UUID uuid = UUID.fromString(uuidString);
-                String path = "homes." + uuidString;
-                String world = config.getString(path + ".world");
-                if (world == null) {
-                    continue;
-                }
+            ConfigurationSection section = homesSection.getConfigurationSection(uuidString);
+            if (section == null) {
+                continue;
+            }
 
-                double x = config.getDouble(path + ".x");
-                double y = config.getDouble(path + ".y");
-                double z = config.getDouble(path + ".z");
-                float yaw = (float) config.getDouble(path + ".yaw");
-                float pitch = (float) config.getDouble(path + ".pitch");
+            PlayerHomes homes = readHomes(section);
+            if (homes.isEmpty()) {
+                continue;
+            }
 
-                result.put(uuid, new Home(world, x, y, z, yaw, pitch));
+            try {
+                result.put(UUID.fromString(uuidString), homes);
             } catch (IllegalArgumentException ex) {
                 UUID migratedUuid = Bukkit.getOfflinePlayer(uuidString).getUniqueId();
-                String path = "homes." + uuidString;
-                String world = config.getString(path + ".world");
-                if (world == null) {
+                result.put(migratedUuid, homes);
+                plugin.getLogger().info("Миграция дома: " + uuidString + " -> " + migratedUuid);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Homes of one player's section: a subsection per name, or the home
+     * itself in files from before named homes
+     */
+    private static PlayerHomes readHomes(ConfigurationSection section) {
+        if (section.contains("world")) {
+            Home home = readHome(section);
+            return home != null ? PlayerHomes.of(PlayerHomes.DEFAULT_NAME, home) : PlayerHomes.EMPTY;
+        }
+
+        PlayerHomes homes = PlayerHomes.EMPTY;
+        for (String name : section.getKeys(false)) {
+            ConfigurationSection homeSection = section.getConfigurationSection(name);
+            Home home = homeSection != null ? readHome(homeSection) : null;
+            if (home != null) {
+                homes = homes.with(name, home);
+            }
+        }
+        return homes;
+    }
+
+    private static Home readHome(ConfigurationSection section) {
+        String world = section.getString("world");
+        if (world == null) {
+            return null;
+        }
+
+        return new Home(world,
+                section.getDouble("x"),
+                section.getDouble("y"),
+                section.getDouble("z"),
+                (float) section.getDouble("yaw"),
+                (float) section.getDouble("pitch"));
+    }
+
+    /**
+     * Apply a journal file on top of the given state
+     *
+     * @return number of entries applied
+     */
+    private int replay(File file, Map<UUID, PlayerHomes> state) {
+        return replay(file, (uuid, homes) -> {
+            if (homes == null) {
+                state.remove(uuid);
+            } else {
+                state.put(uuid, homes);
+            }
+        }, plugin.getLogger());
+    }
+
+    /**
+     * Feed every entry of a journal file to the consumer in order, each with
+     * all of the player's homes and a delete as null
+     *
+     * @return number of entries read
+     */
+    static int replay(File file, BiConsumer<UUID, PlayerHomes> apply, Logger logger) {
+        if (!file.exists()) {
+            return 0;
+        }
+
+        int applied = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
                     continue;
                 }
 
-                double x = config.getDouble(path + ".x");
-                double y = config.getDouble(path + ".y");
-                double z = config.getDouble(path + ".z");
-                float yaw = (float) config.getDouble(path + ".yaw");
-                float pitch = (float) config.getDouble(path + ".pitch");
-
-                result.put(migratedUuid, new Home(world, x, y, z, yaw, pitch));
-                plugin.getLogger().info("Миграция дома: " + uuidString + " -> " + migratedUuid);
+                String[] parts = line.split("\t");
+                try {
+                    UUID uuid = UUID.fromString(parts[1]);
+                    switch (parts[0].charAt(0)) {
+                        case OP_DELETE -> apply.accept(uuid, null);
+                        case OP_SET -> apply.accept(uuid, PlayerHomes.of(PlayerHomes.DEFAULT_NAME, parseHome(parts, 2)));
+                        case OP_REPLACE -> apply.accept(uuid, parseHomes(parts));
+                        default -> throw new IllegalArgumentException("unknown operation");
+                    }
+                    applied++;
+                } catch (RuntimeException e) {
+                    // Torn last line after a crash, everything before it is intact
+                    logger.warning("Skipping corrupt journal entry in " + file.getName() + ": " + line);
+                }
             }
+        } catch (IOException e) {
+            logger.severe("Не удалось прочитать " + file.getName() + ": " + e.getMessage());
         }
 
-        return result;
+        return applied;
+    }
+
+    /**
+     * Home from world, x, y, z, yaw and pitch starting at the offset
+     */
+    private static Home parseHome(String[] parts, int offset) {
+        return new Home(parts[offset],
+                Double.parseDouble(parts[offset + 1]),
+                Double.parseDouble(parts[offset + 2]),
+                Double.parseDouble(parts[offset + 3]),
+                Float.parseFloat(parts[offset + 4]),
+                Float.parseFloat(parts[offset + 5]));
+    }
+
+    private static PlayerHomes parseHomes(String[] parts) {
+        int count = Integer.parseInt(parts[2]);
+        // A line torn between two homes has fewer fields than announced
+        if (count < 1 || parts.length != 3 + count * FIELDS_PER_HOME) {
+            throw new IllegalArgumentException("expected " + count + " homes");
+        }
+
+        PlayerHomes homes = PlayerHomes.EMPTY;
+        for (int i = 0; i < count; i++) {
+            int offset = 3 + i * FIELDS_PER_HOME;
+            homes = homes.with(parts[offset], parseHome(parts, offset + 1));
+        }
+        return homes;
     }
 
+    /**
+     * Append a batch of changes to the journal; completes once the batch has
+     * reached the disk, or only the OS with periodic durability
+     */
     @Override
-    public void saveAll(Map<UUID, Home> homes) {
-        FileConfiguration config = new YamlConfiguration();
-        for (Map.Entry<UUID, Home> entry : homes.entrySet()) {
-            String path = "homes." + entry.getKey();
-            Home home = entry.getValue();
-            config.set(path + ".world", home.world());
-            config.set(path + ".x", home.x());
-            config.set(path + ".y", home.y());
-            config.set(path + ".z", home.z());
-            config.set(path + ".yaw", home.yaw());
-            config.set(path + ".pitch", home.pitch());
+    public CompletableFuture<Void> saveBatch(Map<UUID, PlayerHomes> upserts, Set<UUID> deletes) {
+        if (upserts.isEmpty() && deletes.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (groupCommit != null) {
+            return groupCommit.submit(upserts, deletes);
         }
 
+        return CompletableFuture.runAsync(() -> {
+            try {
+                append(upserts, deletes);
+            } catch (IOException e) {
+                plugin.getLogger().severe("Не удалось записать homes.journal: " + e.getMessage());
+                throw new CompletionException(e);
+            }
+        }, journalExecutor);
+    }
+
+    private void commitGroup(Map<UUID, PlayerHomes> upserts, Set<UUID> deletes) throws IOException {
         try {
-            config.save(homesFile);
+            append(upserts, deletes);
         } catch (IOException e) {
-            plugin.getLogger().severe("Не удалось сохранить homes.yml!");
+            plugin.getLogger().severe("Не удалось записать homes.journal: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    private void append(Map<UUID, PlayerHomes> upserts, Set<UUID> deletes) throws IOException {
+        String entries = format(upserts, deletes);
+
+        synchronized (journalLock) {
+            try {
+                Writer writer = journalWriter();
+                writer.write(entries);
+                writer.flush();
+                if (durability.syncsEveryCommit()) {
+                    journalOut.getChannel().force(false);
+                } else {
+                    journalDirty = true;
+                }
+                journalEntries += upserts.size() + deletes.size();
+            } catch (IOException e) {
+                closeJournal();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Journal lines for a batch, one per player, as {@link #replay} reads
+     * them
+     */
+    static String format(Map<UUID, PlayerHomes> upserts, Set<UUID> deletes) {
+        StringBuilder sb = new StringBuilder((upserts.size() + deletes.size()) * 112);
+        for (Map.Entry<UUID, PlayerHomes> entry : upserts.entrySet()) {
+            PlayerHomes homes = entry.getValue();
+            sb.append(OP_REPLACE).append('\t').append(entry.getKey()).append('\t').append(homes.size());
+            for (int i = 0; i < homes.size(); i++) {
+                Home home = homes.home(i);
+                sb.append('\t').append(homes.name(i))
+                        .append('\t').append(home.world())
+                        .append('\t').append(home.x())
+                        .append('\t').append(home.y())
+                        .append('\t').append(home.z())
+                        .append('\t').append(home.yaw())
+                        .append('\t').append(home.pitch());
+            }
+            sb.append('\n');
+        }
+        for (UUID uuid : deletes) {
+            sb.append(OP_DELETE).append('\t').append(uuid).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private Writer journalWriter() throws IOException {
+        if (journalWriter == null) {
+            boolean torn = endsTorn(journalFile);
+            journalOut = new FileOutputStream(journalFile, true);
+            journalWriter = new BufferedWriter(new OutputStreamWriter(journalOut, StandardCharsets.UTF_8));
+            if (torn) {
+                // Terminate a line torn by a crash, or the next entry would be lost with it
+                journalWriter.write('\n');
+            }
+        }
+        return journalWriter;
+    }
+
+    private static boolean endsTorn(File file) throws IOException {
+        if (file.length() == 0) {
+            return false;
+        }
+
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek(file.length() - 1);
+            return in.read() != '\n';
+        }
+    }
+
+    /**
+     * Fsync what periodic durability appended since the last sync
+     */
+    private void syncJournal() {
+        synchronized (journalLock) {
+            if (!journalDirty || journalOut == null) {
+                return;
+            }
+
+            try {
+                journalOut.getChannel().force(false);
+                journalDirty = false;
+            } catch (IOException e) {
+                plugin.getLogger().warning("Failed to sync homes.journal: " + e.getMessage());
+            }
+        }
+    }
+
+    private void closeJournal() {
+        // Rotation and shutdown must not leave unsynced appends behind
+        syncJournal();
+        if (journalWriter != null) {
+            try {
+                journalWriter.close();
+            } catch (IOException e) {
+                plugin.getLogger().warning("Failed to close homes.journal: " + e.getMessage());
+            }
+        }
+        journalWriter = null;
+        journalOut = null;
+        journalDirty = false;
+    }
+
+    private void compactSafely() {
+        try {
+            compact();
+        } catch (Exception e) {
+            plugin.getLogger().severe("Journal compaction failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Fold the journal into a new snapshot. The live journal is rotated under
+     * the lock and the snapshot is rebuilt from the rotated file, so saves
+     * keep appending while compaction runs.
+     */
+    public void compact() {
+        synchronized (compactLock) {
+            synchronized (journalLock) {
+                if (journalEntries == 0 && !rotatedJournalFile.exists()) {
+                    return;
+                }
+
+                // A leftover rotated journal from a failed run is compacted first
+                if (!rotatedJournalFile.exists()) {
+                    closeJournal();
+                    if (journalFile.exists() && !journalFile.renameTo(rotatedJournalFile)) {
+                        plugin.getLogger().warning("Failed to rotate homes.journal, compaction skipped");
+                        return;
+                    }
+                    journalEntries = 0;
+                }
+            }
+
+            Map<UUID, PlayerHomes> state = readSnapshot();
+            int folded = replay(rotatedJournalFile, state);
+            try {
+                writeSnapshot(state);
+                Files.deleteIfExists(rotatedJournalFile.toPath());
+                plugin.getLogger().info("Compacted " + folded + " journal entries into homes.yml (" + state.size() + " players)");
+            } catch (IOException e) {
+                plugin.getLogger().severe("Не удалось сохранить homes.yml! " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Write a full snapshot via temp file and rename, so a crash never leaves
+     * a half-written homes.yml behind
+     */
+    private void writeSnapshot(Map<UUID, PlayerHomes> homes) throws IOException {
+        FileConfiguration config = new YamlConfiguration();
+        for (Map.Entry<UUID, PlayerHomes> entry : homes.entrySet()) {
+            entry.getValue().forEach((name, home) -> {
+                String path = "homes." + entry.getKey() + "." + name;
+                config.set(path + ".world", home.world());
+                config.set(path + ".x", home.x());
+                config.set(path + ".y", home.y());
+                config.set(path + ".z", home.z());
+                config.set(path + ".yaw", home.yaw());
+                config.set(path + ".pitch", home.pitch());
+            });
+        }
+
+        File tmp = new File(homesFile.getParentFile(), homesFile.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(config.saveToString().getBytes(StandardCharsets.UTF_8));
+            out.getChannel().force(true);
+        }
+
+        try {
+            Files.move(tmp.toPath(), homesFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), homesFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public void saveAll(Map<UUID, PlayerHomes> homes) {
+        synchronized (compactLock) {
+            try {
+                writeSnapshot(homes);
+                // The snapshot now holds everything, both journals are obsolete
+                synchronized (journalLock) {
+                    closeJournal();
+                    Files.deleteIfExists(journalFile.toPath());
+                    journalEntries = 0;
+                }
+                Files.deleteIfExists(rotatedJournalFile.toPath());
+            } catch (IOException e) {
+                plugin.getLogger().severe("Не удалось сохранить homes.yml!");
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        compactor.shutdownNow();
+        journalExecutor.shutdown();
+        try {
+            if (!journalExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("homes.journal writer did not finish in time");
+                journalExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (journalLock) {
+            closeJournal();
         }
     }
 }
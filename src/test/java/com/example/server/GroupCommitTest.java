@@ -0,0 +1,151 @@
+package com.example.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Merging and completion of {@link GroupCommit} groups, with a writer that
+ * only runs when the test says so
+ */
+class GroupCommitTest {
+
+    private static final UUID ALICE = new UUID(1, 1);
+    private static final UUID BOB = new UUID(2, 2);
+    private static final UUID CAROL = new UUID(3, 3);
+
+    /**
+     * Writer thread stand-in, tasks run on {@link #runAll()}
+     */
+    private static final class ManualExecutor implements Executor {
+
+        final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    private record Group(Map<UUID, PlayerHomes> upserts, Set<UUID> deletes) {
+
+    }
+
+    private static PlayerHomes homes(double x) {
+        return PlayerHomes.of(PlayerHomes.DEFAULT_NAME, new Home("world", x, 64, 0, 0f, 0f));
+    }
+
+    private static Throwable failure(CompletableFuture<Void> future) {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            return e.getCause();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        throw new AssertionError("future completed normally");
+    }
+
+    @Test
+    void mergesBatchesQueuedWhileTheWriterIsBusy() {
+        ManualExecutor writer = new ManualExecutor();
+        List<Group> groups = new ArrayList<>();
+        GroupCommit groupCommit = new GroupCommit(writer, (upserts, deletes) -> groups.add(new Group(upserts, deletes)));
+
+        CompletableFuture<Void> first = groupCommit.submit(Map.of(ALICE, homes(1), BOB, homes(1)), Set.of());
+        CompletableFuture<Void> second = groupCommit.submit(Map.of(CAROL, homes(2)), Set.of(BOB));
+        CompletableFuture<Void> third = groupCommit.submit(Map.of(BOB, homes(3)), Set.of(ALICE));
+        // One drain is scheduled for the whole burst
+        assertEquals(1, writer.tasks.size());
+        assertFalse(first.isDone());
+
+        writer.runAll();
+
+        // Later batches win: Bob deleted then set again, Alice set then deleted
+        assertEquals(List.of(new Group(Map.of(BOB, homes(3), CAROL, homes(2)), Set.of(ALICE))), groups);
+        assertTrue(first.isDone() && second.isDone() && third.isDone());
+        assertFalse(first.isCompletedExceptionally());
+    }
+
+    @Test
+    void batchArrivingDuringACommitGoesToTheNextGroup() {
+        ManualExecutor writer = new ManualExecutor();
+        List<Group> groups = new ArrayList<>();
+        List<CompletableFuture<Void>> late = new ArrayList<>();
+        GroupCommit[] groupCommit = new GroupCommit[1];
+        groupCommit[0] = new GroupCommit(writer, (upserts, deletes) -> {
+            groups.add(new Group(upserts, deletes));
+            if (late.isEmpty()) {
+                late.add(groupCommit[0].submit(Map.of(BOB, homes(2)), Set.of()));
+                assertFalse(late.get(0).isDone());
+            }
+        });
+
+        CompletableFuture<Void> early = groupCommit[0].submit(Map.of(ALICE, homes(1)), Set.of());
+        writer.runAll();
+
+        assertEquals(List.of(new Group(Map.of(ALICE, homes(1)), Set.of()), new Group(Map.of(BOB, homes(2)), Set.of())),
+                groups);
+        assertTrue(early.isDone() && late.get(0).isDone());
+    }
+
+    @Test
+    void failedCommitFailsEveryBatchOfItsGroupOnly() {
+        ManualExecutor writer = new ManualExecutor();
+        Exception diskFull = new Exception("disk full");
+        boolean[] fail = {true};
+        GroupCommit groupCommit = new GroupCommit(writer, (upserts, deletes) -> {
+            if (fail[0]) {
+                throw diskFull;
+            }
+        });
+
+        CompletableFuture<Void> first = groupCommit.submit(Map.of(ALICE, homes(1)), Set.of());
+        CompletableFuture<Void> second = groupCommit.submit(Map.of(), Set.of(BOB));
+        writer.runAll();
+        assertSame(diskFull, failure(first));
+        assertSame(diskFull, failure(second));
+
+        fail[0] = false;
+        CompletableFuture<Void> retry = groupCommit.submit(Map.of(ALICE, homes(1)), Set.of());
+        writer.runAll();
+        assertTrue(retry.isDone());
+        assertFalse(retry.isCompletedExceptionally());
+    }
+
+    @Test
+    void rejectedWriterFailsTheQueuedBatches() {
+        RejectedExecutionException shutDown = new RejectedExecutionException("shut down");
+        GroupCommit groupCommit = new GroupCommit(task -> {
+            throw shutDown;
+        }, (upserts, deletes) -> {
+            throw new AssertionError("nothing may be committed");
+        });
+
+        assertSame(shutDown, failure(groupCommit.submit(Map.of(ALICE, homes(1)), Set.of())));
+        // The failed drain is not left scheduled, the next batch tries again
+        assertSame(shutDown, failure(groupCommit.submit(Map.of(BOB, homes(1)), Set.of())));
+    }
+}
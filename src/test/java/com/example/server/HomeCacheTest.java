@@ -0,0 +1,141 @@
+package com.example.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * What {@link HomeCache} knows about a player in lazy and eager mode, and
+ * which offline players it lets go
+ */
+class HomeCacheTest {
+
+    private static final UUID ALICE = new UUID(1, 1);
+    private static final UUID BOB = new UUID(2, 2);
+    private static final UUID CAROL = new UUID(3, 3);
+
+    private static PlayerHomes homes(double x) {
+        return PlayerHomes.of(PlayerHomes.DEFAULT_NAME, new Home("world", x, 64, 0, 0f, 0f));
+    }
+
+    private static UUID player(int i) {
+        return new UUID(42, i);
+    }
+
+    @Test
+    void lazyCacheOnlyAnswersForLoadedPlayers() {
+        HomeCache cache = new HomeCache(new MapHomeTable(), true, 100, 0);
+        assertFalse(cache.isLoaded(ALICE));
+
+        cache.putLoaded(ALICE, homes(1));
+        // Storage had nothing, remembered so the next lookup needs no disk
+        cache.putLoaded(BOB, null);
+        assertTrue(cache.isLoaded(ALICE));
+        assertTrue(cache.isLoaded(BOB));
+        assertFalse(cache.isLoaded(CAROL));
+
+        assertEquals(homes(1), cache.get(ALICE));
+        assertNull(cache.get(BOB));
+        assertNull(cache.get(CAROL));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void loadedHomesDoNotOverwriteNewerChanges() {
+        HomeCache cache = new HomeCache(new MapHomeTable(), true, 100, 0);
+        cache.put(ALICE, homes(2));
+        cache.putLoaded(ALICE, homes(1));
+        assertEquals(homes(2), cache.get(ALICE));
+
+        cache.remove(BOB);
+        cache.putLoaded(BOB, homes(1));
+        assertTrue(cache.isLoaded(BOB));
+        assertNull(cache.get(BOB));
+    }
+
+    @Test
+    void eagerCacheKnowsEveryPlayerOnceWarm() {
+        HomeCache cache = new HomeCache(new MapHomeTable(), false, 100, 0);
+        cache.startWarming();
+        cache.put(ALICE, homes(2));
+        cache.remove(BOB);
+        assertFalse(cache.isLoaded(CAROL));
+
+        // The startup load arrives after the changes
+        cache.putLoaded(ALICE, homes(1));
+        cache.putLoaded(BOB, homes(1));
+        cache.finishWarming();
+        assertTrue(cache.isLoaded(CAROL));
+        assertEquals(homes(2), cache.get(ALICE));
+        assertNull(cache.get(BOB));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedOfflinePlayersOverTheLimit() {
+        HomeCache cache = new HomeCache(new MapHomeTable(), true, 3, 0);
+        for (int i = 0; i < 3; i++) {
+            cache.putLoaded(player(i), homes(i));
+        }
+        cache.get(player(0));
+        cache.putLoaded(player(3), null);
+
+        assertEquals(1, cache.getEvictions());
+        assertEquals(3, cache.getOfflineCount());
+        assertFalse(cache.isLoaded(player(1)));
+        assertTrue(cache.isLoaded(player(0)));
+        assertTrue(cache.isLoaded(player(3)));
+    }
+
+    @Test
+    void keepsOnlinePlayersUntilTheyQuit() {
+        HomeCache cache = new HomeCache(new MapHomeTable(), true, 2, 0);
+        cache.pin(ALICE);
+        cache.putLoaded(ALICE, homes(1));
+        for (int i = 0; i < 5; i++) {
+            cache.putLoaded(player(i), homes(i));
+        }
+        assertEquals(homes(1), cache.get(ALICE));
+        assertEquals(2, cache.getOfflineCount());
+
+        cache.unpin(ALICE);
+        cache.putLoaded(player(5), homes(5));
+        cache.putLoaded(player(6), homes(6));
+        assertFalse(cache.isLoaded(ALICE));
+    }
+
+    @Test
+    void guardKeepsPlayersWithUnsavedChanges() {
+        HomeCache cache = new HomeCache(new MapHomeTable(), true, 2, 0);
+        cache.setEvictionGuard(uuid -> !uuid.equals(ALICE));
+        cache.put(ALICE, homes(1));
+        for (int i = 0; i < 5; i++) {
+            cache.putLoaded(player(i), homes(i));
+        }
+
+        assertTrue(cache.isLoaded(ALICE));
+        assertEquals(4, cache.getEvictions());
+        assertEquals(2, cache.getOfflineCount());
+        cache.setEvictionGuard(uuid -> true);
+        cache.putLoaded(player(5), homes(5));
+        assertFalse(cache.isLoaded(ALICE));
+    }
+
+    @Test
+    void expiresOfflinePlayersPastTheirTtl() throws InterruptedException {
+        HomeCache cache = new HomeCache(new MapHomeTable(), true, 100, 1);
+        cache.putLoaded(ALICE, homes(1));
+        Thread.sleep(1100);
+
+        // Expiry is checked whenever an offline player is touched
+        cache.putLoaded(BOB, homes(2));
+        assertFalse(cache.isLoaded(ALICE));
+        assertTrue(cache.isLoaded(BOB));
+        assertEquals(1, cache.getEvictions());
+    }
+}
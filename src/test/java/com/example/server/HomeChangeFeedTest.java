@@ -0,0 +1,139 @@
+package com.example.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Two servers sharing one homes.db, each with its own cache kept current by
+ * a {@link HomeChangeFeed}
+ */
+class HomeChangeFeedTest {
+
+    private static final UUID ALICE = new UUID(1, 1);
+    private static final UUID BOB = new UUID(2, 2);
+    private static final UUID CAROL = new UUID(3, 3);
+
+    @TempDir
+    Path dataFolder;
+
+    // East writes its changes right away, west only when it shuts down
+    private Server east;
+    private Server west;
+
+    /**
+     * The pieces of a HomeService that take part in syncing. Local changes
+     * are queued under the cache lock like HomeService does.
+     */
+    private final class Server {
+
+        final HomeMetrics metrics = new HomeMetrics();
+        final SqliteHomeRepository repository;
+        final HomeCache cache = new HomeCache(new MapHomeTable(), false, 0, 0);
+        final KeyedExecutor executor;
+        final WriteBehindBuffer writeBehind;
+        final HomeChangeFeed feed;
+        private boolean closed;
+
+        Server(String name, long maxStalenessMillis) {
+            TestPlugin plugin = new TestPlugin(dataFolder.toFile());
+            plugin.getConfig().set("sync.enabled", true);
+            repository = new SqliteHomeRepository(plugin);
+            Logger logger = Logger.getLogger("HomeChangeFeedTest-" + name);
+            executor = new KeyedExecutor(logger, name, 2, 64, metrics);
+            writeBehind = new WriteBehindBuffer(logger, executor, metrics, repository::saveBatch,
+                    1000, maxStalenessMillis);
+            feed = new HomeChangeFeed(plugin, repository, cache, writeBehind, metrics, 50, 600);
+            feed.start(repository.getLastChange());
+            repository.loadAll().forEach(cache::putLoaded);
+        }
+
+        void setHomes(UUID uuid, PlayerHomes homes) {
+            cache.update(uuid, current -> homes, (u, h) -> {
+                if (!h.isEmpty()) {
+                    writeBehind.put(u, h);
+                } else {
+                    writeBehind.delete(u);
+                }
+            });
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            feed.stop();
+            writeBehind.close(5, TimeUnit.SECONDS);
+            executor.shutdown(5, TimeUnit.SECONDS);
+            repository.close();
+        }
+    }
+
+    @BeforeEach
+    void start() {
+        east = new Server("east", 20);
+        west = new Server("west", TimeUnit.HOURS.toMillis(1));
+        assertTrue(east.repository.supportsChangeFeed());
+    }
+
+    @AfterEach
+    void stop() {
+        east.close();
+        west.close();
+    }
+
+    private static PlayerHomes homes(double x) {
+        return PlayerHomes.of(PlayerHomes.DEFAULT_NAME, new Home("world", x, 64, 0, 0f, 0f));
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("condition not met within 10 s");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void remoteChangesReachTheOtherCache() throws InterruptedException {
+        east.setHomes(ALICE, homes(1));
+        east.setHomes(BOB, homes(1));
+        awaitTrue(() -> homes(1).equals(west.cache.get(ALICE)) && homes(1).equals(west.cache.get(BOB)));
+
+        east.setHomes(BOB, PlayerHomes.EMPTY);
+        awaitTrue(() -> west.cache.get(BOB) == null);
+        assertEquals(homes(1), west.cache.get(ALICE));
+        assertTrue(west.metrics.getRemoteChanges() >= 3);
+    }
+
+    @Test
+    void pendingLocalChangesAreNotOverwritten() throws InterruptedException {
+        west.setHomes(ALICE, homes(2));
+        east.setHomes(ALICE, homes(1));
+        awaitTrue(() -> homes(1).equals(east.repository.load(ALICE).join()));
+        // Logged after Alice's change, so once Carol arrives Alice's was polled too
+        east.setHomes(CAROL, homes(1));
+        awaitTrue(() -> homes(1).equals(west.cache.get(CAROL)));
+        assertEquals(homes(2), west.cache.get(ALICE));
+        assertTrue(west.writeBehind.hasPending(ALICE));
+
+        // West's change is the newer one and wins on both servers
+        west.close();
+        awaitTrue(() -> homes(2).equals(east.cache.get(ALICE)));
+        assertEquals(homes(2), east.repository.load(ALICE).join());
+        assertEquals(homes(2), west.cache.get(ALICE));
+    }
+}
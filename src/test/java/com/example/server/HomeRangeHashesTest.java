@@ -0,0 +1,171 @@
+package com.example.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link HomeRangeHashes} kept next to a player's homes against the
+ * home_ranges sums the SQLite triggers keep, for the statements
+ * {@link SqliteHomeRepository} writes with
+ */
+class HomeRangeHashesTest {
+
+    private static final String[] NAMES = {PlayerHomes.DEFAULT_NAME, "base", "farm"};
+
+    private Connection conn;
+
+    @BeforeEach
+    void openDatabase() throws Exception {
+        Class.forName("org.sqlite.JDBC");
+        conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+        SqliteSchema.migrate(conn, Logger.getLogger("HomeRangeHashesTest"));
+        try (Statement stmt = conn.createStatement()) {
+            for (int i = 0; i < TestHomes.WORLDS.size(); i++) {
+                stmt.execute("INSERT INTO worlds (id, name) VALUES (" + (i + 1) + ", '"
+                        + TestHomes.WORLDS.get(i) + "')");
+            }
+        }
+    }
+
+    @AfterEach
+    void closeDatabase() throws SQLException {
+        conn.close();
+    }
+
+    private static Home randomHome(Random random) {
+        // Negative zero as well, which SQLite stores as 0.0
+        double x = random.nextInt(8) == 0 ? -0.0 : random.nextInt(2000) - 1000 + 0.25;
+        float yaw = random.nextInt(8) == 0 ? -0.0f : random.nextInt(360) - 180f;
+        String world = TestHomes.WORLDS.get(random.nextInt(TestHomes.WORLDS.size()));
+        return new Home(world, x, 64, random.nextInt(2000) - 1000, yaw, 0f);
+    }
+
+    private void upsert(UUID uuid, String name, Home home) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(SqliteHomeRepository.UPSERT_SQL)) {
+            stmt.setBytes(1, SqliteHomeRepository.toBytes(uuid));
+            stmt.setString(2, name);
+            stmt.setInt(3, TestHomes.WORLDS.indexOf(home.world()) + 1);
+            stmt.setDouble(4, home.x());
+            stmt.setDouble(5, home.y());
+            stmt.setDouble(6, home.z());
+            stmt.setFloat(7, home.yaw());
+            stmt.setFloat(8, home.pitch());
+            stmt.setLong(9, HomeRangeHashes.rowHash(uuid, name, home));
+            stmt.executeUpdate();
+        }
+    }
+
+    private void delete(String sql, UUID uuid, String name) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setBytes(1, SqliteHomeRepository.toBytes(uuid));
+            if (name != null) {
+                stmt.setString(2, name);
+            }
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Every leaf of home_ranges against the Java sums, and both against the
+     * hashes of the rows as SQLite reads them back
+     */
+    private void assertSumsMatch(HomeRangeHashes expected) throws SQLException {
+        HomeRangeHashes stored = new HomeRangeHashes();
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT h.uuid, h.name, w.name, h.x, h.y, h.z, h.yaw, h.pitch "
+                        + "FROM homes h JOIN worlds w ON w.id = h.world_id")) {
+            while (rs.next()) {
+                UUID uuid = SqliteHomeRepository.fromBytes(rs.getBytes(1));
+                Home home = new Home(rs.getString(3), rs.getDouble(4), rs.getDouble(5), rs.getDouble(6),
+                        rs.getFloat(7), rs.getFloat(8));
+                stored.move(uuid, null, PlayerHomes.of(rs.getString(2), home));
+            }
+        }
+
+        int leaves = 0;
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT prefix, row_count, hash_sum FROM home_ranges")) {
+            while (rs.next()) {
+                String prefix = rs.getString(1);
+                HomeRangeHashes.Node node = new HomeRangeHashes.Node(rs.getLong(2), rs.getLong(3));
+                assertEquals(expected.node(prefix), node, prefix);
+                assertEquals(stored.node(prefix), node, prefix);
+                leaves++;
+            }
+        }
+        assertEquals(HomeRangeHashes.LEAVES, leaves);
+    }
+
+    @Test
+    void triggerSumsMatchJavaSumsAfterEveryKindOfWrite() throws SQLException {
+        Random random = new Random(12);
+        HomeRangeHashes hashes = new HomeRangeHashes();
+        Map<UUID, PlayerHomes> players = new HashMap<>();
+        // Few distinct leading digits, so leaves hold several players
+        UUID[] keys = new UUID[400];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new UUID((random.nextLong() >>> 8) | ((long) random.nextInt(6) << 56), random.nextLong());
+        }
+
+        for (int round = 0; round < 20; round++) {
+            conn.setAutoCommit(false);
+            for (int step = 0; step < 500; step++) {
+                UUID uuid = keys[random.nextInt(keys.length)];
+                PlayerHomes before = players.getOrDefault(uuid, PlayerHomes.EMPTY);
+                String name = NAMES[random.nextInt(NAMES.length)];
+                PlayerHomes after;
+                switch (random.nextInt(5)) {
+                    case 0 -> {
+                        delete(SqliteHomeRepository.DELETE_SQL, uuid, null);
+                        after = PlayerHomes.EMPTY;
+                    }
+                    case 1 -> {
+                        delete(SqliteHomeRepository.DELETE_NAME_SQL, uuid, name);
+                        after = before.without(name);
+                    }
+                    case 2 -> {
+                        // Rewriting a home unchanged, or with the sign of a zero flipped
+                        Home home = before.get(name);
+                        if (home == null) {
+                            continue;
+                        }
+                        Home same = new Home(home.world(), home.x() == 0 ? -home.x() : home.x(), home.y(),
+                                home.z(), home.yaw() == 0 ? -home.yaw() : home.yaw(), home.pitch());
+                        upsert(uuid, name, same);
+                        after = before.with(name, same);
+                    }
+                    default -> {
+                        Home home = randomHome(random);
+                        upsert(uuid, name, home);
+                        after = before.with(name, home);
+                    }
+                }
+
+                hashes.move(uuid, before.isEmpty() ? null : before, after.isEmpty() ? null : after);
+                if (after.isEmpty()) {
+                    players.remove(uuid);
+                } else {
+                    players.put(uuid, after);
+                }
+            }
+            conn.commit();
+            conn.setAutoCommit(true);
+            assertSumsMatch(hashes);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Box queries of {@link HomeSpatialIndex} and {@link HomeCache} against a
+ * brute-force scan over the same homes
+ */
+class HomeSpatialIndexTest {
+
+    private static int cell(double coordinate) {
+        return (int) Math.floor(coordinate) >> 6;
+    }
+
+    /**
+     * Fill the index and the expected map with random players, then move and
+     * remove part of them through the index like the cache does
+     */
+    private static Map<UUID, PlayerHomes> populate(HomeSpatialIndex index, HomeCache cache, Random random) {
+        Map<UUID, PlayerHomes> expected = new HashMap<>();
+        List<UUID> players = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            UUID uuid = new UUID(random.nextLong(), random.nextLong());
+            PlayerHomes homes = TestHomes.randomHomes(random);
+            players.add(uuid);
+            expected.put(uuid, homes);
+            index.move(uuid, null, homes);
+            cache.put(uuid, homes);
+        }
+
+        for (int step = 0; step < 20_000; step++) {
+            UUID uuid = players.get(random.nextInt(players.size()));
+            PlayerHomes from = expected.get(uuid);
+            PlayerHomes to;
+            switch (random.nextInt(4)) {
+                case 0 -> to = null;
+                case 1 -> to = TestHomes.randomHomes(random);
+                default -> {
+                    // A small step usually stays in the cell, sometimes crosses into the next
+                    PlayerHomes base = from != null ? from : TestHomes.randomHomes(random);
+                    String name = base.name(random.nextInt(base.size()));
+                    Home home = base.get(name);
+                    to = base.with(name, new Home(home.world(), home.x() + random.nextDouble() * 20 - 10,
+                            home.y(), home.z() + random.nextDouble() * 20 - 10, 0f, 0f));
+                }
+            }
+            index.move(uuid, from, to);
+            if (to == null) {
+                expected.remove(uuid);
+                cache.remove(uuid);
+            } else {
+                expected.put(uuid, to);
+                cache.put(uuid, to);
+            }
+        }
+        return expected;
+    }
+
+    private static double[] randomBox(Random random) {
+        double size = switch (random.nextInt(3)) {
+            case 0 -> random.nextDouble() * 64;
+            case 1 -> random.nextDouble() * 600;
+            // Larger than the occupied area, which walks the cells instead
+            default -> 3000 + random.nextDouble() * 5000;
+        };
+        double minX = random.nextDouble() * 5000 - 2500;
+        double minZ = random.nextDouble() * 5000 - 2500;
+        return new double[]{minX, minZ, minX + size, minZ + random.nextDouble() * size};
+    }
+
+    @Test
+    void candidatesAreTheOwnersOfEveryHomeInOverlappedCells() {
+        Random random = new Random(3);
+        HomeSpatialIndex index = new HomeSpatialIndex();
+        Map<UUID, PlayerHomes> expected = populate(index, new HomeCache(new MapHomeTable(), false, 0, 0), random);
+
+        for (int query = 0; query < 500; query++) {
+            String world = TestHomes.WORLDS.get(random.nextInt(TestHomes.WORLDS.size()));
+            double[] box = randomBox(random);
+            int minCx = cell(box[0]);
+            int minCz = cell(box[1]);
+            int maxCx = cell(box[2]);
+            int maxCz = cell(box[3]);
+
+            Map<UUID, Integer> owners = new HashMap<>();
+            expected.forEach((uuid, homes) -> {
+                for (int i = 0; i < homes.size(); i++) {
+                    Home home = homes.home(i);
+                    int cx = cell(home.x());
+                    int cz = cell(home.z());
+                    if (home.world().equals(world) && cx >= minCx && cx <= maxCx && cz >= minCz && cz <= maxCz) {
+                        owners.merge(uuid, 1, Integer::sum);
+                    }
+                }
+            });
+
+            Map<UUID, Integer> candidates = new HashMap<>();
+            for (UUID uuid : index.candidates(world, box[0], box[1], box[2], box[3])) {
+                candidates.merge(uuid, 1, Integer::sum);
+            }
+            assertEquals(owners, candidates);
+        }
+    }
+
+    @Test
+    void cacheBoxQueryMatchesBruteForce() {
+        Random random = new Random(4);
+        HomeCache cache = new HomeCache(new CompactHomeTable(new WorldNames()), false, 0, 0);
+        Map<UUID, PlayerHomes> expected = populate(new HomeSpatialIndex(), cache, random);
+
+        for (int query = 0; query < 500; query++) {
+            String world = TestHomes.WORLDS.get(random.nextInt(TestHomes.WORLDS.size()));
+            double[] box = randomBox(random);
+
+            Map<UUID, PlayerHomes> inside = new HashMap<>();
+            expected.forEach((uuid, homes) -> {
+                PlayerHomes matching = PlayerHomes.EMPTY;
+                for (int i = 0; i < homes.size(); i++) {
+                    Home home = homes.home(i);
+                    if (home.world().equals(world) && home.x() >= box[0] && home.x() <= box[2]
+                            && home.z() >= box[1] && home.z() <= box[3]) {
+                        matching = matching.with(homes.name(i), home);
+                    }
+                }
+                if (!matching.isEmpty()) {
+                    inside.put(uuid, matching);
+                }
+            });
+
+            assertEquals(inside, cache.findInBox(world, box[0], box[1], box[2], box[3]));
+        }
+    }
+
+    @Test
+    void countsFollowMovesAndRemoves() {
+        Random random = new Random(5);
+        HomeSpatialIndex index = new HomeSpatialIndex();
+        Map<UUID, PlayerHomes> expected = populate(index, new HomeCache(new MapHomeTable(), false, 0, 0), random);
+
+        Map<String, Integer> counts = new TreeMap<>();
+        expected.values().forEach(homes -> {
+            for (int i = 0; i < homes.size(); i++) {
+                counts.merge(homes.home(i).world(), 1, Integer::sum);
+            }
+        });
+        assertEquals(counts, index.counts());
+
+        expected.forEach((uuid, homes) -> index.move(uuid, homes, null));
+        assertTrue(index.counts().isEmpty());
+        for (String world : TestHomes.WORLDS) {
+            assertTrue(index.all(world).isEmpty());
+            assertTrue(index.candidates(world, -1e6, -1e6, 1e6, 1e6).isEmpty());
+        }
+    }
+}
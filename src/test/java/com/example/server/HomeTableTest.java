@@ -0,0 +1,123 @@
+package com.example.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Both {@link HomeTable} implementations against a plain HashMap
+ */
+class HomeTableTest {
+
+    static Stream<Arguments> tables() {
+        return Stream.of(
+                Arguments.of("map", (Supplier<HomeTable>) MapHomeTable::new),
+                Arguments.of("compact", (Supplier<HomeTable>) () -> new CompactHomeTable(new WorldNames())));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("tables")
+    void matchesHashMapUnderRandomOperations(String name, Supplier<HomeTable> factory) {
+        HomeTable table = factory.get();
+        Map<UUID, PlayerHomes> expected = new HashMap<>();
+        Random random = new Random(1);
+        // A small key pool, so puts replace, removes hit and the table grows and shrinks
+        UUID[] keys = new UUID[5000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+
+        for (int step = 0; step < 200_000; step++) {
+            UUID key = keys[random.nextInt(keys.length)];
+            switch (random.nextInt(4)) {
+                case 0, 1 -> {
+                    PlayerHomes homes = TestHomes.randomHomes(random);
+                    table.put(key, homes);
+                    expected.put(key, homes);
+                }
+                case 2 -> {
+                    PlayerHomes homes = TestHomes.randomHomes(random);
+                    assertEquals(!expected.containsKey(key), table.putIfAbsent(key, homes));
+                    expected.putIfAbsent(key, homes);
+                }
+                default -> {
+                    table.remove(key);
+                    expected.remove(key);
+                }
+            }
+            assertEquals(expected.get(key), table.get(key));
+        }
+
+        assertEquals(expected.size(), table.size());
+        assertEquals(expected, table.snapshot());
+        for (UUID key : keys) {
+            assertEquals(expected.containsKey(key), table.containsKey(key));
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("tables")
+    void switchesBetweenOneAndSeveralHomes(String name, Supplier<HomeTable> factory) {
+        HomeTable table = factory.get();
+        UUID uuid = UUID.randomUUID();
+        Home first = new Home("world", 1, 64, -1, 90f, 0f);
+        Home second = new Home("world_nether", -8.5, 70, 8.5, 0f, -45f);
+
+        table.put(uuid, PlayerHomes.of("base", first));
+        PlayerHomes both = PlayerHomes.of("base", first).with("farm", second);
+        table.put(uuid, both);
+        assertEquals(both, table.get(uuid));
+
+        table.put(uuid, both.without("base"));
+        assertEquals(PlayerHomes.of("farm", second), table.get(uuid));
+        assertEquals(1, table.size());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("tables")
+    void forEachOnlyVisitsMatchingKeys(String name, Supplier<HomeTable> factory) {
+        HomeTable table = factory.get();
+        Random random = new Random(2);
+        Map<UUID, PlayerHomes> expected = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            UUID uuid = new UUID(random.nextLong(), random.nextLong());
+            PlayerHomes homes = TestHomes.randomHomes(random);
+            table.put(uuid, homes);
+            if (uuid.getMostSignificantBits() < 0) {
+                expected.put(uuid, homes);
+            }
+        }
+
+        Map<UUID, PlayerHomes> visited = new HashMap<>();
+        table.forEach(msb -> msb < 0, (uuid, homes) -> assertNull(visited.put(uuid, homes)));
+        assertEquals(expected, visited);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("tables")
+    void clearEmptiesTheTable(String name, Supplier<HomeTable> factory) {
+        HomeTable table = factory.get();
+        UUID uuid = UUID.randomUUID();
+        for (int i = 0; i < 1000; i++) {
+            table.put(new UUID(i, i), PlayerHomes.of(PlayerHomes.DEFAULT_NAME, new Home("world", i, 0, i, 0f, 0f)));
+        }
+        table.clear();
+
+        assertEquals(0, table.size());
+        assertFalse(table.containsKey(new UUID(1, 1)));
+        assertTrue(table.putIfAbsent(uuid, PlayerHomes.of("home", new Home("world", 0, 0, 0, 0f, 0f))));
+        assertEquals(1, table.snapshot().size());
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Per-key ordering of {@link KeyedExecutor} lanes and what a full lane does
+ * to a submitter
+ */
+class KeyedExecutorTest {
+
+    private static final Logger LOGGER = Logger.getLogger("KeyedExecutorTest");
+
+    private final HomeMetrics metrics = new HomeMetrics();
+    private KeyedExecutor executor;
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void runsTasksOfOneKeyInSubmissionOrder() throws InterruptedException {
+        executor = new KeyedExecutor(LOGGER, "KeyedExecutorTest", 4, 10_000, metrics);
+        Random random = new Random(1);
+        List<UUID> keys = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            keys.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+
+        int tasks = 4000;
+        Map<UUID, List<Integer>> seen = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(tasks);
+        for (int i = 0; i < tasks; i++) {
+            UUID key = keys.get(random.nextInt(keys.size()));
+            int sequence = i;
+            // Only the lane's own thread appends to a key's list
+            executor.execute(key, () -> {
+                seen.computeIfAbsent(key, k -> new ArrayList<>()).add(sequence);
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        int total = 0;
+        for (List<Integer> sequences : seen.values()) {
+            for (int i = 1; i < sequences.size(); i++) {
+                assertTrue(sequences.get(i - 1) < sequences.get(i), "tasks of one key ran out of order");
+            }
+            total += sequences.size();
+        }
+        assertEquals(tasks, total);
+    }
+
+    @Test
+    void rejectsRightAwayWhenTheLaneIsFull() throws InterruptedException {
+        executor = new KeyedExecutor(LOGGER, "KeyedExecutorTest", 1, 2, metrics);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(0, () -> {
+            started.countDown();
+            awaitQuietly(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(0, () -> { });
+        executor.execute(0, () -> { });
+
+        long start = System.nanoTime();
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(0, () -> { }));
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(new UUID(0, 1), () -> { }));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1), "submitter waited for the lane");
+        assertEquals(2, metrics.getIoRejected());
+        assertEquals(2, executor.getQueueDepth());
+
+        // Only the shutdown path waits, and only until there is space
+        CountDownLatch ran = new CountDownLatch(1);
+        new Thread(() -> {
+            sleepQuietly(50);
+            release.countDown();
+        }).start();
+        executor.execute(0, ran::countDown, 5, TimeUnit.SECONDS);
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertEquals(2, metrics.getIoRejected());
+    }
+
+    @Test
+    void rejectsAfterShutdown() {
+        executor = new KeyedExecutor(LOGGER, "KeyedExecutorTest", 2, 16, metrics);
+        assertTrue(executor.shutdown(5, TimeUnit.SECONDS));
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(new UUID(1, 1), () -> { }));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link LongMap} against a plain HashMap
+ */
+class LongMapTest {
+
+    private static void check(Map<Long, String> expected, LongMap<String> map, long[] keys) {
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected.isEmpty(), map.isEmpty());
+        for (long key : keys) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+
+        List<String> values = new ArrayList<>();
+        map.forEachValue(values::add);
+        List<String> expectedValues = new ArrayList<>(expected.values());
+        values.sort(null);
+        expectedValues.sort(null);
+        assertEquals(expectedValues, values);
+    }
+
+    private static void randomOperations(long[] keys, int steps, long seed) {
+        LongMap<String> map = new LongMap<>();
+        Map<Long, String> expected = new HashMap<>();
+        Random random = new Random(seed);
+
+        for (int step = 0; step < steps; step++) {
+            long key = keys[random.nextInt(keys.length)];
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                String value = key + "#" + step;
+                map.put(key, value);
+                expected.put(key, value);
+            }
+            assertEquals(expected.get(key), map.get(key));
+            if (step % 1000 == 0) {
+                check(expected, map, keys);
+            }
+        }
+        check(expected, map, keys);
+    }
+
+    @Test
+    void matchesHashMapUnderRandomOperations() {
+        Random random = new Random(6);
+        long[] keys = new long[5000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextLong();
+        }
+        randomOperations(keys, 200_000, 7);
+    }
+
+    @Test
+    void keepsProbeChainsIntactWhenRemovingFromCrowdedTable() {
+        // Few keys in the smallest table: long chains that wrap around the
+        // end, so backward-shift removal runs across the boundary
+        long[] keys = new long[8];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i * 16L;
+        }
+        randomOperations(keys, 50_000, 8);
+
+        // Grid keys like HomeSpatialIndex uses, packed cell x and z
+        long[] cells = new long[1024];
+        for (int i = 0; i < cells.length; i++) {
+            int cx = i / 32 - 16;
+            int cz = i % 32 - 16;
+            cells[i] = ((long) cx << 32) | (cz & 0xffffffffL);
+        }
+        randomOperations(cells, 100_000, 9);
+    }
+
+    @Test
+    void clearEmptiesTheMap() {
+        LongMap<String> map = new LongMap<>();
+        for (long key = -500; key < 500; key++) {
+            map.put(key, "v" + key);
+        }
+        map.clear();
+
+        assertTrue(map.isEmpty());
+        assertNull(map.get(0));
+        map.forEachValue(value -> {
+            throw new AssertionError(value);
+        });
+        map.put(Long.MIN_VALUE, "min");
+        assertEquals("min", map.get(Long.MIN_VALUE));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void rejectsNullValues() {
+        assertThrows(IllegalArgumentException.class, () -> new LongMap<String>().put(1, null));
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The homes.bin layout {@link MappedHomeRepository} documents, read and
+ * written byte by byte, and reopening the file after a crash or from the
+ * single-home version
+ */
+class MappedHomeRepositoryTest {
+
+    private static final int HEADER_SIZE = 4096;
+    private static final int RECORD_SIZE = 72;
+    private static final int SINGLE_HOME_RECORD_SIZE = 64;
+
+    @TempDir
+    Path dataFolder;
+
+    private final Random random = new Random(9);
+
+    private MappedHomeRepository open() {
+        return new MappedHomeRepository(new TestPlugin(dataFolder.toFile()));
+    }
+
+    private File file() {
+        return new File(dataFolder.toFile(), "homes.bin");
+    }
+
+    private ByteBuffer read() throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(file().toPath()));
+    }
+
+    private Map<UUID, PlayerHomes> singleHomes(int players) {
+        Map<UUID, PlayerHomes> homes = new HashMap<>();
+        for (int i = 0; i < players; i++) {
+            homes.put(new UUID(random.nextLong(), random.nextLong()),
+                    PlayerHomes.of(PlayerHomes.DEFAULT_NAME, TestHomes.randomHome(random)));
+        }
+        return homes;
+    }
+
+    @Test
+    void writesTheDocumentedLayout() throws IOException {
+        UUID uuid = new UUID(0x1122334455667788L, 0x99AABBCCDDEEFF00L);
+        Home home = new Home("world_nether", 12.5, 70, -3.25, 90f, -15f);
+        MappedHomeRepository repository = open();
+        repository.saveBatch(Map.of(uuid, PlayerHomes.of("base", home)), Set.of()).join();
+        repository.close();
+
+        ByteBuffer bin = read();
+        assertEquals(HEADER_SIZE + 1024 * RECORD_SIZE, bin.capacity());
+        assertEquals(0x484F4D45, bin.getInt(0));
+        assertEquals(2, bin.getInt(4));
+        assertEquals(1024, bin.getInt(8));
+        assertEquals(1, bin.getInt(12));
+        assertEquals(0, bin.getInt(16));
+        assertEquals(1, bin.getInt(20));
+        assertEquals("world_nether", string(bin, 65, bin.get(64)));
+
+        List<Integer> used = new ArrayList<>();
+        for (int slot = 0; slot < 1024; slot++) {
+            if (bin.get(HEADER_SIZE + slot * RECORD_SIZE + 16) != 0) {
+                used.add(HEADER_SIZE + slot * RECORD_SIZE);
+            }
+        }
+        assertEquals(1, used.size());
+        int off = used.get(0);
+        assertEquals(1, bin.get(off + 16));
+        assertEquals(uuid, new UUID(bin.getLong(off), bin.getLong(off + 8)));
+        assertEquals("base", string(bin, off + 56, bin.get(off + 17)));
+        assertEquals(0, bin.getInt(off + 20));
+        assertEquals(home, new Home("world_nether", bin.getDouble(off + 24), bin.getDouble(off + 32),
+                bin.getDouble(off + 40), bin.getFloat(off + 48), bin.getFloat(off + 52)));
+    }
+
+    @Test
+    void keepsEveryChangeThroughRebuilds() {
+        Map<UUID, PlayerHomes> expected = new HashMap<>();
+        MappedHomeRepository repository = open();
+        for (int round = 0; round < 10; round++) {
+            Map<UUID, PlayerHomes> upserts = new HashMap<>();
+            for (int i = 0; i < 300; i++) {
+                upserts.put(new UUID(random.nextLong(), random.nextLong()), TestHomes.randomHomes(random));
+            }
+            Set<UUID> deletes = new HashSet<>();
+            for (UUID uuid : expected.keySet()) {
+                int roll = random.nextInt(10);
+                if (roll == 0) {
+                    deletes.add(uuid);
+                } else if (roll == 1) {
+                    upserts.put(uuid, TestHomes.randomHomes(random));
+                }
+            }
+            repository.saveBatch(upserts, deletes).join();
+            expected.putAll(upserts);
+            expected.keySet().removeAll(deletes);
+        }
+        repository.close();
+
+        repository = open();
+        assertEquals(expected, repository.loadAll());
+        for (UUID uuid : expected.keySet()) {
+            assertEquals(expected.get(uuid), repository.load(uuid).join());
+        }
+        repository.close();
+    }
+
+    @Test
+    void recountsRecordsWhenTheHeaderIsStale() throws IOException {
+        Map<UUID, PlayerHomes> expected = singleHomes(700);
+        MappedHomeRepository repository = open();
+        repository.saveBatch(expected, Set.of()).join();
+        repository.close();
+
+        // Crash before the counts of the batch reached the header
+        try (FileChannel channel = FileChannel.open(file().toPath(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8), 12);
+        }
+
+        repository = open();
+        assertEquals(expected, repository.loadAll());
+        // Believing the table nearly empty, these would overfill it
+        Map<UUID, PlayerHomes> more = singleHomes(400);
+        repository.saveBatch(more, Set.of()).join();
+        expected.putAll(more);
+        repository.close();
+
+        ByteBuffer bin = read();
+        assertTrue(bin.getInt(8) > 1024);
+        assertEquals(expected.size(), bin.getInt(12));
+        repository = open();
+        assertEquals(expected, repository.loadAll());
+        repository.close();
+    }
+
+    @Test
+    void convertsSingleHomeFiles() throws IOException {
+        Map<UUID, PlayerHomes> expected = singleHomes(50);
+        ByteBuffer bin = ByteBuffer.allocate(HEADER_SIZE + 1024 * SINGLE_HOME_RECORD_SIZE);
+        bin.putInt(0, 0x484F4D45);
+        bin.putInt(4, 1);
+        bin.putInt(8, 1024);
+        bin.putInt(12, expected.size());
+        bin.putInt(20, TestHomes.WORLDS.size());
+        for (int i = 0; i < TestHomes.WORLDS.size(); i++) {
+            byte[] name = TestHomes.WORLDS.get(i).getBytes(StandardCharsets.UTF_8);
+            bin.put(64 + i * 64, (byte) name.length);
+            bin.put(65 + i * 64, name);
+        }
+        // Slots are not where the hash puts them, conversion scans them all
+        int slot = 0;
+        for (Map.Entry<UUID, PlayerHomes> entry : expected.entrySet()) {
+            int off = HEADER_SIZE + slot * 7 % 1024 * SINGLE_HOME_RECORD_SIZE;
+            Home home = entry.getValue().home(0);
+            bin.putLong(off, entry.getKey().getMostSignificantBits());
+            bin.putLong(off + 8, entry.getKey().getLeastSignificantBits());
+            bin.put(off + 16, (byte) 1);
+            bin.putInt(off + 20, TestHomes.WORLDS.indexOf(home.world()));
+            bin.putDouble(off + 24, home.x());
+            bin.putDouble(off + 32, home.y());
+            bin.putDouble(off + 40, home.z());
+            bin.putFloat(off + 48, home.yaw());
+            bin.putFloat(off + 52, home.pitch());
+            slot++;
+        }
+        Files.write(file().toPath(), bin.array());
+
+        MappedHomeRepository repository = open();
+        assertEquals(expected, repository.loadAll());
+        repository.close();
+        assertEquals(2, read().getInt(4));
+    }
+
+    @Test
+    void dropsOnlyHomesInWorldsTheTableCannotHold() {
+        MappedHomeRepository repository = open();
+        Map<UUID, PlayerHomes> expected = new HashMap<>();
+        for (int i = 0; i < 63; i++) {
+            expected.put(new UUID(1, i),
+                    PlayerHomes.of(PlayerHomes.DEFAULT_NAME, new Home("world_" + i, i, 64, i, 0f, 0f)));
+        }
+        repository.saveBatch(expected, Set.of()).join();
+
+        Home full = new Home("world_63", 0, 64, 0, 0f, 0f);
+        Home tooLong = new Home("w".repeat(64), 0, 64, 0, 0f, 0f);
+        assertFalse(repository.canStore(full));
+        assertFalse(repository.canStore(tooLong));
+        assertTrue(repository.canStore(new Home("world_7", 0, 64, 0, 0f, 0f)));
+
+        // The rest of the batch, and of the player, is still written; retrying could not help
+        Home moved = new Home("world_0", 5, 64, 5, 0f, 0f);
+        PlayerHomes kept = PlayerHomes.of(PlayerHomes.DEFAULT_NAME, moved);
+        repository.saveBatch(Map.of(new UUID(1, 0), kept.with("far", full),
+                new UUID(2, 0), PlayerHomes.of("far", full),
+                new UUID(1, 1), PlayerHomes.of(PlayerHomes.DEFAULT_NAME, tooLong)), Set.of()).join();
+        expected.put(new UUID(1, 0), kept);
+        expected.remove(new UUID(1, 1));
+        assertEquals(expected, repository.loadAll());
+        repository.close();
+    }
+
+    private static String string(ByteBuffer bin, int offset, int length) {
+        byte[] bytes = new byte[length];
+        bin.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
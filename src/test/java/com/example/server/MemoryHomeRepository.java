@@ -0,0 +1,63 @@
+package com.example.server;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Repository that keeps homes in a map, for tests of the code around a
+ * repository rather than of a storage format
+ */
+class MemoryHomeRepository implements HomeRepository {
+
+    final Map<UUID, PlayerHomes> homes = new ConcurrentHashMap<>();
+    // Writes fail while set, like a locked or unreachable database
+    volatile boolean failing;
+
+    @Override
+    public Map<UUID, PlayerHomes> loadAll() {
+        return new ConcurrentHashMap<>(homes);
+    }
+
+    @Override
+    public void saveAll(Map<UUID, PlayerHomes> all) {
+        homes.clear();
+        homes.putAll(all);
+    }
+
+    @Override
+    public CompletableFuture<PlayerHomes> load(UUID uuid) {
+        return CompletableFuture.completedFuture(homes.get(uuid));
+    }
+
+    @Override
+    public CompletableFuture<Void> save(UUID uuid, PlayerHomes playerHomes) {
+        return saveBatch(Map.of(uuid, playerHomes), Set.of());
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(UUID uuid) {
+        return saveBatch(Map.of(), Set.of(uuid));
+    }
+
+    @Override
+    public CompletableFuture<Void> saveBatch(Map<UUID, PlayerHomes> upserts, Set<UUID> deletes) {
+        if (failing) {
+            return CompletableFuture.failedFuture(new IllegalStateException("database is locked"));
+        }
+        homes.putAll(upserts);
+        homes.keySet().removeAll(deletes);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Like the SQL repositories, players who already have homes keep them
+     */
+    @Override
+    public CompletableFuture<Void> importBatch(Map<UUID, PlayerHomes> imported) {
+        imported.forEach(homes::putIfAbsent);
+        return CompletableFuture.completedFuture(null);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link PlayerHomes} against a TreeMap of the same names
+ */
+class PlayerHomesTest {
+
+    private static final String[] NAMES = {"a", "b", "ba", "base", "bases", "farm", "home", "mine", "z"};
+
+    private static Home home(double x) {
+        return new Home("world", x, 64, 0, 0f, 0f);
+    }
+
+    @Test
+    void matchesTreeMapUnderRandomChanges() {
+        Random random = new Random(10);
+        PlayerHomes homes = PlayerHomes.EMPTY;
+        TreeMap<String, Home> expected = new TreeMap<>();
+
+        for (int step = 0; step < 20_000; step++) {
+            String name = NAMES[random.nextInt(NAMES.length)];
+            if (random.nextInt(3) == 0) {
+                homes = homes.without(name);
+                expected.remove(name);
+            } else {
+                Home home = home(random.nextInt(4));
+                homes = homes.with(name, home);
+                expected.put(name, home);
+            }
+
+            assertEquals(expected.size(), homes.size());
+            assertEquals(expected.isEmpty(), homes.isEmpty());
+            assertEquals(new ArrayList<>(expected.keySet()), homes.names());
+            for (String probe : NAMES) {
+                assertEquals(expected.get(probe), homes.get(probe));
+                assertEquals(expected.containsKey(probe), homes.contains(probe));
+                int index = homes.indexOf(probe);
+                int before = expected.headMap(probe).size();
+                assertEquals(expected.containsKey(probe) ? before : -before - 1, index);
+            }
+
+            Map<String, Home> visited = new TreeMap<>();
+            homes.forEach(visited::put);
+            assertEquals(expected, visited);
+        }
+    }
+
+    @Test
+    void namesStartingWithReturnsTheAdjacentMatches() {
+        PlayerHomes homes = PlayerHomes.EMPTY;
+        for (String name : NAMES) {
+            homes = homes.with(name, home(0));
+        }
+
+        assertEquals(List.of("b", "ba", "base", "bases"), homes.namesStartingWith("b"));
+        assertEquals(List.of("base", "bases"), homes.namesStartingWith("bas"));
+        assertEquals(List.of("bases"), homes.namesStartingWith("bases"));
+        assertEquals(List.of(), homes.namesStartingWith("c"));
+        assertEquals(List.of(), homes.namesStartingWith("zz"));
+        assertEquals(List.of(NAMES), homes.namesStartingWith(""));
+        assertEquals(List.of(), PlayerHomes.EMPTY.namesStartingWith("h"));
+    }
+
+    @Test
+    void unchangedCopiesAreTheSameInstance() {
+        PlayerHomes homes = PlayerHomes.of("home", home(1));
+        assertSame(homes, homes.with("home", home(1)));
+        assertSame(homes, homes.without("farm"));
+        assertSame(PlayerHomes.EMPTY, homes.without("home"));
+        assertSame(PlayerHomes.EMPTY, PlayerHomes.EMPTY.without("home"));
+    }
+
+    @Test
+    void equalityFollowsContentNotHistory() {
+        PlayerHomes one = PlayerHomes.of("farm", home(2)).with("base", home(1));
+        PlayerHomes other = PlayerHomes.of("base", home(1)).with("mine", home(3)).with("farm", home(2)).without("mine");
+
+        assertEquals(one, other);
+        assertEquals(one.hashCode(), other.hashCode());
+        assertEquals("PlayerHomes{base=" + home(1) + ", farm=" + home(2) + "}", one.toString());
+        assertNotEquals(one, one.with("farm", home(5)));
+        assertNotEquals(one, PlayerHomes.EMPTY);
+        assertEquals(PlayerHomes.EMPTY, PlayerHomes.of("home", home(0)).without("home"));
+    }
+
+    @Test
+    void namesAreInterned() {
+        String name = new String("base".toCharArray());
+        assertSame("base", PlayerHomes.of(name, home(0)).name(0));
+        assertSame("base", PlayerHomes.of("home", home(0)).with(name, home(1)).name(0));
+    }
+
+    @Test
+    void emptyHasNoHomes() {
+        assertTrue(PlayerHomes.EMPTY.isEmpty());
+        assertEquals(0, PlayerHomes.EMPTY.size());
+        assertNull(PlayerHomes.EMPTY.get(PlayerHomes.DEFAULT_NAME));
+        assertFalse(PlayerHomes.EMPTY.contains(PlayerHomes.DEFAULT_NAME));
+        assertEquals(-1, PlayerHomes.EMPTY.indexOf(PlayerHomes.DEFAULT_NAME));
+        assertEquals(List.of(), PlayerHomes.EMPTY.names());
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Changes spilled to homes.spill while the database fails, and their replay
+ * once it is back or on the next start
+ */
+class SpilloverHomeRepositoryTest {
+
+    private static final UUID ALICE = new UUID(1, 1);
+    private static final UUID BOB = new UUID(2, 2);
+
+    @TempDir
+    Path dataFolder;
+
+    private final HomeMetrics metrics = new HomeMetrics();
+    private TestPlugin plugin;
+
+    @BeforeEach
+    void createPlugin() {
+        plugin = new TestPlugin(dataFolder.toFile());
+        plugin.getConfig().set("spillover.write-timeout-ms", 200);
+        plugin.getConfig().set("spillover.retry-interval-ms", 20);
+    }
+
+    private File spillFile() {
+        return new File(dataFolder.toFile(), "homes.spill");
+    }
+
+    private static PlayerHomes homes(double x) {
+        return PlayerHomes.of(PlayerHomes.DEFAULT_NAME, new Home("world", x, 64, 0, 0f, 0f));
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("condition not met within 5 s");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void spillsWhileTheDatabaseFailsAndReplaysOnceItIsBack() throws InterruptedException {
+        MemoryHomeRepository database = new MemoryHomeRepository();
+        database.homes.put(BOB, homes(1));
+        SpilloverHomeRepository repository = new SpilloverHomeRepository(plugin, database, metrics);
+
+        database.failing = true;
+        repository.saveBatch(Map.of(ALICE, homes(1)), Set.of()).join();
+        repository.saveBatch(Map.of(ALICE, homes(2)), Set.of(BOB)).join();
+        assertTrue(spillFile().length() > 0);
+        assertEquals(2, repository.getPendingCount());
+        assertEquals(3, metrics.getSpilledChanges());
+
+        // Reads see the spilled changes before the database does
+        assertNull(database.homes.get(ALICE));
+        assertEquals(homes(2), repository.load(ALICE).join());
+        assertNull(repository.load(BOB).join());
+        assertEquals(Map.of(ALICE, homes(2)), repository.loadAll());
+
+        database.failing = false;
+        awaitTrue(() -> repository.getReplayLagSeconds() == 0.0);
+        assertEquals(Map.of(ALICE, homes(2)), database.homes);
+        assertEquals(0, repository.getPendingCount());
+        assertFalse(spillFile().exists());
+        assertEquals(2, metrics.getReplayedChanges());
+
+        // Back to direct writes
+        repository.saveBatch(Map.of(BOB, homes(3)), Set.of()).join();
+        assertEquals(homes(3), database.homes.get(BOB));
+        assertEquals(3, metrics.getSpilledChanges());
+        repository.close();
+    }
+
+    @Test
+    void spillsABatchThatTakesTooLong() throws InterruptedException {
+        AtomicBoolean stalled = new AtomicBoolean(true);
+        MemoryHomeRepository database = new MemoryHomeRepository() {
+            @Override
+            public CompletableFuture<Void> saveBatch(Map<UUID, PlayerHomes> upserts, Set<UUID> deletes) {
+                // Only the first write hangs, like a database locked by a long transaction
+                return stalled.getAndSet(false) ? new CompletableFuture<>() : super.saveBatch(upserts, deletes);
+            }
+        };
+        SpilloverHomeRepository repository = new SpilloverHomeRepository(plugin, database, metrics);
+
+        long start = System.nanoTime();
+        repository.saveBatch(Map.of(ALICE, homes(1)), Set.of()).join();
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+        assertEquals(1, metrics.getSpilledChanges());
+
+        awaitTrue(() -> repository.getPendingCount() == 0);
+        assertEquals(homes(1), database.homes.get(ALICE));
+        repository.close();
+    }
+
+    @Test
+    void replaysAJournalLeftByAnEarlierRun() throws InterruptedException {
+        MemoryHomeRepository database = new MemoryHomeRepository();
+        database.homes.put(BOB, homes(1));
+        database.failing = true;
+        SpilloverHomeRepository repository = new SpilloverHomeRepository(plugin, database, metrics);
+        repository.saveBatch(Map.of(ALICE, homes(1)), Set.of(BOB)).join();
+        repository.saveBatch(Map.of(ALICE, homes(2)), Set.of()).join();
+        repository.close();
+        assertTrue(spillFile().length() > 0);
+
+        // Restarted with the database reachable again
+        database.failing = false;
+        SpilloverHomeRepository restarted = new SpilloverHomeRepository(plugin, database, metrics);
+        assertEquals(Map.of(ALICE, homes(2)), restarted.loadAll());
+        awaitTrue(() -> !spillFile().exists());
+        assertEquals(Map.of(ALICE, homes(2)), database.homes);
+        assertEquals(0, restarted.getPendingCount());
+        restarted.close();
+    }
+}
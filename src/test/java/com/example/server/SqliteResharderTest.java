@@ -0,0 +1,235 @@
+package com.example.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link SqliteResharder} round trips over a database that still holds rows
+ * of every older layout
+ */
+class SqliteResharderTest {
+
+    private static final Logger LOGGER = Logger.getLogger("SqliteResharderTest");
+
+    @TempDir
+    Path dataFolder;
+
+    @BeforeAll
+    static void loadDriver() throws ClassNotFoundException {
+        Class.forName("org.sqlite.JDBC");
+    }
+
+    private static Connection open(File file) throws SQLException {
+        return DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+    }
+
+    /**
+     * homes.db at schema version 2 with rows in homes_legacy and in the
+     * binary-keyed table, brought to the current version, plus named homes
+     * written like the repository does
+     *
+     * @return every home the file holds
+     */
+    private Map<UUID, PlayerHomes> createMixedDatabase(int players) throws SQLException {
+        Random random = new Random(11);
+        Map<UUID, PlayerHomes> expected = new HashMap<>();
+        File file = new File(dataFolder.toFile(), SqliteResharder.SINGLE_FILE);
+
+        try (Connection conn = open(file)) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE schema_version (version INTEGER PRIMARY KEY, description TEXT NOT NULL, "
+                        + "applied_at INTEGER NOT NULL)");
+                stmt.execute("INSERT INTO schema_version VALUES (1, 'text UUID keys', 0), "
+                        + "(2, 'binary UUID keys and world table', 0)");
+                stmt.execute("CREATE TABLE worlds (id INTEGER PRIMARY KEY, name TEXT NOT NULL UNIQUE)");
+                stmt.execute("CREATE TABLE " + SqliteSchema.LEGACY_TABLE + " (uuid TEXT PRIMARY KEY NOT NULL, "
+                        + "world TEXT NOT NULL, x REAL NOT NULL, y REAL NOT NULL, z REAL NOT NULL, yaw REAL NOT NULL, "
+                        + "pitch REAL NOT NULL, updated_at INTEGER DEFAULT (strftime('%s', 'now')))");
+                stmt.execute("CREATE TABLE homes (uuid BLOB PRIMARY KEY NOT NULL, world_id INTEGER NOT NULL, "
+                        + "x REAL NOT NULL, y REAL NOT NULL, z REAL NOT NULL, yaw REAL NOT NULL, pitch REAL NOT NULL, "
+                        + "updated_at INTEGER NOT NULL DEFAULT (strftime('%s', 'now'))) WITHOUT ROWID");
+                for (int i = 0; i < TestHomes.WORLDS.size(); i++) {
+                    stmt.execute("INSERT INTO worlds (id, name) VALUES (" + (i + 1) + ", '"
+                            + TestHomes.WORLDS.get(i) + "')");
+                }
+            }
+
+            try (PreparedStatement legacy = conn.prepareStatement("INSERT INTO " + SqliteSchema.LEGACY_TABLE
+                    + " (uuid, world, x, y, z, yaw, pitch) VALUES (?, ?, ?, ?, ?, ?, ?)");
+                    PreparedStatement binary = conn.prepareStatement(
+                            "INSERT INTO homes (uuid, world_id, x, y, z, yaw, pitch) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+                for (int i = 0; i < players; i++) {
+                    UUID uuid = new UUID(random.nextLong(), random.nextLong());
+                    Home home = TestHomes.randomHome(random);
+                    boolean text = i % 2 == 0;
+                    PreparedStatement stmt = text ? legacy : binary;
+                    if (text) {
+                        stmt.setString(1, uuid.toString());
+                        stmt.setString(2, home.world());
+                    } else {
+                        stmt.setBytes(1, SqliteHomeRepository.toBytes(uuid));
+                        stmt.setInt(2, TestHomes.WORLDS.indexOf(home.world()) + 1);
+                    }
+                    stmt.setDouble(3, home.x());
+                    stmt.setDouble(4, home.y());
+                    stmt.setDouble(5, home.z());
+                    stmt.setFloat(6, home.yaw());
+                    stmt.setFloat(7, home.pitch());
+                    stmt.executeUpdate();
+                    expected.put(uuid, PlayerHomes.of(PlayerHomes.DEFAULT_NAME, home));
+                }
+            }
+
+            // homes becomes homes_unnamed, the named table starts empty
+            assertEquals(4, SqliteSchema.migrate(conn, LOGGER));
+            assertTrue(SqliteSchema.hasTable(conn, SqliteSchema.LEGACY_TABLE));
+            assertTrue(SqliteSchema.hasTable(conn, SqliteSchema.UNNAMED_TABLE));
+
+            try (PreparedStatement named = conn.prepareStatement("INSERT INTO homes "
+                    + "(uuid, name, world_id, x, y, z, yaw, pitch, hash) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                for (int i = 0; i < players; i++) {
+                    UUID uuid = new UUID(random.nextLong(), random.nextLong());
+                    PlayerHomes homes = PlayerHomes.of("base", TestHomes.randomHome(random));
+                    if (random.nextBoolean()) {
+                        homes = homes.with("farm", TestHomes.randomHome(random));
+                    }
+                    for (int h = 0; h < homes.size(); h++) {
+                        Home home = homes.home(h);
+                        named.setBytes(1, SqliteHomeRepository.toBytes(uuid));
+                        named.setString(2, homes.name(h));
+                        named.setInt(3, TestHomes.WORLDS.indexOf(home.world()) + 1);
+                        named.setDouble(4, home.x());
+                        named.setDouble(5, home.y());
+                        named.setDouble(6, home.z());
+                        named.setFloat(7, home.yaw());
+                        named.setFloat(8, home.pitch());
+                        named.setLong(9, HomeRangeHashes.rowHash(uuid, homes.name(h), home));
+                        named.executeUpdate();
+                    }
+                    expected.put(uuid, homes);
+                }
+            }
+        }
+        return expected;
+    }
+
+    /**
+     * Homes of a resharded file, checking each row's hash and the range sums
+     */
+    private static Map<UUID, PlayerHomes> read(File file) throws SQLException {
+        Map<UUID, PlayerHomes> homes = new HashMap<>();
+        HomeRangeHashes ranges = new HomeRangeHashes();
+        try (Connection conn = open(file); Statement stmt = conn.createStatement()) {
+            assertFalse(SqliteSchema.hasTable(conn, SqliteSchema.LEGACY_TABLE));
+            assertFalse(SqliteSchema.hasTable(conn, SqliteSchema.UNNAMED_TABLE));
+
+            try (ResultSet rs = stmt.executeQuery("SELECT h.uuid, h.name, w.name, h.x, h.y, h.z, h.yaw, h.pitch, "
+                    + "h.hash FROM homes h JOIN worlds w ON w.id = h.world_id")) {
+                while (rs.next()) {
+                    UUID uuid = SqliteHomeRepository.fromBytes(rs.getBytes(1));
+                    String name = rs.getString(2);
+                    Home home = new Home(rs.getString(3), rs.getDouble(4), rs.getDouble(5), rs.getDouble(6),
+                            rs.getFloat(7), rs.getFloat(8));
+                    assertEquals(HomeRangeHashes.rowHash(uuid, name, home), rs.getLong(9));
+                    homes.merge(uuid, PlayerHomes.of(name, home), (a, b) -> a.with(b.name(0), b.home(0)));
+                }
+            }
+            homes.forEach((uuid, playerHomes) -> ranges.move(uuid, null, playerHomes));
+
+            try (ResultSet rs = stmt.executeQuery("SELECT prefix, row_count, hash_sum FROM home_ranges")) {
+                int leaves = 0;
+                while (rs.next()) {
+                    assertEquals(ranges.node(rs.getString(1)), new HomeRangeHashes.Node(rs.getLong(2), rs.getLong(3)));
+                    leaves++;
+                }
+                assertEquals(HomeRangeHashes.LEAVES, leaves);
+            }
+        }
+        return homes;
+    }
+
+    private Map<UUID, PlayerHomes> readLayout(int shards) throws SQLException {
+        Map<UUID, PlayerHomes> all = new HashMap<>();
+        for (int shard = 0; shard < shards; shard++) {
+            Map<UUID, PlayerHomes> homes = read(SqliteResharder.shardFile(dataFolder.toFile(), shard, shards));
+            for (UUID uuid : homes.keySet()) {
+                assertEquals(shard, SqliteResharder.shardOf(uuid, shards));
+            }
+            all.putAll(homes);
+        }
+        return all;
+    }
+
+    private List<String> leftovers() {
+        String[] names = dataFolder.toFile().list((dir, name) -> name.endsWith(".reshard"));
+        return names != null ? List.of(names) : List.of();
+    }
+
+    @Test
+    void roundTripKeepsEveryHome() throws Exception {
+        Map<UUID, PlayerHomes> expected = createMixedDatabase(3000);
+        SqliteResharder resharder = new SqliteResharder(dataFolder.toFile(), LOGGER);
+
+        resharder.reshard(4);
+        assertEquals(4, resharder.currentShards());
+        assertFalse(new File(dataFolder.toFile(), SqliteResharder.SINGLE_FILE).exists());
+        assertEquals(expected, readLayout(4));
+
+        resharder.reshard(3);
+        assertEquals(3, resharder.currentShards());
+        assertEquals(expected, readLayout(3));
+
+        resharder.reshard(1);
+        assertEquals(1, resharder.currentShards());
+        assertEquals(expected, readLayout(1));
+        assertTrue(leftovers().isEmpty());
+    }
+
+    @Test
+    void sameLayoutIsLeftAlone() throws Exception {
+        createMixedDatabase(10);
+        File single = new File(dataFolder.toFile(), SqliteResharder.SINGLE_FILE);
+        long modified = single.lastModified();
+
+        new SqliteResharder(dataFolder.toFile(), LOGGER).reshard(1);
+
+        assertEquals(modified, single.lastModified());
+        try (Connection conn = open(single)) {
+            // Still unconverted, only a real reshard migrates the rows
+            assertTrue(SqliteSchema.hasTable(conn, SqliteSchema.LEGACY_TABLE));
+        }
+    }
+
+    @Test
+    void partialOutputOfAnInterruptedRunIsDiscarded() throws Exception {
+        Map<UUID, PlayerHomes> expected = createMixedDatabase(200);
+        File partial = new File(SqliteResharder.shardFile(dataFolder.toFile(), 0, 2).getPath() + ".reshard");
+        Files.writeString(partial.toPath(), "partial");
+
+        new SqliteResharder(dataFolder.toFile(), LOGGER).reshard(2);
+
+        assertEquals(expected, readLayout(2));
+        assertTrue(leftovers().isEmpty());
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.server;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Random homes shared by the tests. Coordinates and angles survive a
+ * round trip through every storage type, so stored homes compare equal.
+ */
+final class TestHomes {
+
+    static final List<String> WORLDS = List.of("world", "world_nether", "world_the_end");
+    static final List<String> NAMES = List.of(PlayerHomes.DEFAULT_NAME, "base", "farm", "mine");
+
+    private TestHomes() {
+    }
+
+    /**
+     * Home in one of {@link #WORLDS}, around zero so cells and ranges on
+     * both sides of the axes are hit
+     */
+    static Home randomHome(Random random) {
+        return new Home(WORLDS.get(random.nextInt(WORLDS.size())),
+                random.nextDouble() * 4000 - 2000, random.nextInt(320) - 64, random.nextDouble() * 4000 - 2000,
+                random.nextFloat() * 360f - 180f, random.nextFloat() * 180f - 90f);
+    }
+
+    /**
+     * One home, or for every fourth player several of {@link #NAMES}
+     */
+    static PlayerHomes randomHomes(Random random) {
+        PlayerHomes homes = PlayerHomes.EMPTY;
+        int count = 1 + (random.nextInt(4) == 0 ? random.nextInt(NAMES.size()) : 0);
+        for (int i = 0; i < count; i++) {
+            homes = homes.with(NAMES.get(random.nextInt(NAMES.size())), randomHome(random));
+        }
+        return homes;
+    }
+}
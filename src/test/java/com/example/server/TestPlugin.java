@@ -0,0 +1,39 @@
+package com.example.server;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.util.logging.Logger;
+
+import org.bukkit.Server;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
+
+/**
+ * Plugin created outside a plugin class loader, only used to hand the
+ * repositories a data folder, a logger and config.yml. Settings a test
+ * needs are set on {@link #getConfig()} before creating a repository.
+ */
+class TestPlugin extends JavaPlugin {
+
+    private static final Logger LOGGER = Logger.getLogger("HomeTest");
+
+    // Answers the server's name and logger, everything else is null
+    private static final Server SERVER = (Server) Proxy.newProxyInstance(Server.class.getClassLoader(),
+            new Class<?>[]{Server.class}, (proxy, method, args) -> switch (method.getName()) {
+                case "getLogger" -> LOGGER;
+                case "getName" -> "HomeTest";
+                case "equals" -> proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "toString" -> "ServerStub";
+                default -> null;
+            });
+
+    @SuppressWarnings({"deprecation", "removal"})
+    TestPlugin(File dataFolder) {
+        super(new JavaPluginLoader(SERVER),
+                new PluginDescriptionFile("HomeTest", "1.0.0", TestPlugin.class.getName()),
+                dataFolder,
+                new File(dataFolder, "test.jar"));
+    }
+}
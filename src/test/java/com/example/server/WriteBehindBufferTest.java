@@ -0,0 +1,195 @@
+package com.example.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Coalescing, flush triggers and failure handling of {@link WriteBehindBuffer}
+ * on a real {@link KeyedExecutor}
+ */
+class WriteBehindBufferTest {
+
+    private static final Logger LOGGER = Logger.getLogger("WriteBehindBufferTest");
+    private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+    private static final UUID ALICE = new UUID(1, 1);
+    private static final UUID BOB = new UUID(2, 2);
+    private static final UUID CAROL = new UUID(3, 3);
+
+    private final HomeMetrics metrics = new HomeMetrics();
+    private final BlockingQueue<Batch> batches = new LinkedBlockingQueue<>();
+    private KeyedExecutor executor;
+    private WriteBehindBuffer buffer;
+
+    private record Batch(Map<UUID, PlayerHomes> upserts, Set<UUID> deletes, long nanos) {
+
+    }
+
+    @AfterEach
+    void close() {
+        buffer.close(5, TimeUnit.SECONDS);
+        executor.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    private static PlayerHomes homes(double x) {
+        return PlayerHomes.of(PlayerHomes.DEFAULT_NAME, new Home("world", x, 64, 0, 0f, 0f));
+    }
+
+    /**
+     * Buffer on one lane whose writer records every batch, failing the first
+     * {@code failures} of them
+     */
+    private void start(int queueCapacity, int batchSize, long stalenessMillis, int failures) {
+        executor = new KeyedExecutor(LOGGER, "WriteBehindBufferTest", 1, queueCapacity, metrics);
+        AtomicInteger failing = new AtomicInteger(failures);
+        buffer = new WriteBehindBuffer(LOGGER, executor, metrics, (upserts, deletes) -> {
+            batches.add(new Batch(Map.copyOf(upserts), Set.copyOf(deletes), System.nanoTime()));
+            return failing.getAndDecrement() > 0
+                    ? CompletableFuture.failedFuture(new IllegalStateException("database is locked"))
+                    : CompletableFuture.completedFuture(null);
+        }, batchSize, stalenessMillis);
+    }
+
+    private Batch nextBatch() throws InterruptedException {
+        Batch batch = batches.poll(5, TimeUnit.SECONDS);
+        if (batch == null) {
+            throw new AssertionError("no batch was written");
+        }
+        return batch;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("condition not met within 5 s");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    void collapsesChangesOfOnePlayerToTheLatest() throws Exception {
+        start(16, 100, NEVER, 0);
+        buffer.put(ALICE, homes(1));
+        buffer.put(ALICE, homes(2));
+        buffer.put(BOB, homes(3));
+        buffer.delete(BOB);
+        buffer.delete(CAROL);
+        buffer.put(CAROL, homes(4));
+        assertEquals(3, buffer.getPendingCount());
+        assertTrue(buffer.hasPending(ALICE));
+
+        buffer.flushAll().get(5, TimeUnit.SECONDS);
+        Batch batch = nextBatch();
+        assertEquals(Map.of(ALICE, homes(2), CAROL, homes(4)), batch.upserts());
+        assertEquals(Set.of(BOB), batch.deletes());
+        assertTrue(batches.isEmpty());
+        assertEquals(0, buffer.getPendingCount());
+        assertFalse(buffer.hasPending(ALICE));
+    }
+
+    @Test
+    void flushesOnceTheBatchSizeIsReached() throws Exception {
+        start(16, 3, NEVER, 0);
+        buffer.put(ALICE, homes(1));
+        buffer.put(BOB, homes(1));
+        assertNull(batches.poll(100, TimeUnit.MILLISECONDS));
+
+        buffer.put(CAROL, homes(1));
+        assertEquals(Set.of(ALICE, BOB, CAROL), nextBatch().upserts().keySet());
+    }
+
+    @Test
+    void flushesOnceTheStalenessLimitHasPassed() throws Exception {
+        start(16, 100, 20, 0);
+        long start = System.nanoTime();
+        buffer.put(ALICE, homes(1));
+        Batch batch = nextBatch();
+        assertEquals(Set.of(ALICE), batch.upserts().keySet());
+        assertTrue(batch.nanos() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    void retriesFailedBatchesWithBackoff() throws Exception {
+        start(16, 100, 20, 2);
+        buffer.put(ALICE, homes(1));
+        Batch first = nextBatch();
+        awaitTrue(() -> metrics.getWriteOutageSeconds() > 0);
+        assertTrue(buffer.hasPending(ALICE));
+        assertEquals(1, metrics.getFailedBatches());
+
+        // Changes queued during the outage go out with the retry
+        buffer.put(ALICE, homes(2));
+        buffer.put(BOB, homes(2));
+        Batch second = nextBatch();
+        Batch third = nextBatch();
+        assertEquals(Map.of(ALICE, homes(2), BOB, homes(2)), third.upserts());
+        assertTrue(second.nanos() - first.nanos() >= TimeUnit.MILLISECONDS.toNanos(40));
+        assertTrue(third.nanos() - second.nanos() >= TimeUnit.MILLISECONDS.toNanos(80));
+
+        // The outage ends once the retry is committed
+        awaitTrue(() -> metrics.getWriteOutageSeconds() == 0.0);
+        assertEquals(2, metrics.getFailedBatches());
+        assertEquals(0, buffer.getPendingCount());
+    }
+
+    @Test
+    void leavesTheFlushOfAFullLaneToTheTimer() throws Exception {
+        start(1, 1, 20, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(0, () -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        // Wait until the blocker runs, then fill the only queue slot
+        awaitTrue(() -> executor.getQueueDepth() == 0);
+        executor.execute(0, () -> { });
+
+        long start = System.nanoTime();
+        buffer.put(ALICE, homes(1));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1), "put waited for the lane");
+        assertTrue(metrics.getIoRejected() >= 1);
+        assertTrue(buffer.hasPending(ALICE));
+
+        release.countDown();
+        assertEquals(Set.of(ALICE), nextBatch().upserts().keySet());
+        awaitTrue(() -> buffer.getPendingCount() == 0);
+    }
+
+    @Test
+    void closeWritesWhatIsPending() throws Exception {
+        start(16, 100, NEVER, 0);
+        List<UUID> players = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            UUID uuid = new UUID(7, i);
+            players.add(uuid);
+            buffer.put(uuid, homes(i));
+        }
+
+        buffer.close(5, TimeUnit.SECONDS);
+        assertEquals(Set.copyOf(players), nextBatch().upserts().keySet());
+        assertEquals(0, buffer.getPendingCount());
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link YamlHomeMigrator} runs that are cancelled and resumed from the
+ * homes.migration checkpoint, over a homes.yml with journals on top
+ */
+class YamlHomeMigratorTest {
+
+    @TempDir
+    Path dataFolder;
+
+    private final Random random = new Random(3);
+    // Snapshot entries in file order
+    private final Map<UUID, PlayerHomes> snapshot = new LinkedHashMap<>();
+    private final List<Map<UUID, PlayerHomes>> batches = new CopyOnWriteArrayList<>();
+    private TestPlugin plugin;
+    private MemoryHomeRepository repository;
+    private HomeService homes;
+    private YamlHomeMigrator migrator;
+    // Batch during which the running migrator is cancelled, 0 for none
+    private int cancelAt;
+
+    @BeforeEach
+    void start() throws IOException {
+        plugin = new TestPlugin(dataFolder.toFile());
+        repository = new MemoryHomeRepository() {
+            @Override
+            public CompletableFuture<Void> importBatch(Map<UUID, PlayerHomes> imported) {
+                batches.add(Map.copyOf(imported));
+                if (batches.size() == cancelAt) {
+                    migrator.cancel();
+                }
+                return super.importBatch(imported);
+            }
+        };
+        homes = new HomeService(plugin, repository, new HomeMetrics());
+
+        for (int i = 0; i < 10; i++) {
+            snapshot.put(new UUID(random.nextLong(), random.nextLong()), TestHomes.randomHomes(random));
+        }
+        writeSnapshot();
+    }
+
+    @AfterEach
+    void stop() {
+        homes.shutdown();
+    }
+
+    private File file(String name) {
+        return new File(dataFolder.toFile(), name);
+    }
+
+    /**
+     * homes.yml with a single home in the layout from before named homes
+     * for players with only the default one
+     */
+    private void writeSnapshot() throws IOException {
+        StringBuilder yaml = new StringBuilder("homes:\n");
+        snapshot.forEach((uuid, playerHomes) -> {
+            yaml.append("  ").append(uuid).append(":\n");
+            boolean single = playerHomes.size() == 1 && playerHomes.name(0).equals(PlayerHomes.DEFAULT_NAME);
+            playerHomes.forEach((name, home) -> {
+                String indent = single ? "    " : "      ";
+                if (!single) {
+                    yaml.append("    ").append(name).append(":\n");
+                }
+                yaml.append(indent).append("world: ").append(home.world()).append('\n')
+                        .append(indent).append("x: ").append(home.x()).append('\n')
+                        .append(indent).append("y: ").append(home.y()).append('\n')
+                        .append(indent).append("z: ").append(home.z()).append('\n')
+                        .append(indent).append("yaw: ").append(home.yaw()).append('\n')
+                        .append(indent).append("pitch: ").append(home.pitch()).append('\n');
+            });
+        });
+        Files.writeString(file("homes.yml").toPath(), yaml, StandardCharsets.UTF_8);
+    }
+
+    private YamlHomeMigrator migrator() {
+        migrator = new YamlHomeMigrator(plugin, homes, 3, 2);
+        return migrator;
+    }
+
+    private Set<UUID> imported(int fromBatch) {
+        Set<UUID> players = new HashSet<>();
+        for (Map<UUID, PlayerHomes> batch : batches.subList(fromBatch, batches.size())) {
+            players.addAll(batch.keySet());
+        }
+        return players;
+    }
+
+    @Test
+    void resumesAfterTheLastCheckpoint() throws IOException {
+        // Changes since the snapshot: one player moved, one deleted, one new
+        List<UUID> players = new ArrayList<>(snapshot.keySet());
+        Map<UUID, PlayerHomes> expected = new LinkedHashMap<>(snapshot);
+        PlayerHomes moved = TestHomes.randomHomes(random);
+        UUID newcomer = new UUID(random.nextLong(), random.nextLong());
+        PlayerHomes newcomerHomes = TestHomes.randomHomes(random);
+        Files.writeString(file("homes.journal").toPath(),
+                YamlHomeRepository.format(Map.of(players.get(7), moved, newcomer, newcomerHomes),
+                        Set.of(players.get(8))), StandardCharsets.UTF_8);
+        expected.put(players.get(7), moved);
+        expected.remove(players.get(8));
+        expected.put(newcomer, newcomerHomes);
+
+        cancelAt = 2;
+        migrator().run();
+        assertEquals(Set.copyOf(players.subList(0, 6)), imported(0));
+        assertFalse(migrator.isDone());
+
+        cancelAt = 0;
+        migrator().run();
+        // Entries of the first run are not read again
+        Set<UUID> second = imported(2);
+        assertEquals(Set.of(players.get(6), players.get(7), players.get(9), newcomer), second);
+        assertTrue(migrator.isDone());
+        assertTrue(migrator().isDone());
+        assertEquals(expected, repository.homes);
+    }
+
+    @Test
+    void startsOverWhenTheSourceChanged() throws IOException {
+        migrator().run();
+        assertTrue(migrator.isDone());
+        int firstRun = batches.size();
+
+        UUID late = new UUID(random.nextLong(), random.nextLong());
+        PlayerHomes lateHomes = PlayerHomes.of(PlayerHomes.DEFAULT_NAME, TestHomes.randomHome(random));
+        Files.writeString(file("homes.journal").toPath(),
+                YamlHomeRepository.format(Map.of(late, lateHomes), Set.of()),
+                StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        assertFalse(migrator().isDone());
+
+        migrator.run();
+        Set<UUID> all = new HashSet<>(snapshot.keySet());
+        all.add(late);
+        assertEquals(all, imported(firstRun));
+        assertEquals(all, repository.homes.keySet());
+    }
+}
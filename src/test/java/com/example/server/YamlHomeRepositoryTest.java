@@ -0,0 +1,172 @@
+package com.example.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * homes.yml snapshots and the homes.journal appended between them, read back
+ * by a new {@link YamlHomeRepository} as after a restart or a crash
+ */
+class YamlHomeRepositoryTest {
+
+    @TempDir
+    Path dataFolder;
+
+    private final Random random = new Random(5);
+
+    private YamlHomeRepository open() {
+        return new YamlHomeRepository(new TestPlugin(dataFolder.toFile()));
+    }
+
+    private File file(String name) {
+        return new File(dataFolder.toFile(), name);
+    }
+
+    private Map<UUID, PlayerHomes> randomPlayers(int count) {
+        Map<UUID, PlayerHomes> players = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            players.put(new UUID(random.nextLong(), random.nextLong()), TestHomes.randomHomes(random));
+        }
+        return players;
+    }
+
+    /**
+     * Change a few of the players and delete a few, applied to
+     * {@code expected} and written in one batch
+     */
+    private void changeSome(YamlHomeRepository repository, Map<UUID, PlayerHomes> expected) {
+        List<UUID> players = new ArrayList<>(expected.keySet());
+        Map<UUID, PlayerHomes> upserts = randomPlayers(3);
+        Set<UUID> deletes = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            upserts.put(players.get(i), TestHomes.randomHomes(random));
+            deletes.add(players.get(players.size() - 1 - i));
+        }
+        repository.saveBatch(upserts, deletes).join();
+        expected.putAll(upserts);
+        expected.keySet().removeAll(deletes);
+    }
+
+    @Test
+    void replaysTheJournalOnTopOfTheSnapshot() {
+        Map<UUID, PlayerHomes> expected = randomPlayers(20);
+        YamlHomeRepository repository = open();
+        repository.saveAll(expected);
+        changeSome(repository, expected);
+        changeSome(repository, expected);
+        repository.close();
+
+        assertEquals(0, countLines(file("homes.journal.1")));
+        assertEquals(18, countLines(file("homes.journal")));
+        repository = open();
+        assertEquals(expected, repository.loadAll());
+        UUID anyone = expected.keySet().iterator().next();
+        assertEquals(expected.get(anyone), repository.load(anyone).join());
+        repository.close();
+    }
+
+    @Test
+    void keepsEntriesAppendedAfterATornLine() throws IOException {
+        Map<UUID, PlayerHomes> expected = randomPlayers(5);
+        YamlHomeRepository repository = open();
+        repository.saveBatch(expected, Set.of()).join();
+        repository.close();
+
+        // Crash in the middle of an entry for one more player
+        String torn = YamlHomeRepository.format(randomPlayers(1), Set.of());
+        Files.writeString(file("homes.journal").toPath(), torn.substring(0, torn.length() / 2),
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        repository = open();
+        assertEquals(expected, repository.loadAll());
+        changeSome(repository, expected);
+        repository.close();
+
+        repository = open();
+        assertEquals(expected, repository.loadAll());
+        repository.close();
+    }
+
+    @Test
+    void compactionFoldsTheJournalIntoTheSnapshot() {
+        Map<UUID, PlayerHomes> expected = randomPlayers(20);
+        YamlHomeRepository repository = open();
+        repository.saveAll(expected);
+        changeSome(repository, expected);
+        repository.compact();
+
+        assertFalse(file("homes.journal").exists());
+        assertFalse(file("homes.journal.1").exists());
+        // Appends after the rotation start a new journal
+        changeSome(repository, expected);
+        repository.close();
+
+        assertEquals(9, countLines(file("homes.journal")));
+        repository = open();
+        assertEquals(expected, repository.loadAll());
+        repository.compact();
+        repository.close();
+
+        assertFalse(file("homes.journal").exists());
+        repository = open();
+        assertEquals(expected, repository.loadAll());
+        repository.close();
+    }
+
+    @Test
+    void compactsALeftoverRotatedJournalFirst() throws IOException {
+        Map<UUID, PlayerHomes> expected = randomPlayers(10);
+        YamlHomeRepository repository = open();
+        repository.saveAll(expected);
+        repository.close();
+
+        // Compaction crashed after rotating, and the player changed again since
+        UUID player = expected.keySet().iterator().next();
+        PlayerHomes older = TestHomes.randomHomes(random);
+        PlayerHomes newer = TestHomes.randomHomes(random);
+        Files.writeString(file("homes.journal.1").toPath(),
+                YamlHomeRepository.format(Map.of(player, older), Set.of()), StandardCharsets.UTF_8);
+        Files.writeString(file("homes.journal").toPath(),
+                YamlHomeRepository.format(Map.of(player, newer), Set.of()), StandardCharsets.UTF_8);
+        expected.put(player, newer);
+
+        repository = open();
+        assertEquals(expected, repository.loadAll());
+        repository.compact();
+        assertFalse(file("homes.journal.1").exists());
+        repository.close();
+
+        repository = open();
+        assertEquals(expected, repository.loadAll());
+        repository.close();
+    }
+
+    private static int countLines(File file) {
+        if (!file.exists()) {
+            return 0;
+        }
+        try {
+            return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).size();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}